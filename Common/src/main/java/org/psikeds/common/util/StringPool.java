@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.common.util;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Symbol-Table for Strings, i.e. IDs, Labels and Descriptions of the
+ * Knowledge-Base. Every distinct String is kept only once and all
+ * Value-Objects, POJOs and decoded Sessions are referencing this single
+ * Instance instead of holding their own Copies.
+ * 
+ * Different from {@link String#intern()}, a Pool is scoped, e.g. to a
+ * single Version of the Knowledge-Base, and is dropped together with it.
+ * A serialized Pool is restored together with the Objects referencing its
+ * Strings, i.e. it is still shared by them after Deserialization.
+ * 
+ * A Pool can be shared by many Threads.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class StringPool implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final int DEFAULT_INITIAL_CAPACITY = 4096;
+
+  private final ConcurrentMap<String, String> pool;
+
+  public StringPool() {
+    this(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  public StringPool(final int initialCapacity) {
+    this.pool = new ConcurrentHashMap<String, String>(initialCapacity < 16 ? 16 : initialCapacity);
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Add String to Pool, if not contained yet.
+   * 
+   * @param str
+   * @return pooled Instance of this String; null if str was null
+   */
+  public String intern(final String str) {
+    if (str == null) {
+      return null;
+    }
+    final String pooled = this.pool.putIfAbsent(str, str);
+    return (pooled == null ? str : pooled);
+  }
+
+  /**
+   * Replace all Elements of a List by their pooled Instances.
+   * 
+   * @param lst
+   *          modifiable List of Strings
+   * @return same List
+   */
+  public List<String> intern(final List<String> lst) {
+    if (lst != null) {
+      final ListIterator<String> iter = lst.listIterator();
+      while (iter.hasNext()) {
+        final String str = iter.next();
+        final String pooled = intern(str);
+        if (pooled != str) {
+          iter.set(pooled);
+        }
+      }
+    }
+    return lst;
+  }
+
+  /**
+   * Look up String without adding it to the Pool, e.g. for Strings
+   * coming from Clients or from decoded Sessions.
+   * 
+   * @param str
+   * @return pooled Instance if contained; otherwise str itself
+   */
+  public String lookup(final String str) {
+    final String pooled = (str == null ? null : this.pool.get(str));
+    return (pooled == null ? str : pooled);
+  }
+
+  public boolean contains(final String str) {
+    return ((str != null) && this.pool.containsKey(str));
+  }
+
+  public int size() {
+    return this.pool.size();
+  }
+
+  public void clear() {
+    this.pool.clear();
+  }
+}
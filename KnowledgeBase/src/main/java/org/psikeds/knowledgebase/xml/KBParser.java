@@ -18,6 +18,7 @@ import java.io.IOException;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.validation.Schema;
 
 import org.xml.sax.SAXException;
 
@@ -40,6 +41,21 @@ public interface KBParser {
    */
   long parseXmlElements() throws XMLStreamException, SAXException, JAXBException, IOException;
 
+  /**
+   * Parse the specified XML and validate it against the XSD schema at the
+   * same time, i.e. the XML is read only once.
+   * 
+   * @param schema
+   *          compiled XSD schema; null for no validation
+   * @return Total number of found XML elements
+   * @throws XMLStreamException
+   * @throws SAXException
+   * @throws JAXBException
+   *           also if XML is not valid against XSD
+   * @throws IOException
+   */
+  long parseXmlElements(final Schema schema) throws XMLStreamException, SAXException, JAXBException, IOException;
+
   /**
    * Retrieve the Callback-Object registered for handling Parsing-Events of
    * this Parser.
@@ -16,6 +16,8 @@ package org.psikeds.knowledgebase.xml;
 
 import java.io.IOException;
 
+import javax.xml.validation.Schema;
+
 import org.xml.sax.SAXException;
 
 /**
@@ -33,4 +35,13 @@ public interface KBValidator {
    * @throws IOException if XML or XSD are not readable
    */
   void validate() throws SAXException, IOException;
+
+  /**
+   * Get the compiled XSD schema, e.g. for validating XML while parsing it.<br>
+   * 
+   * @return Schema; never null
+   * @throws SAXException if XSD is not a valid schema
+   * @throws IOException if XSD is not readable
+   */
+  Schema getSchema() throws SAXException, IOException;
 }
@@ -20,6 +20,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
@@ -30,6 +32,7 @@ import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.XMLEvent;
+import javax.xml.validation.Schema;
 
 import org.xml.sax.SAXException;
 
@@ -46,6 +49,11 @@ import org.psikeds.knowledgebase.xml.KBParserCallback;
  *
  * Note:
  * XML-Data can be supplied as either File, Inputstream or Spring-Resource.<br>
+ * If an XSD-Schema is supplied, the XML is validated while it is unmarshalled,
+ * i.e. there is no need for reading the XML a second Time.<br>
+ * JAXB-Contexts are expensive to create but thread-safe, so they are
+ * created only once per Package or Class and reused for every Parsing,
+ * e.g. when the Knowledge Base is reloaded.<br>
  * 
  * @author marco@juliano.de
  *
@@ -56,6 +64,11 @@ public class XMLParser implements KBParser {
   private static final String DEFAULT_ENCODING = "UTF-8";
   private static final int DEFAULT_SKIPPED_ELEMENTS = 0;
 
+  /**
+   * Cache of JAXB-Contexts, Key is either the Package-Name or the Element-Class.
+   */
+  private static final ConcurrentMap<Object, JAXBContext> JAXB_CONTEXTS = new ConcurrentHashMap<Object, JAXBContext>();
+
   /**
    * Accept every Event triggered by the start of a new XML-Element.
    */
@@ -334,10 +347,31 @@ public class XMLParser implements KBParser {
    */
   @Override
   public long parseXmlElements() throws XMLStreamException, SAXException, JAXBException, IOException {
+    return parseXmlElements((Schema) null);
+  }
+
+  /**
+   * Parse the specified XML and unmarshal it to JAXB-Object-Structures.
+   * The XML is validated against the Schema while it is unmarshalled.<br>
+   * Note: If XML-Elements are skipped, every unmarshalled Element is
+   * validated on its own and must therefore be declared globally
+   * within the Schema.<br>
+   * 
+   * @param schema
+   *          compiled XSD-Schema; null for no Validation
+   * @return Total number of unmarshalled XML-Elements
+   * @throws XMLStreamException
+   * @throws SAXException
+   * @throws JAXBException
+   *           also if XML is not valid against XSD
+   * @throws IOException
+   */
+  @Override
+  public long parseXmlElements(final Schema schema) throws XMLStreamException, SAXException, JAXBException, IOException {
     Reader xml = null;
     try {
       xml = createXmlReader();
-      return parseXmlElements(xml);
+      return parseXmlElements(xml, schema);
     }
     finally {
       if (xml != null) {
@@ -369,13 +403,13 @@ public class XMLParser implements KBParser {
     throw new IllegalArgumentException("Unsupported configuration settings!");
   }
 
-  private long parseXmlElements(final Reader xml) throws XMLStreamException, JAXBException {
+  private long parseXmlElements(final Reader xml, final Schema schema) throws XMLStreamException, JAXBException {
     if (this.callbackHandler != null) {
       if (this.elementClass != null) {
-        return parseXmlElements(xml, this.elementClass, this.callbackHandler, this.eventFilter, this.numOfSkippedElements);
+        return parseXmlElements(xml, this.elementClass, this.callbackHandler, this.eventFilter, this.numOfSkippedElements, schema);
       }
       if (!StringUtils.isEmpty(this.packageName)) {
-        return parseXmlElements(xml, this.packageName, this.callbackHandler, this.eventFilter, this.numOfSkippedElements);
+        return parseXmlElements(xml, this.packageName, this.callbackHandler, this.eventFilter, this.numOfSkippedElements, schema);
       }
     }
     throw new IllegalArgumentException("Unsupported configuration settings! Must specify a Callback-Handler and either a Package-Name or an Element-Class.");
@@ -439,6 +473,41 @@ public class XMLParser implements KBParser {
   public static long parseXmlElements(final Reader xml, final String packageName, final KBParserCallback handler, final EventFilter filter, final int numSkipped)
       throws XMLStreamException, JAXBException {
 
+    return parseXmlElements(xml, packageName, handler, filter, numSkipped, null);
+  }
+
+  /**
+   * Helper for parsing big XML files using JAXB in combination with StAX.<br>
+   * All classes in the specified package can be parsed. Every unmarshalled
+   * Element is validated against the specified Schema.<br>
+   * <b>Note:</b> The XML reader will not be closed. This must be invoked by
+   * the caller afterwards!<br>
+   * 
+   * @param xml
+   *          Reader for XML-Data
+   * @param packageName
+   *          Name of the package containing the JAXB-Classes,
+   *          e.g. org.psikeds.knowledgebase.jaxb
+   * @param handler
+   *          Callback handler used to process every single found
+   *          XML-Element (@see
+   *          org.psikeds.knowledgebase.xml.KBParserCallback#handleElement
+   *          (java.lang.Object))
+   * @param filter
+   *          EventFilter used for StAX-Parsing
+   * @param numSkipped
+   *          Number of Elements to be skipped,
+   *          e.g. numSkipped = 1 for skipping the XML-Root-Element.
+   * @param schema
+   *          compiled XSD-Schema; null for no Validation
+   * @return Total number of unmarshalled XML-Elements
+   * @throws XMLStreamException
+   * @throws JAXBException
+   *           also if XML is not valid against XSD
+   */
+  public static long parseXmlElements(final Reader xml, final String packageName, final KBParserCallback handler, final EventFilter filter, final int numSkipped, final Schema schema)
+      throws XMLStreamException, JAXBException {
+
     // init stream reader
     final XMLInputFactory staxFactory = XMLInputFactory.newInstance();
     final XMLEventReader staxReader = staxFactory.createXMLEventReader(xml);
@@ -447,8 +516,9 @@ public class XMLParser implements KBParser {
     skipXmlElements(filteredReader, numSkipped);
 
     // JAXB with specific package
-    final JAXBContext jaxbCtx = JAXBContext.newInstance(packageName);
+    final JAXBContext jaxbCtx = getJaxbContext(packageName);
     final Unmarshaller unmarshaller = jaxbCtx.createUnmarshaller();
+    unmarshaller.setSchema(schema);
 
     // parsing und unmarshalling
     long counter = 0;
@@ -512,6 +582,40 @@ public class XMLParser implements KBParser {
   public static long parseXmlElements(final Reader xml, final Class<?> elemClazz, final KBParserCallback handler, final EventFilter filter, final int numSkipped)
       throws XMLStreamException, JAXBException {
 
+    return parseXmlElements(xml, elemClazz, handler, filter, numSkipped, null);
+  }
+
+  /**
+   * Helper for parsing big XML files using JAXB in combination with StAX.<br>
+   * Only XML-Elements of the specified Top-Level-Class will be parsed. Every
+   * unmarshalled Element is validated against the specified Schema.<br>
+   * <b>Note:</b> The XML reader will not be closed. This must be invoked by
+   * the caller afterwards!<br>
+   * 
+   * @param xml
+   *          Reader for XML-Data
+   * @param elementClass
+   *          Top-Level-Class used for JAXB-Unmarshalling
+   * @param handler
+   *          Callback handler used to process every single found XML
+   *          element (@see
+   *          org.psikeds.knowledgebase.xml.KBParserCallback#handleElement
+   *          (java.lang.Object))
+   * @param filter
+   *          EventFilter used for StAX-Parsing
+   * @param numSkipped
+   *          Number of Elements to be skipped,
+   *          e.g. numSkipped = 1 for skipping the XML-Root-Element.
+   * @param schema
+   *          compiled XSD-Schema; null for no Validation
+   * @return Total number of unmarshalled XML-Elements
+   * @throws XMLStreamException
+   * @throws JAXBException
+   *           also if XML is not valid against XSD
+   */
+  public static long parseXmlElements(final Reader xml, final Class<?> elemClazz, final KBParserCallback handler, final EventFilter filter, final int numSkipped, final Schema schema)
+      throws XMLStreamException, JAXBException {
+
     // init stream reader
     final XMLInputFactory staxFactory = XMLInputFactory.newInstance();
     final XMLEventReader staxReader = staxFactory.createXMLEventReader(xml);
@@ -520,8 +624,9 @@ public class XMLParser implements KBParser {
     skipXmlElements(filteredReader, numSkipped);
 
     // JAXB with specific top-level-class
-    final JAXBContext jaxbCtx = JAXBContext.newInstance(elemClazz);
+    final JAXBContext jaxbCtx = getJaxbContext(elemClazz);
     final Unmarshaller unmarshaller = jaxbCtx.createUnmarshaller();
+    unmarshaller.setSchema(schema);
 
     // parsing und unmarshalling
     long counter = 0;
@@ -533,6 +638,38 @@ public class XMLParser implements KBParser {
     return counter;
   }
 
+  /**
+   * @param packageName
+   *          Name of the package containing the JAXB-Classes
+   * @return cached or new JAXB-Context
+   * @throws JAXBException
+   */
+  public static JAXBContext getJaxbContext(final String packageName) throws JAXBException {
+    JAXBContext ctx = JAXB_CONTEXTS.get(packageName);
+    if (ctx == null) {
+      ctx = JAXBContext.newInstance(packageName);
+      final JAXBContext existing = JAXB_CONTEXTS.putIfAbsent(packageName, ctx);
+      ctx = (existing == null ? ctx : existing);
+    }
+    return ctx;
+  }
+
+  /**
+   * @param elemClazz
+   *          Top-Level-Class used for JAXB-Unmarshalling
+   * @return cached or new JAXB-Context
+   * @throws JAXBException
+   */
+  public static JAXBContext getJaxbContext(final Class<?> elemClazz) throws JAXBException {
+    JAXBContext ctx = JAXB_CONTEXTS.get(elemClazz);
+    if (ctx == null) {
+      ctx = JAXBContext.newInstance(elemClazz);
+      final JAXBContext existing = JAXB_CONTEXTS.putIfAbsent(elemClazz, ctx);
+      ctx = (existing == null ? ctx : existing);
+    }
+    return ctx;
+  }
+
   private static void handleElement(final KBParserCallback handler, final Object element) {
     // Note1: The unmarshalled "element" is a complete JAXB-Object-Structure
     // containing not only the current XML-Element but also the Content-Tree
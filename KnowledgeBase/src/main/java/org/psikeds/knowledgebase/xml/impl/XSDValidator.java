@@ -42,6 +42,7 @@ import org.psikeds.knowledgebase.xml.KBValidator;
  * Note:
  * XML and XSD can be both Files or both Inputstreams or both Spring-Resources
  * but not a combination of different Types.<br>
+ * The XSD is compiled only once and the resulting Schema is reused.<br>
  *
  * @author marco@juliano.de
  *
@@ -57,6 +58,7 @@ public class XSDValidator implements KBValidator {
   private InputStream xmlStream;
   private Resource xsdResource;
   private Resource xmlResource;
+  private Schema schema;
 
   /**
    * Default constructor
@@ -152,6 +154,7 @@ public class XSDValidator implements KBValidator {
    */
   public void setXsdFilename(final String xsdFilename) {
     this.xsdFilename = xsdFilename;
+    this.schema = null;
   }
 
   /**
@@ -197,6 +200,7 @@ public class XSDValidator implements KBValidator {
    */
   public void setXsdStream(final InputStream xsdStream) {
     this.xsdStream = xsdStream;
+    this.schema = null;
   }
 
   /**
@@ -227,6 +231,7 @@ public class XSDValidator implements KBValidator {
    */
   public void setXsdResource(final Resource xsdResource) {
     this.xsdResource = xsdResource;
+    this.schema = null;
   }
 
   /**
@@ -258,20 +263,20 @@ public class XSDValidator implements KBValidator {
   @Override
   public void validate() throws SAXException, IOException {
     if (this.xsdStream != null && this.xmlStream != null) {
-      validate(this.xsdStream, this.xmlStream);
+      validate(getSchema(), new StreamSource(this.xmlStream));
       // Note: We do not close the streams here.
       // It's the responsibility of the caller
       return;
     }
     if (this.xsdResource != null && this.xmlResource != null) {
-      validate(this.xsdResource, this.xmlResource);
+      validate(getSchema(), this.xmlResource);
       return;
     }
     if (!StringUtils.isEmpty(this.xsdFilename) && !StringUtils.isEmpty(this.xmlFilename) && !StringUtils.isEmpty(this.encoding)) {
       Reader xml = null;
       try {
         xml = new InputStreamReader(new FileInputStream(this.xmlFilename), this.encoding);
-        validate(this.xsdFilename, xml);
+        validate(getSchema(), new StreamSource(xml));
         return;
       }
       finally {
@@ -293,6 +298,53 @@ public class XSDValidator implements KBValidator {
     throw new IllegalArgumentException("Unsupported configuration settings!");
   }
 
+  /**
+   * Get the compiled XSD schema. The XSD is compiled on first invocation only.<br>
+   * 
+   * @return Schema
+   * @throws SAXException
+   *           if XSD is not a valid schema
+   * @throws IOException
+   */
+  @Override
+  public synchronized Schema getSchema() throws SAXException, IOException {
+    if (this.schema == null) {
+      if (this.xsdStream != null) {
+        // Note: We do not close the stream here.
+        // It's the responsibility of the caller
+        this.schema = createSchema(new StreamSource(this.xsdStream));
+      }
+      else if (this.xsdResource != null) {
+        InputStream xsd = null;
+        try {
+          xsd = this.xsdResource.getInputStream();
+          this.schema = createSchema(new StreamSource(xsd));
+        }
+        finally {
+          // we opened the stream, we close it
+          if (xsd != null) {
+            try {
+              xsd.close();
+            }
+            catch (final Exception ex) {
+              // ignore
+            }
+            finally {
+              xsd = null;
+            }
+          }
+        }
+      }
+      else if (!StringUtils.isEmpty(this.xsdFilename)) {
+        this.schema = createSchema(new StreamSource(new File(this.xsdFilename)));
+      }
+      else {
+        throw new IllegalArgumentException("Unsupported configuration settings!");
+      }
+    }
+    return this.schema;
+  }
+
   // -------------------------------------------------------------
   // ---- Static helpers for validation of XML against XSD
   // -------------------------------------------------------------
@@ -394,9 +446,73 @@ public class XSDValidator implements KBValidator {
    * @throws IOException
    */
   public static void validate(final Source xsd, final Source xml) throws SAXException, IOException {
-    final SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-    final Schema schema = factory.newSchema(xsd);
+    validate(createSchema(xsd), xml);
+  }
+
+  /**
+   * Validate XML against an already compiled XSD schmema.
+   * 
+   * @param schema
+   *          compiled XSD-schema that will be used to validate the XML
+   * @param xml
+   *          Spring-Resource for the XML
+   * @throws SAXException
+   *           if XML is not valid against XSD
+   * @throws IOException
+   */
+  public static void validate(final Schema schema, final Resource xml) throws SAXException, IOException {
+    InputStream xmlStream = null;
+    try {
+      xmlStream = xml.getInputStream();
+      validate(schema, new StreamSource(xmlStream));
+    }
+    finally {
+      // we opened the stream, we close it
+      if (xmlStream != null) {
+        try {
+          xmlStream.close();
+        }
+        catch (final Exception ex) {
+          // ignore
+        }
+        finally {
+          xmlStream = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * Validate XML against an already compiled XSD schmema.<br>
+   * <b>Note:</b> The XML source/stream will not be closed. This must be
+   * invoked by the caller afterwards!<br>
+   * 
+   * @param schema
+   *          compiled XSD-schema that will be used to validate the XML
+   * @param xml
+   *          Source for XML
+   * @throws SAXException
+   *           if XML is not valid against XSD
+   * @throws IOException
+   */
+  public static void validate(final Schema schema, final Source xml) throws SAXException, IOException {
     final Validator validator = schema.newValidator();
     validator.validate(xml);
   }
+
+  /**
+   * Compile XSD schema.<br>
+   * <b>Note:</b> The XSD source/stream will not be closed. This must be
+   * invoked by the caller afterwards!<br>
+   * 
+   * @param xsd
+   *          Source for XSD-schema
+   * @return compiled Schema; thread-safe and reusable
+   * @throws SAXException
+   *           if XSD is not a valid schema
+   */
+  public static Schema createSchema(final Source xsd) throws SAXException {
+    final SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+    return factory.newSchema(xsd);
+  }
 }
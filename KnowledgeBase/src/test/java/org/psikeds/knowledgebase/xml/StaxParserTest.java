@@ -21,6 +21,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -53,6 +54,8 @@ public class StaxParserTest {
 
   private static final String ENCODING = System.getProperty("org.psikeds.test.encoding", "UTF-8");
 
+  private static final int NUM_ITERATIONS = Integer.getInteger("org.psikeds.test.iterations", 20).intValue();
+
   @BeforeClass
   public static void setUpBeforeClass() {
     BasicConfigurator.configure();
@@ -152,6 +155,46 @@ public class StaxParserTest {
     assertEquals("Number of Elements counted by Parser (" + numElems + ") and CallBackHandler (" + tcbh.counter + ") are not equal.", numElems, tcbh.counter);
   }
 
+  /**
+   * Test method for {@link org.psikeds.knowledgebase.xml.impl.XMLParser#parseXmlElements(javax.xml.validation.Schema)}
+   */
+  @Test
+  public void testXmlParserWithSchemaValidation() {
+    final TestCallbackHandler tcbh = new TestCallbackHandler();
+    long numElems = 0;
+    try {
+      LOGGER.info("Parsing and validating XML " + XML + " against XSD " + XSD + " in a single Pass ...");
+      final KBValidator validator = new XSDValidator(new FileSystemResource(XSD), new FileSystemResource(XML));
+      final KBParser parser = new XMLParser(new FileSystemResource(XML), ENCODING, tcbh);
+      numElems = parser.parseXmlElements(validator.getSchema());
+      LOGGER.info("... done. XML " + XML + " is valid against XSD " + XSD);
+    }
+    catch (final Exception ex) {
+      final String message = "XML Parsing or Validation failed: " + ex.getMessage();
+      LOGGER.info(message);
+      fail(message);
+    }
+    assertEquals("We expected just 1 XML-Element (RootElement) but got " + numElems, 1, numElems);
+    assertEquals("Number of Elements counted by Parser (" + numElems + ") and CallBackHandler (" + tcbh.counter + ") are not equal.", numElems, tcbh.counter);
+  }
+
+  /**
+   * Test method for {@link org.psikeds.knowledgebase.xml.impl.XMLParser#parseXmlElements()}:
+   * Repeated Parsing (e.g. Reload of the Knowledge Base) with the cached
+   * JAXB-Context must deliver the same Elements every time.
+   */
+  @Test
+  public void testXmlParserRepeatedly() throws Exception {
+    final Resource xml = new FileSystemResource(XML);
+    final TestCallbackHandler tcbh = new TestCallbackHandler();
+    final KBParser parser = new XMLParser(xml, ENCODING, tcbh);
+    final long numElems = parser.parseXmlElements();
+    for (int i = 0; i < NUM_ITERATIONS; i++) {
+      assertEquals("Repeated Parsing delivered a different Number of Elements.", numElems, parser.parseXmlElements());
+    }
+    assertEquals("Number of Elements counted by CallBackHandler is wrong.", (NUM_ITERATIONS + 1) * numElems, tcbh.counter);
+  }
+
   /**
    * Test method for {@link org.psikeds.knowledgebase.xml.impl.XMLParser#parseXmlElements()}
    */
@@ -309,7 +309,17 @@ public class Re2QaTransformer implements Transformer {
 
   @Override
   public FeatureChoice re2qa(final org.psikeds.resolutionengine.interfaces.pojos.FeatureChoice re) {
-    return (re == null ? null : new FeatureChoice(re.getParentVariantID(), re.getFeatureID(), re2qa(re.getPossibleValues())));
+    FeatureChoice qa = null;
+    if (re != null) {
+      // the query agent presents every single value, i.e. ranges are expanded here
+      final int num = re.getNumberOfPossibleValues();
+      final org.psikeds.resolutionengine.interfaces.pojos.FeatureValues values = new org.psikeds.resolutionengine.interfaces.pojos.FeatureValues(num);
+      for (int i = 0; i < num; i++) {
+        values.add(re.getPossibleValue(i));
+      }
+      qa = new FeatureChoice(re.getParentVariantID(), re.getFeatureID(), re2qa(values));
+    }
+    return qa;
   }
 
   @Override
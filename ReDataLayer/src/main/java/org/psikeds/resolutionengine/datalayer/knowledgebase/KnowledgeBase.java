@@ -14,6 +14,10 @@
  *******************************************************************************/
 package org.psikeds.resolutionengine.datalayer.knowledgebase;
 
+import java.util.List;
+
+import org.psikeds.common.util.StringPool;
+
 import org.psikeds.resolutionengine.datalayer.vo.Alternatives;
 import org.psikeds.resolutionengine.datalayer.vo.Concept;
 import org.psikeds.resolutionengine.datalayer.vo.Concepts;
@@ -140,5 +144,29 @@ public interface KnowledgeBase {
 
   boolean isIncludedIn(String featureValueID, String conceptID);
 
+  // -------------------------------
+  // read-only Views, never null,
+  // must not be modified
+  // -------------------------------
+
+  List<Feature> getFeaturesView(String variantId);
+
+  List<FeatureValue> getFeatureValuesOfConceptView(String conceptID);
+
+  List<FeatureValue> getFeatureValuesView(String variantId, String featureId);
+
+  List<Variant> getFulfillingVariantsView(String purposeId);
+
+  List<Purpose> getConstitutingPurposesView(String variantId);
+
+  // -------------------------------
+  // Pool of all Strings of this
+  // Version, Lookup only
+  // -------------------------------
+
+  StringPool getStringPool();
+
+  // -------------------------------
+
   boolean isValid();
 }
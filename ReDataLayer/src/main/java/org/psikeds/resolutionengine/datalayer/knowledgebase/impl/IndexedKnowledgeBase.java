@@ -0,0 +1,1182 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.datalayer.knowledgebase.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.commons.lang.StringUtils;
+
+import org.psikeds.common.util.StringPool;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.util.FeatureValueHelper;
+import org.psikeds.resolutionengine.datalayer.vo.Alternatives;
+import org.psikeds.resolutionengine.datalayer.vo.Component;
+import org.psikeds.resolutionengine.datalayer.vo.Concept;
+import org.psikeds.resolutionengine.datalayer.vo.Concepts;
+import org.psikeds.resolutionengine.datalayer.vo.Constituents;
+import org.psikeds.resolutionengine.datalayer.vo.Constitutes;
+import org.psikeds.resolutionengine.datalayer.vo.Event;
+import org.psikeds.resolutionengine.datalayer.vo.Events;
+import org.psikeds.resolutionengine.datalayer.vo.Feature;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueList;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValues;
+import org.psikeds.resolutionengine.datalayer.vo.Features;
+import org.psikeds.resolutionengine.datalayer.vo.Fulfills;
+import org.psikeds.resolutionengine.datalayer.vo.MetaData;
+import org.psikeds.resolutionengine.datalayer.vo.Purpose;
+import org.psikeds.resolutionengine.datalayer.vo.Purposes;
+import org.psikeds.resolutionengine.datalayer.vo.Relation;
+import org.psikeds.resolutionengine.datalayer.vo.RelationParameter;
+import org.psikeds.resolutionengine.datalayer.vo.RelationParameters;
+import org.psikeds.resolutionengine.datalayer.vo.Relations;
+import org.psikeds.resolutionengine.datalayer.vo.Rule;
+import org.psikeds.resolutionengine.datalayer.vo.Rules;
+import org.psikeds.resolutionengine.datalayer.vo.Variant;
+import org.psikeds.resolutionengine.datalayer.vo.Variants;
+
+/**
+ * Immutable and therefore thread-safe Implementation of a KnowledgeBase.
+ * 
+ * It is built once from a completely loaded (and validated) KnowledgeBase,
+ * e.g. an {@link XmlKnowledgeBase}. Every Object gets a dense Position within
+ * a typed Index of its Kind, so that Lookups do not need any concatenated
+ * Keys or Casts. All Relationships between Objects (Purpose to fulfilling
+ * Variants, Variant to Features, Variant to constituting Purposes, Variant to
+ * attached Concepts/Events/Rules/Relations) are precomputed as Arrays indexed
+ * by these Positions. Additionally there are BitSets for all Memberships, so
+ * that Predicates like {@link #isFulfilledBy(String, String)} or
+ * {@link #hasFeature(String, String)} are answered by two Lookups and a Bit-Test without
+ * creating any Objects. Lists of related Objects are cached as unmodifiable
+ * Views, see e.g. {@link #getFeaturesView(String)}.
+ * 
+ * Getters returning Containers like {@link Features} or {@link Fulfills} hand
+ * out a new Container with a modifiable Copy of such a List on every Call,
+ * just like any other KnowledgeBase, so Callers may add or remove Objects
+ * without affecting this KnowledgeBase. The *View-Methods hand out the
+ * unmodifiable Lists themselves without copying. The contained
+ * Value-Objects are shared in both Cases and must be treated as read-only.
+ * 
+ * Being Serializable, the whole KnowledgeBase including all Indexes can be
+ * stored as a Snapshot, see {@link KnowledgeBaseSnapshot}.
+ * 
+ * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class IndexedKnowledgeBase implements KnowledgeBase, Serializable {
+
+  private static final long serialVersionUID = 4L;
+  private static final Logger LOGGER = LoggerFactory.getLogger(IndexedKnowledgeBase.class);
+
+  private static final int[] NO_POSITIONS = new int[0];
+  private static final long[] NO_QUANTITIES = new long[0];
+
+  private final boolean valid;
+  private final StringPool stringPool; // serialized with this Version
+
+  private final MetaData metaData;
+  private final List<Feature> allFeatures;
+  private final List<FeatureValue> allFeatureValues;
+  private final List<Concept> allConcepts;
+  private final List<Purpose> allPurposes;
+  private final List<Purpose> rootPurposes;
+  private final List<Variant> allVariants;
+  private final List<Fulfills> allAlternatives;
+  private final List<Constitutes> allConstituents;
+  private final List<Event> allEvents;
+  private final List<Rule> allRules;
+  private final List<RelationParameter> allRelationParameters;
+  private final List<Relation> allRelations;
+
+  private final Index<Feature> features;
+  private final Index<FeatureValue> featureValues;
+  private final Map<String, FeatureValueRange<? extends FeatureValue>> ranges;
+  private final Index<Concept> concepts;
+  private final Index<Purpose> purposes;
+  private final Index<Variant> variants;
+  private final Index<Event> events;
+  private final Index<Rule> rules;
+  private final Index<RelationParameter> relationParameters;
+  private final Index<Relation> relations;
+
+  // indexed by position of purpose
+  private final Fulfills[] fulfills;
+  private final int[][] fulfillingVariants;
+
+  // indexed by position of variant
+  private final Constitutes[] constitutes;
+  private final int[][] constitutingPurposes;
+  private final int[][] componentPurposes;
+  private final long[][] componentQuantities;
+  private final int[][] variantFeatures;
+  private final List<List<Concept>> attachedConcepts;
+  private final List<List<Event>> attachedEvents;
+  private final List<List<Rule>> attachedRules;
+  private final List<List<RelationParameter>> attachedRelationParameters;
+  private final List<List<Relation>> attachedRelations;
+
+  // membership indexes
+  private final BitSet[] fulfillingVariantSet; // by purpose
+  private final BitSet[] constitutingPurposeSet; // by variant
+  private final BitSet[] variantFeatureSet; // by variant
+  private final BitSet[] variantConceptSet; // by variant
+  private final BitSet[] conceptValueSet; // by concept
+
+  // unmodifiable views
+  private final List<List<Variant>> fulfillingVariantsViews; // by purpose
+  private final List<List<Purpose>> constitutingPurposesViews; // by variant
+  private final List<List<Feature>> featuresViews; // by variant
+  private final List<Map<String, List<FeatureValue>>> featureValuesViews; // by variant
+  private final List<List<FeatureValue>> conceptValuesViews; // by concept
+
+  /**
+   * Builds all Indexes from the Data of another, already loaded KnowledgeBase.
+   * 
+   * @param source
+   *          KnowledgeBase; must not be modified anymore afterwards
+   */
+  public IndexedKnowledgeBase(final KnowledgeBase source) {
+    try {
+      LOGGER.trace("--> IndexedKnowledgeBase()");
+      this.valid = source.isValid();
+      this.stringPool = (source.getStringPool() == null ? new StringPool() : source.getStringPool());
+      this.metaData = source.getMetaData();
+      this.allFeatures = (source.getFeatures() == null ? null : unmodifiableCopy(source.getFeatures().getFeature()));
+      this.allFeatureValues = (source.getFeatureValues() == null ? null : FeatureValueList.unmodifiableCopy(source.getFeatureValues().getValue()));
+      this.allConcepts = (source.getConcepts() == null ? null : unmodifiableCopy(source.getConcepts().getConcept()));
+      this.allPurposes = (source.getPurposes() == null ? null : unmodifiableCopy(source.getPurposes().getPurpose()));
+      this.rootPurposes = (source.getRootPurposes() == null ? null : unmodifiableCopy(source.getRootPurposes().getPurpose()));
+      this.allVariants = (source.getVariants() == null ? null : unmodifiableCopy(source.getVariants().getVariant()));
+      this.allAlternatives = (source.getAlternatives() == null ? null : unmodifiableCopy(source.getAlternatives().getFulfills()));
+      this.allConstituents = (source.getConstituents() == null ? null : unmodifiableCopy(source.getConstituents().getConstitutes()));
+      this.allEvents = (source.getEvents() == null ? null : unmodifiableCopy(source.getEvents().getEvent()));
+      this.allRules = (source.getRules() == null ? null : unmodifiableCopy(source.getRules().getRule()));
+      this.allRelationParameters = (source.getRelationParameters() == null ? null : unmodifiableCopy(source.getRelationParameters().getParameter()));
+      this.allRelations = (source.getRelations() == null ? null : unmodifiableCopy(source.getRelations().getRelation()));
+
+      // Step 1: dense Positions for all Objects of every Kind
+      this.features = new Index<Feature>();
+      if (this.allFeatures != null) {
+        for (final Feature f : this.allFeatures) {
+          final String fid = (f == null ? null : f.getFeatureID());
+          this.features.add(fid, source.getFeature(fid));
+        }
+      }
+      // values of ranges are not indexed but created by their symbolic range
+      this.featureValues = new Index<FeatureValue>();
+      if (this.allFeatureValues != null) {
+        for (final FeatureValue fv : FeatureValueList.getDiscreteValues(this.allFeatureValues)) {
+          final String fvid = (fv == null ? null : fv.getFeatureValueID());
+          this.featureValues.add(fvid, source.getFeatureValue(fvid));
+          if (fv != null) {
+            // formatted Values are pooled too, so that POJOs can share them
+            this.stringPool.intern(fv.getValue());
+          }
+        }
+      }
+      this.ranges = new HashMap<String, FeatureValueRange<? extends FeatureValue>>();
+      for (int fpos = 0; fpos < this.features.size(); fpos++) {
+        final Feature f = this.features.get(fpos);
+        if (f != null) {
+          for (final FeatureValueRange<? extends FeatureValue> range : f.getRanges()) {
+            this.ranges.put(range.getRangeID(), range);
+          }
+        }
+      }
+      this.concepts = new Index<Concept>();
+      if (this.allConcepts != null) {
+        for (final Concept c : this.allConcepts) {
+          final String cid = (c == null ? null : c.getConceptID());
+          this.concepts.add(cid, source.getConcept(cid));
+        }
+      }
+      this.events = new Index<Event>();
+      if (this.allEvents != null) {
+        for (final Event e : this.allEvents) {
+          final String eid = (e == null ? null : e.getEventID());
+          this.events.add(eid, source.getEvent(eid));
+        }
+      }
+      this.rules = new Index<Rule>();
+      if (this.allRules != null) {
+        for (final Rule r : this.allRules) {
+          final String rid = (r == null ? null : r.getRuleID());
+          this.rules.add(rid, source.getRule(rid));
+        }
+      }
+      this.relationParameters = new Index<RelationParameter>();
+      if (this.allRelationParameters != null) {
+        for (final RelationParameter p : this.allRelationParameters) {
+          final String pid = (p == null ? null : p.getParameterID());
+          this.relationParameters.add(pid, source.getRelationParameter(pid));
+        }
+      }
+      this.relations = new Index<Relation>();
+      if (this.allRelations != null) {
+        for (final Relation r : this.allRelations) {
+          final String rid = (r == null ? null : r.getRelationID());
+          this.relations.add(rid, source.getRelation(rid));
+        }
+      }
+      // purposes and variants also get positions for every id referenced by
+      // fulfills, constitutes or attached objects, even if there is no such
+      // purpose or variant, so that these relationships are kept as well
+      this.purposes = new Index<Purpose>();
+      if (this.allPurposes != null) {
+        for (final Purpose p : this.allPurposes) {
+          final String pid = (p == null ? null : p.getPurposeID());
+          this.purposes.add(pid, source.getPurpose(pid));
+        }
+      }
+      if (this.allAlternatives != null) {
+        for (final Fulfills f : this.allAlternatives) {
+          final String pid = (f == null ? null : f.getPurposeID());
+          this.purposes.add(pid, source.getPurpose(pid));
+        }
+      }
+      this.variants = new Index<Variant>();
+      if (this.allVariants != null) {
+        for (final Variant v : this.allVariants) {
+          final String vid = (v == null ? null : v.getVariantID());
+          this.variants.add(vid, source.getVariant(vid));
+        }
+      }
+      if (this.allConstituents != null) {
+        for (final Constitutes c : this.allConstituents) {
+          final String vid = (c == null ? null : c.getVariantID());
+          this.variants.add(vid, source.getVariant(vid));
+        }
+      }
+      for (final Event e : this.events.objects) {
+        final String vid = (e == null ? null : e.getVariantID());
+        this.variants.add(vid, source.getVariant(vid));
+      }
+      for (final Rule r : this.rules.objects) {
+        final String vid = (r == null ? null : r.getVariantID());
+        this.variants.add(vid, source.getVariant(vid));
+      }
+      for (final RelationParameter p : this.relationParameters.objects) {
+        final String vid = (p == null ? null : p.getVariantID());
+        this.variants.add(vid, source.getVariant(vid));
+      }
+      for (final Relation r : this.relations.objects) {
+        final String vid = (r == null ? null : r.getVariantID());
+        this.variants.add(vid, source.getVariant(vid));
+      }
+      // constituting purposes are the last kind of ids we need positions for
+      final int numVariants = this.variants.size();
+      this.constitutes = new Constitutes[numVariants];
+      for (int vpos = 0; vpos < numVariants; vpos++) {
+        final Constitutes cons = frozen(source.getConstitutes(this.variants.ids.get(vpos)));
+        this.constitutes[vpos] = cons;
+        if (cons != null) {
+          for (final Component comp : cons.getComponents()) {
+            final String pid = (comp == null ? null : comp.getPurposeID());
+            this.purposes.add(pid, source.getPurpose(pid));
+          }
+        }
+      }
+
+      // Step 2: purpose --> fulfilling variants
+      final int numPurposes = this.purposes.size();
+      this.fulfills = new Fulfills[numPurposes];
+      this.fulfillingVariants = new int[numPurposes][];
+      for (int ppos = 0; ppos < numPurposes; ppos++) {
+        final Fulfills f = frozen(source.getFulfills(this.purposes.ids.get(ppos)));
+        this.fulfills[ppos] = f;
+        this.fulfillingVariants[ppos] = (f == null ? NO_POSITIONS : this.variants.positionsOf(f.getVariantID()));
+      }
+
+      // Step 3: variant --> features, constituting purposes and attached objects
+      this.variantFeatures = new int[numVariants][];
+      this.constitutingPurposes = new int[numVariants][];
+      this.componentPurposes = new int[numVariants][];
+      this.componentQuantities = new long[numVariants][];
+      this.attachedConcepts = new ArrayList<List<Concept>>(numVariants);
+      this.attachedEvents = new ArrayList<List<Event>>(numVariants);
+      this.attachedRules = new ArrayList<List<Rule>>(numVariants);
+      this.attachedRelationParameters = new ArrayList<List<RelationParameter>>(numVariants);
+      this.attachedRelations = new ArrayList<List<Relation>>(numVariants);
+      for (int vpos = 0; vpos < numVariants; vpos++) {
+        final String vid = this.variants.ids.get(vpos);
+        final Variant v = this.variants.get(vpos);
+        this.variantFeatures[vpos] = (v == null ? NO_POSITIONS : this.features.positionsOf(v.getFeatureIds()));
+        indexComponents(vpos);
+        final Concepts cons = source.getAttachedConcepts(vid);
+        this.attachedConcepts.add(cons == null ? null : unmodifiableCopy(cons.getConcept()));
+        final Events evts = source.getAttachedEvents(vid);
+        this.attachedEvents.add(evts == null ? null : unmodifiableCopy(evts.getEvent()));
+        final Rules rls = source.getAttachedRules(vid);
+        this.attachedRules.add(rls == null ? null : unmodifiableCopy(rls.getRule()));
+        final RelationParameters params = source.getAttachedRelationParameters(vid);
+        this.attachedRelationParameters.add(params == null ? null : unmodifiableCopy(params.getParameter()));
+        final Relations rels = source.getAttachedRelations(vid);
+        this.attachedRelations.add(rels == null ? null : unmodifiableCopy(rels.getRelation()));
+      }
+
+      // Step 4: membership indexes
+      this.fulfillingVariantSet = new BitSet[numPurposes];
+      for (int ppos = 0; ppos < numPurposes; ppos++) {
+        this.fulfillingVariantSet[ppos] = toBitSet(this.fulfillingVariants[ppos]);
+      }
+      this.constitutingPurposeSet = new BitSet[numVariants];
+      this.variantFeatureSet = new BitSet[numVariants];
+      this.variantConceptSet = new BitSet[numVariants];
+      for (int vpos = 0; vpos < numVariants; vpos++) {
+        this.constitutingPurposeSet[vpos] = toBitSet(this.constitutingPurposes[vpos]);
+        this.variantFeatureSet[vpos] = toBitSet(this.variantFeatures[vpos]);
+        final BitSet cset = new BitSet();
+        final List<Concept> cons = this.attachedConcepts.get(vpos);
+        if (cons != null) {
+          // like purposes and variants, attached concepts get a position even
+          // if they are not listed in all concepts, so that hasConcept() still
+          // answers true for them
+          for (final Concept c : cons) {
+            final String cid = (c == null ? null : c.getConceptID());
+            setPosition(cset, this.concepts.add(cid, source.getConcept(cid)));
+          }
+        }
+        this.variantConceptSet[vpos] = cset;
+      }
+      final int numConcepts = this.concepts.size();
+      this.conceptValueSet = new BitSet[numConcepts];
+      for (int cpos = 0; cpos < numConcepts; cpos++) {
+        final BitSet fvset = new BitSet();
+        final Concept c = this.concepts.get(cpos);
+        if (c != null) {
+          for (final FeatureValue fv : c.getValues()) {
+            // values of ranges referenced by concepts get a position, too
+            setPosition(fvset, this.featureValues.add((fv == null ? null : fv.getFeatureValueID()), fv));
+          }
+        }
+        this.conceptValueSet[cpos] = fvset;
+      }
+
+      // Step 5: unmodifiable views
+      this.fulfillingVariantsViews = new ArrayList<List<Variant>>(numPurposes);
+      for (int ppos = 0; ppos < numPurposes; ppos++) {
+        this.fulfillingVariantsViews.add(this.variants.viewOf(this.fulfillingVariants[ppos]));
+      }
+      this.constitutingPurposesViews = new ArrayList<List<Purpose>>(numVariants);
+      this.featuresViews = new ArrayList<List<Feature>>(numVariants);
+      this.featureValuesViews = new ArrayList<Map<String, List<FeatureValue>>>(numVariants);
+      for (int vpos = 0; vpos < numVariants; vpos++) {
+        this.constitutingPurposesViews.add(this.purposes.viewOf(this.constitutingPurposes[vpos]));
+        this.featuresViews.add(this.features.viewOf(this.variantFeatures[vpos]));
+        this.featureValuesViews.add(groupByFeature(this.variants.get(vpos)));
+      }
+      this.conceptValuesViews = new ArrayList<List<FeatureValue>>(numConcepts);
+      for (int cpos = 0; cpos < numConcepts; cpos++) {
+        final Concept c = this.concepts.get(cpos);
+        this.conceptValuesViews.add(c == null ? Collections.<FeatureValue> emptyList() : viewOf(c.getValues()));
+      }
+
+      if (LOGGER.isDebugEnabled()) {
+        LOGGER.debug("Indexed {} Features, {} Feature-Values, {} Concepts, {} Purposes, {} Variants, {} Events, {} Rules, {} Relation-Parameters and {} Relations.",
+            this.features.size(), this.featureValues.size(), this.concepts.size(), numPurposes, numVariants,
+            this.events.size(), this.rules.size(), this.relationParameters.size(), this.relations.size());
+      }
+    }
+    finally {
+      LOGGER.trace("<-- IndexedKnowledgeBase()");
+    }
+  }
+
+  private void indexComponents(final int vpos) {
+    final Constitutes cons = this.constitutes[vpos];
+    final List<Component> comps = (cons == null ? null : cons.getComponents());
+    if ((comps == null) || comps.isEmpty()) {
+      this.constitutingPurposes[vpos] = NO_POSITIONS;
+      this.componentPurposes[vpos] = NO_POSITIONS;
+      this.componentQuantities[vpos] = NO_QUANTITIES;
+      return;
+    }
+    final int[] constituting = new int[comps.size()];
+    final int[] pids = new int[comps.size()];
+    final long[] quantities = new long[comps.size()];
+    int numConstituting = 0;
+    int numComponents = 0;
+    for (final Component comp : comps) {
+      final int ppos = this.purposes.indexOf(comp == null ? null : comp.getPurposeID());
+      if (ppos >= 0) {
+        pids[numComponents] = ppos;
+        quantities[numComponents] = comp.getQuantity();
+        numComponents++;
+        if (this.purposes.get(ppos) != null) {
+          constituting[numConstituting++] = ppos;
+        }
+      }
+    }
+    this.constitutingPurposes[vpos] = trim(constituting, numConstituting);
+    this.componentPurposes[vpos] = trim(pids, numComponents);
+    final long[] q = new long[numComponents];
+    System.arraycopy(quantities, 0, q, 0, numComponents);
+    this.componentQuantities[vpos] = q;
+  }
+
+  private static int[] trim(final int[] positions, final int len) {
+    if (len == positions.length) {
+      return positions;
+    }
+    final int[] trimmed = new int[len];
+    System.arraycopy(positions, 0, trimmed, 0, len);
+    return trimmed;
+  }
+
+  private static Map<String, List<FeatureValue>> groupByFeature(final Variant v) {
+    final List<FeatureValue> fvlst = (v == null ? null : v.getFeatureValues());
+    if ((fvlst == null) || fvlst.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    final Map<String, List<FeatureValue>> grouped = new HashMap<String, List<FeatureValue>>();
+    for (final FeatureValue fv : FeatureValueList.getDiscreteValues(fvlst)) {
+      final String fid = (fv == null ? null : fv.getFeatureID());
+      if (fid != null) {
+        group(grouped, fid).add(fv);
+      }
+    }
+    for (final FeatureValueRange<? extends FeatureValue> range : FeatureValueList.getRanges(fvlst)) {
+      final String fid = range.getFeatureID();
+      if (fid != null) {
+        group(grouped, fid).addAll(range);
+      }
+    }
+    for (final Map.Entry<String, List<FeatureValue>> e : grouped.entrySet()) {
+      e.setValue(FeatureValueList.unmodifiableCopy(e.getValue()));
+    }
+    return grouped;
+  }
+
+  private static List<FeatureValue> group(final Map<String, List<FeatureValue>> grouped, final String fid) {
+    List<FeatureValue> values = grouped.get(fid);
+    if (values == null) {
+      values = new FeatureValueList();
+      grouped.put(fid, values);
+    }
+    return values;
+  }
+
+  private static <T> List<T> viewOf(final List<T> lst) {
+    final List<T> copy = new ArrayList<T>(lst.size());
+    for (final T obj : lst) {
+      if (obj != null) {
+        copy.add(obj);
+      }
+    }
+    return (copy.isEmpty() ? Collections.<T> emptyList() : Collections.unmodifiableList(copy));
+  }
+
+  private static <T> List<T> unmodifiableCopy(final List<T> lst) {
+    return Collections.unmodifiableList(new ArrayList<T>(lst));
+  }
+
+  private static Fulfills frozen(final Fulfills f) {
+    return (f == null ? null : new Fulfills(f.getPurposeID(), unmodifiableCopy(f.getVariantID())));
+  }
+
+  private static Constitutes frozen(final Constitutes cons) {
+    return (cons == null ? null : new Constitutes(cons.getVariantID(), unmodifiableCopy(cons.getComponents())));
+  }
+
+  private static Fulfills thawed(final Fulfills f) {
+    return (f == null ? null : new Fulfills(f.getPurposeID(), new ArrayList<String>(f.getVariantID())));
+  }
+
+  private static Constitutes thawed(final Constitutes cons) {
+    return (cons == null ? null : new Constitutes(cons.getVariantID(), new ArrayList<Component>(cons.getComponents())));
+  }
+
+  private static BitSet toBitSet(final int[] positions) {
+    final BitSet bs = new BitSet();
+    for (final int pos : positions) {
+      bs.set(pos);
+    }
+    return bs;
+  }
+
+  private static void setPosition(final BitSet bs, final int pos) {
+    if (pos >= 0) {
+      bs.set(pos);
+    }
+  }
+
+  private static boolean isMember(final BitSet[] sets, final int owner, final int pos) {
+    return ((owner >= 0) && (pos >= 0) && sets[owner].get(pos));
+  }
+
+  // ----------------------------------------------------------------
+  // Methods required for the Interface KnowledgeBase
+  // ----------------------------------------------------------------
+
+  /**
+   * @return MetaData of this Knowledgebase
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getMetaData()
+   */
+  @Override
+  public MetaData getMetaData() {
+    return this.metaData;
+  }
+
+  /**
+   * @return all Features
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatures()
+   */
+  @Override
+  public Features getFeatures() {
+    return (this.allFeatures == null ? null : new Features(new ArrayList<Feature>(this.allFeatures)));
+  }
+
+  /**
+   * @return all FeatureValues
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValues()
+   */
+  @Override
+  public FeatureValues getFeatureValues() {
+    return (this.allFeatureValues == null ? null : new FeatureValues(new FeatureValueList(this.allFeatureValues)));
+  }
+
+  /**
+   * @return all Concepts
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getConcepts()
+   */
+  @Override
+  public Concepts getConcepts() {
+    return (this.allConcepts == null ? null : new Concepts(new ArrayList<Concept>(this.allConcepts)));
+  }
+
+  /**
+   * @return all Purposes
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getPurposes()
+   */
+  @Override
+  public Purposes getPurposes() {
+    return (this.allPurposes == null ? null : new Purposes(new ArrayList<Purpose>(this.allPurposes)));
+  }
+
+  /**
+   * @return all Variants
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getVariants()
+   */
+  @Override
+  public Variants getVariants() {
+    return (this.allVariants == null ? null : new Variants(new ArrayList<Variant>(this.allVariants)));
+  }
+
+  /**
+   * @return all Alternatives
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getAlternatives()
+   */
+  @Override
+  public Alternatives getAlternatives() {
+    if (this.allAlternatives == null) {
+      return null;
+    }
+    final List<Fulfills> lst = new ArrayList<Fulfills>(this.allAlternatives.size());
+    for (final Fulfills f : this.allAlternatives) {
+      lst.add(thawed(f));
+    }
+    return new Alternatives(lst);
+  }
+
+  /**
+   * @return all Constituents
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getConstituents()
+   */
+  @Override
+  public Constituents getConstituents() {
+    if (this.allConstituents == null) {
+      return null;
+    }
+    final List<Constitutes> lst = new ArrayList<Constitutes>(this.allConstituents.size());
+    for (final Constitutes cons : this.allConstituents) {
+      lst.add(thawed(cons));
+    }
+    return new Constituents(lst);
+  }
+
+  /**
+   * @return all Events
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getEvents()
+   */
+  @Override
+  public Events getEvents() {
+    return (this.allEvents == null ? null : new Events(new ArrayList<Event>(this.allEvents)));
+  }
+
+  /**
+   * @return all Rules
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getRules()
+   */
+  @Override
+  public Rules getRules() {
+    return (this.allRules == null ? null : new Rules(new ArrayList<Rule>(this.allRules)));
+  }
+
+  /**
+   * @return all RelationParameters
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getRelationParameters()
+   */
+  @Override
+  public RelationParameters getRelationParameters() {
+    return (this.allRelationParameters == null ? null : new RelationParameters(new ArrayList<RelationParameter>(this.allRelationParameters)));
+  }
+
+  /**
+   * @return all Relations
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getRelations()
+   */
+  @Override
+  public Relations getRelations() {
+    return (this.allRelations == null ? null : new Relations(new ArrayList<Relation>(this.allRelations)));
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @param featureId
+   * @return Feature
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeature(java.lang.String)
+   */
+  @Override
+  public Feature getFeature(final String featureId) {
+    return this.features.get(featureId);
+  }
+
+  /**
+   * @param featureValueID
+   * @return FeatureValue
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValue(java.lang.String)
+   */
+  @Override
+  public FeatureValue getFeatureValue(final String featureValueID) {
+    final FeatureValue fv = this.featureValues.get(featureValueID);
+    if (fv != null) {
+      return fv;
+    }
+    // values of ranges are not indexed but created by their range
+    final String rangeID = FeatureValueRange.getRangeID(featureValueID);
+    final FeatureValueRange<? extends FeatureValue> range = (rangeID == null ? null : this.ranges.get(rangeID));
+    return (range == null ? null : range.getFeatureValue(featureValueID));
+  }
+
+  /**
+   * @param conceptID
+   * @return Concept
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getConcept(java.lang.String)
+   */
+  @Override
+  public Concept getConcept(final String conceptID) {
+    return this.concepts.get(conceptID);
+  }
+
+  /**
+   * @param purposeId
+   * @return Purpose
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getPurpose(java.lang.String)
+   */
+  @Override
+  public Purpose getPurpose(final String purposeId) {
+    return this.purposes.get(purposeId);
+  }
+
+  /**
+   * @param variantId
+   * @return Variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getVariant(java.lang.String)
+   */
+  @Override
+  public Variant getVariant(final String variantId) {
+    return this.variants.get(variantId);
+  }
+
+  /**
+   * @param eventId
+   * @return Event
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getEvent(java.lang.String)
+   */
+  @Override
+  public Event getEvent(final String eventId) {
+    return this.events.get(eventId);
+  }
+
+  /**
+   * @param ruleId
+   * @return Rule
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getRule(java.lang.String)
+   */
+  @Override
+  public Rule getRule(final String ruleId) {
+    return this.rules.get(ruleId);
+  }
+
+  /**
+   * @param parameterID
+   * @return RelationParameter
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getRelationParameter(java.lang.String)
+   */
+  @Override
+  public RelationParameter getRelationParameter(final String parameterID) {
+    return this.relationParameters.get(parameterID);
+  }
+
+  /**
+   * @param relationId
+   * @return Relation
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getRelation(java.lang.String)
+   */
+  @Override
+  public Relation getRelation(final String relationId) {
+    return this.relations.get(relationId);
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @param purposeId
+   * @return Fulfills
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFulfills(java.lang.String)
+   */
+  @Override
+  public Fulfills getFulfills(final String purposeId) {
+    final int ppos = this.purposes.indexOf(purposeId);
+    return (ppos < 0 ? null : thawed(this.fulfills[ppos]));
+  }
+
+  /**
+   * @param variantId
+   * @return Constitutes
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getConstitutes(java.lang.String)
+   */
+  @Override
+  public Constitutes getConstitutes(final String variantId) {
+    final int vpos = this.variants.indexOf(variantId);
+    return (vpos < 0 ? null : thawed(this.constitutes[vpos]));
+  }
+
+  /**
+   * @param variantId
+   * @param purposeId
+   * @return long quantity
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getQuantity(java.lang.String,
+   *      java.lang.String)
+   */
+  @Override
+  public long getQuantity(final String variantId, final String purposeId) {
+    final int vpos = this.variants.indexOf(variantId);
+    final int ppos = this.purposes.indexOf(purposeId);
+    if ((vpos >= 0) && (ppos >= 0)) {
+      final int[] pids = this.componentPurposes[vpos];
+      for (int i = 0; i < pids.length; i++) {
+        if (pids[i] == ppos) {
+          return this.componentQuantities[vpos][i];
+        }
+      }
+    }
+    return Component.DEFAULT_QUANTITY;
+  }
+
+  /**
+   * @param variantId
+   * @return all features of this variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatures(java.lang.String)
+   */
+  @Override
+  public Features getFeatures(final String variantId) {
+    return new Features(new ArrayList<Feature>(getFeaturesView(variantId)));
+  }
+
+  /**
+   * @param conceptID
+   * @return all values bundled in this concept
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValuesOfConcept(java.lang.String)
+   */
+  @Override
+  public FeatureValues getFeatureValuesOfConcept(final String conceptID) {
+    return new FeatureValues(new ArrayList<FeatureValue>(getFeatureValuesOfConceptView(conceptID)));
+  }
+
+  /**
+   * @param rangeID
+   * @param featureId
+   * @return all values within a given range
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValuesWithinRange(java.lang.String,
+   *      java.lang.String)
+   */
+  @Override
+  public FeatureValues getFeatureValuesWithinRange(final String featureId, final String rangeID) {
+    final FeatureValues values = new FeatureValues();
+    final Feature f = getFeature(featureId);
+    final FeatureValueRange<? extends FeatureValue> range = (f == null ? null : f.getRange(rangeID));
+    if (range != null) {
+      values.addValue(range);
+    }
+    else if (f != null) {
+      for (final FeatureValue val : FeatureValueList.getDiscreteValues(f.getValues())) {
+        if (FeatureValueHelper.isWithinRange(featureId, rangeID, val)) {
+          values.addValue(val);
+        }
+      }
+    }
+    return values;
+  }
+
+  /**
+   * @param variantId
+   * @param featureId
+   * @return all values for this feature on this variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValues(java.lang.String,
+   *      java.lang.String)
+   */
+  @Override
+  public FeatureValues getFeatureValues(final String variantId, final String featureId) {
+    return new FeatureValues(new FeatureValueList(getFeatureValuesView(variantId, featureId)));
+  }
+
+  /**
+   * @param variantId
+   * @return Concepts attached to Variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getAttachedConcepts(java.lang.String)
+   */
+  @Override
+  public Concepts getAttachedConcepts(final String variantId) {
+    final int vpos = this.variants.indexOf(variantId);
+    final List<Concept> lst = (vpos < 0 ? null : this.attachedConcepts.get(vpos));
+    return (lst == null ? null : new Concepts(new ArrayList<Concept>(lst)));
+  }
+
+  /**
+   * @param variantId
+   * @return Events attached to Variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getAttachedEvents(java.lang.String)
+   */
+  @Override
+  public Events getAttachedEvents(final String variantId) {
+    final int vpos = this.variants.indexOf(variantId);
+    final List<Event> lst = (vpos < 0 ? null : this.attachedEvents.get(vpos));
+    return (lst == null ? null : new Events(new ArrayList<Event>(lst)));
+  }
+
+  /**
+   * @param variantId
+   * @return Rules attached to Variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getAttachedRules(java.lang.String)
+   */
+  @Override
+  public Rules getAttachedRules(final String variantId) {
+    final int vpos = this.variants.indexOf(variantId);
+    final List<Rule> lst = (vpos < 0 ? null : this.attachedRules.get(vpos));
+    return (lst == null ? null : new Rules(new ArrayList<Rule>(lst)));
+  }
+
+  /**
+   * @param variantId
+   * @return RelationParameters attached to Variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getAttachedRelationParameters(java.lang.String)
+   */
+  @Override
+  public RelationParameters getAttachedRelationParameters(final String variantId) {
+    final int vpos = this.variants.indexOf(variantId);
+    final List<RelationParameter> lst = (vpos < 0 ? null : this.attachedRelationParameters.get(vpos));
+    return (lst == null ? null : new RelationParameters(new ArrayList<RelationParameter>(lst)));
+  }
+
+  /**
+   * @param variantId
+   * @return Relations attached to Variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getAttachedRelations(java.lang.String)
+   */
+  @Override
+  public Relations getAttachedRelations(final String variantId) {
+    final int vpos = this.variants.indexOf(variantId);
+    final List<Relation> lst = (vpos < 0 ? null : this.attachedRelations.get(vpos));
+    return (lst == null ? null : new Relations(new ArrayList<Relation>(lst)));
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @return all Purposes flagged with "root" attribute
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getRootPurposes()
+   */
+  @Override
+  public Purposes getRootPurposes() {
+    return (this.rootPurposes == null ? null : new Purposes(new ArrayList<Purpose>(this.rootPurposes)));
+  }
+
+  /**
+   * @param purposeId
+   * @return all variants fulfilling this purpose
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFulfillingVariants(java.lang.String)
+   */
+  @Override
+  public Variants getFulfillingVariants(final String purposeId) {
+    return new Variants(new ArrayList<Variant>(getFulfillingVariantsView(purposeId)));
+  }
+
+  /**
+   * @param purposeId
+   * @param variantId
+   * @return true if purpose is fulfilled by variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#isFulfilledBy(java.lang.String,
+   *      java.lang.String)
+   */
+  @Override
+  public boolean isFulfilledBy(final String purposeId, final String variantId) {
+    return isMember(this.fulfillingVariantSet, this.purposes.indexOf(purposeId), this.variants.indexOf(variantId));
+  }
+
+  /**
+   * @param variantId
+   * @return all purposes that constitute this variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getConstitutingPurposes(java.lang.String)
+   */
+  @Override
+  public Purposes getConstitutingPurposes(final String variantId) {
+    return new Purposes(new ArrayList<Purpose>(getConstitutingPurposesView(variantId)));
+  }
+
+  /**
+   * @param variantId
+   * @param purposeId
+   * @return true if variant is constituted by purpose
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#isConstitutedBy(java.lang.String,
+   *      java.lang.String)
+   */
+  @Override
+  public boolean isConstitutedBy(final String variantId, final String purposeId) {
+    return isMember(this.constitutingPurposeSet, this.variants.indexOf(variantId), this.purposes.indexOf(purposeId));
+  }
+
+  /**
+   * @param variantId
+   * @param conceptID
+   * @return true if variant has this concept
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#hasConcept(java.lang.String,
+   *      java.lang.String)
+   */
+  @Override
+  public boolean hasConcept(final String variantId, final String conceptID) {
+    return isMember(this.variantConceptSet, this.variants.indexOf(variantId), this.concepts.indexOf(conceptID));
+  }
+
+  /**
+   * @param variantId
+   * @param featureId
+   * @return true if variant has this feature
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#hasFeature(java.lang.String,
+   *      java.lang.String)
+   */
+  @Override
+  public boolean hasFeature(final String variantId, final String featureId) {
+    return isMember(this.variantFeatureSet, this.variants.indexOf(variantId), this.features.indexOf(featureId));
+  }
+
+  /**
+   * @param featureID
+   * @param featureValueID
+   * @return true if feature has this value
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#hasFeatureValue(java.lang.String,
+   *      java.lang.String)
+   */
+  @Override
+  public boolean hasFeatureValue(final String featureID, final String featureValueID) {
+    final FeatureValue fv = getFeatureValue(featureValueID);
+    return ((fv != null) && !StringUtils.isEmpty(fv.getFeatureID()) && fv.getFeatureID().equals(featureID));
+  }
+
+  /**
+   * @param featureValueID
+   * @param conceptID
+   * @return true if concept includes this feature value
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#isIncludedIn(java.lang.String,
+   *      java.lang.String)
+   */
+  @Override
+  public boolean isIncludedIn(final String featureValueID, final String conceptID) {
+    return isMember(this.conceptValueSet, this.concepts.indexOf(conceptID), this.featureValues.indexOf(featureValueID));
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @param variantId
+   * @return unmodifiable List of all features of this variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeaturesView(java.lang.String)
+   */
+  @Override
+  public List<Feature> getFeaturesView(final String variantId) {
+    final int vpos = this.variants.indexOf(variantId);
+    return (vpos < 0 ? Collections.<Feature> emptyList() : this.featuresViews.get(vpos));
+  }
+
+  /**
+   * @param conceptID
+   * @return unmodifiable List of all values bundled in this concept
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValuesOfConceptView(java.lang.String)
+   */
+  @Override
+  public List<FeatureValue> getFeatureValuesOfConceptView(final String conceptID) {
+    final int cpos = this.concepts.indexOf(conceptID);
+    return (cpos < 0 ? Collections.<FeatureValue> emptyList() : this.conceptValuesViews.get(cpos));
+  }
+
+  /**
+   * @param variantId
+   * @param featureId
+   * @return unmodifiable List of all values for this feature on this variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValuesView(java.lang.String,
+   *      java.lang.String)
+   */
+  @Override
+  public List<FeatureValue> getFeatureValuesView(final String variantId, final String featureId) {
+    final int vpos = this.variants.indexOf(variantId);
+    final List<FeatureValue> values = ((vpos < 0) || (featureId == null) ? null : this.featureValuesViews.get(vpos).get(featureId));
+    return (values == null ? Collections.<FeatureValue> emptyList() : values);
+  }
+
+  /**
+   * @param purposeId
+   * @return unmodifiable List of all variants fulfilling this purpose
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFulfillingVariantsView(java.lang.String)
+   */
+  @Override
+  public List<Variant> getFulfillingVariantsView(final String purposeId) {
+    final int ppos = this.purposes.indexOf(purposeId);
+    return (ppos < 0 ? Collections.<Variant> emptyList() : this.fulfillingVariantsViews.get(ppos));
+  }
+
+  /**
+   * @param variantId
+   * @return unmodifiable List of all purposes that constitute this variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getConstitutingPurposesView(java.lang.String)
+   */
+  @Override
+  public List<Purpose> getConstitutingPurposesView(final String variantId) {
+    final int vpos = this.variants.indexOf(variantId);
+    return (vpos < 0 ? Collections.<Purpose> emptyList() : this.constitutingPurposesViews.get(vpos));
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @return true if knowledge base is valid or false if any problems were detected during
+   *         loading/initialization
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#isValid()
+   */
+  @Override
+  public boolean isValid() {
+    return this.valid;
+  }
+
+  /**
+   * @return Pool of all Strings of this Version
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getStringPool()
+   */
+  @Override
+  public StringPool getStringPool() {
+    return this.stringPool;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Dense Positions of all Objects of one Kind. Only modified while the
+   * enclosing KnowledgeBase is constructed, read-only afterwards.
+   */
+  private static final class Index<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, Integer> positions = new HashMap<String, Integer>();
+    private final List<String> ids = new ArrayList<String>();
+    private final List<T> objects = new ArrayList<T>();
+
+    int add(final String id, final T obj) {
+      if (StringUtils.isEmpty(id)) {
+        return -1;
+      }
+      final Integer pos = this.positions.get(id);
+      if (pos == null) {
+        final int newpos = this.objects.size();
+        this.positions.put(id, Integer.valueOf(newpos));
+        this.ids.add(id);
+        this.objects.add(obj);
+        return newpos;
+      }
+      return pos.intValue();
+    }
+
+    int indexOf(final String id) {
+      final Integer pos = (id == null ? null : this.positions.get(id));
+      return (pos == null ? -1 : pos.intValue());
+    }
+
+    T get(final int pos) {
+      return (pos < 0 ? null : this.objects.get(pos));
+    }
+
+    T get(final String id) {
+      return get(indexOf(id));
+    }
+
+    int size() {
+      return this.objects.size();
+    }
+
+    /**
+     * @return unmodifiable List of the Objects at these Positions
+     */
+    List<T> viewOf(final int[] pos) {
+      if (pos.length == 0) {
+        return Collections.emptyList();
+      }
+      final List<T> view = new ArrayList<T>(pos.length);
+      for (final int p : pos) {
+        view.add(get(p));
+      }
+      return Collections.unmodifiableList(view);
+    }
+
+    /**
+     * @return Positions of all existing Objects with these IDs, in the same Order
+     */
+    int[] positionsOf(final List<String> lst) {
+      if ((lst == null) || lst.isEmpty()) {
+        return NO_POSITIONS;
+      }
+      final int[] pos = new int[lst.size()];
+      int len = 0;
+      for (final String id : lst) {
+        final int p = indexOf(id);
+        if ((p >= 0) && (get(p) != null)) {
+          pos[len++] = p;
+        }
+      }
+      return trim(pos, len);
+    }
+  }
+}
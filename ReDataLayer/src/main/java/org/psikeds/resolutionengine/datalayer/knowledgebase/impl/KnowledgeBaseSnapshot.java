@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.datalayer.knowledgebase.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * Binary Snapshot of a completely loaded, validated and indexed
+ * {@link IndexedKnowledgeBase}. Reading a Snapshot replaces parsing,
+ * transforming and validating the XML-Source as well as building the
+ * Indexes.
+ *
+ * Layout of a Snapshot-File:
+ *
+ * <pre>
+ * int  MAGIC ("PSKB")
+ * int  FORMAT (Version of this Layout and of the serialized Classes)
+ * long Checksum (CRC32) of the XML-Source and the Load-Configuration
+ * long Creation-Time
+ * long Checksum (CRC32) of the Payload
+ * int  Length of the Payload
+ * byte[] Payload, i.e. the serialized IndexedKnowledgeBase
+ * </pre>
+ *
+ * A Snapshot is only used if Magic and Format are matching, the Payload is
+ * not corrupt and the Checksum of the XML-Source is unchanged, i.e. the
+ * Snapshot is not stale. The Checksum covers everything that influences
+ * the loaded Knowledge-Base, see {@link #checksum(String, Resource...)}.
+ *
+ * The Payload is deserialized by an ObjectInputStream accepting only the
+ * Classes of a Knowledge-Base (org.psikeds.*, Collections, Boxes and
+ * Arrays thereof), so a manipulated Snapshot cannot instantiate anything
+ * else. Nevertheless Snapshots should be kept in a Directory that is only
+ * writable by the Resolution-Engine.
+ *
+ * @author marco@juliano.de
+ *
+ */
+public final class KnowledgeBaseSnapshot {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(KnowledgeBaseSnapshot.class);
+
+  private static final int MAGIC = 0x50534B42; // "PSKB"
+  private static final int FORMAT = 3;
+  private static final int HEADER_LENGTH = 36;
+  private static final int BUFFER_SIZE = 8192;
+
+  private KnowledgeBaseSnapshot() {
+    // prevent instantiation
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Write a Snapshot of a KnowledgeBase. The File is written completely and
+   * renamed afterwards, so that a concurrent Reader never sees a partial
+   * Snapshot.
+   *
+   * @param kb
+   *          IndexedKnowledgeBase
+   * @param sourceChecksum
+   *          Checksum of the XML-Source the KnowledgeBase was created from
+   * @param snapshot
+   *          File
+   * @throws IOException
+   */
+  public static void write(final IndexedKnowledgeBase kb, final long sourceChecksum, final File snapshot) throws IOException {
+    final long start = System.currentTimeMillis();
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final ObjectOutputStream oos = new ObjectOutputStream(bytes);
+    oos.writeObject(kb);
+    oos.close();
+    final byte[] payload = bytes.toByteArray();
+    final CRC32 crc = new CRC32();
+    crc.update(payload);
+    final File tmp = new File(snapshot.getPath() + ".tmp");
+    DataOutputStream out = null;
+    try {
+      out = new DataOutputStream(new FileOutputStream(tmp));
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT);
+      out.writeLong(sourceChecksum);
+      out.writeLong(System.currentTimeMillis());
+      out.writeLong(crc.getValue());
+      out.writeInt(payload.length);
+      out.write(payload);
+    }
+    finally {
+      if (out != null) {
+        out.close();
+      }
+    }
+    if ((snapshot.exists() && !snapshot.delete()) || !tmp.renameTo(snapshot)) {
+      throw new IOException("Cannot replace Snapshot " + snapshot.getAbsolutePath());
+    }
+    LOGGER.info("Wrote Snapshot {} ({} Bytes) within {} ms.", snapshot.getAbsolutePath(), payload.length, (System.currentTimeMillis() - start));
+  }
+
+  /**
+   * Read a Snapshot of a KnowledgeBase.
+   *
+   * @param snapshot
+   *          File
+   * @param sourceChecksum
+   *          Checksum of the current XML-Source
+   * @return IndexedKnowledgeBase; null if there is no usable Snapshot
+   */
+  public static IndexedKnowledgeBase read(final File snapshot, final long sourceChecksum) {
+    if ((snapshot == null) || !snapshot.isFile() || !snapshot.canRead() || (snapshot.length() < HEADER_LENGTH)) {
+      LOGGER.debug("No Snapshot available.");
+      return null;
+    }
+    final long start = System.currentTimeMillis();
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new FileInputStream(snapshot));
+      if ((in.readInt() != MAGIC) || (in.readInt() != FORMAT)) {
+        LOGGER.info("Snapshot {} has an unknown Format.", snapshot.getAbsolutePath());
+        return null;
+      }
+      if (in.readLong() != sourceChecksum) {
+        LOGGER.info("Snapshot {} is stale.", snapshot.getAbsolutePath());
+        return null;
+      }
+      in.readLong(); // creation time, informational only
+      final long payloadChecksum = in.readLong();
+      final int len = in.readInt();
+      if ((len < 0) || (len != (snapshot.length() - HEADER_LENGTH))) {
+        LOGGER.warn("Snapshot {} is truncated.", snapshot.getAbsolutePath());
+        return null;
+      }
+      final byte[] payload = new byte[len];
+      in.readFully(payload);
+      final CRC32 crc = new CRC32();
+      crc.update(payload);
+      if (crc.getValue() != payloadChecksum) {
+        LOGGER.warn("Snapshot {} is corrupt.", snapshot.getAbsolutePath());
+        return null;
+      }
+      final ObjectInputStream ois = new SnapshotInputStream(new ByteArrayInputStream(payload));
+      final IndexedKnowledgeBase kb = (IndexedKnowledgeBase) ois.readObject();
+      ois.close();
+      LOGGER.info("Read Snapshot {} within {} ms.", snapshot.getAbsolutePath(), (System.currentTimeMillis() - start));
+      return kb;
+    }
+    catch (final InvalidClassException icex) {
+      LOGGER.warn("Snapshot " + snapshot.getAbsolutePath() + " is rejected: " + icex.getMessage());
+      return null;
+    }
+    catch (final IOException ioex) {
+      LOGGER.warn("Cannot read Snapshot " + snapshot.getAbsolutePath() + ": " + ioex.getMessage(), ioex);
+      return null;
+    }
+    catch (final ClassNotFoundException cnfex) {
+      LOGGER.warn("Snapshot " + snapshot.getAbsolutePath() + " is incompatible: " + cnfex.getMessage(), cnfex);
+      return null;
+    }
+    catch (final ClassCastException ccex) {
+      LOGGER.warn("Snapshot " + snapshot.getAbsolutePath() + " is incompatible: " + ccex.getMessage(), ccex);
+      return null;
+    }
+    finally {
+      if (in != null) {
+        try {
+          in.close();
+        }
+        catch (final IOException ex) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @param source
+   *          XML-Source of a KnowledgeBase
+   * @return CRC32-Checksum of the Content of the Source
+   * @throws IOException
+   */
+  public static long checksum(final Resource source) throws IOException {
+    return checksum(null, source);
+  }
+
+  /**
+   * @param configuration
+   *          Description of the Load-Configuration (Parser, Transformer,
+   *          Validators, ...); may be null
+   * @param sources
+   *          XML-Source of a KnowledgeBase and further Sources influencing
+   *          the Result, e.g. the XSD; null Entries are skipped
+   * @return CRC32-Checksum of the Configuration and the Content of all
+   *         Sources
+   * @throws IOException
+   */
+  public static long checksum(final String configuration, final Resource... sources) throws IOException {
+    final CRC32 crc = new CRC32();
+    if (configuration != null) {
+      crc.update(bytes(configuration));
+    }
+    final byte[] buf = new byte[BUFFER_SIZE];
+    for (final Resource source : sources) {
+      if (source == null) {
+        continue;
+      }
+      InputStream in = null;
+      try {
+        in = source.getInputStream();
+        int len;
+        while ((len = in.read(buf)) >= 0) {
+          crc.update(buf, 0, len);
+        }
+      }
+      finally {
+        if (in != null) {
+          try {
+            in.close();
+          }
+          catch (final IOException ex) {
+            // ignore
+          }
+        }
+      }
+    }
+    return crc.getValue();
+  }
+
+  private static byte[] bytes(final String str) {
+    try {
+      return str.getBytes("UTF-8");
+    }
+    catch (final UnsupportedEncodingException ueex) {
+      // UTF-8 is always supported
+      throw new IllegalStateException(ueex);
+    }
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * ObjectInputStream resolving only Classes that can be Part of a
+   * serialized {@link IndexedKnowledgeBase}. Everything else, in particular
+   * Proxies and Classes of other Libraries, is rejected before it is
+   * instantiated.
+   */
+  private static final class SnapshotInputStream extends ObjectInputStream {
+
+    private static final String[] ALLOWED_PACKAGES = { "org.psikeds.", "java.lang.", "java.util.", "java.math." };
+
+    // concurrent Maps of the Indexes, the Locks serialized with them and
+    // the Time-Zones of the Calendars within the Meta-Data
+    private static final String[] ALLOWED_CLASSES = {
+        "sun.util.calendar.ZoneInfo",
+        "java.util.concurrent.ConcurrentHashMap",
+        "java.util.concurrent.locks.ReentrantLock",
+        "java.util.concurrent.locks.AbstractQueuedSynchronizer",
+        "java.util.concurrent.locks.AbstractOwnableSynchronizer" };
+
+    SnapshotInputStream(final InputStream in) throws IOException {
+      super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+      if (!isAllowed(desc.getName())) {
+        throw new InvalidClassException(desc.getName(), "Class not allowed in a Snapshot");
+      }
+      return super.resolveClass(desc);
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(final String[] interfaces) throws IOException, ClassNotFoundException {
+      throw new InvalidClassException("Proxy", "Proxies not allowed in a Snapshot");
+    }
+
+    private static boolean isAllowed(final String className) {
+      String name = className;
+      while (name.startsWith("[")) {
+        name = name.substring(1);
+      }
+      if (name.length() == 1) {
+        return true; // array of primitives
+      }
+      if (name.startsWith("L") && name.endsWith(";")) {
+        name = name.substring(1, name.length() - 1);
+      }
+      for (final String pkg : ALLOWED_PACKAGES) {
+        if (name.startsWith(pkg) && (name.indexOf('.', pkg.length()) < 0)) {
+          return true; // no sub-packages, i.e. no java.lang.reflect, java.util.concurrent, ...
+        }
+      }
+      for (final String cls : ALLOWED_CLASSES) {
+        if (name.equals(cls) || name.startsWith(cls + '$')) {
+          return true;
+        }
+      }
+      return name.startsWith(ALLOWED_PACKAGES[0]);
+    }
+  }
+}
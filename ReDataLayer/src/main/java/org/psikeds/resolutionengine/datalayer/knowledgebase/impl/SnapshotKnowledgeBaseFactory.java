@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.datalayer.knowledgebase.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import org.psikeds.knowledgebase.xml.impl.XMLParser;
+import org.psikeds.knowledgebase.xml.impl.XSDValidator;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBaseFactory;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.ValidationException;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.impl.ConceptValidator;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.impl.ConstitutesValidator;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.impl.EventValidator;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.impl.FeatureValidator;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.impl.FulfillsValidator;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.impl.RelationValidator;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.impl.RuleValidator;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.impl.VariantValidator;
+
+/**
+ * This implementation of a KnowledgeBaseFactory is reading a binary
+ * {@link KnowledgeBaseSnapshot} instead of parsing the XML-Source.
+ *
+ * If there is no Snapshot or if it is stale (i.e. the XML-Source, the XSD
+ * or the Configuration of the XML-Factory was changed since the Snapshot
+ * was written), the Knowledge-Base is created by the XML-Factory as before
+ * and a new Snapshot is written for the next Startup.
+ *
+ * Snapshots are disabled unless a Snapshot-File is configured. It must be
+ * located in a Directory that is only writable by the Resolution-Engine,
+ * never in a shared temporary Directory.
+ *
+ * Snapshots can also be compiled offline, see {@link #main(String[])}.
+ *
+ * @author marco@juliano.de
+ *
+ */
+public class SnapshotKnowledgeBaseFactory implements InitializingBean, KnowledgeBaseFactory {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotKnowledgeBaseFactory.class);
+
+  public static final boolean DEFAULT_WRITE_SNAPSHOT = true;
+
+  private KnowledgeBaseFactory xmlFactory;
+  private Resource xmlSource;
+  private File snapshot;
+  private boolean writeSnapshot;
+
+  public SnapshotKnowledgeBaseFactory() {
+    this(null, null, (File) null);
+  }
+
+  public SnapshotKnowledgeBaseFactory(final KnowledgeBaseFactory xmlFactory, final Resource xmlSource, final String snapshotFilename) {
+    this(xmlFactory, xmlSource, (StringUtils.isEmpty(snapshotFilename) ? null : new File(snapshotFilename.trim())));
+  }
+
+  public SnapshotKnowledgeBaseFactory(final KnowledgeBaseFactory xmlFactory, final Resource xmlSource, final File snapshot) {
+    this(xmlFactory, xmlSource, snapshot, DEFAULT_WRITE_SNAPSHOT);
+  }
+
+  public SnapshotKnowledgeBaseFactory(final KnowledgeBaseFactory xmlFactory, final Resource xmlSource, final File snapshot, final boolean writeSnapshot) {
+    this.xmlFactory = xmlFactory;
+    this.xmlSource = xmlSource;
+    this.snapshot = snapshot;
+    this.writeSnapshot = writeSnapshot;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Check that SnapshotKnowledgeBaseFactory was configured/wired correctly.
+   *
+   * @throws Exception
+   * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+   */
+  @Override
+  public void afterPropertiesSet() throws Exception {
+    Validate.notNull(this.xmlFactory, "No XML-Factory!");
+    if ((this.snapshot == null) || (this.xmlSource == null)) {
+      LOGGER.info("No Snapshot of Knowledge-Base defined, always using XML.");
+    }
+    else {
+      LOGGER.info("Snapshot of Knowledge-Base: {}", this.snapshot.getAbsolutePath());
+    }
+  }
+
+  // ----------------------------------------------------------------
+
+  public KnowledgeBaseFactory getXmlFactory() {
+    return this.xmlFactory;
+  }
+
+  public void setXmlFactory(final KnowledgeBaseFactory xmlFactory) {
+    this.xmlFactory = xmlFactory;
+  }
+
+  public Resource getXmlSource() {
+    return this.xmlSource;
+  }
+
+  public void setXmlSource(final Resource xmlSource) {
+    this.xmlSource = xmlSource;
+  }
+
+  public File getSnapshot() {
+    return this.snapshot;
+  }
+
+  public void setSnapshot(final File snapshot) {
+    this.snapshot = snapshot;
+  }
+
+  public boolean isWriteSnapshot() {
+    return this.writeSnapshot;
+  }
+
+  public void setWriteSnapshot(final boolean writeSnapshot) {
+    this.writeSnapshot = writeSnapshot;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Factory Method: Read Snapshot or fall back to XML.
+   *
+   * @return KnowledgeBase
+   * @throws ValidationException
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBaseFactory#create()
+   */
+  @Override
+  public synchronized KnowledgeBase create() throws ValidationException {
+    try {
+      LOGGER.trace("--> create()");
+      if ((this.snapshot == null) || (this.xmlSource == null)) {
+        return this.xmlFactory.create();
+      }
+      final long checksum = checksum();
+      final KnowledgeBase kb = KnowledgeBaseSnapshot.read(this.snapshot, checksum);
+      if (kb != null) {
+        return kb;
+      }
+      return compile(checksum, this.writeSnapshot);
+    }
+    catch (final IOException ioex) {
+      throw new ValidationException("Cannot read data from Stream.", ioex);
+    }
+    finally {
+      LOGGER.trace("<-- create()");
+    }
+  }
+
+  /**
+   * Create Knowledge-Base from XML and write a new Snapshot.
+   *
+   * @return KnowledgeBase
+   * @throws ValidationException
+   */
+  public synchronized KnowledgeBase compile() throws ValidationException {
+    Validate.notNull(this.snapshot, "No Snapshot-File!");
+    Validate.notNull(this.xmlSource, "No XML-Source!");
+    try {
+      return compile(checksum(), true);
+    }
+    catch (final IOException ioex) {
+      throw new ValidationException("Cannot read data from Stream.", ioex);
+    }
+  }
+
+  /**
+   * @return Checksum of the XML-Source, the XSD and the Configuration of
+   *         the XML-Factory
+   * @throws IOException
+   */
+  private long checksum() throws IOException {
+    String config = className(this.xmlFactory);
+    Resource xsd = null;
+    if (this.xmlFactory instanceof XmlKnowledgeBaseFactory) {
+      final XmlKnowledgeBaseFactory xkbf = (XmlKnowledgeBaseFactory) this.xmlFactory;
+      config = config + ';' + xkbf.getConfiguration();
+      if (xkbf.getXsdValidator() instanceof XSDValidator) {
+        final XSDValidator xsdv = (XSDValidator) xkbf.getXsdValidator();
+        xsd = xsdv.getXsdResource();
+        if ((xsd == null) && !StringUtils.isEmpty(xsdv.getXsdFilename())) {
+          xsd = new FileSystemResource(xsdv.getXsdFilename());
+        }
+      }
+    }
+    return KnowledgeBaseSnapshot.checksum(config, this.xmlSource, xsd);
+  }
+
+  private static String className(final Object obj) {
+    return (obj == null ? "null" : obj.getClass().getName());
+  }
+
+  private KnowledgeBase compile(final long checksum, final boolean write) throws ValidationException {
+    final KnowledgeBase kb = this.xmlFactory.create();
+    if (write && (kb instanceof IndexedKnowledgeBase) && kb.isValid()) {
+      try {
+        KnowledgeBaseSnapshot.write((IndexedKnowledgeBase) kb, checksum, this.snapshot);
+      }
+      catch (final IOException ioex) {
+        // not fatal, we just have to parse the XML again next time
+        LOGGER.warn("Could not write Snapshot " + this.snapshot.getAbsolutePath() + ": " + ioex.getMessage(), ioex);
+      }
+    }
+    return kb;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Offline Compilation of a Snapshot: Parse and validate an XML-File
+   * and write the resulting Knowledge-Base as binary Snapshot.
+   *
+   * Usage: SnapshotKnowledgeBaseFactory &lt;XSD&gt; &lt;XML&gt; &lt;Snapshot&gt;
+   *
+   * @param args
+   * @throws Exception
+   */
+  public static void main(final String[] args) throws Exception {
+    if ((args == null) || (args.length != 3)) {
+      System.err.println("Usage: " + SnapshotKnowledgeBaseFactory.class.getName() + " <XSD> <XML> <Snapshot>");
+      System.exit(1);
+    }
+    final Resource xsd = new FileSystemResource(args[0]);
+    final Resource xml = new FileSystemResource(args[1]);
+    final List<Validator> validators = new ArrayList<Validator>();
+    validators.add(new FeatureValidator());
+    validators.add(new ConceptValidator());
+    validators.add(new FulfillsValidator());
+    validators.add(new ConstitutesValidator());
+    validators.add(new VariantValidator());
+    validators.add(new EventValidator());
+    validators.add(new RuleValidator());
+    validators.add(new RelationValidator());
+    final XmlKnowledgeBaseFactory xmlFactory = new XmlKnowledgeBaseFactory(new XMLParser(xml), null, new XSDValidator(xsd, xml), validators, true);
+    xmlFactory.afterPropertiesSet();
+    final SnapshotKnowledgeBaseFactory factory = new SnapshotKnowledgeBaseFactory(xmlFactory, xml, args[2]);
+    factory.afterPropertiesSet();
+    factory.compile();
+  }
+}
@@ -0,0 +1,1410 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.datalayer.knowledgebase.impl;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import org.apache.commons.lang.StringUtils;
+
+import org.springframework.core.io.Resource;
+
+import org.psikeds.knowledgebase.xml.KBParser;
+import org.psikeds.knowledgebase.xml.KBParserCallback;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.transformer.impl.Xml2VoTransformer;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.util.FeatureValueHelper;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.ValidationException;
+import org.psikeds.resolutionengine.datalayer.vo.Alternatives;
+import org.psikeds.resolutionengine.datalayer.vo.Component;
+import org.psikeds.resolutionengine.datalayer.vo.Concept;
+import org.psikeds.resolutionengine.datalayer.vo.Concepts;
+import org.psikeds.resolutionengine.datalayer.vo.Constituents;
+import org.psikeds.resolutionengine.datalayer.vo.Constitutes;
+import org.psikeds.resolutionengine.datalayer.vo.Event;
+import org.psikeds.resolutionengine.datalayer.vo.Events;
+import org.psikeds.resolutionengine.datalayer.vo.Feature;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueList;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange;
+import org.psikeds.resolutionengine.datalayer.vo.Features;
+import org.psikeds.resolutionengine.datalayer.vo.FloatFeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.Fulfills;
+import org.psikeds.resolutionengine.datalayer.vo.IntegerFeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.MetaData;
+import org.psikeds.resolutionengine.datalayer.vo.Purpose;
+import org.psikeds.resolutionengine.datalayer.vo.Purposes;
+import org.psikeds.resolutionengine.datalayer.vo.Relation;
+import org.psikeds.resolutionengine.datalayer.vo.RelationOperator;
+import org.psikeds.resolutionengine.datalayer.vo.RelationParameter;
+import org.psikeds.resolutionengine.datalayer.vo.RelationParameters;
+import org.psikeds.resolutionengine.datalayer.vo.Relations;
+import org.psikeds.resolutionengine.datalayer.vo.Rule;
+import org.psikeds.resolutionengine.datalayer.vo.Rules;
+import org.psikeds.resolutionengine.datalayer.vo.Variant;
+import org.psikeds.resolutionengine.datalayer.vo.Variants;
+
+/**
+ * This Parser reads the psiKeds Knowledge Base with the Cursor-API of StAX
+ * and maps the XML-Elements directly to Value-Objects, i.e. without
+ * unmarshalling JAXB-Objects first.<br>
+ * 
+ * Every Section of the XML-Data (Sensors, Concepts, Variants, ...) is handed
+ * over to the Callback as a Container of Value-Objects (Features, Concepts,
+ * Variants, ...) as soon as it is read completely. References to other
+ * Sections (e.g. from Variants to Feature-Values and Concepts) are resolved
+ * by the Parser, so the Callback gets the same shared Instances as from the
+ * {@link org.psikeds.knowledgebase.xml.impl.XMLParser} in combination with
+ * the {@link Xml2VoTransformer}.<br>
+ * 
+ * String-Pool, Rounding-Mode of Float-Values and maximum Size of Ranges are
+ * taken from the Xml2VoTransformer, so both Parsers create the same
+ * Value-Objects.<br>
+ * 
+ * If an XSD-Schema is supplied, every StAX-Event is passed on to a
+ * ValidatorHandler while it is read, i.e. there is no need for reading the
+ * XML a second Time.<br>
+ * 
+ * @see org.psikeds.knowledgebase.xml.KBParser
+ * @see org.psikeds.resolutionengine.datalayer.knowledgebase.impl.XmlKnowledgeBase
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class StaxKnowledgeBaseParser implements KBParser {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StaxKnowledgeBaseParser.class);
+
+  public static final String DEFAULT_ENCODING = "UTF-8";
+  public static final boolean DEFAULT_IGNORE_DERIVATIONS = true;
+  public static final boolean DEFAULT_IGNORE_SECONDARY_CONCEPTS = true;
+
+  // Names of XML-Elements, Attributes and Constants as defined in psikeds.xsd
+
+  private static final String XML_KNOWLEDGEBASE = "knowledgebase";
+  private static final String XML_META = "meta";
+  private static final String XML_DATA = "data";
+
+  private static final String XML_ID = "id";
+  private static final String XML_NAME = "name";
+  private static final String XML_TEASER = "teaser";
+  private static final String XML_RELEASE = "release";
+  private static final String XML_COPYRIGHT = "copyright";
+  private static final String XML_LICENSE = "license";
+  private static final String XML_CREATED = "created";
+  private static final String XML_LASTMODIFIED = "lastmodified";
+  private static final String XML_LANGUAGE = "language";
+  private static final String XML_CREATOR = "creator";
+  private static final String XML_LABEL = "label";
+  private static final String XML_DESCRIPTION = "description";
+
+  private static final String XML_SENSORS = "sensors";
+  private static final String XML_SENSOR = "sensor";
+  private static final String XML_UNIT = "unit";
+  private static final String XML_VALUES = "values";
+  private static final String XML_STR_VALUE = "strValue";
+  private static final String XML_INT_VALUE = "intValue";
+  private static final String XML_INT_RANGE = "intRange";
+  private static final String XML_FLOAT_VALUE = "floatValue";
+  private static final String XML_FLOAT_RANGE = "floatRange";
+  private static final String XML_MIN = "min";
+  private static final String XML_MAX = "max";
+  private static final String XML_INC = "inc";
+  private static final String XML_SCALE = "scale";
+  private static final String XML_ROUNDING_MODE = "roundingMode";
+
+  private static final String XML_CONCEPTS = "concepts";
+  private static final String XML_CONCEPT = "concept";
+  private static final String XML_ATTRIBUTES = "attributes";
+  private static final String XML_COMPLEX_ATTRIBUTE = "complexAttribute";
+  private static final String XML_VALUE = "value";
+  private static final String XML_SENSED_BY_REF = "sensedByRef";
+
+  private static final String XML_PURPOSES = "purposes";
+  private static final String XML_PURPOSE = "purpose";
+  private static final String XML_ROOT = "root";
+
+  private static final String XML_VARIANTS = "variants";
+  private static final String XML_VARIANT = "variant";
+  private static final String XML_SINGLETON = "singleton";
+  private static final String XML_TYPE = "type";
+  private static final String XML_TYPE_IMPLICIT = "implicit";
+  private static final String XML_PRIMARILY_DENOTED_BY = "primarilyDenotedBy";
+  private static final String XML_SECONDARILY_DENOTED_BY = "secondarilyDenotedBy";
+  private static final String XML_ONE_OUT_OF_THESE_ATTRIBUTES = "oneOutOfTheseAttributes";
+  private static final String XML_ONE_OUT_OF_THIS_RANGE = "oneOutOfThisRange";
+  private static final String XML_ONE_OUT_OF_THESE_CONCEPTS = "oneOutOfTheseConcepts";
+  private static final String XML_ATTRIBUTE = "attribute";
+  private static final String XML_SUBSUMPTION = "subsumption";
+  private static final String XML_REF = "ref";
+  private static final String XML_RANGE_REF = "rangeRef";
+
+  private static final String XML_ALTERNATIVES = "alternatives";
+  private static final String XML_FULFILLS = "fulfills";
+  private static final String XML_PS_REF = "psRef";
+  private static final String XML_PV_REFS = "pvRefs";
+
+  private static final String XML_CONSTITUENTS = "constituents";
+  private static final String XML_CONSTITUTES = "constitutes";
+  private static final String XML_PV_REF = "pvRef";
+  private static final String XML_COMPONENT = "component";
+  private static final String XML_QUANTITY = "quantity";
+
+  private static final String XML_DERIVATIONS = "derivations";
+  private static final String XML_SETUP = "setup";
+  private static final String XML_PV_IMPL_REF = "pvImplRef";
+  private static final String XML_PS_REFS = "psRefs";
+
+  private static final String XML_EVENTS = "events";
+  private static final String XML_EVENT = "event";
+  private static final String XML_NEXUS_REF = "nexusRef";
+  private static final String XML_CONTEXT_PATH = "contextPath";
+  private static final String XML_TRIGGER = "trigger";
+  private static final String XML_NOT_EVENT = "notEvent";
+  private static final String XML_TRIGGER_TYPE_CONCEPT = "concept";
+  private static final String XML_TRIGGER_TYPE_ATTRIBUTE = "attribute";
+
+  private static final String XML_PARAMETERS = "parameters";
+  private static final String XML_PARAMETER = "parameter";
+  private static final String XML_VALUE_SET = "valueSet";
+  private static final String XML_SENSOR_REF = "sensorRef";
+
+  private static final String XML_RULES = "rules";
+  private static final String XML_RULE = "rule";
+  private static final String XML_PREMISE_REFS = "premiseRefs";
+  private static final String XML_CONCLUSIO_REF = "conclusioRef";
+
+  private static final String XML_RELATIONS = "relations";
+  private static final String XML_RELATION = "relation";
+  private static final String XML_COND_REF = "condRef";
+  private static final String XML_LP_REF = "lpRef";
+  private static final String XML_LP_TYPE = "lpType";
+  private static final String XML_REL_TYPE = "relType";
+  private static final String XML_RP_REF = "rpRef";
+  private static final String XML_RP_TYPE = "rpType";
+  private static final String XML_REL_TYPE_EQ = "eq";
+  private static final String XML_REL_TYPE_NEQ = "neq";
+  private static final String XML_REL_TYPE_LESS = "less";
+  private static final String XML_REL_TYPE_LEQ = "leq";
+  private static final String XML_PARAM_TYPE_VALUE = "vVal";
+
+  // -------------------------------------------------------------
+
+  private String encoding;
+  private String xmlFilename;
+  private Resource xmlResource;
+  private KBParserCallback callbackHandler;
+  private Xml2VoTransformer trans;
+  private boolean ignoreDerivations;
+  private boolean ignoreSecondaryConcepts;
+
+  public StaxKnowledgeBaseParser() {
+    this((Resource) null);
+  }
+
+  public StaxKnowledgeBaseParser(final String xmlFilename) {
+    this((Resource) null);
+    setXmlFilename(xmlFilename);
+  }
+
+  public StaxKnowledgeBaseParser(final Resource xmlResource) {
+    this(xmlResource, null);
+  }
+
+  public StaxKnowledgeBaseParser(final Resource xmlResource, final Xml2VoTransformer trans) {
+    this(xmlResource, DEFAULT_ENCODING, trans, null);
+  }
+
+  public StaxKnowledgeBaseParser(final Resource xmlResource, final String encoding, final Xml2VoTransformer trans, final KBParserCallback callbackHandler) {
+    setXmlResource(xmlResource);
+    setEncoding(encoding);
+    setTransformer(trans);
+    setCallbackHandler(callbackHandler);
+    setIgnoreDerivations(DEFAULT_IGNORE_DERIVATIONS);
+    setIgnoreSecondaryConcepts(DEFAULT_IGNORE_SECONDARY_CONCEPTS);
+  }
+
+  // -------------------------------------------------------------
+
+  public String getEncoding() {
+    return this.encoding;
+  }
+
+  public void setEncoding(final String encoding) {
+    this.encoding = encoding;
+  }
+
+  public String getXmlFilename() {
+    return this.xmlFilename;
+  }
+
+  public void setXmlFilename(final String xmlFilename) {
+    this.xmlFilename = xmlFilename;
+  }
+
+  public Resource getXmlResource() {
+    return this.xmlResource;
+  }
+
+  public void setXmlResource(final Resource xmlResource) {
+    this.xmlResource = xmlResource;
+  }
+
+  public Xml2VoTransformer getTransformer() {
+    return this.trans;
+  }
+
+  public void setTransformer(final Xml2VoTransformer trans) {
+    this.trans = (trans != null ? trans : new Xml2VoTransformer());
+  }
+
+  public boolean isIgnoreDerivations() {
+    return this.ignoreDerivations;
+  }
+
+  public void setIgnoreDerivations(final boolean ignoreDerivations) {
+    this.ignoreDerivations = ignoreDerivations;
+  }
+
+  public boolean isIgnoreSecondaryConcepts() {
+    return this.ignoreSecondaryConcepts;
+  }
+
+  public void setIgnoreSecondaryConcepts(final boolean ignoreSecondaryConcepts) {
+    this.ignoreSecondaryConcepts = ignoreSecondaryConcepts;
+  }
+
+  /**
+   * @return the callbackHandler
+   * @see org.psikeds.knowledgebase.xml.KBParser#getCallbackHandler()
+   */
+  @Override
+  public KBParserCallback getCallbackHandler() {
+    return this.callbackHandler;
+  }
+
+  /**
+   * @param callbackHandler
+   *          the callbackHandler to set
+   * @see org.psikeds.knowledgebase.xml.KBParser#setCallbackHandler(org.psikeds.knowledgebase.xml.KBParserCallback)
+   */
+  @Override
+  public void setCallbackHandler(final KBParserCallback callbackHandler) {
+    this.callbackHandler = callbackHandler;
+  }
+
+  // -------------------------------------------------------------
+  // ---- Methods for parsing XML
+  // -------------------------------------------------------------
+
+  /**
+   * Parse the specified XML and map it to Value-Objects.
+   * 
+   * @return Total number of Sections handed over to the Callback
+   * @throws XMLStreamException
+   * @throws SAXException
+   * @throws IOException
+   * @see org.psikeds.knowledgebase.xml.KBParser#parseXmlElements()
+   */
+  @Override
+  public long parseXmlElements() throws XMLStreamException, SAXException, IOException {
+    return parseXmlElements((Schema) null);
+  }
+
+  /**
+   * Parse the specified XML and map it to Value-Objects. The XML is
+   * validated against the Schema while it is read.
+   * 
+   * @param schema
+   *          compiled XSD-Schema; null for no Validation
+   * @return Total number of Sections handed over to the Callback
+   * @throws XMLStreamException
+   * @throws SAXException
+   *           if XML is not valid against XSD
+   * @throws IOException
+   * @see org.psikeds.knowledgebase.xml.KBParser#parseXmlElements(javax.xml.validation.Schema)
+   */
+  @Override
+  public long parseXmlElements(final Schema schema) throws XMLStreamException, SAXException, IOException {
+    if (this.callbackHandler == null) {
+      throw new IllegalArgumentException("Unsupported configuration settings! Must specify a Callback-Handler.");
+    }
+    Reader xml = null;
+    try {
+      xml = createXmlReader();
+      final XMLInputFactory staxFactory = XMLInputFactory.newInstance();
+      staxFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+      final XMLStreamReader reader = staxFactory.createXMLStreamReader(xml);
+      try {
+        return new Mapping(schema == null ? reader : new ValidatingReader(reader, schema.newValidatorHandler())).parse();
+      }
+      catch (final ValidatingException vex) {
+        throw vex.getSaxException();
+      }
+      finally {
+        reader.close();
+      }
+    }
+    finally {
+      if (xml != null) {
+        try {
+          xml.close();
+        }
+        catch (final IOException ex) {
+          // ignore
+        }
+        finally {
+          xml = null;
+        }
+      }
+    }
+  }
+
+  private Reader createXmlReader() throws UnsupportedEncodingException, IOException {
+    final String enc = (StringUtils.isEmpty(this.encoding) ? DEFAULT_ENCODING : this.encoding);
+    if (this.xmlResource != null) {
+      return new InputStreamReader(this.xmlResource.getInputStream(), enc);
+    }
+    if (!StringUtils.isEmpty(this.xmlFilename)) {
+      return new InputStreamReader(new FileInputStream(this.xmlFilename), enc);
+    }
+    throw new IllegalArgumentException("Unsupported configuration settings! Must specify either a Resource or a Filename.");
+  }
+
+  // -------------------------------------------------------------
+  // ---- Mapping of XML-Elements to Value-Objects
+  // -------------------------------------------------------------
+
+  /**
+   * State of a single Parsing: the StAX-Reader and all Objects that can be
+   * referenced by subsequent Sections.
+   */
+  private class Mapping {
+
+    private final XMLStreamReader reader;
+    private final Map<String, Feature> features = new HashMap<String, Feature>();
+    private final Map<String, FeatureValue> featureValues = new HashMap<String, FeatureValue>();
+    private final Map<String, FeatureValueRange<? extends FeatureValue>> ranges = new HashMap<String, FeatureValueRange<? extends FeatureValue>>();
+    private final Map<String, Concept> concepts = new HashMap<String, Concept>();
+    private final Map<String, RelationParameter> parameters = new HashMap<String, RelationParameter>();
+    private long counter;
+    private String label; // set by readLabelAndDescription()
+    private String description; // set by readLabelAndDescription()
+
+    Mapping(final XMLStreamReader reader) {
+      this.reader = reader;
+    }
+
+    long parse() throws XMLStreamException {
+      this.counter = 0;
+      if (!nextElement()) {
+        throw new XMLStreamException("No XML-Root-Element!");
+      }
+      if (!XML_KNOWLEDGEBASE.equals(this.reader.getLocalName())) {
+        throw new XMLStreamException("Unexpected XML-Root-Element: " + this.reader.getLocalName(), this.reader.getLocation());
+      }
+      while (nextChild()) {
+        final String name = this.reader.getLocalName();
+        if (XML_META.equals(name)) {
+          handle(readMeta());
+        }
+        else if (XML_DATA.equals(name)) {
+          readData();
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      while (this.reader.hasNext()) {
+        this.reader.next(); // until end of document, i.e. also the validation of IDREFs is finished
+      }
+      return this.counter;
+    }
+
+    private void readData() throws XMLStreamException {
+      while (nextChild()) {
+        final String name = this.reader.getLocalName();
+        try {
+          if (XML_SENSORS.equals(name)) {
+            handle(readSensors());
+          }
+          else if (XML_CONCEPTS.equals(name)) {
+            handle(readConcepts());
+          }
+          else if (XML_PURPOSES.equals(name)) {
+            handle(readPurposes());
+          }
+          else if (XML_VARIANTS.equals(name)) {
+            handle(readVariants());
+          }
+          else if (XML_ALTERNATIVES.equals(name)) {
+            handle(readAlternatives());
+          }
+          else if (XML_CONSTITUENTS.equals(name)) {
+            handle(readConstituents());
+          }
+          else if (XML_DERIVATIONS.equals(name)) {
+            handle(readDerivations());
+          }
+          else if (XML_EVENTS.equals(name)) {
+            handle(readEvents());
+          }
+          else if (XML_PARAMETERS.equals(name)) {
+            handle(readParameters());
+          }
+          else if (XML_RULES.equals(name)) {
+            handle(readRules());
+          }
+          else if (XML_RELATIONS.equals(name)) {
+            handle(readRelations());
+          }
+          else {
+            skipUnexpected();
+          }
+        }
+        catch (final ValidationException vaex) {
+          throw vaex;
+        }
+        catch (final IllegalArgumentException iaex) {
+          final String errmsg = "Could not handle XML-Element: " + name;
+          LOGGER.error(errmsg, iaex);
+          throw new ValidationException(errmsg, iaex);
+        }
+      }
+    }
+
+    private void handle(final Object element) {
+      if (element != null) {
+        StaxKnowledgeBaseParser.this.callbackHandler.handleElement(element);
+        this.counter++;
+      }
+    }
+
+    // -------------------------------------------------------------
+
+    private MetaData readMeta() throws XMLStreamException {
+      String id = null;
+      String name = null;
+      String teaser = null;
+      String release = null;
+      String copyright = null;
+      String license = null;
+      String language = null;
+      Calendar created = null;
+      Calendar lastmodified = null;
+      final List<String> creator = new ArrayList<String>();
+      final List<String> description = new ArrayList<String>();
+      while (nextChild()) {
+        final String elem = this.reader.getLocalName();
+        if (XML_ID.equals(elem)) {
+          id = readText();
+        }
+        else if (XML_NAME.equals(elem)) {
+          name = readText();
+        }
+        else if (XML_TEASER.equals(elem)) {
+          teaser = readText();
+        }
+        else if (XML_RELEASE.equals(elem)) {
+          release = readText();
+        }
+        else if (XML_COPYRIGHT.equals(elem)) {
+          copyright = readText();
+        }
+        else if (XML_LICENSE.equals(elem)) {
+          license = readText();
+        }
+        else if (XML_CREATED.equals(elem)) {
+          created = parseDate(readText());
+        }
+        else if (XML_LASTMODIFIED.equals(elem)) {
+          lastmodified = parseDate(readText());
+        }
+        else if (XML_LANGUAGE.equals(elem)) {
+          language = readText();
+        }
+        else if (XML_CREATOR.equals(elem)) {
+          creator.add(readText());
+        }
+        else if (XML_DESCRIPTION.equals(elem)) {
+          description.add(readText());
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      return new MetaData(id, name, teaser, release, copyright, license, language, created, lastmodified, creator, description);
+    }
+
+    // -------------------------------------------------------------
+
+    private Features readSensors() throws XMLStreamException {
+      final Features allFeatures = new Features();
+      while (nextChild()) {
+        if (XML_SENSOR.equals(this.reader.getLocalName())) {
+          final Feature f = readSensor();
+          final String fid = f.getFeatureID();
+          if (!StringUtils.isEmpty(fid)) {
+            allFeatures.addFeature(f);
+            this.features.put(fid, f);
+            // values of ranges are not materialized but looked up within their range
+            for (final FeatureValue val : FeatureValueList.getDiscreteValues(f.getValues())) {
+              final String fvid = (val == null ? null : val.getFeatureValueID());
+              if (!StringUtils.isEmpty(fvid)) {
+                this.featureValues.put(fvid, val);
+              }
+            }
+            for (final FeatureValueRange<? extends FeatureValue> range : f.getRanges()) {
+              this.ranges.put(range.getRangeID(), range);
+            }
+          }
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      return allFeatures;
+    }
+
+    private Feature readSensor() throws XMLStreamException {
+      final String featureID = intern(attr(XML_ID));
+      final Feature f = new Feature(featureID);
+      while (nextChild()) {
+        final String elem = this.reader.getLocalName();
+        if (XML_LABEL.equals(elem)) {
+          f.setLabel(intern(readText()));
+        }
+        else if (XML_DESCRIPTION.equals(elem)) {
+          f.setDescription(intern(readText()));
+        }
+        else if (XML_UNIT.equals(elem)) {
+          f.setUnit(intern(readText()));
+        }
+        else if (XML_VALUES.equals(elem)) {
+          readValues(f);
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      return f;
+    }
+
+    private void readValues(final Feature f) throws XMLStreamException {
+      final String featureID = f.getFeatureID();
+      while (nextChild()) {
+        final String elem = this.reader.getLocalName();
+        final String id = intern(attr(XML_ID));
+        if (XML_STR_VALUE.equals(elem)) {
+          f.setType(Feature.VALUE_TYPE_STRING);
+          f.addValue(new FeatureValue(featureID, id, intern(readText())));
+        }
+        else if (XML_INT_VALUE.equals(elem)) {
+          final Long val = parseLong(readText());
+          f.setType(Feature.VALUE_TYPE_INTEGER);
+          f.addValue(new IntegerFeatureValue(featureID, id, (val == null ? 0 : val.longValue())));
+        }
+        else if (XML_INT_RANGE.equals(elem)) {
+          final Long min = parseLong(attr(XML_MIN));
+          final Long max = parseLong(attr(XML_MAX));
+          final Long inc = parseLong(attr(XML_INC));
+          skipElement();
+          f.setType(Feature.VALUE_TYPE_INTEGER);
+          f.addValue(FeatureValueHelper.calculateIntegerRange(featureID, id, (min == null ? 0 : min.longValue()), (max == null ? 0 : max.longValue()),
+              (inc == null ? FeatureValueHelper.DEFAULT_RANGE_STEP : inc.longValue())));
+        }
+        else if (XML_FLOAT_VALUE.equals(elem)) {
+          final Long scale = parseLong(attr(XML_SCALE));
+          final int roundingMode = getTransformer().roundingModeStr2Int(attr(XML_ROUNDING_MODE));
+          final FloatFeatureValue ffv = new FloatFeatureValue(featureID, id, parseDecimal(readText()), roundingMode);
+          if (scale != null) {
+            ffv.setScale(scale.intValue());
+          }
+          f.setType(Feature.VALUE_TYPE_FLOAT);
+          f.addValue(ffv);
+        }
+        else if (XML_FLOAT_RANGE.equals(elem)) {
+          final BigDecimal min = parseDecimal(attr(XML_MIN));
+          final BigDecimal max = parseDecimal(attr(XML_MAX));
+          final BigDecimal inc = parseDecimal(attr(XML_INC));
+          final Long scale = parseLong(attr(XML_SCALE));
+          final int roundingMode = getTransformer().roundingModeStr2Int(attr(XML_ROUNDING_MODE));
+          skipElement();
+          f.setType(Feature.VALUE_TYPE_FLOAT);
+          f.addValue(FeatureValueHelper.calculateFloatRange(featureID, id, min, max, inc, (scale == null ? FloatFeatureValue.MIN_FLOAT_SCALE : scale.intValue()),
+              roundingMode));
+        }
+        else {
+          LOGGER.warn("Skipping unexpected XML-Element in Sensor {} / Values: {}", featureID, elem);
+          skipElement();
+        }
+      }
+    }
+
+    // -------------------------------------------------------------
+
+    private Concepts readConcepts() throws XMLStreamException {
+      final Concepts allConcepts = new Concepts();
+      while (nextChild()) {
+        if (XML_CONCEPT.equals(this.reader.getLocalName())) {
+          final Concept c = readConcept();
+          final String cid = c.getConceptID();
+          if (!StringUtils.isEmpty(cid)) {
+            allConcepts.addConcept(c);
+            this.concepts.put(cid, c);
+          }
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      return allConcepts;
+    }
+
+    private Concept readConcept() throws XMLStreamException {
+      final String cid = intern(attr(XML_ID));
+      final Concept c = new Concept(cid);
+      while (nextChild()) {
+        final String elem = this.reader.getLocalName();
+        if (XML_LABEL.equals(elem)) {
+          c.setLabel(intern(readText()));
+        }
+        else if (XML_DESCRIPTION.equals(elem)) {
+          c.setDescription(intern(readText()));
+        }
+        else if (XML_ATTRIBUTES.equals(elem)) {
+          while (nextChild()) {
+            if (XML_COMPLEX_ATTRIBUTE.equals(this.reader.getLocalName())) {
+              final String featureValueID = attr(XML_VALUE);
+              final String featureID = attr(XML_SENSED_BY_REF);
+              skipElement();
+              // we need to look up existing references to feature-values here!
+              final FeatureValue fv = lookupFeatureValue(featureValueID);
+              if (fv == null) {
+                throw new IllegalArgumentException("Illegal Reference from Concept " + cid + " to Feature-Value " + featureValueID);
+              }
+              if (StringUtils.isEmpty(featureID) || !featureID.equals(fv.getFeatureID())) {
+                throw new IllegalArgumentException("Illegal Reference from Concept " + cid + " to Feature-ID " + featureID);
+              }
+              c.addFeatureId(fv.getFeatureID()); // pooled instance of the same ID
+              c.addValue(fv); // do not create a new object but save existing reference
+            }
+            else {
+              skipUnexpected();
+            }
+          }
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      return c;
+    }
+
+    // -------------------------------------------------------------
+
+    private Purposes readPurposes() throws XMLStreamException {
+      final Purposes purps = new Purposes();
+      while (nextChild()) {
+        if (XML_PURPOSE.equals(this.reader.getLocalName())) {
+          final String purposeID = intern(attr(XML_ID));
+          final Boolean root = parseBoolean(attr(XML_ROOT));
+          final Purpose p = new Purpose(purposeID);
+          p.setRoot(root == null ? Purpose.DEFAULT_IS_ROOT : root.booleanValue());
+          readLabelAndDescription();
+          p.setLabel(this.label);
+          p.setDescription(this.description);
+          purps.addPurpose(p);
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      return purps;
+    }
+
+    // -------------------------------------------------------------
+
+    private Variants readVariants() throws XMLStreamException {
+      final Variants allVariants = new Variants();
+      while (nextChild()) {
+        if (XML_VARIANT.equals(this.reader.getLocalName())) {
+          final Variant v = readVariant();
+          if (!StringUtils.isEmpty(v.getVariantID())) {
+            allVariants.addVariant(v); // implicit Variants are handled by the Callback
+          }
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      return allVariants;
+    }
+
+    private Variant readVariant() throws XMLStreamException {
+      final String vid = intern(attr(XML_ID));
+      final Boolean singleton = parseBoolean(attr(XML_SINGLETON));
+      final String variantType = attr(XML_TYPE);
+      final boolean implicit = (StringUtils.isEmpty(variantType) ? Variant.DEFAULT_IS_IMPLICIT : XML_TYPE_IMPLICIT.equals(variantType));
+      final Variant v = new Variant(null, null, vid, (singleton == null ? Variant.DEFAULT_IS_SINGLETON : singleton.booleanValue()), implicit);
+      while (nextChild()) {
+        final String elem = this.reader.getLocalName();
+        if (XML_LABEL.equals(elem)) {
+          v.setLabel(intern(readText()));
+        }
+        else if (XML_DESCRIPTION.equals(elem)) {
+          v.setDescription(intern(readText()));
+        }
+        else if (XML_PRIMARILY_DENOTED_BY.equals(elem)) {
+          readPrimarilyDenotedBy(v);
+        }
+        else if (XML_SECONDARILY_DENOTED_BY.equals(elem)) {
+          if (StaxKnowledgeBaseParser.this.ignoreSecondaryConcepts) {
+            LOGGER.info("Secondary Concepts currently not supported. Skipping all secondary Subsumptions of Variant {}", vid);
+            skipElement();
+          }
+          else {
+            LOGGER.info("Secondary Concepts currently not supported. Interpreting all secondary Subsumptions of Variant {} as primary ones!", vid);
+            readSubsumptions(v, "secondary");
+          }
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      return v;
+    }
+
+    private void readPrimarilyDenotedBy(final Variant v) throws XMLStreamException {
+      final String vid = v.getVariantID();
+      while (nextChild()) {
+        final String elem = this.reader.getLocalName();
+        if (XML_ONE_OUT_OF_THESE_ATTRIBUTES.equals(elem)) {
+          // first: lookup of features (discrete values)
+          final String featureID = attr(XML_SENSED_BY_REF);
+          final List<String> refs = new ArrayList<String>();
+          while (nextChild()) {
+            if (XML_ATTRIBUTE.equals(this.reader.getLocalName())) {
+              refs.add(attr(XML_REF));
+              skipElement();
+            }
+            else {
+              skipUnexpected();
+            }
+          }
+          if (!StringUtils.isEmpty(featureID) && !refs.isEmpty()) {
+            v.addFeatureId(intern(featureID));
+            for (final String featureValueID : refs) {
+              final FeatureValue fv = lookupFeatureValue(featureValueID);
+              if (fv == null) {
+                throw new IllegalArgumentException("Illegal Reference from Variant " + vid + " to Feature-Value " + featureValueID);
+              }
+              if (!featureID.equals(fv.getFeatureID())) {
+                throw new IllegalArgumentException("Illegal Reference from Variant " + vid + " to Feature-ID " + featureID);
+              }
+              v.addFeatureValue(fv);
+            }
+          }
+        }
+        else if (XML_ONE_OUT_OF_THIS_RANGE.equals(elem)) {
+          // second: lookup of features (ranges)
+          final String rangeID = attr(XML_RANGE_REF);
+          final String featureID = attr(XML_SENSED_BY_REF);
+          skipElement();
+          final List<? extends FeatureValue> fvlst = getFeatureValuesWithinRange(featureID, rangeID);
+          if (fvlst.isEmpty()) {
+            throw new IllegalArgumentException("Illegal Reference from Variant " + vid + " to Range " + rangeID + " of Feature " + featureID);
+          }
+          v.addFeatureId(intern(featureID));
+          v.addFeatureValue(fvlst);
+        }
+        else if (XML_ONE_OUT_OF_THESE_CONCEPTS.equals(elem)) {
+          // third: lookup of primary concepts
+          readSubsumptions(v, "primary");
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+    }
+
+    private void readSubsumptions(final Variant v, final String kind) throws XMLStreamException {
+      while (nextChild()) {
+        if (XML_SUBSUMPTION.equals(this.reader.getLocalName())) {
+          final String conceptID = attr(XML_REF);
+          skipElement();
+          final Concept c = lookup(this.concepts, conceptID); // we want a reference to the existing concept
+          if (c == null) {
+            throw new IllegalArgumentException("Illegal Reference from Variant " + v.getVariantID() + " to " + kind + " Concept " + conceptID);
+          }
+          v.addConcept(c);
+          for (final String fid : c.getFeatureIds()) {
+            v.addFeatureId(fid);
+          }
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+    }
+
+    private List<? extends FeatureValue> getFeatureValuesWithinRange(final String featureID, final String rangeID) {
+      final Feature f = (StringUtils.isEmpty(featureID) ? null : this.features.get(featureID));
+      if (f == null) {
+        return Collections.emptyList();
+      }
+      final FeatureValueRange<? extends FeatureValue> range = f.getRange(rangeID);
+      if (range != null) {
+        return range;
+      }
+      final List<FeatureValue> values = new ArrayList<FeatureValue>();
+      for (final FeatureValue val : FeatureValueList.getDiscreteValues(f.getValues())) {
+        if (FeatureValueHelper.isWithinRange(featureID, rangeID, val)) {
+          values.add(val);
+        }
+      }
+      return values;
+    }
+
+    // -------------------------------------------------------------
+
+    private Alternatives readAlternatives() throws XMLStreamException {
+      final Alternatives alts = new Alternatives();
+      while (nextChild()) {
+        if (XML_FULFILLS.equals(this.reader.getLocalName())) {
+          alts.addFulfills(new Fulfills(intern(attr(XML_PS_REF)), internList(attr(XML_PV_REFS))));
+          skipElement();
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      return alts;
+    }
+
+    private Constituents readConstituents() throws XMLStreamException {
+      final Constituents cons = new Constituents();
+      while (nextChild()) {
+        if (XML_CONSTITUTES.equals(this.reader.getLocalName())) {
+          final Constitutes c = new Constitutes();
+          c.setVariantID(intern(attr(XML_PV_REF)));
+          while (nextChild()) {
+            if (XML_COMPONENT.equals(this.reader.getLocalName())) {
+              final String purposeID = intern(attr(XML_PS_REF));
+              Long quantity = null;
+              while (nextChild()) {
+                if (XML_QUANTITY.equals(this.reader.getLocalName())) {
+                  quantity = parseLong(readText());
+                }
+                else {
+                  skipUnexpected();
+                }
+              }
+              c.addComponent(new Component(purposeID, (quantity == null ? Component.DEFAULT_QUANTITY : quantity.longValue())));
+            }
+            else {
+              skipUnexpected();
+            }
+          }
+          cons.addConstitutes(c);
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      return cons;
+    }
+
+    private Constituents readDerivations() throws XMLStreamException {
+      if (StaxKnowledgeBaseParser.this.ignoreDerivations) {
+        LOGGER.info("Implicit Variants and Derivations currently not supported, ignoring this XML-Section!");
+        skipElement();
+        return null;
+      }
+      LOGGER.info("Implicit Variants and Derivations currently not supported, interpreting Derivations/Setup as normal Constituents/Constitutes!");
+      final Constituents cons = new Constituents();
+      while (nextChild()) {
+        if (XML_SETUP.equals(this.reader.getLocalName())) {
+          final Constitutes c = new Constitutes();
+          c.setVariantID(intern(attr(XML_PV_IMPL_REF)));
+          for (final String purposeID : internList(attr(XML_PS_REFS))) {
+            c.addComponent(new Component(purposeID, Component.DEFAULT_QUANTITY));
+          }
+          skipElement();
+          cons.addConstitutes(c);
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      return (cons.getConstitutes().isEmpty() ? null : cons);
+    }
+
+    // -------------------------------------------------------------
+
+    private Events readEvents() throws XMLStreamException {
+      final Events evnts = new Events();
+      while (nextChild()) {
+        if (XML_EVENT.equals(this.reader.getLocalName())) {
+          final String eventID = intern(attr(XML_ID));
+          final String variantID = intern(attr(XML_NEXUS_REF));
+          final List<String> context = internList(attr(XML_CONTEXT_PATH));
+          String triggerID = null;
+          String triggerType = Event.TRIGGER_TYPE_VARIANT;
+          Boolean notEvent = null;
+          String label = null;
+          String description = null;
+          while (nextChild()) {
+            final String elem = this.reader.getLocalName();
+            if (XML_LABEL.equals(elem)) {
+              label = intern(readText());
+            }
+            else if (XML_DESCRIPTION.equals(elem)) {
+              description = intern(readText());
+            }
+            else if (XML_TRIGGER.equals(elem)) {
+              triggerID = intern(attr(XML_REF));
+              final String type = attr(XML_TYPE);
+              if (XML_TRIGGER_TYPE_CONCEPT.equals(type)) {
+                triggerType = Event.TRIGGER_TYPE_CONCEPT;
+              }
+              else if (XML_TRIGGER_TYPE_ATTRIBUTE.equals(type)) {
+                triggerType = Event.TRIGGER_TYPE_FEATURE_VALUE;
+              }
+              notEvent = parseBoolean(attr(XML_NOT_EVENT));
+              skipElement();
+            }
+            else {
+              skipUnexpected();
+            }
+          }
+          evnts.addEvent(new Event(label, description, eventID, variantID, context, triggerID, triggerType,
+              (notEvent == null ? Event.DEFAULT_NOT_EVENT : notEvent.booleanValue())));
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      return evnts;
+    }
+
+    private RelationParameters readParameters() throws XMLStreamException {
+      final RelationParameters allParams = new RelationParameters();
+      while (nextChild()) {
+        if (XML_PARAMETER.equals(this.reader.getLocalName())) {
+          final String parameterID = intern(attr(XML_ID));
+          final String variantID = intern(attr(XML_NEXUS_REF));
+          final List<String> context = internList(attr(XML_CONTEXT_PATH));
+          String featureID = null;
+          String label = null;
+          String description = null;
+          while (nextChild()) {
+            final String elem = this.reader.getLocalName();
+            if (XML_LABEL.equals(elem)) {
+              label = intern(readText());
+            }
+            else if (XML_DESCRIPTION.equals(elem)) {
+              description = intern(readText());
+            }
+            else if (XML_VALUE_SET.equals(elem)) {
+              featureID = intern(attr(XML_SENSOR_REF));
+              skipElement();
+            }
+            else {
+              skipUnexpected();
+            }
+          }
+          if (!StringUtils.isEmpty(parameterID)) {
+            final RelationParameter param = new RelationParameter(label, description, parameterID, variantID, context, featureID);
+            allParams.addParameter(param);
+            this.parameters.put(parameterID, param);
+          }
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      return allParams;
+    }
+
+    private Rules readRules() throws XMLStreamException {
+      final Rules rules = new Rules();
+      while (nextChild()) {
+        if (XML_RULE.equals(this.reader.getLocalName())) {
+          final String ruleID = intern(attr(XML_ID));
+          final String variantID = intern(attr(XML_NEXUS_REF));
+          final List<String> premises = internList(attr(XML_PREMISE_REFS));
+          final String conclusion = intern(attr(XML_CONCLUSIO_REF));
+          readLabelAndDescription();
+          rules.addRule(new Rule(this.label, this.description, ruleID, variantID, premises, conclusion));
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      return rules;
+    }
+
+    private Relations readRelations() throws XMLStreamException {
+      final Relations allRelations = new Relations();
+      while (nextChild()) {
+        if (XML_RELATION.equals(this.reader.getLocalName())) {
+          final String relationID = intern(attr(XML_ID));
+          final String variantID = intern(attr(XML_NEXUS_REF));
+          final String conditionalEventID = intern(attr(XML_COND_REF));
+          final RelationOperator operator = toRelationOperator(attr(XML_REL_TYPE));
+          final String lpType = attr(XML_LP_TYPE);
+          final String lpRef = attr(XML_LP_REF);
+          final String rpType = attr(XML_RP_TYPE);
+          final String rpRef = attr(XML_RP_REF);
+          readLabelAndDescription();
+          if (!StringUtils.isEmpty(relationID)) {
+            final RelationParameter leftSide = createRelationParameter(variantID, lpType, lpRef);
+            final RelationParameter rightSide = createRelationParameter(variantID, rpType, rpRef);
+            allRelations.addRelation(new Relation(this.label, this.description, relationID, variantID, leftSide, rightSide, operator, conditionalEventID));
+          }
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+      return allRelations;
+    }
+
+    private RelationOperator toRelationOperator(final String relType) {
+      if (XML_REL_TYPE_EQ.equals(relType)) {
+        return RelationOperator.EQUAL;
+      }
+      if (XML_REL_TYPE_NEQ.equals(relType)) {
+        return RelationOperator.NOT_EQUAL;
+      }
+      if (XML_REL_TYPE_LESS.equals(relType)) {
+        return RelationOperator.LESS_THAN;
+      }
+      if (XML_REL_TYPE_LEQ.equals(relType)) {
+        return RelationOperator.LESS_OR_EQUAL;
+      }
+      return RelationOperator.DEFAULT_OPERATOR;
+    }
+
+    /**
+     * Parameters referencing a Feature are looked up, a new Parameter is
+     * created for every constant Feature-Value. New Parameters are stored by
+     * the Callback together with their Relations.
+     */
+    private FeatureValue lookupFeatureValue(final String featureValueID) {
+      final FeatureValue fv = lookup(this.featureValues, featureValueID);
+      if (fv != null) {
+        return fv;
+      }
+      final FeatureValueRange<? extends FeatureValue> range = lookup(this.ranges, FeatureValueRange.getRangeID(featureValueID));
+      return (range == null ? null : range.getFeatureValue(featureValueID));
+    }
+
+    private RelationParameter createRelationParameter(final String variantID, final String parameterType, final String parameterValue) {
+      if (XML_PARAM_TYPE_VALUE.equals(parameterType)) {
+        // value is reference to a parameter which is a reference to a feature
+        return lookup(this.parameters, parameterValue);
+      }
+      // value is reference to a feature value, i.e. a constant
+      final FeatureValue fv = lookupFeatureValue(parameterValue);
+      return (fv == null ? null : new RelationParameter(variantID, fv.getFeatureValueID()));
+    }
+
+    // -------------------------------------------------------------
+    // ---- Helpers for the StAX-Cursor; all Events are read by next(),
+    // ---- so a ValidatingReader gets every single Event
+    // -------------------------------------------------------------
+
+    /**
+     * Read the Label and the Description of the current Element, all other
+     * Child-Elements are skipped.
+     */
+    private void readLabelAndDescription() throws XMLStreamException {
+      this.label = null;
+      this.description = null;
+      while (nextChild()) {
+        final String elem = this.reader.getLocalName();
+        if (XML_LABEL.equals(elem)) {
+          this.label = intern(readText());
+        }
+        else if (XML_DESCRIPTION.equals(elem)) {
+          this.description = intern(readText());
+        }
+        else {
+          skipUnexpected();
+        }
+      }
+    }
+
+    /**
+     * Move to the next Element.
+     * 
+     * @return true if an Element was found; false at the End of the Document
+     */
+    private boolean nextElement() throws XMLStreamException {
+      while (this.reader.hasNext()) {
+        if (this.reader.next() == XMLStreamConstants.START_ELEMENT) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Move to the next Child of the current Element.
+     * 
+     * @return true if positioned on the next Child; false if positioned on
+     *         the End of the current Element, i.e. there are no more
+     *         Children
+     */
+    private boolean nextChild() throws XMLStreamException {
+      while (true) {
+        final int event = this.reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          return true;
+        }
+        if (event == XMLStreamConstants.END_ELEMENT) {
+          return false;
+        }
+      }
+    }
+
+    /**
+     * @return Text of the current Element; afterwards positioned on its End
+     */
+    private String readText() throws XMLStreamException {
+      final StringBuilder sb = new StringBuilder();
+      while (true) {
+        final int event = this.reader.next();
+        if ((event == XMLStreamConstants.CHARACTERS) || (event == XMLStreamConstants.CDATA) || (event == XMLStreamConstants.SPACE)
+            || (event == XMLStreamConstants.ENTITY_REFERENCE)) {
+          sb.append(this.reader.getText());
+        }
+        else if (event == XMLStreamConstants.START_ELEMENT) {
+          skipUnexpected();
+        }
+        else if (event == XMLStreamConstants.END_ELEMENT) {
+          return sb.toString();
+        }
+      }
+    }
+
+    /**
+     * Skip the current Element including all of its Children.
+     */
+    private void skipElement() throws XMLStreamException {
+      int depth = 1;
+      while (depth > 0) {
+        final int event = this.reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+        }
+        else if (event == XMLStreamConstants.END_ELEMENT) {
+          depth--;
+        }
+      }
+    }
+
+    private void skipUnexpected() throws XMLStreamException {
+      LOGGER.warn("Skipping unexpected XML-Element: {}", this.reader.getLocalName());
+      skipElement();
+    }
+
+    private String attr(final String name) {
+      return this.reader.getAttributeValue(null, name);
+    }
+  }
+
+  // -------------------------------------------------------------
+  // ---- Conversion of XML-Values
+  // -------------------------------------------------------------
+
+  private String intern(final String str) {
+    return this.trans.intern(str);
+  }
+
+  /**
+   * @param refs
+   *          List of IDs separated by Whitespace, e.g. IDREFS
+   * @return List of pooled IDs
+   */
+  private List<String> internList(final String refs) {
+    final List<String> lst = new ArrayList<String>();
+    final String[] ids = StringUtils.split(refs);
+    if (ids != null) {
+      for (final String id : ids) {
+        lst.add(intern(id));
+      }
+    }
+    return lst;
+  }
+
+  private static <V> V lookup(final Map<String, V> map, final String id) {
+    return (StringUtils.isEmpty(id) ? null : map.get(id));
+  }
+
+  private static Long parseLong(final String str) {
+    final String s = StringUtils.trimToNull(str);
+    return (s == null ? null : Long.valueOf(s.startsWith("+") ? s.substring(1) : s));
+  }
+
+  private static BigDecimal parseDecimal(final String str) {
+    final String s = StringUtils.trimToNull(str);
+    return (s == null ? null : new BigDecimal(s.startsWith("+") ? s.substring(1) : s));
+  }
+
+  private static Boolean parseBoolean(final String str) {
+    final String s = StringUtils.trimToNull(str);
+    return (s == null ? null : Boolean.valueOf("true".equals(s) || "1".equals(s)));
+  }
+
+  private static Calendar parseDate(final String str) {
+    final String s = StringUtils.trimToNull(str);
+    if (s == null) {
+      return null;
+    }
+    try {
+      return DatatypeFactory.newInstance().newXMLGregorianCalendar(s).toGregorianCalendar();
+    }
+    catch (final DatatypeConfigurationException dcex) {
+      throw new IllegalStateException("No XML-Datatype-Factory available.", dcex);
+    }
+  }
+
+  // -------------------------------------------------------------
+  // ---- Validation while reading
+  // -------------------------------------------------------------
+
+  /**
+   * Passes every StAX-Event read by next() on to a ValidatorHandler, i.e.
+   * the XML is validated against the Schema while it is read.
+   */
+  private static class ValidatingReader extends StreamReaderDelegate {
+
+    private final ValidatorHandler validator;
+    private final AttributesImpl attributes = new AttributesImpl();
+
+    ValidatingReader(final XMLStreamReader reader, final ValidatorHandler validator) throws ValidatingException {
+      super(reader);
+      this.validator = validator;
+      try {
+        this.validator.startDocument();
+      }
+      catch (final SAXException saxex) {
+        throw new ValidatingException(saxex);
+      }
+    }
+
+    @Override
+    public int next() throws XMLStreamException {
+      final int event = super.next();
+      try {
+        switch (event) {
+          case XMLStreamConstants.START_ELEMENT:
+            startElement();
+            break;
+          case XMLStreamConstants.END_ELEMENT:
+            this.validator.endElement(getNamespaceURI(), getLocalName(), qName(getPrefix(), getLocalName()));
+            for (int i = getNamespaceCount() - 1; i >= 0; i--) {
+              this.validator.endPrefixMapping(prefix(getNamespacePrefix(i)));
+            }
+            break;
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.CDATA:
+          case XMLStreamConstants.SPACE:
+            this.validator.characters(getTextCharacters(), getTextStart(), getTextLength());
+            break;
+          case XMLStreamConstants.END_DOCUMENT:
+            this.validator.endDocument();
+            break;
+          default:
+            break;
+        }
+      }
+      catch (final SAXException saxex) {
+        throw new ValidatingException(saxex);
+      }
+      return event;
+    }
+
+    private void startElement() throws SAXException {
+      for (int i = 0; i < getNamespaceCount(); i++) {
+        this.validator.startPrefixMapping(prefix(getNamespacePrefix(i)), nonNull(getNamespaceURI(i)));
+      }
+      this.attributes.clear();
+      for (int i = 0; i < getAttributeCount(); i++) {
+        final String localName = getAttributeLocalName(i);
+        this.attributes.addAttribute(nonNull(getAttributeNamespace(i)), localName, qName(getAttributePrefix(i), localName), getAttributeType(i), getAttributeValue(i));
+      }
+      this.validator.startElement(nonNull(getNamespaceURI()), getLocalName(), qName(getPrefix(), getLocalName()), this.attributes);
+    }
+
+    private static String qName(final String prefix, final String localName) {
+      return (StringUtils.isEmpty(prefix) ? localName : prefix + ":" + localName);
+    }
+
+    private static String prefix(final String prefix) {
+      return (prefix == null ? "" : prefix);
+    }
+
+    private static String nonNull(final String uri) {
+      return (uri == null ? "" : uri);
+    }
+  }
+
+  /**
+   * Transports a Validation-Error through the StAX-API.
+   */
+  private static class ValidatingException extends XMLStreamException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final SAXException saxException;
+
+    ValidatingException(final SAXException saxException) {
+      super(saxException.getMessage(), saxException);
+      this.saxException = saxException;
+    }
+
+    SAXException getSaxException() {
+      return this.saxException;
+    }
+  }
+}
@@ -0,0 +1,947 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.datalayer.knowledgebase.impl;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.commons.lang.Validate;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+
+import org.psikeds.common.util.StringPool;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBaseFactory;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.ValidationException;
+import org.psikeds.resolutionengine.datalayer.vo.Alternatives;
+import org.psikeds.resolutionengine.datalayer.vo.Concept;
+import org.psikeds.resolutionengine.datalayer.vo.Concepts;
+import org.psikeds.resolutionengine.datalayer.vo.Constituents;
+import org.psikeds.resolutionengine.datalayer.vo.Constitutes;
+import org.psikeds.resolutionengine.datalayer.vo.Event;
+import org.psikeds.resolutionengine.datalayer.vo.Events;
+import org.psikeds.resolutionengine.datalayer.vo.Feature;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValues;
+import org.psikeds.resolutionengine.datalayer.vo.Features;
+import org.psikeds.resolutionengine.datalayer.vo.Fulfills;
+import org.psikeds.resolutionengine.datalayer.vo.MetaData;
+import org.psikeds.resolutionengine.datalayer.vo.Purpose;
+import org.psikeds.resolutionengine.datalayer.vo.Purposes;
+import org.psikeds.resolutionengine.datalayer.vo.Relation;
+import org.psikeds.resolutionengine.datalayer.vo.RelationParameter;
+import org.psikeds.resolutionengine.datalayer.vo.RelationParameters;
+import org.psikeds.resolutionengine.datalayer.vo.Relations;
+import org.psikeds.resolutionengine.datalayer.vo.Rule;
+import org.psikeds.resolutionengine.datalayer.vo.Rules;
+import org.psikeds.resolutionengine.datalayer.vo.Variant;
+import org.psikeds.resolutionengine.datalayer.vo.Variants;
+
+/**
+ * KnowledgeBase holding numbered Versions of immutable KnowledgeBases created
+ * by a {@link KnowledgeBaseFactory}.
+ * 
+ * A new Version is built and validated in the Background and then swapped in
+ * atomically, so Requests in flight are never served by a half-loaded or
+ * invalid KnowledgeBase. A Reload can be triggered explicitly or happens
+ * automatically, if the watched Resource (i.e. the XML-File) was modified.
+ * A Reload that fails keeps the current Version.
+ * 
+ * All Methods of the Interface KnowledgeBase are delegated to the Version
+ * pinned to the current Thread or to the newest Version, if there is no
+ * pinned one. Resolution-Services pin the Version a Session was started with
+ * for the Duration of each Request. The newest Versions are retained for
+ * this Purpose. Additionally every Version is retained as long as it is
+ * referenced by a live Session (see {@link #acquire(int)}), even if there
+ * are more Versions than the configured Maximum. A Version that is not
+ * retained anymore is never replaced silently by another one, pinning it
+ * fails instead.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class VersionedKnowledgeBase implements KnowledgeBase, InitializingBean, DisposableBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(VersionedKnowledgeBase.class);
+
+  public static final int DEFAULT_MAX_VERSIONS = 3;
+  public static final long DEFAULT_RELOAD_INTERVAL = 0L; // no automatic reload
+
+  private final KnowledgeBaseFactory factory;
+  private final AtomicReference<Version> current;
+  private final Map<Integer, Version> versions; // retained versions, oldest first, guarded by itself
+  private final ThreadLocal<Version> pinned;
+  private final Object reloadLock;
+  private int lastVersion; // guarded by reloadLock
+  private long lastModified; // guarded by reloadLock
+  private int maxVersions;
+  private long reloadInterval;
+  private Resource watchedResource;
+  private ExecutorService reloader;
+  private ScheduledExecutorService watcher;
+
+  public VersionedKnowledgeBase(final KnowledgeBaseFactory factory) {
+    this(factory, DEFAULT_MAX_VERSIONS, DEFAULT_RELOAD_INTERVAL, null);
+  }
+
+  public VersionedKnowledgeBase(final KnowledgeBaseFactory factory, final int maxVersions, final long reloadInterval, final Resource watchedResource) {
+    Validate.notNull(factory, "No Knowledge-Base-Factory!");
+    this.factory = factory;
+    this.current = new AtomicReference<Version>();
+    this.versions = new LinkedHashMap<Integer, Version>();
+    this.pinned = new ThreadLocal<Version>();
+    this.reloadLock = new Object();
+    this.lastVersion = 0;
+    this.lastModified = 0L;
+    this.maxVersions = maxVersions;
+    this.reloadInterval = reloadInterval;
+    this.watchedResource = watchedResource;
+    this.reloader = null;
+    this.watcher = null;
+    reloadNow(); // initial version
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Start Watcher-Thread checking the watched Resource periodically.
+   * 
+   * @throws Exception
+   * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+   */
+  @Override
+  public void afterPropertiesSet() throws Exception {
+    if (LOGGER.isInfoEnabled()) {
+      final StringBuilder sb = new StringBuilder("Config: Max. retained Versions of Knowledge-Base: {}\n");
+      sb.append("Reload-Interval: {} ms\n");
+      sb.append("Watched Resource: {}");
+      LOGGER.info(sb.toString(), this.maxVersions, this.reloadInterval, (this.watchedResource == null ? null : this.watchedResource.getDescription()));
+    }
+    Validate.isTrue(this.maxVersions > 0, "Must retain at least one Version of the Knowledge-Base!");
+    startWatcher();
+  }
+
+  /**
+   * Stop all Threads.
+   * 
+   * @throws Exception
+   * @see org.springframework.beans.factory.DisposableBean#destroy()
+   */
+  @Override
+  public void destroy() throws Exception {
+    stopWatcher();
+    synchronized (this) {
+      if (this.reloader != null) {
+        this.reloader.shutdownNow();
+        this.reloader = null;
+      }
+    }
+  }
+
+  public synchronized void startWatcher() {
+    if ((this.watcher == null) && (this.reloadInterval > 0) && (this.watchedResource != null)) {
+      this.watcher = Executors.newSingleThreadScheduledExecutor(new ReloaderThreadFactory("KnowledgeBase-Watcher"));
+      this.watcher.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            reloadIfModified();
+          }
+          catch (final Exception ex) {
+            // never let the watcher die
+            LOGGER.warn("Could not reload Knowledge-Base: " + ex.getMessage(), ex);
+          }
+        }
+      }, this.reloadInterval, this.reloadInterval, TimeUnit.MILLISECONDS);
+      LOGGER.debug("Started Watcher of Knowledge-Base.");
+    }
+  }
+
+  public synchronized void stopWatcher() {
+    if (this.watcher != null) {
+      this.watcher.shutdownNow();
+      this.watcher = null;
+      LOGGER.debug("Stopped Watcher of Knowledge-Base.");
+    }
+  }
+
+  // ----------------------------------------------------------------
+
+  public int getMaxVersions() {
+    return this.maxVersions;
+  }
+
+  public void setMaxVersions(final int maxVersions) {
+    this.maxVersions = maxVersions;
+  }
+
+  public long getReloadInterval() {
+    return this.reloadInterval;
+  }
+
+  public void setReloadInterval(final long reloadInterval) {
+    this.reloadInterval = reloadInterval;
+  }
+
+  public Resource getWatchedResource() {
+    return this.watchedResource;
+  }
+
+  public void setWatchedResource(final Resource watchedResource) {
+    this.watchedResource = watchedResource;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @return number of newest Version
+   */
+  public int getVersion() {
+    return this.current.get().number;
+  }
+
+  /**
+   * @return number of Version used by current Thread
+   */
+  public int getPinnedVersion() {
+    return target().number;
+  }
+
+  /**
+   * Pin current Thread to newest Version.
+   * 
+   * @return number of pinned Version
+   */
+  public int pin() {
+    return pin(0);
+  }
+
+  /**
+   * Pin current Thread to a Version.
+   * 
+   * @param version
+   *          number of Version; <= 0 for newest Version
+   * @return number of actually pinned Version
+   * @throws IllegalStateException
+   *           if this Version is not retained anymore
+   */
+  public int pin(final int version) {
+    final Version v = lookup(version);
+    this.pinned.set(v);
+    return v.number;
+  }
+
+  /**
+   * Get a Version without pinning the current Thread, e.g. for decoding a
+   * Session that was started with this Version.
+   * 
+   * @param version
+   *          number of Version; <= 0 for newest Version
+   * @return KnowledgeBase of this Version
+   * @throws IllegalStateException
+   *           if this Version is not retained anymore
+   */
+  public KnowledgeBase getKnowledgeBase(final int version) {
+    return lookup(version).kb;
+  }
+
+  /**
+   * Release Pin of current Thread.
+   */
+  public void unpin() {
+    this.pinned.remove();
+  }
+
+  /**
+   * @param version
+   *          number of Version; <= 0 for newest Version
+   * @return true if this Version is still retained, false else
+   */
+  public boolean isAvailable(final int version) {
+    if (version <= 0) {
+      return true;
+    }
+    synchronized (this.versions) {
+      return this.versions.containsKey(Integer.valueOf(version));
+    }
+  }
+
+  /**
+   * Reference a Version by a Session. The Version is retained until the
+   * last Reference is released, even if there are more Versions than the
+   * configured Maximum.
+   * 
+   * @param version
+   *          number of Version
+   * @return true if the Version was referenced, false if it is not
+   *         retained anymore
+   */
+  public boolean acquire(final int version) {
+    synchronized (this.versions) {
+      final Version v = this.versions.get(Integer.valueOf(version));
+      if (v == null) {
+        return false;
+      }
+      v.references++;
+      return true;
+    }
+  }
+
+  /**
+   * Release a Reference of a Session to a Version. An old Version that is
+   * not referenced anymore is released.
+   * 
+   * @param version
+   *          number of Version
+   */
+  public void release(final int version) {
+    synchronized (this.versions) {
+      final Version v = this.versions.get(Integer.valueOf(version));
+      if ((v != null) && (v.references > 0)) {
+        v.references--;
+        if (v.references == 0) {
+          retain();
+        }
+      }
+    }
+  }
+
+  /**
+   * @param version
+   *          number of Version
+   * @return number of Sessions referencing this Version
+   */
+  public int getReferences(final int version) {
+    synchronized (this.versions) {
+      final Version v = this.versions.get(Integer.valueOf(version));
+      return (v == null ? 0 : v.references);
+    }
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Create, validate and install a new Version in the Background.
+   * 
+   * @return Future delivering the number of the new Version
+   */
+  public Future<Integer> reload() {
+    return getReloader().submit(new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        return Integer.valueOf(reloadNow());
+      }
+    });
+  }
+
+  /**
+   * Create, validate and install a new Version within the current Thread.
+   * 
+   * @return number of the new Version
+   * @throws ValidationException
+   *           if the new Version is not valid; current Version stays in use
+   */
+  public int reloadNow() throws ValidationException {
+    synchronized (this.reloadLock) {
+      try {
+        LOGGER.trace("--> reloadNow()");
+        final long modified = getLastModified();
+        final KnowledgeBase kb = this.factory.create();
+        if ((kb == null) || !kb.isValid()) {
+          throw new ValidationException("New Version of Knowledge-Base is not valid!");
+        }
+        this.lastModified = modified;
+        this.lastVersion++;
+        final Version v = new Version(this.lastVersion, kb);
+        synchronized (this.versions) {
+          this.versions.put(Integer.valueOf(v.number), v);
+          this.current.set(v);
+          retain();
+        }
+        LOGGER.info("Installed Version {} of Knowledge-Base.", v.number);
+        return v.number;
+      }
+      catch (final ValidationException vex) {
+        LOGGER.error("Could not reload Knowledge-Base, keeping current Version: " + vex.getMessage(), vex);
+        throw vex;
+      }
+      finally {
+        LOGGER.trace("<-- reloadNow()");
+      }
+    }
+  }
+
+  /**
+   * @return true if the watched Resource was modified and a new Version was
+   *         installed, false else
+   */
+  public boolean reloadIfModified() {
+    final long modified = getLastModified();
+    boolean changed;
+    synchronized (this.reloadLock) {
+      changed = (modified != this.lastModified);
+    }
+    if (changed) {
+      LOGGER.info("Watched Resource of Knowledge-Base was modified.");
+      reloadNow();
+    }
+    return changed;
+  }
+
+  private long getLastModified() {
+    try {
+      return (this.watchedResource == null ? 0L : this.watchedResource.lastModified());
+    }
+    catch (final IOException ioex) {
+      LOGGER.debug("Cannot determine Modification of watched Resource: {}", ioex.getMessage());
+      return 0L;
+    }
+  }
+
+  private synchronized ExecutorService getReloader() {
+    if (this.reloader == null) {
+      this.reloader = Executors.newSingleThreadExecutor(new ReloaderThreadFactory("KnowledgeBase-Reloader"));
+    }
+    return this.reloader;
+  }
+
+  /**
+   * Release all Versions older than the newest ones within the configured
+   * Maximum unless they are still referenced by a Session. Caller must hold
+   * the Lock of the Versions.
+   */
+  private void retain() {
+    int older = this.versions.size() - Math.max(1, this.maxVersions);
+    final Iterator<Version> it = this.versions.values().iterator();
+    while ((older > 0) && it.hasNext()) {
+      final Version old = it.next();
+      older--;
+      if (old.references <= 0) {
+        it.remove();
+        LOGGER.debug("Released Version {} of Knowledge-Base.", old.number);
+      }
+    }
+  }
+
+  private Version lookup(final int version) {
+    if (version <= 0) {
+      return this.current.get();
+    }
+    final Version v;
+    synchronized (this.versions) {
+      v = this.versions.get(Integer.valueOf(version));
+    }
+    if (v == null) {
+      throw new IllegalStateException("Version " + version + " of Knowledge-Base is not available anymore.");
+    }
+    return v;
+  }
+
+  private Version target() {
+    final Version v = this.pinned.get();
+    return (v != null ? v : this.current.get());
+  }
+
+  private KnowledgeBase kb() {
+    return target().kb;
+  }
+
+  // ----------------------------------------------------------------
+  // Methods required for the Interface KnowledgeBase
+  // ----------------------------------------------------------------
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getMetaData()
+   */
+  @Override
+  public MetaData getMetaData() {
+    return kb().getMetaData();
+  }
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatures()
+   */
+  @Override
+  public Features getFeatures() {
+    return kb().getFeatures();
+  }
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValues()
+   */
+  @Override
+  public FeatureValues getFeatureValues() {
+    return kb().getFeatureValues();
+  }
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getConcepts()
+   */
+  @Override
+  public Concepts getConcepts() {
+    return kb().getConcepts();
+  }
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getPurposes()
+   */
+  @Override
+  public Purposes getPurposes() {
+    return kb().getPurposes();
+  }
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getVariants()
+   */
+  @Override
+  public Variants getVariants() {
+    return kb().getVariants();
+  }
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getAlternatives()
+   */
+  @Override
+  public Alternatives getAlternatives() {
+    return kb().getAlternatives();
+  }
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getConstituents()
+   */
+  @Override
+  public Constituents getConstituents() {
+    return kb().getConstituents();
+  }
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getEvents()
+   */
+  @Override
+  public Events getEvents() {
+    return kb().getEvents();
+  }
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getRules()
+   */
+  @Override
+  public Rules getRules() {
+    return kb().getRules();
+  }
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getRelationParameters()
+   */
+  @Override
+  public RelationParameters getRelationParameters() {
+    return kb().getRelationParameters();
+  }
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getRelations()
+   */
+  @Override
+  public Relations getRelations() {
+    return kb().getRelations();
+  }
+
+  /**
+   * @param featureId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeature(java.lang.String)
+   */
+  @Override
+  public Feature getFeature(final String featureId) {
+    return kb().getFeature(featureId);
+  }
+
+  /**
+   * @param featureValueID
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValue(java.lang.String)
+   */
+  @Override
+  public FeatureValue getFeatureValue(final String featureValueID) {
+    return kb().getFeatureValue(featureValueID);
+  }
+
+  /**
+   * @param conceptID
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getConcept(java.lang.String)
+   */
+  @Override
+  public Concept getConcept(final String conceptID) {
+    return kb().getConcept(conceptID);
+  }
+
+  /**
+   * @param purposeId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getPurpose(java.lang.String)
+   */
+  @Override
+  public Purpose getPurpose(final String purposeId) {
+    return kb().getPurpose(purposeId);
+  }
+
+  /**
+   * @param variantId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getVariant(java.lang.String)
+   */
+  @Override
+  public Variant getVariant(final String variantId) {
+    return kb().getVariant(variantId);
+  }
+
+  /**
+   * @param eventId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getEvent(java.lang.String)
+   */
+  @Override
+  public Event getEvent(final String eventId) {
+    return kb().getEvent(eventId);
+  }
+
+  /**
+   * @param ruleId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getRule(java.lang.String)
+   */
+  @Override
+  public Rule getRule(final String ruleId) {
+    return kb().getRule(ruleId);
+  }
+
+  /**
+   * @param parameterID
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getRelationParameter(java.lang.String)
+   */
+  @Override
+  public RelationParameter getRelationParameter(final String parameterID) {
+    return kb().getRelationParameter(parameterID);
+  }
+
+  /**
+   * @param relationId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getRelation(java.lang.String)
+   */
+  @Override
+  public Relation getRelation(final String relationId) {
+    return kb().getRelation(relationId);
+  }
+
+  /**
+   * @param purposeId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFulfills(java.lang.String)
+   */
+  @Override
+  public Fulfills getFulfills(final String purposeId) {
+    return kb().getFulfills(purposeId);
+  }
+
+  /**
+   * @param variantId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getConstitutes(java.lang.String)
+   */
+  @Override
+  public Constitutes getConstitutes(final String variantId) {
+    return kb().getConstitutes(variantId);
+  }
+
+  /**
+   * @param variantId
+   * @param purposeId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getQuantity(java.lang.String,java.lang.String)
+   */
+  @Override
+  public long getQuantity(final String variantId, final String purposeId) {
+    return kb().getQuantity(variantId, purposeId);
+  }
+
+  /**
+   * @param variantId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatures(java.lang.String)
+   */
+  @Override
+  public Features getFeatures(final String variantId) {
+    return kb().getFeatures(variantId);
+  }
+
+  /**
+   * @param conceptID
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValuesOfConcept(java.lang.String)
+   */
+  @Override
+  public FeatureValues getFeatureValuesOfConcept(final String conceptID) {
+    return kb().getFeatureValuesOfConcept(conceptID);
+  }
+
+  /**
+   * @param featureId
+   * @param rangeID
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValuesWithinRange(java.lang.String,java.lang.String)
+   */
+  @Override
+  public FeatureValues getFeatureValuesWithinRange(final String featureId, final String rangeID) {
+    return kb().getFeatureValuesWithinRange(featureId, rangeID);
+  }
+
+  /**
+   * @param variantId
+   * @param featureId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValues(java.lang.String,java.lang.String)
+   */
+  @Override
+  public FeatureValues getFeatureValues(final String variantId, final String featureId) {
+    return kb().getFeatureValues(variantId, featureId);
+  }
+
+  /**
+   * @param variantId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getAttachedConcepts(java.lang.String)
+   */
+  @Override
+  public Concepts getAttachedConcepts(final String variantId) {
+    return kb().getAttachedConcepts(variantId);
+  }
+
+  /**
+   * @param variantId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getAttachedEvents(java.lang.String)
+   */
+  @Override
+  public Events getAttachedEvents(final String variantId) {
+    return kb().getAttachedEvents(variantId);
+  }
+
+  /**
+   * @param variantId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getAttachedRules(java.lang.String)
+   */
+  @Override
+  public Rules getAttachedRules(final String variantId) {
+    return kb().getAttachedRules(variantId);
+  }
+
+  /**
+   * @param variantId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getAttachedRelationParameters(java.lang.String)
+   */
+  @Override
+  public RelationParameters getAttachedRelationParameters(final String variantId) {
+    return kb().getAttachedRelationParameters(variantId);
+  }
+
+  /**
+   * @param variantId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getAttachedRelations(java.lang.String)
+   */
+  @Override
+  public Relations getAttachedRelations(final String variantId) {
+    return kb().getAttachedRelations(variantId);
+  }
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getRootPurposes()
+   */
+  @Override
+  public Purposes getRootPurposes() {
+    return kb().getRootPurposes();
+  }
+
+  /**
+   * @param purposeId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFulfillingVariants(java.lang.String)
+   */
+  @Override
+  public Variants getFulfillingVariants(final String purposeId) {
+    return kb().getFulfillingVariants(purposeId);
+  }
+
+  /**
+   * @param purposeId
+   * @param variantId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#isFulfilledBy(java.lang.String,java.lang.String)
+   */
+  @Override
+  public boolean isFulfilledBy(final String purposeId, final String variantId) {
+    return kb().isFulfilledBy(purposeId, variantId);
+  }
+
+  /**
+   * @param variantId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getConstitutingPurposes(java.lang.String)
+   */
+  @Override
+  public Purposes getConstitutingPurposes(final String variantId) {
+    return kb().getConstitutingPurposes(variantId);
+  }
+
+  /**
+   * @param variantId
+   * @param purposeId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#isConstitutedBy(java.lang.String,java.lang.String)
+   */
+  @Override
+  public boolean isConstitutedBy(final String variantId, final String purposeId) {
+    return kb().isConstitutedBy(variantId, purposeId);
+  }
+
+  /**
+   * @param variantId
+   * @param conceptID
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#hasConcept(java.lang.String,java.lang.String)
+   */
+  @Override
+  public boolean hasConcept(final String variantId, final String conceptID) {
+    return kb().hasConcept(variantId, conceptID);
+  }
+
+  /**
+   * @param variantId
+   * @param featureId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#hasFeature(java.lang.String,java.lang.String)
+   */
+  @Override
+  public boolean hasFeature(final String variantId, final String featureId) {
+    return kb().hasFeature(variantId, featureId);
+  }
+
+  /**
+   * @param featureID
+   * @param featureValueID
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#hasFeatureValue(java.lang.String,java.lang.String)
+   */
+  @Override
+  public boolean hasFeatureValue(final String featureID, final String featureValueID) {
+    return kb().hasFeatureValue(featureID, featureValueID);
+  }
+
+  /**
+   * @param featureValueID
+   * @param conceptID
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#isIncludedIn(java.lang.String,java.lang.String)
+   */
+  @Override
+  public boolean isIncludedIn(final String featureValueID, final String conceptID) {
+    return kb().isIncludedIn(featureValueID, conceptID);
+  }
+
+  /**
+   * @param variantId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeaturesView(java.lang.String)
+   */
+  @Override
+  public List<Feature> getFeaturesView(final String variantId) {
+    return kb().getFeaturesView(variantId);
+  }
+
+  /**
+   * @param conceptID
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValuesOfConceptView(java.lang.String)
+   */
+  @Override
+  public List<FeatureValue> getFeatureValuesOfConceptView(final String conceptID) {
+    return kb().getFeatureValuesOfConceptView(conceptID);
+  }
+
+  /**
+   * @param variantId
+   * @param featureId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValuesView(java.lang.String,java.lang.String)
+   */
+  @Override
+  public List<FeatureValue> getFeatureValuesView(final String variantId, final String featureId) {
+    return kb().getFeatureValuesView(variantId, featureId);
+  }
+
+  /**
+   * @param purposeId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFulfillingVariantsView(java.lang.String)
+   */
+  @Override
+  public List<Variant> getFulfillingVariantsView(final String purposeId) {
+    return kb().getFulfillingVariantsView(purposeId);
+  }
+
+  /**
+   * @param variantId
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getConstitutingPurposesView(java.lang.String)
+   */
+  @Override
+  public List<Purpose> getConstitutingPurposesView(final String variantId) {
+    return kb().getConstitutingPurposesView(variantId);
+  }
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#isValid()
+   */
+  @Override
+  public boolean isValid() {
+    return kb().isValid();
+  }
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getStringPool()
+   */
+  @Override
+  public StringPool getStringPool() {
+    return kb().getStringPool();
+  }
+
+  // ----------------------------------------------------------------
+
+  private static final class Version {
+
+    private final int number;
+    private final KnowledgeBase kb;
+    private int references; // guarded by versions
+
+    private Version(final int number, final KnowledgeBase kb) {
+      this.number = number;
+      this.kb = kb;
+    }
+  }
+
+  private static final class ReloaderThreadFactory implements ThreadFactory {
+
+    private final String name;
+
+    private ReloaderThreadFactory(final String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Thread newThread(final Runnable r) {
+      final Thread t = new Thread(r, this.name);
+      t.setDaemon(true);
+      t.setPriority(Thread.MIN_PRIORITY);
+      return t;
+    }
+  }
+}
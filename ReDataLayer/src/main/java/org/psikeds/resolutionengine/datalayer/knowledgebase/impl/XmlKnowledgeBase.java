@@ -14,15 +14,22 @@
  *******************************************************************************/
 package org.psikeds.resolutionengine.datalayer.knowledgebase.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.commons.lang.StringUtils;
 
+import org.psikeds.common.util.StringPool;
 import org.psikeds.knowledgebase.xml.KBParserCallback;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.transformer.Transformer;
@@ -39,6 +46,8 @@ import org.psikeds.resolutionengine.datalayer.vo.Event;
 import org.psikeds.resolutionengine.datalayer.vo.Events;
 import org.psikeds.resolutionengine.datalayer.vo.Feature;
 import org.psikeds.resolutionengine.datalayer.vo.FeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueList;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange;
 import org.psikeds.resolutionengine.datalayer.vo.FeatureValues;
 import org.psikeds.resolutionengine.datalayer.vo.Features;
 import org.psikeds.resolutionengine.datalayer.vo.Fulfills;
@@ -62,6 +71,16 @@ import org.psikeds.resolutionengine.datalayer.vo.Variants;
  * Afterwards it encapsulates all Knowledge in a Map and provides Accessors
  * to it.
  * 
+ * If an Executor is set, the Sections of the XML-Data (Sensors, Concepts,
+ * Variants, Events, ...) are transformed and stored by the Threads of the
+ * Executor while the Parser continues reading. Only Sections referencing
+ * other Sections (e.g. Variants referencing Feature-Values and Concepts)
+ * wait for them. {@link #awaitSections()} must be invoked after Parsing.
+ * 
+ * Besides JAXB-Objects this Callback also accepts Sections already mapped to
+ * Value-Objects (Features, Concepts, Variants, ...) by a Parser like
+ * {@link StaxKnowledgeBaseParser}. These are stored immediately.
+ * 
  * @see org.psikeds.knowledgebase.xml.KBParserCallback
  * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase
  * 
@@ -88,6 +107,7 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
 
   private static final String KEY_PREFIX_FEATURE = "kb.feature.";
   private static final String KEY_PREFIX_FEATURE_VALUE = "kb.featurevalue.";
+  private static final String KEY_PREFIX_VALUE_RANGE = "kb.valuerange.";
   private static final String KEY_PREFIX_CONCEPT = "kb.concept.";
   private static final String KEY_PREFIX_PURPOSE = "kb.purpose.";
   private static final String KEY_PREFIX_VARIANT = "kb.variant.";
@@ -109,12 +129,21 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
 
   private Map<String, Object> knowledge;
   private Transformer trans;
+  private StringPool stringPool;
   private boolean valid;
   private boolean failOnUnexpected;
   private boolean ignoreImplicitVariants;
   private boolean ignoreDerivations;
   private boolean ignoreSecondaryConcepts;
 
+  // Sections loaded by the Executor; only accessed by the Thread of the Parser
+  private Executor executor;
+  private final List<FutureTask<Void>> sections = new ArrayList<FutureTask<Void>>();
+  private FutureTask<Void> sensorsLoaded;
+  private FutureTask<Void> conceptsLoaded;
+  private FutureTask<Void> constituentsLoaded;
+  private FutureTask<Void> parametersLoaded;
+
   public XmlKnowledgeBase() {
     this(null);
   }
@@ -145,6 +174,8 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
 
   public void setTransformer(final Transformer trans) {
     this.trans = (trans != null ? trans : new Xml2VoTransformer());
+    // Pool of this Version, kept even if the Transformer gets a new one
+    this.stringPool = this.trans.getStringPool();
   }
 
   public Map<String, Object> getKnowledge() {
@@ -175,6 +206,50 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
     this.ignoreSecondaryConcepts = ignoreSecondaryConcepts;
   }
 
+  public Executor getExecutor() {
+    return this.executor;
+  }
+
+  /**
+   * @param executor
+   *          Executor for loading Sections concurrently; null for loading
+   *          them sequentially within the Thread of the Parser
+   */
+  public void setExecutor(final Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Wait until all Sections handed over to the Executor are loaded.
+   * 
+   * @throws ValidationException
+   *           Error of the first failed Section in Document-Order
+   */
+  public void awaitSections() throws ValidationException {
+    try {
+      for (final FutureTask<Void> task : this.sections) {
+        await(task);
+      }
+    }
+    catch (final InterruptedException iex) {
+      Thread.currentThread().interrupt();
+      throw new ValidationException("Interrupted while loading XML-Elements.", iex);
+    }
+    catch (final ExecutionException exex) {
+      for (final FutureTask<Void> task : this.sections) {
+        task.cancel(false);
+      }
+      throw toValidationException(exex.getCause());
+    }
+    finally {
+      this.sections.clear();
+      this.sensorsLoaded = null;
+      this.conceptsLoaded = null;
+      this.constituentsLoaded = null;
+      this.parametersLoaded = null;
+    }
+  }
+
   // ----------------------------------------------------------------
   // Methods required for the Interface KnowledgeBase
   // ----------------------------------------------------------------
@@ -306,7 +381,14 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
    */
   @Override
   public FeatureValue getFeatureValue(final String featureValueID) {
-    return (FeatureValue) load(KEY_PREFIX_FEATURE_VALUE, featureValueID);
+    final FeatureValue fv = (FeatureValue) load(KEY_PREFIX_FEATURE_VALUE, featureValueID);
+    if (fv != null) {
+      return fv;
+    }
+    // values of ranges are not materialized but created by their range
+    final String rangeID = FeatureValueRange.getRangeID(featureValueID);
+    final FeatureValueRange<?> range = (rangeID == null ? null : (FeatureValueRange<?>) load(KEY_PREFIX_VALUE_RANGE, rangeID));
+    return (range == null ? null : range.getFeatureValue(featureValueID));
   }
 
   /**
@@ -476,8 +558,12 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
   public FeatureValues getFeatureValuesWithinRange(final String featureId, final String rangeID) {
     final FeatureValues values = new FeatureValues();
     final Feature f = (StringUtils.isEmpty(featureId) ? null : getFeature(featureId));
-    if (f != null) {
-      for (final FeatureValue val : f.getValues()) {
+    final FeatureValueRange<? extends FeatureValue> range = (f == null ? null : f.getRange(rangeID));
+    if (range != null) {
+      values.addValue(range);
+    }
+    else if (f != null) {
+      for (final FeatureValue val : FeatureValueList.getDiscreteValues(f.getValues())) {
         if (FeatureValueHelper.isWithinRange(featureId, rangeID, val)) {
           values.addValue(val);
         }
@@ -498,11 +584,16 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
     final FeatureValues values = new FeatureValues();
     final Variant v = (StringUtils.isEmpty(variantId) ? null : getVariant(variantId));
     if (v != null) {
-      for (final FeatureValue fv : v.getFeatureValues()) {
+      for (final FeatureValue fv : FeatureValueList.getDiscreteValues(v.getFeatureValues())) {
         if ((fv != null) && fv.getFeatureID().equals(featureId)) {
           values.addValue(fv);
         }
       }
+      for (final FeatureValueRange<? extends FeatureValue> range : FeatureValueList.getRanges(v.getFeatureValues())) {
+        if (range.getFeatureID().equals(featureId)) {
+          values.addValue(range);
+        }
+      }
     }
     return values;
   }
@@ -736,6 +827,60 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
     return false;
   }
 
+  // ----------------------------------------------------------------
+
+  /**
+   * @param variantId
+   * @return unmodifiable List of all features of this variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeaturesView(java.lang.String)
+   */
+  @Override
+  public List<Feature> getFeaturesView(final String variantId) {
+    return Collections.unmodifiableList(getFeatures(variantId).getFeature());
+  }
+
+  /**
+   * @param conceptID
+   * @return unmodifiable List of all values bundled in this concept
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValuesOfConceptView(java.lang.String)
+   */
+  @Override
+  public List<FeatureValue> getFeatureValuesOfConceptView(final String conceptID) {
+    return Collections.unmodifiableList(getFeatureValuesOfConcept(conceptID).getValue());
+  }
+
+  /**
+   * @param variantId
+   * @param featureId
+   * @return unmodifiable List of all values for this feature on this variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValuesView(java.lang.String,
+   *      java.lang.String)
+   */
+  @Override
+  public List<FeatureValue> getFeatureValuesView(final String variantId, final String featureId) {
+    return FeatureValueList.unmodifiableCopy(getFeatureValues(variantId, featureId).getValue());
+  }
+
+  /**
+   * @param purposeId
+   * @return unmodifiable List of all variants fulfilling this purpose
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFulfillingVariantsView(java.lang.String)
+   */
+  @Override
+  public List<Variant> getFulfillingVariantsView(final String purposeId) {
+    return Collections.unmodifiableList(getFulfillingVariants(purposeId).getVariant());
+  }
+
+  /**
+   * @param variantId
+   * @return unmodifiable List of all purposes that constitute this variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getConstitutingPurposesView(java.lang.String)
+   */
+  @Override
+  public List<Purpose> getConstitutingPurposesView(final String variantId) {
+    return Collections.unmodifiableList(getConstitutingPurposes(variantId).getPurpose());
+  }
+
   /**
    * @return true if knowledge base is valid or false if any problems were detected during
    *         loading/initialization
@@ -746,6 +891,15 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
     return this.valid;
   }
 
+  /**
+   * @return Pool of all Strings of this Version
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getStringPool()
+   */
+  @Override
+  public StringPool getStringPool() {
+    return this.stringPool;
+  }
+
   // ----------------------------------------------------------------
   // Method required for the Interface KBParserCallback
   // ----------------------------------------------------------------
@@ -800,6 +954,40 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
       else if (element instanceof org.psikeds.knowledgebase.jaxb.Relations) {
         setRelations((org.psikeds.knowledgebase.jaxb.Relations) element);
       }
+      // Value-Objects already mapped by the Parser, e.g. StaxKnowledgeBaseParser
+      else if (element instanceof MetaData) {
+        setMetaData((MetaData) element);
+      }
+      else if (element instanceof Features) {
+        setFeatures((Features) element);
+      }
+      else if (element instanceof Concepts) {
+        setConcepts((Concepts) element);
+      }
+      else if (element instanceof Purposes) {
+        setPurposes((Purposes) element);
+      }
+      else if (element instanceof Variants) {
+        setVariants((Variants) element);
+      }
+      else if (element instanceof Alternatives) {
+        setAlternatives((Alternatives) element);
+      }
+      else if (element instanceof Constituents) {
+        setConstituents((Constituents) element);
+      }
+      else if (element instanceof Events) {
+        setEvents((Events) element);
+      }
+      else if (element instanceof RelationParameters) {
+        setRelationParameters((RelationParameters) element);
+      }
+      else if (element instanceof Rules) {
+        setRules((Rules) element);
+      }
+      else if (element instanceof Relations) {
+        setRelations((Relations) element);
+      }
       else if (this.failOnUnexpected) {
         throw new ValidationException("Unexpected XML-Element!");
       }
@@ -825,6 +1013,167 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
   // Internal Helpers
   // ----------------------------------------------------------------
 
+  // ----------------------------------------------------------------
+  // Sections: cross-references between Sections are synchronized by
+  // waiting for the referenced Section, all other Sections are loaded
+  // independently of each other.
+  // ----------------------------------------------------------------
+
+  private void setSensors(final org.psikeds.knowledgebase.jaxb.Sensors sensors) {
+    this.sensorsLoaded = submit(sensors, new Runnable() {
+      @Override
+      public void run() {
+        loadSensors(sensors);
+      }
+    });
+  }
+
+  private void setConcepts(final org.psikeds.knowledgebase.jaxb.Concepts concepts) {
+    this.conceptsLoaded = submit(concepts, new Runnable() {
+      @Override
+      public void run() {
+        loadConcepts(concepts);
+      }
+    }, this.sensorsLoaded);
+  }
+
+  private void setPurposes(final org.psikeds.knowledgebase.jaxb.Purposes purps) {
+    submit(purps, new Runnable() {
+      @Override
+      public void run() {
+        loadPurposes(purps);
+      }
+    });
+  }
+
+  private void setVariants(final org.psikeds.knowledgebase.jaxb.Variants vars) {
+    submit(vars, new Runnable() {
+      @Override
+      public void run() {
+        loadVariants(vars);
+      }
+    }, this.sensorsLoaded, this.conceptsLoaded);
+  }
+
+  private void setAlternatives(final org.psikeds.knowledgebase.jaxb.Alternatives alts) {
+    submit(alts, new Runnable() {
+      @Override
+      public void run() {
+        loadAlternatives(alts);
+      }
+    });
+  }
+
+  private void setConstituents(final org.psikeds.knowledgebase.jaxb.Constituents cons) {
+    this.constituentsLoaded = submit(cons, new Runnable() {
+      @Override
+      public void run() {
+        loadConstituents(cons);
+      }
+    });
+  }
+
+  private void setDerivations(final org.psikeds.knowledgebase.jaxb.Derivations derivations) {
+    submit(derivations, new Runnable() {
+      @Override
+      public void run() {
+        loadDerivations(derivations);
+      }
+    }, this.constituentsLoaded);
+  }
+
+  private void setEvents(final org.psikeds.knowledgebase.jaxb.Events evnts) {
+    submit(evnts, new Runnable() {
+      @Override
+      public void run() {
+        loadEvents(evnts);
+      }
+    });
+  }
+
+  private void setParameters(final org.psikeds.knowledgebase.jaxb.Parameters parameters) {
+    this.parametersLoaded = submit(parameters, new Runnable() {
+      @Override
+      public void run() {
+        loadParameters(parameters);
+      }
+    });
+  }
+
+  private void setRules(final org.psikeds.knowledgebase.jaxb.Rules rules) {
+    submit(rules, new Runnable() {
+      @Override
+      public void run() {
+        loadRules(rules);
+      }
+    });
+  }
+
+  private void setRelations(final org.psikeds.knowledgebase.jaxb.Relations relations) {
+    submit(relations, new Runnable() {
+      @Override
+      public void run() {
+        loadRelations(relations);
+      }
+    }, this.sensorsLoaded, this.parametersLoaded);
+  }
+
+  private FutureTask<Void> submit(final Object element, final Runnable section, final FutureTask<?>... dependencies) {
+    if (this.executor == null) {
+      section.run(); // sequentially within the Thread of the Parser
+      return null;
+    }
+    final FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        for (final FutureTask<?> d : dependencies) {
+          if (d != null) {
+            try {
+              await(d);
+            }
+            catch (final ExecutionException exex) {
+              throw toValidationException(exex.getCause());
+            }
+          }
+        }
+        try {
+          section.run();
+          return null;
+        }
+        catch (final ValidationException vaex) {
+          LOGGER.error("Could not handle XML-Element: " + String.valueOf(element), vaex);
+          throw vaex;
+        }
+        catch (final Exception ex) {
+          final String errmsg = "Could not handle XML-Element: " + String.valueOf(element);
+          LOGGER.error(errmsg, ex);
+          throw new ValidationException(errmsg, ex);
+        }
+      }
+    });
+    this.sections.add(task);
+    this.executor.execute(task);
+    return task;
+  }
+
+  /**
+   * Wait for a Task. If it was not started yet, it is executed within the
+   * current Thread, so waiting Threads never block the Executor.
+   */
+  private static <V> V await(final FutureTask<V> task) throws InterruptedException, ExecutionException {
+    task.run(); // no-op if already running or done
+    return task.get();
+  }
+
+  private static ValidationException toValidationException(final Throwable t) {
+    if (t instanceof ValidationException) {
+      return (ValidationException) t;
+    }
+    return new ValidationException(String.valueOf(t.getMessage()), t);
+  }
+
+  // ----------------------------------------------------------------
+
   private void setKnowledgebase(final org.psikeds.knowledgebase.jaxb.Knowledgebase kb) {
     if (kb != null) {
       setMetaData(kb.getMeta());
@@ -858,41 +1207,54 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
     }
   }
 
-  private void setSensors(final org.psikeds.knowledgebase.jaxb.Sensors sensors) {
+  private void loadSensors(final org.psikeds.knowledgebase.jaxb.Sensors sensors) {
     final Features allFeatures = new Features();
-    final FeatureValues allValues = new FeatureValues();
     final List<org.psikeds.knowledgebase.jaxb.Sensor> slist = (sensors == null ? null : sensors.getSensor());
     if ((slist != null) && !slist.isEmpty()) {
       for (final org.psikeds.knowledgebase.jaxb.Sensor sensor : slist) {
         final Feature f = this.trans.xml2ValueObject(sensor);
-        final String fid = (f == null ? null : f.getFeatureID());
-        if (!StringUtils.isEmpty(fid)) {
+        if ((f != null) && !StringUtils.isEmpty(f.getFeatureID())) {
           allFeatures.addFeature(f);
-          save(KEY_PREFIX_FEATURE, fid, f);
-          final List<FeatureValue> vlist = f.getValues();
-          for (final FeatureValue val : vlist) {
-            final String fvid = (val == null ? null : val.getFeatureValueID());
-            if (!StringUtils.isEmpty(fvid)) {
-              allValues.addValue(val);
-              save(KEY_PREFIX_FEATURE_VALUE, fvid, val);
-            }
+        }
+      }
+    }
+    setFeatures(allFeatures);
+  }
+
+  private void setFeatures(final Features allFeatures) {
+    final FeatureValues allValues = new FeatureValues();
+    final List<Feature> flist = allFeatures.getFeature();
+    for (final Feature f : flist) {
+      final String fid = (f == null ? null : f.getFeatureID());
+      if (!StringUtils.isEmpty(fid)) {
+        save(KEY_PREFIX_FEATURE, fid, f);
+        for (final FeatureValue val : FeatureValueList.getDiscreteValues(f.getValues())) {
+          final String fvid = (val == null ? null : val.getFeatureValueID());
+          if (!StringUtils.isEmpty(fvid)) {
+            allValues.addValue(val);
+            save(KEY_PREFIX_FEATURE_VALUE, fvid, val);
           }
         }
+        // ranges are saved symbolically, i.e. their values are never materialized
+        for (final FeatureValueRange<? extends FeatureValue> range : f.getRanges()) {
+          allValues.addValue(range);
+          save(KEY_PREFIX_VALUE_RANGE, range.getRangeID(), range);
+        }
       }
     }
     save(KEY_ALL_FEATURES, allFeatures);
     save(KEY_ALL_FEATURE_VALUES, allValues);
   }
 
-  private void setConcepts(final org.psikeds.knowledgebase.jaxb.Concepts concepts) {
+  private void loadConcepts(final org.psikeds.knowledgebase.jaxb.Concepts concepts) {
     final Concepts allConcepts = new Concepts();
     final List<org.psikeds.knowledgebase.jaxb.Concept> clist = (concepts == null ? null : concepts.getConcept());
     if ((clist != null) && !clist.isEmpty()) {
       for (final org.psikeds.knowledgebase.jaxb.Concept concept : clist) {
-        final String cid = (concept == null ? null : concept.getId());
+        final String cid = (concept == null ? null : this.trans.intern(concept.getId()));
         if (!StringUtils.isEmpty(cid)) {
-          final String label = concept.getLabel();
-          final String description = concept.getDescription();
+          final String label = this.trans.intern(concept.getLabel());
+          final String description = this.trans.intern(concept.getDescription());
           // we will not use the transformer ...
           final Concept c = new Concept(label, description, cid);
           final org.psikeds.knowledgebase.jaxb.Attributes attributes = concept.getAttributes();
@@ -909,19 +1271,29 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
               if (StringUtils.isEmpty(featureID) || !featureID.equals(fv.getFeatureID())) {
                 throw new IllegalArgumentException("Illegal Reference from Concept " + cid + " to Feature-ID " + featureID);
               }
-              c.addFeatureId(featureID);
+              c.addFeatureId(fv.getFeatureID()); // pooled instance of the same ID
               c.addValue(fv); // do not create a new object but save existing reference
             }
           }
           allConcepts.addConcept(c);
-          save(KEY_PREFIX_CONCEPT, cid, c);
         }
       }
     }
+    setConcepts(allConcepts);
+  }
+
+  private void setConcepts(final Concepts allConcepts) {
+    final List<Concept> clist = allConcepts.getConcept();
+    for (final Concept c : clist) {
+      final String cid = (c == null ? null : c.getConceptID());
+      if (!StringUtils.isEmpty(cid)) {
+        save(KEY_PREFIX_CONCEPT, cid, c);
+      }
+    }
     save(KEY_ALL_CONCEPTS, allConcepts);
   }
 
-  private void setPurposes(final org.psikeds.knowledgebase.jaxb.Purposes purps) {
+  private void loadPurposes(final org.psikeds.knowledgebase.jaxb.Purposes purps) {
     if (purps != null) {
       setPurposes(this.trans.xml2ValueObject(purps));
     }
@@ -944,16 +1316,16 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
     }
   }
 
-  private void setVariants(final org.psikeds.knowledgebase.jaxb.Variants vars) {
+  private void loadVariants(final org.psikeds.knowledgebase.jaxb.Variants vars) {
     final Variants allVariants = new Variants();
     final List<org.psikeds.knowledgebase.jaxb.Variant> vlst = (vars == null ? null : vars.getVariant());
     if ((vlst != null) && !vlst.isEmpty()) {
       for (final org.psikeds.knowledgebase.jaxb.Variant var : vlst) {
-        final String vid = (var == null ? null : var.getId());
+        final String vid = (var == null ? null : this.trans.intern(var.getId()));
         if (!StringUtils.isEmpty(vid)) {
           // we will not use the transformer ...
-          final String label = var.getLabel();
-          final String description = var.getDescription();
+          final String label = this.trans.intern(var.getLabel());
+          final String description = this.trans.intern(var.getDescription());
           final boolean singleton = (var.isSingleton() == null ? Variant.DEFAULT_IS_SINGLETON : var.isSingleton().booleanValue());
           final String variantType = (var.getType() == null ? null : var.getType().value());
           final boolean implicit = (StringUtils.isEmpty(variantType) ? Variant.DEFAULT_IS_IMPLICIT : org.psikeds.knowledgebase.jaxb.VarType.IMPLICIT.value().equals(variantType));
@@ -968,7 +1340,7 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
                 final String featureID = (attr == null ? null : attr.getSensedByRef());
                 final List<org.psikeds.knowledgebase.jaxb.Attribute> alist = attr.getAttribute();
                 if (!StringUtils.isEmpty(featureID) && (alist != null) && !alist.isEmpty()) {
-                  v.addFeatureId(featureID);
+                  v.addFeatureId(this.trans.intern(featureID));
                   for (final org.psikeds.knowledgebase.jaxb.Attribute a : alist) {
                     final String featureValueID = (a == null ? null : a.getRef());
                     final FeatureValue fv = (StringUtils.isEmpty(featureValueID) ? null : getFeatureValue(featureValueID));
@@ -995,10 +1367,8 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
                   if ((fvlst == null) || fvlst.isEmpty()) {
                     throw new IllegalArgumentException("Illegal Reference from Variant " + vid + " to Range " + rangeID + " of Feature " + featureID);
                   }
-                  v.addFeatureId(featureID);
-                  for (final FeatureValue fv : fvlst) {
-                    v.addFeatureValue(fv);
-                  }
+                  v.addFeatureId(this.trans.intern(featureID));
+                  v.addFeatureValue(fvlst);
                 }
               }
             }
@@ -1013,7 +1383,6 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
                   throw new IllegalArgumentException("Illegal Reference from Variant " + vid + " to primary Concept " + conceptID);
                 }
                 v.addConcept(c);
-                attachConcept(vid, c);
                 for (final String fid : c.getFeatureIds()) {
                   v.addFeatureId(fid);
                 }
@@ -1036,27 +1405,48 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
                   throw new IllegalArgumentException("Illegal Reference from Variant " + vid + " to secondary Concept " + conceptID);
                 }
                 v.addConcept(c);
-                attachConcept(vid, c);
                 for (final String fid : c.getFeatureIds()) {
                   v.addFeatureId(fid);
                 }
               }
             }
           }
-          if (!v.isImplicit()) {
-            allVariants.addVariant(v);
-            save(KEY_PREFIX_VARIANT, vid, v);
+          allVariants.addVariant(v);
+        }
+      }
+    }
+    setVariants(allVariants);
+  }
+
+  /**
+   * Stores all explicit Variants and, depending on the Settings, also the
+   * implicit ones.
+   * 
+   * @param vars
+   *          all Variants of the Knowledge-Base including implicit ones
+   */
+  private void setVariants(final Variants vars) {
+    final Variants allVariants = new Variants();
+    final List<Variant> vlst = vars.getVariant();
+    for (final Variant v : vlst) {
+      final String vid = (v == null ? null : v.getVariantID());
+      if (!StringUtils.isEmpty(vid)) {
+        for (final Concept c : v.getConcepts()) {
+          attachConcept(vid, c);
+        }
+        if (!v.isImplicit()) {
+          allVariants.addVariant(v);
+          save(KEY_PREFIX_VARIANT, vid, v);
+        }
+        else {
+          if (this.ignoreImplicitVariants) {
+            LOGGER.info("Skipping implicit Variant {}", vid);
           }
           else {
-            if (this.ignoreImplicitVariants) {
-              LOGGER.info("Skipping implicit Variant {}", vid);
-            }
-            else {
-              LOGGER.info("Implicit Variant {} will be interpreted as explicit!", vid);
-              v.setImplicit(false);
-              allVariants.addVariant(v);
-              save(KEY_PREFIX_VARIANT, vid, v);
-            }
+            LOGGER.info("Implicit Variant {} will be interpreted as explicit!", vid);
+            v.setImplicit(false);
+            allVariants.addVariant(v);
+            save(KEY_PREFIX_VARIANT, vid, v);
           }
         }
       }
@@ -1064,7 +1454,7 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
     save(KEY_ALL_VARIANTS, allVariants);
   }
 
-  private void setAlternatives(final org.psikeds.knowledgebase.jaxb.Alternatives alts) {
+  private void loadAlternatives(final org.psikeds.knowledgebase.jaxb.Alternatives alts) {
     if (alts != null) {
       setAlternatives(this.trans.xml2ValueObject(alts));
     }
@@ -1081,7 +1471,7 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
     }
   }
 
-  private void setConstituents(final org.psikeds.knowledgebase.jaxb.Constituents cons) {
+  private void loadConstituents(final org.psikeds.knowledgebase.jaxb.Constituents cons) {
     if (cons != null) {
       setConstituents(this.trans.xml2ValueObject(cons));
     }
@@ -1098,7 +1488,7 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
     }
   }
 
-  private void setDerivations(final org.psikeds.knowledgebase.jaxb.Derivations derivations) {
+  private void loadDerivations(final org.psikeds.knowledgebase.jaxb.Derivations derivations) {
     final List<org.psikeds.knowledgebase.jaxb.Setup> setup = (derivations == null ? null : derivations.getSetup());
     if ((setup != null) && !setup.isEmpty()) {
       if (this.ignoreDerivations || this.ignoreImplicitVariants) {
@@ -1111,7 +1501,7 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
     }
   }
 
-  private void setEvents(final org.psikeds.knowledgebase.jaxb.Events evnts) {
+  private void loadEvents(final org.psikeds.knowledgebase.jaxb.Events evnts) {
     if (evnts != null) {
       setEvents(this.trans.xml2ValueObject(evnts));
     }
@@ -1130,7 +1520,7 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
     }
   }
 
-  private void setParameters(final org.psikeds.knowledgebase.jaxb.Parameters parameters) {
+  private void loadParameters(final org.psikeds.knowledgebase.jaxb.Parameters parameters) {
     final RelationParameters allParams = new RelationParameters();
     final List<org.psikeds.knowledgebase.jaxb.Parameter> params = (parameters == null ? null : parameters.getParameter());
     if ((params != null) && !params.isEmpty()) {
@@ -1139,15 +1529,25 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
         final String parameterID = (param == null ? null : param.getParameterID());
         if (!StringUtils.isEmpty(parameterID)) {
           allParams.addParameter(param);
-          save(KEY_PREFIX_RELATION_PARAM, parameterID, param);
-          attachRelationParameter(param);
         }
       }
     }
+    setRelationParameters(allParams);
+  }
+
+  private void setRelationParameters(final RelationParameters allParams) {
+    final List<RelationParameter> params = allParams.getParameter();
+    for (final RelationParameter param : params) {
+      final String parameterID = (param == null ? null : param.getParameterID());
+      if (!StringUtils.isEmpty(parameterID)) {
+        save(KEY_PREFIX_RELATION_PARAM, parameterID, param);
+        attachRelationParameter(param);
+      }
+    }
     save(KEY_ALL_RELATION_PARAMS, allParams);
   }
 
-  private void setRules(final org.psikeds.knowledgebase.jaxb.Rules rules) {
+  private void loadRules(final org.psikeds.knowledgebase.jaxb.Rules rules) {
     if (rules != null) {
       setRules(this.trans.xml2ValueObject(rules));
     }
@@ -1166,36 +1566,66 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
     }
   }
 
-  private void setRelations(final org.psikeds.knowledgebase.jaxb.Relations relations) {
+  private void loadRelations(final org.psikeds.knowledgebase.jaxb.Relations relations) {
     final Relations allRelations = new Relations();
     try {
       LOGGER.trace("--> setRelations()");
       final List<org.psikeds.knowledgebase.jaxb.Relation> rellst = (relations == null ? null : relations.getRelation());
       if ((rellst != null) && !rellst.isEmpty()) {
         for (final org.psikeds.knowledgebase.jaxb.Relation rel : rellst) {
-          final String relationID = (rel == null ? null : rel.getId());
+          final String relationID = (rel == null ? null : this.trans.intern(rel.getId()));
           if (!StringUtils.isEmpty(relationID)) {
-            final String label = rel.getLabel();
-            final String description = rel.getDescription();
-            final String variantID = rel.getNexusRef();
-            final String conditionalEventID = rel.getCondRef();
+            final String label = this.trans.intern(rel.getLabel());
+            final String description = this.trans.intern(rel.getDescription());
+            final String variantID = this.trans.intern(rel.getNexusRef());
+            final String conditionalEventID = this.trans.intern(rel.getCondRef());
             final RelationOperator operator = this.trans.xml2ValueObject(rel.getRelType());
             final RelationParameter leftSide = createRelationParameter(variantID, this.trans.xml2ValueObject(rel.getLpType()), rel.getLpRef());
             final RelationParameter rightSide = createRelationParameter(variantID, this.trans.xml2ValueObject(rel.getRpType()), rel.getRpRef());
-            final Relation r = new Relation(label, description, relationID, variantID, leftSide, rightSide, operator, conditionalEventID);
-            allRelations.addRelation(r);
-            save(KEY_PREFIX_RELATION, relationID, r);
-            attachRelation(r);
+            allRelations.addRelation(new Relation(label, description, relationID, variantID, leftSide, rightSide, operator, conditionalEventID));
           }
         }
       }
-      save(KEY_ALL_RELATIONS, allRelations);
+      setRelations(allRelations);
     }
     finally {
       LOGGER.trace("<-- setRelations(); Relations =\n{}", allRelations);
     }
   }
 
+  /**
+   * Stores all Relations. Parameters for constant Values are created
+   * together with their Relations, so they are stored here, too.
+   * 
+   * @param allRelations
+   */
+  private void setRelations(final Relations allRelations) {
+    final List<Relation> rellst = allRelations.getRelation();
+    for (final Relation r : rellst) {
+      final String relationID = (r == null ? null : r.getRelationID());
+      if (!StringUtils.isEmpty(relationID)) {
+        setConstantParameter(r.getLeftSide());
+        setConstantParameter(r.getRightSide());
+        save(KEY_PREFIX_RELATION, relationID, r);
+        attachRelation(r);
+      }
+    }
+    save(KEY_ALL_RELATIONS, allRelations);
+  }
+
+  private void setConstantParameter(final RelationParameter param) {
+    if ((param != null) && param.isConstant()) {
+      RelationParameters allParams = getRelationParameters();
+      if (allParams == null) { // strange but possible
+        allParams = new RelationParameters();
+      }
+      allParams.addParameter(param);
+      save(KEY_ALL_RELATION_PARAMS, allParams);
+      save(KEY_PREFIX_RELATION_PARAM, param.getParameterID(), param);
+      attachRelationParameter(param);
+    }
+  }
+
   private RelationParameter createRelationParameter(final String variantID, final String parameterType, final String parameterValue) {
     RelationParameter param = null;
     try {
@@ -1209,17 +1639,8 @@ public class XmlKnowledgeBase implements KnowledgeBase, KBParserCallback {
         final FeatureValue fv = getFeatureValue(parameterValue);
         final String featureValueID = (fv == null ? null : fv.getFeatureValueID());
         if (!StringUtils.isEmpty(featureValueID)) {
-          // create a new parameter for this constant value
+          // create a new parameter for this constant value, it is stored together with its relation
           param = new RelationParameter(variantID, featureValueID);
-          final String parameterID = param.getParameterID();
-          RelationParameters allParams = getRelationParameters();
-          if (allParams == null) { // strange but possible
-            allParams = new RelationParameters();
-          }
-          allParams.addParameter(param);
-          save(KEY_ALL_RELATION_PARAMS, allParams);
-          save(KEY_PREFIX_RELATION_PARAM, parameterID, param);
-          attachRelationParameter(param);
         }
       }
       else {
@@ -17,9 +17,14 @@ package org.psikeds.resolutionengine.datalayer.knowledgebase.impl;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.validation.Schema;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,17 +34,21 @@ import org.apache.commons.lang.Validate;
 
 import org.springframework.beans.factory.InitializingBean;
 
+import org.psikeds.common.util.StringPool;
 import org.psikeds.knowledgebase.xml.KBParser;
 import org.psikeds.knowledgebase.xml.KBValidator;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBaseFactory;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.transformer.Transformer;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.transformer.impl.Xml2VoTransformer;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.ValidationException;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.ValidatorChain;
 
 /**
  * This implementation of a KnowledgeBaseFactory is reading the Knowledge-Data
- * from an XML-Source.
+ * from an XML-Source. The resulting KnowledgeBase is an immutable
+ * {@link IndexedKnowledgeBase}.
  * 
  * @author marco@juliano.de
  * 
@@ -52,7 +61,9 @@ public class XmlKnowledgeBaseFactory implements InitializingBean, KnowledgeBaseF
   private List<Validator> validatorChain; // list of semantic validators
   private KBValidator xsdValidator; // syntactic validator
   private KBParser xmlParser;
-  private final XmlKnowledgeBase kb;
+  private Transformer trans;
+  private int validationThreads; // <= 0 for number of processors
+  private int parsingThreads; // <= 0 for number of processors, 1 for sequential loading
 
   public XmlKnowledgeBaseFactory() {
     this(null);
@@ -79,7 +90,9 @@ public class XmlKnowledgeBaseFactory implements InitializingBean, KnowledgeBaseF
     this.validatorChain = validatorChain;
     this.xsdValidator = xsdValidator;
     this.xmlParser = xmlParser;
-    this.kb = new XmlKnowledgeBase(trans);
+    this.validationThreads = ValidatorChain.DEFAULT_PARALLELISM;
+    this.parsingThreads = ValidatorChain.DEFAULT_PARALLELISM;
+    setTransformer(trans);
   }
 
   // ----------------------------------------------------------------
@@ -93,8 +106,7 @@ public class XmlKnowledgeBaseFactory implements InitializingBean, KnowledgeBaseF
   @Override
   public void afterPropertiesSet() throws Exception {
     Validate.notNull(this.xmlParser, "No XML-Parser!");
-    Validate.notNull(this.kb, "No Knowledge-Base!");
-    Validate.notNull(this.kb.getTransformer(), "No XML-Transformer!");
+    Validate.notNull(this.trans, "No XML-Transformer!");
     if (!this.validate) {
       LOGGER.info("Knowledge-Base is NOT validated!");
     }
@@ -154,58 +166,122 @@ public class XmlKnowledgeBaseFactory implements InitializingBean, KnowledgeBaseF
     this.xmlParser = xmlParser;
   }
 
+  public int getValidationThreads() {
+    return this.validationThreads;
+  }
+
+  public void setValidationThreads(final int validationThreads) {
+    this.validationThreads = validationThreads;
+  }
+
+  public int getParsingThreads() {
+    return this.parsingThreads;
+  }
+
+  public void setParsingThreads(final int parsingThreads) {
+    this.parsingThreads = parsingThreads;
+  }
+
   public Transformer getTransformer() {
-    return this.kb.getTransformer();
+    return this.trans;
   }
 
   public void setTransformer(final Transformer trans) {
-    this.kb.setTransformer(trans);
+    this.trans = (trans != null ? trans : new Xml2VoTransformer());
+  }
+
+  /**
+   * Describe everything besides the XML-Source itself that influences the
+   * created Knowledge-Base, i.e. Parser, Transformer, Rounding-Mode of
+   * Float-Values, Validation-Flag and the Chain of semantic Validators.
+   * 
+   * @return String describing the Configuration of this Factory
+   */
+  public String getConfiguration() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("parser=").append(className(this.xmlParser));
+    sb.append(";transformer=").append(className(this.trans));
+    if (this.trans instanceof Xml2VoTransformer) {
+      sb.append(";roundingMode=").append(((Xml2VoTransformer) this.trans).getDefaultFloatValueRoundingMode());
+    }
+    sb.append(";validate=").append(this.validate);
+    sb.append(";xsd=").append(className(this.xsdValidator));
+    sb.append(";validators=");
+    if (this.validatorChain != null) {
+      for (final Validator val : this.validatorChain) {
+        sb.append(className(val)).append(',');
+      }
+    }
+    return sb.toString();
+  }
+
+  private static String className(final Object obj) {
+    return (obj == null ? "null" : obj.getClass().getName());
   }
 
   // ----------------------------------------------------------------
 
   /**
-   * Factory Method: Parse XML and create new Knowledge-Base
+   * Factory Method: Parse XML and create new Knowledge-Base.
+   * 
+   * Every Invocation creates a new and independent Knowledge-Base with its
+   * own Pool of Strings, so a Knowledge-Base created before is not affected
+   * by a Reload and its Strings are released together with it.
+   * 
+   * The XML is read only once: Syntax-Validation against the XSD is done by
+   * the XML-Parser while unmarshalling the XML-Elements.
+   * 
+   * The Sections of the XML-Data are loaded concurrently by a Pool of
+   * parsing Threads while the XML-Parser continues reading.
    * 
    * @return KnowledgeBase
    * @throws ValidationException
    * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBaseFactory#create()
    */
   @Override
-  public KnowledgeBase create() throws ValidationException {
+  public synchronized KnowledgeBase create() throws ValidationException {
+    final long start = System.currentTimeMillis();
+    ExecutorService executor = null;
     try {
       LOGGER.trace("--> create()");
 
-      // Step 0: Knowledge-Base not loaded and not valid yet.
-      this.kb.setValid(false);
+      // Step 0: New Knowledge-Base with its own Pool of Strings, not loaded and not valid yet.
+      this.trans.setStringPool(new StringPool());
+      final XmlKnowledgeBase kb = new XmlKnowledgeBase(this.trans);
+      final int threads = (this.parsingThreads <= 0 ? ValidatorChain.DEFAULT_PARALLELISM : this.parsingThreads);
+      if (threads > 1) {
+        executor = Executors.newFixedThreadPool(threads, new ParserThreadFactory());
+        kb.setExecutor(executor);
+      }
 
-      // Step 1: Validate syntactical structure of XML against XSD (if specified)
+      // Step 1: Get compiled XSD for validating syntactical structure of XML (if specified)
+      Schema schema = null;
       if (this.validate && (this.xsdValidator != null)) {
-        LOGGER.debug("Syntax-Validation of XML against XSD.");
-        this.xsdValidator.validate();
+        LOGGER.debug("Syntax-Validation of XML against XSD while parsing.");
+        schema = this.xsdValidator.getSchema();
       }
 
-      // Step 2: Parse XML and create data structure of Knowledge-Base
+      // Step 2: Parse and validate XML and create data structure of Knowledge-Base
       LOGGER.debug("Parsing XML and creating data structures.");
-      this.xmlParser.setCallbackHandler(this.kb);
-      this.xmlParser.parseXmlElements();
+      this.xmlParser.setCallbackHandler(kb);
+      this.xmlParser.parseXmlElements(schema);
+      kb.awaitSections();
+      LOGGER.debug("Parsed XML within {} ms.", (System.currentTimeMillis() - start));
 
       // Step 3: Validate data structure of Knowledge-Base regarding logical consistency
       if (this.validate && (this.validatorChain != null) && !this.validatorChain.isEmpty()) {
         LOGGER.debug("Semantic-Validation of Data Structures regarding logical Consistency.");
-        for (final Validator val : getValidators()) {
-          if (val != null) {
-            if (LOGGER.isTraceEnabled()) {
-              LOGGER.trace(String.valueOf(val));
-            }
-            val.validate(this.kb);
-          }
-        }
+        new ValidatorChain(getValidators(), this.validationThreads).validate(kb);
       }
 
       // Step 4: No Exception, everything ok!
-      this.kb.setValid(true);
-      return this.kb;
+      kb.setValid(true);
+
+      // Step 5: Build immutable Indexes for fast Access at Runtime
+      LOGGER.debug("Indexing Data Structures of Knowledge-Base.");
+      final KnowledgeBase ikb = new IndexedKnowledgeBase(kb);
+      LOGGER.info("Created Knowledge-Base within {} ms.", (System.currentTimeMillis() - start));
+      return ikb;
     }
     catch (final XMLStreamException xmlex) {
       throw new ValidationException("XML or XSD not readable.", xmlex);
@@ -214,13 +290,36 @@ public class XmlKnowledgeBaseFactory implements InitializingBean, KnowledgeBaseF
       throw new ValidationException("XML data is not valid against the XSD.", saxex);
     }
     catch (final JAXBException jaxbex) {
+      if (jaxbex.getLinkedException() instanceof SAXException) {
+        // Unmarshaller reports Schema-Violations as wrapped SAXParseException
+        throw new ValidationException("XML data is not valid against the XSD.", jaxbex);
+      }
       throw new ValidationException("Cannot create Java Objects from XML data.", jaxbex);
     }
     catch (final IOException ioex) {
       throw new ValidationException("Cannot read data from Stream.", ioex);
     }
     finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+      // Pool is dropped together with its Version, Transformer must not keep it
+      this.trans.setStringPool(null);
       LOGGER.trace("<-- create()");
     }
   }
+
+  // ----------------------------------------------------------------
+
+  private static class ParserThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable r) {
+      final Thread t = new Thread(r, "KnowledgeBase-Parser-" + this.counter.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
 }
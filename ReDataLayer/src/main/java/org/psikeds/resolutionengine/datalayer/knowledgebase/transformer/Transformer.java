@@ -14,6 +14,8 @@
  *******************************************************************************/
 package org.psikeds.resolutionengine.datalayer.knowledgebase.transformer;
 
+import org.psikeds.common.util.StringPool;
+
 /**
  * Helper for transforming a JAXB XML Object from the Knowledgebase into a
  * Value Object for the Datalayer.<br>
@@ -25,6 +27,25 @@ package org.psikeds.resolutionengine.datalayer.knowledgebase.transformer;
  */
 public interface Transformer {
 
+  /**
+   * @return Pool of all Strings of the Knowledgebase currently transformed
+   */
+  StringPool getStringPool();
+
+  /**
+   * @param stringPool
+   *          Pool for the next Version of the Knowledgebase; null for a new
+   *          and empty Pool
+   */
+  void setStringPool(final StringPool stringPool);
+
+  /**
+   * @param str
+   *          ID, Reference, Label or Description
+   * @return pooled Instance of this String
+   */
+  String intern(final String str);
+
   org.psikeds.resolutionengine.datalayer.vo.Alternatives xml2ValueObject(final org.psikeds.knowledgebase.jaxb.Alternatives xml);
 
   org.psikeds.resolutionengine.datalayer.vo.Constituents xml2ValueObject(final org.psikeds.knowledgebase.jaxb.Constituents xml);
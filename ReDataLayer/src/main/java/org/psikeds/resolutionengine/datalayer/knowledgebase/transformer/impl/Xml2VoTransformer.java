@@ -24,6 +24,8 @@ import org.apache.commons.lang.StringUtils;
 
 import org.springframework.beans.factory.InitializingBean;
 
+import org.psikeds.common.util.StringPool;
+
 import org.psikeds.resolutionengine.datalayer.knowledgebase.transformer.Transformer;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.util.FeatureValueHelper;
 import org.psikeds.resolutionengine.datalayer.vo.Alternatives;
@@ -52,6 +54,11 @@ import org.psikeds.resolutionengine.datalayer.vo.Rules;
  * The Knowledgebase is read-only, therefore only transformations XML to VO
  * are supported / allowed.<br>
  * 
+ * All IDs, References, Labels and Descriptions are taken from a
+ * {@link StringPool}, so that every distinct String of the Knowledgebase
+ * is kept only once. Every Version of the Knowledgebase gets its own Pool,
+ * which is dropped together with that Version.<br>
+ * 
  * @author marco@juliano.de
  */
 public class Xml2VoTransformer implements InitializingBean, Transformer {
@@ -59,29 +66,41 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
   private static final Logger LOGGER = LoggerFactory.getLogger(Xml2VoTransformer.class);
 
   private int defaultFloatValueRoundingMode;
-  private int defaultMaxValueRangeSize;
+  private StringPool stringPool;
 
   public Xml2VoTransformer() {
-    this(FloatFeatureValue.DEFAULT_ROUNDING_MODE, FeatureValueHelper.DEFAULT_MAXIMUM_SIZE);
+    this(FloatFeatureValue.DEFAULT_ROUNDING_MODE);
   }
 
-  public Xml2VoTransformer(final String roundingMode, final int maxRangeSize) {
-    this(FloatFeatureValue.DEFAULT_ROUNDING_MODE, maxRangeSize);
+  public Xml2VoTransformer(final String roundingMode) {
+    this(FloatFeatureValue.DEFAULT_ROUNDING_MODE);
     setDefaultFloatValueRoundingMode(roundingMode);
   }
 
-  public Xml2VoTransformer(final int roundingMode, final int maxRangeSize) {
+  public Xml2VoTransformer(final int roundingMode) {
     super();
     setDefaultFloatValueRoundingMode(roundingMode);
-    setDefaultMaxValueRangeSize(maxRangeSize);
+    setStringPool(null);
   }
 
-  public int getDefaultMaxValueRangeSize() {
-    return this.defaultMaxValueRangeSize;
+  /**
+   * @return Pool of all Strings of the Knowledgebase currently transformed
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.transformer.Transformer#getStringPool()
+   */
+  @Override
+  public StringPool getStringPool() {
+    return this.stringPool;
   }
 
-  public void setDefaultMaxValueRangeSize(final int maxRangeSize) {
-    this.defaultMaxValueRangeSize = (maxRangeSize < 0 ? FeatureValueHelper.DEFAULT_MAXIMUM_SIZE : maxRangeSize);
+  /**
+   * @param stringPool
+   *          Pool for the next Version of the Knowledgebase; null for a new
+   *          and empty Pool
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.transformer.Transformer#setStringPool(org.psikeds.common.util.StringPool)
+   */
+  @Override
+  public void setStringPool(final StringPool stringPool) {
+    this.stringPool = (stringPool == null ? new StringPool() : stringPool);
   }
 
   public int getDefaultFloatValueRoundingMode() {
@@ -108,14 +127,28 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
   public void afterPropertiesSet() throws Exception {
     // nothing todo, just print settings
     if (LOGGER.isInfoEnabled()) {
-      final StringBuilder sb = new StringBuilder("Config: Float-Value Rounding-Mode: {}\n");
-      sb.append("Maximum size of Value-Ranges: {}");
-      LOGGER.info(sb.toString(), this.defaultFloatValueRoundingMode, this.defaultMaxValueRangeSize);
+      LOGGER.info("Config: Float-Value Rounding-Mode: {}", this.defaultFloatValueRoundingMode);
     }
   }
 
   // ----------------------------------------------------------------
 
+  /**
+   * @param str
+   * @return pooled Instance of str
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.transformer.Transformer#intern(java.lang.String)
+   */
+  @Override
+  public String intern(final String str) {
+    return this.stringPool.intern(str);
+  }
+
+  private List<String> intern(final List<String> lst) {
+    return this.stringPool.intern(lst);
+  }
+
+  // ----------------------------------------------------------------
+
   /**
    * @param xml
    * @return vo
@@ -158,7 +191,7 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
     Constitutes vo = null;
     if (xml != null) {
       vo = new Constitutes();
-      vo.setVariantID(xml.getPvRef());
+      vo.setVariantID(intern(xml.getPvRef()));
       for (final org.psikeds.knowledgebase.jaxb.Component comp : xml.getComponent()) {
         if (comp != null) {
           vo.addComponent(xml2ValueObject(comp));
@@ -172,7 +205,7 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
   private Component xml2ValueObject(final org.psikeds.knowledgebase.jaxb.Component xml) {
     Component vo = null;
     if (xml != null) {
-      final String purposeID = xml.getPsRef();
+      final String purposeID = intern(xml.getPsRef());
       final long quantity = (xml.getQuantity() == null ? Component.DEFAULT_QUANTITY : xml.getQuantity().longValue());
       vo = new Component(purposeID, quantity);
     }
@@ -202,11 +235,11 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
     Constitutes vo = null;
     if (xml != null) {
       vo = new Constitutes();
-      vo.setVariantID(xml.getPvImplRef());
+      vo.setVariantID(intern(xml.getPvImplRef()));
       final long quantity = Component.DEFAULT_QUANTITY;
       for (final String purposeID : xml.getPsRefs()) {
         if (!StringUtils.isEmpty(purposeID)) {
-          vo.addComponent(new Component(purposeID, quantity));
+          vo.addComponent(new Component(intern(purposeID), quantity));
         }
       }
       LOGGER.trace("xml2ValueObject: xml = {}\n--> vo = {}", xml, vo);
@@ -242,17 +275,17 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
   public Event xml2ValueObject(final org.psikeds.knowledgebase.jaxb.Event xml) {
     Event vo = null;
     if (xml != null) {
-      final String eventID = xml.getId();
-      final String label = xml.getLabel();
-      final String description = xml.getDescription();
-      final String variantID = xml.getNexusRef();
-      final List<String> context = xml.getContextPath();
+      final String eventID = intern(xml.getId());
+      final String label = intern(xml.getLabel());
+      final String description = intern(xml.getDescription());
+      final String variantID = intern(xml.getNexusRef());
+      final List<String> context = intern(xml.getContextPath());
       String triggerID = null;
       String triggerType = null;
       boolean notEvent = Event.DEFAULT_NOT_EVENT;
       final org.psikeds.knowledgebase.jaxb.Trigger trigger = xml.getTrigger();
       if (trigger != null) {
-        triggerID = trigger.getRef();
+        triggerID = intern(trigger.getRef());
         triggerType = xml2ValueObject(trigger.getType());
         if (trigger.isNotEvent() != null) {
           notEvent = trigger.isNotEvent().booleanValue();
@@ -286,10 +319,10 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
   public Feature xml2ValueObject(final org.psikeds.knowledgebase.jaxb.Sensor xml) {
     Feature vo = null;
     if (xml != null) {
-      final String featureID = xml.getId();
-      final String label = xml.getLabel();
-      final String description = xml.getDescription();
-      final String unit = xml.getUnit();
+      final String featureID = intern(xml.getId());
+      final String label = intern(xml.getLabel());
+      final String description = intern(xml.getDescription());
+      final String unit = intern(xml.getUnit());
       vo = new Feature(label, description, featureID, unit);
       final org.psikeds.knowledgebase.jaxb.Values values = xml.getValues();
       if (values != null) {
@@ -297,7 +330,7 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
           for (final org.psikeds.knowledgebase.jaxb.SensedStringValue strval : values.getStrValue()) {
             if (strval != null) {
               vo.setType(Feature.VALUE_TYPE_STRING);
-              vo.addValue(new FeatureValue(featureID, strval.getId(), strval.getValue()));
+              vo.addValue(new FeatureValue(featureID, intern(strval.getId()), intern(strval.getValue())));
             }
           }
         }
@@ -307,15 +340,15 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
               final org.psikeds.knowledgebase.jaxb.SensedIntValue intval = (org.psikeds.knowledgebase.jaxb.SensedIntValue) serial;
               final long val = (intval.getValue() == null ? 0 : intval.getValue().longValue());
               vo.setType(Feature.VALUE_TYPE_INTEGER);
-              vo.addValue(new IntegerFeatureValue(featureID, intval.getId(), val));
+              vo.addValue(new IntegerFeatureValue(featureID, intern(intval.getId()), val));
             }
             else if (serial instanceof org.psikeds.knowledgebase.jaxb.IntRange) {
               final org.psikeds.knowledgebase.jaxb.IntRange intrange = (org.psikeds.knowledgebase.jaxb.IntRange) serial;
-              final String rangeID = intrange.getId();
+              final String rangeID = intern(intrange.getId());
               final long min = (intrange.getMin() == null ? 0 : intrange.getMin().longValue());
               final long max = (intrange.getMax() == null ? 0 : intrange.getMax().longValue());
               final long inc = (intrange.getInc() == null ? FeatureValueHelper.DEFAULT_RANGE_STEP : intrange.getInc().longValue());
-              final List<IntegerFeatureValue> intvallst = FeatureValueHelper.calculateIntegerRange(featureID, rangeID, min, max, inc, this.defaultMaxValueRangeSize);
+              final List<IntegerFeatureValue> intvallst = FeatureValueHelper.calculateIntegerRange(featureID, rangeID, min, max, inc);
               vo.setType(Feature.VALUE_TYPE_INTEGER);
               vo.addValue(intvallst);
             }
@@ -328,7 +361,7 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
           for (final Serializable serial : values.getFloatValueOrFloatRange()) {
             if (serial instanceof org.psikeds.knowledgebase.jaxb.SensedFloatValue) {
               final org.psikeds.knowledgebase.jaxb.SensedFloatValue floatval = (org.psikeds.knowledgebase.jaxb.SensedFloatValue) serial;
-              final FloatFeatureValue ffv = new FloatFeatureValue(featureID, floatval.getId(), floatval.getValue(), xml2ValueObject(floatval.getRoundingMode()));
+              final FloatFeatureValue ffv = new FloatFeatureValue(featureID, intern(floatval.getId()), floatval.getValue(), xml2ValueObject(floatval.getRoundingMode()));
               if (floatval.getScale() != null) {
                 ffv.setScale(floatval.getScale().intValue());
               }
@@ -337,13 +370,13 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
             }
             else if (serial instanceof org.psikeds.knowledgebase.jaxb.FloatRange) {
               final org.psikeds.knowledgebase.jaxb.FloatRange floatrange = (org.psikeds.knowledgebase.jaxb.FloatRange) serial;
-              final String rangeID = floatrange.getId();
+              final String rangeID = intern(floatrange.getId());
               int scale = FloatFeatureValue.MIN_FLOAT_SCALE;
               if (floatrange.getScale() != null) {
                 scale = floatrange.getScale().intValue();
               }
               final List<FloatFeatureValue> floatvallst = FeatureValueHelper.calculateFloatRange(featureID, rangeID, floatrange.getMin(), floatrange.getMax(), floatrange.getInc(),
-                  scale, xml2ValueObject(floatrange.getRoundingMode()), this.defaultMaxValueRangeSize);
+                  scale, xml2ValueObject(floatrange.getRoundingMode()));
               vo.setType(Feature.VALUE_TYPE_FLOAT);
               vo.addValue(floatvallst);
             }
@@ -368,7 +401,15 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
     return roundingModeStr2Int((xml == null) ? null : xml.value());
   }
 
-  private int roundingModeStr2Int(final String str) {
+  /**
+   * Maps the XML-Representation of a Rounding-Mode to the Constants of
+   * FloatFeatureValue.
+   * 
+   * @param str
+   *          Rounding-Mode as defined in XSD, e.g. "mathematical"
+   * @return Rounding-Mode; the default one if str is empty or unknown
+   */
+  public int roundingModeStr2Int(final String str) {
     int mode = this.defaultFloatValueRoundingMode;
     if (!StringUtils.isEmpty(str)) {
       if (org.psikeds.knowledgebase.jaxb.FloatValueRoundingMode.MATHEMATICAL.value().equalsIgnoreCase(str)) {
@@ -392,7 +433,7 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
    */
   @Override
   public Fulfills xml2ValueObject(final org.psikeds.knowledgebase.jaxb.Fulfills xml) {
-    return (xml == null ? null : new Fulfills(xml.getPsRef(), xml.getPvRefs()));
+    return (xml == null ? null : new Fulfills(intern(xml.getPsRef()), intern(xml.getPvRefs())));
   }
 
   /**
@@ -419,7 +460,7 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
     Purpose vo = null;
     if (xml != null) {
       final boolean root = (xml.isRoot() == null ? Purpose.DEFAULT_IS_ROOT : xml.isRoot().booleanValue());
-      vo = new Purpose(xml.getLabel(), xml.getDescription(), xml.getId(), root);
+      vo = new Purpose(intern(xml.getLabel()), intern(xml.getDescription()), intern(xml.getId()), root);
     }
     return vo;
   }
@@ -452,13 +493,13 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
   public RelationParameter xml2ValueObject(final org.psikeds.knowledgebase.jaxb.Parameter xml) {
     RelationParameter vo = null;
     if (xml != null) {
-      final String label = xml.getLabel();
-      final String description = xml.getDescription();
-      final String parameterID = xml.getId();
-      final String variantID = xml.getNexusRef();
-      final List<String> context = xml.getContextPath();
+      final String label = intern(xml.getLabel());
+      final String description = intern(xml.getDescription());
+      final String parameterID = intern(xml.getId());
+      final String variantID = intern(xml.getNexusRef());
+      final List<String> context = intern(xml.getContextPath());
       final org.psikeds.knowledgebase.jaxb.ValueSet vs = xml.getValueSet();
-      final String featureID = (vs == null ? null : vs.getSensorRef());
+      final String featureID = (vs == null ? null : intern(vs.getSensorRef()));
       vo = new RelationParameter(label, description, parameterID, variantID, context, featureID);
       LOGGER.trace("xml2ValueObject: xml = {}\n--> vo = {}", xml, vo);
     }
@@ -515,7 +556,8 @@ public class Xml2VoTransformer implements InitializingBean, Transformer {
    */
   @Override
   public Rule xml2ValueObject(final org.psikeds.knowledgebase.jaxb.Rule xml) {
-    return xml == null ? null : new Rule(xml.getLabel(), xml.getDescription(), xml.getId(), xml.getNexusRef(), xml.getPremiseRefs(), xml.getConclusioRef());
+    return xml == null ? null : new Rule(intern(xml.getLabel()), intern(xml.getDescription()), intern(xml.getId()), intern(xml.getNexusRef()), intern(xml.getPremiseRefs()),
+        intern(xml.getConclusioRef()));
   }
 
   /**
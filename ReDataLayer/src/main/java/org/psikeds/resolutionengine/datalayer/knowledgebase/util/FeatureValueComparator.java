@@ -14,10 +14,10 @@
  *******************************************************************************/
 package org.psikeds.resolutionengine.datalayer.knowledgebase.util;
 
-import java.math.BigDecimal;
 import java.util.Comparator;
 
 import org.psikeds.resolutionengine.datalayer.vo.FeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueKey;
 
 public class FeatureValueComparator implements Comparator<FeatureValue> {
 
@@ -31,62 +31,18 @@ public class FeatureValueComparator implements Comparator<FeatureValue> {
    * FeatureValue-Class itself, this method will just check the Values
    * and irgnore any IDs or Types!
    * 
+   * Both Values are compared by their pre-parsed {@link FeatureValueKey},
+   * i.e. Numbers mathematically and everything else alphabetically.
+   * 
    * @see java.util.Comparator#compare(Object, Object)
    * 
    */
   @Override
   public int compare(final FeatureValue fv1, final FeatureValue fv2) {
-    // 1. comparison of values as numbers
-    BigDecimal bd1 = null;
-    BigDecimal bd2 = null;
-    try {
-      bd1 = fv1.toBigDecimal();
-    }
-    catch (final Exception ex) {
-      bd1 = null;
-    }
-    try {
-      bd2 = fv2.toBigDecimal();
-    }
-    catch (final Exception ex) {
-      bd2 = null;
-    }
-    if ((bd1 != null) && (bd2 != null)) {
-      // mathematically compare numbers
-      return bd1.compareTo(bd2);
-    }
-    if ((bd1 == null) && (bd2 != null)) {
-      return -1;
-    }
-    if ((bd1 != null) && (bd2 == null)) {
-      return 1;
-    }
-    // 2. fallback to comparison of values as strings
-    String val1 = null;
-    try {
-      val1 = fv1.getValue().trim();
-    }
-    catch (final Exception ex) {
-      val1 = null;
-    }
-    String val2 = null;
-    try {
-      val2 = fv2.getValue().trim();
-    }
-    catch (final Exception ex) {
-      val2 = null;
-    }
-    if ((val1 != null) && (val2 != null)) {
-      // alphabetically compare strings
-      return val1.compareTo(val2);
-    }
-    if ((val1 == null) && (val2 != null)) {
-      return -1;
-    }
-    if ((val1 != null) && (val2 == null)) {
-      return 1;
-    }
-    // null equals null
-    return 0;
+    return toSortKey(fv1).compareTo(toSortKey(fv2));
+  }
+
+  private static FeatureValueKey toSortKey(final FeatureValue fv) {
+    return (fv == null ? FeatureValueKey.NULL_KEY : fv.toSortKey());
   }
 }
@@ -18,14 +18,21 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 
 import org.psikeds.resolutionengine.datalayer.vo.Feature;
 import org.psikeds.resolutionengine.datalayer.vo.FeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueKey;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange;
 import org.psikeds.resolutionengine.datalayer.vo.FloatFeatureValue;
-import org.psikeds.resolutionengine.datalayer.vo.IntegerFeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.FloatFeatureValueRange;
+import org.psikeds.resolutionengine.datalayer.vo.IntegerFeatureValueRange;
 
 /**
  * Helper for handling Features, Values and Ranges.
@@ -36,7 +43,6 @@ import org.psikeds.resolutionengine.datalayer.vo.IntegerFeatureValue;
 public abstract class FeatureValueHelper {
 
   public static final int DEFAULT_RANGE_STEP = 1;
-  public static final int DEFAULT_MAXIMUM_SIZE = 500;
 
   public static final FeatureValueComparator COMPARATOR = new FeatureValueComparator();
 
@@ -124,11 +130,13 @@ public abstract class FeatureValueHelper {
 
   // ----------------------------------------------------------------
 
-  public static List<IntegerFeatureValue> calculateIntegerRange(final String featureID, final String rangeID, final long min, final long max, final long inc) {
-    return calculateIntegerRange(featureID, rangeID, min, max, inc, DEFAULT_MAXIMUM_SIZE);
-  }
-
-  public static List<IntegerFeatureValue> calculateIntegerRange(final String featureID, final String rangeID, final long min, final long max, long inc, final long maxSize) {
+  /**
+   * Calculate a Range of Integer-Values. The Range is symbolic, i.e. its
+   * Values are not materialized, so its Size is not limited.
+   * 
+   * @return Range of all Values from Minimum to Maximum
+   */
+  public static IntegerFeatureValueRange calculateIntegerRange(final String featureID, final String rangeID, final long min, final long max, long inc) {
     if (inc == 0) {
       inc = DEFAULT_RANGE_STEP;
     }
@@ -138,55 +146,50 @@ public abstract class FeatureValueHelper {
     if ((inc < 0) && (max > min)) {
       throw new IllegalArgumentException("Minimum of Range " + rangeID + " must not be smaller than Maximum!");
     }
-    final List<IntegerFeatureValue> lst = new ArrayList<IntegerFeatureValue>();
-    long count = 1;
-    for (long l = min; (l <= max) && (count <= maxSize); l = l + inc) {
-      final String featureValueID = rangeID + "_I" + String.valueOf(count);
-      final IntegerFeatureValue ifv = new IntegerFeatureValue(featureID, featureValueID, l);
-      lst.add(ifv);
-      count++;
-    }
-    return lst;
+    final long count = ((max - min) / inc) + 1;
+    return new IntegerFeatureValueRange(featureID, rangeID, min, inc, checkSize(rangeID, count));
   }
 
   // ----------------------------------------------------------------
 
-  public static List<FloatFeatureValue> calculateFloatRange(final String featureID, final String rangeID, final BigDecimal min, final BigDecimal max, final BigDecimal inc) {
+  public static FloatFeatureValueRange calculateFloatRange(final String featureID, final String rangeID, final BigDecimal min, final BigDecimal max, final BigDecimal inc) {
     return calculateFloatRange(featureID, rangeID, min, max, inc, FloatFeatureValue.MIN_FLOAT_SCALE, FloatFeatureValue.DEFAULT_ROUNDING_MODE);
   }
 
-  public static List<FloatFeatureValue> calculateFloatRange(final String featureID, final String rangeID, final BigDecimal min, final BigDecimal max, final BigDecimal inc,
-      final int scale, final int roundingMode) {
-    return calculateFloatRange(featureID, rangeID, min, max, inc, scale, roundingMode, DEFAULT_MAXIMUM_SIZE);
-  }
-
-  public static List<FloatFeatureValue> calculateFloatRange(final String featureID, final String rangeID, final BigDecimal min, final BigDecimal max, final BigDecimal inc,
-      int scale, final int roundingMode, final int maxSize) {
-    float finc = (inc == null ? 0.0f : inc.floatValue());
-    if (finc == 0.0f) {
-      finc = DEFAULT_RANGE_STEP;
+  /**
+   * Calculate a Range of Float-Values. The Range is symbolic, i.e. its
+   * Values are not materialized. The Number of Values is calculated exactly,
+   * i.e. the Maximum is not lost due to accumulated Rounding-Errors.
+   * 
+   * @return Range of all Values from Minimum to Maximum
+   */
+  public static FloatFeatureValueRange calculateFloatRange(final String featureID, final String rangeID, final BigDecimal min, final BigDecimal max, final BigDecimal inc,
+      int scale, final int roundingMode) {
+    BigDecimal binc = inc;
+    if ((binc == null) || (binc.signum() == 0)) {
+      binc = BigDecimal.valueOf(DEFAULT_RANGE_STEP);
     }
     else if (scale == FloatFeatureValue.MIN_FLOAT_SCALE) {
       // scale is based on the increment, if not explicitly specified otherwise
       scale = inc.scale();
     }
-    final float fmin = (min == null ? 0.0f : min.floatValue());
-    final float fmax = (max == null ? 0.0f : max.floatValue());
-    if ((finc > 0.0f) && (fmax < fmin)) {
+    final BigDecimal bmin = (min == null ? BigDecimal.ZERO : min);
+    final BigDecimal bmax = (max == null ? BigDecimal.ZERO : max);
+    if ((binc.signum() > 0) && (bmax.compareTo(bmin) < 0)) {
       throw new IllegalArgumentException("Maximum of Range " + rangeID + " must not be smaller than Minimum!");
     }
-    if ((finc < 0.0f) && (fmax > fmin)) {
+    if ((binc.signum() < 0) && (bmax.compareTo(bmin) > 0)) {
       throw new IllegalArgumentException("Minimum of Range " + rangeID + " must not be smaller than Maximum!");
     }
-    final List<FloatFeatureValue> lst = new ArrayList<FloatFeatureValue>();
-    int count = 1;
-    for (float f = fmin; (f <= fmax) && (count <= maxSize); f = f + finc) {
-      final String featureValueID = rangeID + "_F" + String.valueOf(count);
-      final FloatFeatureValue ffv = new FloatFeatureValue(featureID, featureValueID, f, scale, roundingMode);
-      lst.add(ffv);
-      count++;
+    final long count = bmax.subtract(bmin).divide(binc, 0, BigDecimal.ROUND_DOWN).longValue() + 1;
+    return new FloatFeatureValueRange(featureID, rangeID, bmin, binc, checkSize(rangeID, count), scale, roundingMode);
+  }
+
+  private static int checkSize(final String rangeID, final long count) {
+    if (count > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Range " + rangeID + " contains more than " + Integer.MAX_VALUE + " Values!");
     }
-    return lst;
+    return (int) Math.max(0, count);
   }
 
   // ----------------------------------------------------------------
@@ -195,8 +198,15 @@ public abstract class FeatureValueHelper {
     if ((val == null) || StringUtils.isEmpty(featureId) || StringUtils.isEmpty(rangeID) || StringUtils.isEmpty(val.getFeatureValueID())) {
       return false;
     }
-    // when we generate values for ranges the feature-value-id will always start with the correpsonding range-id!
-    return (featureId.equals(val.getFeatureID()) && val.getFeatureValueID().startsWith(rangeID));
+    // when we generate values for ranges the feature-value-id is always the range-id followed by a prefix and the position within the range
+    final String featureValueID = val.getFeatureValueID();
+    if (!featureId.equals(val.getFeatureID())) {
+      return false;
+    }
+    if (FeatureValueRange.getPosition(rangeID + IntegerFeatureValueRange.PREFIX, featureValueID) >= 0) {
+      return true;
+    }
+    return (FeatureValueRange.getPosition(rangeID + FloatFeatureValueRange.PREFIX, featureValueID) >= 0);
   }
 
   // ----------------------------------------------------------------
@@ -347,15 +357,20 @@ public abstract class FeatureValueHelper {
 
   // ----------------------------------------------------------------
 
+  /**
+   * Hash-Join: Get all distinct Values of the List that are equal to any of
+   * the Reference-Values. O(n+m) instead of comparing all Pairs.
+   */
   public static List<FeatureValue> isEqual(final List<FeatureValue> lst, final List<FeatureValue> ref) {
     List<FeatureValue> result = null;
     if (lst != null) {
       result = new ArrayList<FeatureValue>();
       if ((ref != null) && !ref.isEmpty() && !lst.isEmpty()) {
-        for (final FeatureValue fv : ref) {
-          final List<FeatureValue> found = isEqual(lst, fv);
-          if ((found != null) && !found.isEmpty()) {
-            addAllDistinct(result, found);
+        final Set<FeatureValueKey> keys = toKeys(ref);
+        final Map<String, FeatureValue> index = new HashMap<String, FeatureValue>();
+        for (final FeatureValue fv : lst) {
+          if ((fv != null) && keys.contains(fv.toSortKey()) && !isContained(result, index, fv)) {
+            addIndexed(result, index, fv);
           }
         }
       }
@@ -363,6 +378,10 @@ public abstract class FeatureValueHelper {
     return result;
   }
 
+  /**
+   * Anti-Join: Get all Values of the List that are equal to none of the
+   * Reference-Values. O(n+m) instead of comparing all Pairs.
+   */
   public static List<FeatureValue> notEqual(final List<FeatureValue> lst, final List<FeatureValue> ref) {
     List<FeatureValue> result = null;
     if (lst != null) {
@@ -373,16 +392,10 @@ public abstract class FeatureValueHelper {
           result.addAll(lst);
         }
         else {
-          final List<FeatureValue> found = isEqual(lst, ref);
-          if ((found == null) || found.isEmpty()) {
-            // nothing equal, all distinct
-            result.addAll(lst);
-          }
-          else {
-            for (final FeatureValue fv : lst) {
-              if (!found.contains(fv)) {
-                result.add(fv);
-              }
+          final Set<FeatureValueKey> keys = toKeys(ref);
+          for (final FeatureValue fv : lst) {
+            if ((fv == null) || !keys.contains(fv.toSortKey())) {
+              result.add(fv);
             }
           }
         }
@@ -391,6 +404,16 @@ public abstract class FeatureValueHelper {
     return result;
   }
 
+  private static Set<FeatureValueKey> toKeys(final Collection<? extends FeatureValue> values) {
+    final Set<FeatureValueKey> keys = new HashSet<FeatureValueKey>(Math.max(16, values.size() * 2));
+    for (final FeatureValue fv : values) {
+      if (fv != null) {
+        keys.add(fv.toSortKey());
+      }
+    }
+    return keys;
+  }
+
   public static List<FeatureValue> lessThan(final List<FeatureValue> lst, final List<FeatureValue> ref) {
     return lessThan(lst, max(ref));
   }
@@ -411,17 +434,49 @@ public abstract class FeatureValueHelper {
 
   public static boolean addAllDistinct(final List<FeatureValue> targetList, final Collection<? extends FeatureValue> additionalElements) {
     boolean changed = false;
-    if ((targetList != null) && (additionalElements != null)) {
+    if ((targetList != null) && (additionalElements != null) && !additionalElements.isEmpty()) {
+      // index by ID, so that we do not have to scan the whole List for every Element
+      final Map<String, FeatureValue> index = new HashMap<String, FeatureValue>(Math.max(16, (targetList.size() + additionalElements.size()) * 2));
+      for (final FeatureValue fv : targetList) {
+        index(index, fv);
+      }
       for (final FeatureValue elem : additionalElements) {
-        if (!targetList.contains(elem)) {
+        if (!isContained(targetList, index, elem)) {
           changed = true;
-          targetList.add(elem);
+          addIndexed(targetList, index, elem);
         }
       }
     }
     return changed;
   }
 
+  // same result as lst.contains(fv), but usually without a linear scan
+  private static boolean isContained(final List<FeatureValue> lst, final Map<String, FeatureValue> index, final FeatureValue fv) {
+    final String fvid = (fv == null ? null : fv.getFeatureValueID());
+    if (StringUtils.isEmpty(fvid)) {
+      // values without ID are never equal to anything
+      return ((fv == null) && lst.contains(null));
+    }
+    final FeatureValue found = index.get(fvid);
+    if (found == null) {
+      return false;
+    }
+    // same ID but different Class is possible, but very unlikely
+    return (found.equals(fv) || lst.contains(fv));
+  }
+
+  private static void addIndexed(final List<FeatureValue> lst, final Map<String, FeatureValue> index, final FeatureValue fv) {
+    lst.add(fv);
+    index(index, fv);
+  }
+
+  private static void index(final Map<String, FeatureValue> index, final FeatureValue fv) {
+    final String fvid = (fv == null ? null : fv.getFeatureValueID());
+    if (!StringUtils.isEmpty(fvid) && !index.containsKey(fvid)) {
+      index.put(fvid, fv);
+    }
+  }
+
   public static void sort(final List<FeatureValue> lst) {
     if ((lst != null) && !lst.isEmpty()) {
       Collections.sort(lst, COMPARATOR);
@@ -24,6 +24,7 @@ import org.apache.commons.lang.StringUtils;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
 import org.psikeds.resolutionengine.datalayer.vo.Feature;
 import org.psikeds.resolutionengine.datalayer.vo.FeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange;
 import org.psikeds.resolutionengine.datalayer.vo.Purpose;
 import org.psikeds.resolutionengine.datalayer.vo.Relation;
 import org.psikeds.resolutionengine.datalayer.vo.RelationOperator;
@@ -414,4 +415,38 @@ public abstract class RelationHelper {
       return null;
     }
   }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Narrow a symbolic Range, i.e. Minimum, Maximum and Increment of the
+   * resulting Sub-Ranges are calculated without creating any Value.
+   * 
+   * @param left
+   *          Range of Values
+   * @param op
+   *          RelationOperator
+   * @param ref
+   *          Reference-Value
+   * @return Sub-Ranges fulfilling [ Value op Reference ]; null if the
+   *         Operator is unknown
+   */
+  public static <T extends FeatureValue> List<FeatureValueRange<T>> fulfillsOperation(final FeatureValueRange<T> left, final RelationOperator op, final FeatureValue ref) {
+    return ((op == null) || (left == null) ? null : left.select(op, ref));
+  }
+
+  /**
+   * @param left
+   *          Range of Values
+   * @param op
+   *          RelationOperator
+   * @param ref
+   *          Reference-Values, may contain Ranges, too
+   * @return Sub-Ranges fulfilling [ Value op References ]; null if the
+   *         Operator is unknown
+   * @see FeatureValueRange#select(RelationOperator, java.util.Collection)
+   */
+  public static <T extends FeatureValue> List<FeatureValueRange<T>> fulfillsOperation(final FeatureValueRange<T> left, final RelationOperator op, final List<FeatureValue> ref) {
+    return ((op == null) || (left == null) ? null : left.select(op, ref));
+  }
 }
@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.datalayer.knowledgebase.validator;
+
+import java.util.List;
+
+/**
+ * Validator that relies on other Validators, i.e. it must not be invoked
+ * before these Validators have accepted the Knowledge Base.
+ *
+ * @author marco@juliano.de
+ */
+public interface DependentValidator extends Validator {
+
+  /**
+   * @return Classes of all Validators this Validator depends on; never null
+   */
+  List<Class<? extends Validator>> getDependencies();
+}
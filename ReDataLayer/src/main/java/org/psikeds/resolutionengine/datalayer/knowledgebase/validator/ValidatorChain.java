@@ -0,0 +1,399 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.datalayer.knowledgebase.validator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+
+/**
+ * Chain of Validators, invoked either sequentially in the given Order or
+ * concurrently as a DAG: Every Validator is started as soon as all
+ * Validators it depends on (see {@link DependentValidator}) have accepted
+ * the Knowledge Base. Validators whose Dependencies failed are skipped.
+ *
+ * Validators may additionally partition their Entities across the Threads
+ * of the Chain, see {@link #checkAll(List, EntityCheck)}.
+ *
+ * Errors are aggregated in the Order of the Chain, i.e. the resulting
+ * ValidationException does not depend on the Scheduling of the Threads.
+ *
+ * Note: All Validators only read the Knowledge Base, therefore it must
+ * support concurrent Reads.
+ *
+ * @author marco@juliano.de
+ */
+public class ValidatorChain implements Validator {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ValidatorChain.class);
+
+  public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+  private static final int MIN_PARTITION_SIZE = 64;
+  private static final int PARTITIONS_PER_THREAD = 4;
+
+  /**
+   * Partitioner of the Chain currently running a Validator within this Thread.
+   */
+  private static final ThreadLocal<Partitioner> PARTITIONER = new ThreadLocal<Partitioner>();
+
+  private final List<Validator> validators;
+  private final int parallelism;
+
+  public ValidatorChain(final List<Validator> validators) {
+    this(validators, DEFAULT_PARALLELISM);
+  }
+
+  /**
+   * @param validators
+   *          List of Validators; Order is used for sequential Validation
+   *          and for reporting Errors
+   * @param parallelism
+   *          number of Threads; <= 0 for number of Processors, 1 for
+   *          sequential Validation
+   */
+  public ValidatorChain(final List<Validator> validators, final int parallelism) {
+    this.validators = new ArrayList<Validator>();
+    if (validators != null) {
+      for (final Validator val : validators) {
+        if (val != null) {
+          this.validators.add(val);
+        }
+      }
+    }
+    this.parallelism = (parallelism <= 0 ? DEFAULT_PARALLELISM : parallelism);
+  }
+
+  public List<Validator> getValidators() {
+    return this.validators;
+  }
+
+  public int getParallelism() {
+    return this.parallelism;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator#validate(org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase)
+   */
+  @Override
+  public void validate(final KnowledgeBase kb) throws ValidationException {
+    if ((this.parallelism <= 1) || (this.validators.size() <= 1)) {
+      validateSequentially(kb);
+    }
+    else {
+      validateConcurrently(kb);
+    }
+  }
+
+  private void validateSequentially(final KnowledgeBase kb) throws ValidationException {
+    for (final Validator val : this.validators) {
+      if (LOGGER.isTraceEnabled()) {
+        LOGGER.trace(String.valueOf(val));
+      }
+      val.validate(kb);
+    }
+  }
+
+  private void validateConcurrently(final KnowledgeBase kb) throws ValidationException {
+    final long start = System.currentTimeMillis();
+    final ExecutorService executor = Executors.newFixedThreadPool(this.parallelism, new ValidatorThreadFactory());
+    try {
+      final Partitioner partitioner = new Partitioner(executor, this.parallelism);
+      final List<Node> nodes = createNodes(kb, partitioner);
+      for (final Node n : nodes) {
+        executor.execute(n.task);
+      }
+      // wait for all Validators and collect Errors in the Order of the Chain
+      final List<ValidationException> errors = new ArrayList<ValidationException>();
+      for (final Node n : nodes) {
+        final ValidationException vex = n.await();
+        if ((vex != null) && !(vex instanceof SkippedException)) {
+          errors.add(vex);
+        }
+      }
+      LOGGER.debug("Validated KnowledgeBase with {} Threads within {} ms.", this.parallelism, (System.currentTimeMillis() - start));
+      if (errors.size() == 1) {
+        throw errors.get(0);
+      }
+      if (!errors.isEmpty()) {
+        final StringBuilder sb = new StringBuilder("KnowledgeBase is not valid:");
+        for (final ValidationException vex : errors) {
+          sb.append(' ');
+          sb.append(vex.getMessage());
+        }
+        throw new ValidationException(sb.toString(), errors.get(0));
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private List<Node> createNodes(final KnowledgeBase kb, final Partitioner partitioner) throws ValidationException {
+    final List<Node> nodes = new ArrayList<Node>();
+    for (final Validator val : this.validators) {
+      nodes.add(new Node(val, kb, partitioner));
+    }
+    for (final Node n : nodes) {
+      if (n.validator instanceof DependentValidator) {
+        final List<Class<? extends Validator>> deps = ((DependentValidator) n.validator).getDependencies();
+        for (final Class<? extends Validator> clazz : deps) {
+          boolean found = false;
+          for (final Node d : nodes) {
+            if ((d != n) && clazz.isInstance(d.validator)) {
+              n.dependencies.add(d);
+              found = true;
+            }
+          }
+          if (!found) {
+            LOGGER.debug("{} depends on {} which is not part of the Chain.", n.validator.getClass().getName(), clazz.getName());
+          }
+        }
+      }
+    }
+    checkCycles(nodes);
+    return nodes;
+  }
+
+  private static void checkCycles(final List<Node> nodes) throws ValidationException {
+    // Kahn: repeatedly remove Nodes without unresolved Dependencies
+    final List<Node> open = new ArrayList<Node>(nodes);
+    final List<Node> resolved = new ArrayList<Node>();
+    boolean progress = true;
+    while (!open.isEmpty() && progress) {
+      progress = false;
+      for (int idx = 0; idx < open.size(); idx++) {
+        final Node n = open.get(idx);
+        if (resolved.containsAll(n.dependencies)) {
+          resolved.add(n);
+          open.remove(idx--);
+          progress = true;
+        }
+      }
+    }
+    if (!open.isEmpty()) {
+      throw new ValidationException("Cyclic Dependencies between Validators: " + open);
+    }
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Check of a single Entity, e.g. an Event.
+   *
+   * @param <T>
+   *          Type of the Entity
+   */
+  public interface EntityCheck<T> {
+
+    /**
+     * @param entity
+     * @return true if valid, false else
+     */
+    boolean check(T entity);
+  }
+
+  /**
+   * Check all Entities. If the current Thread is executing a Validator of
+   * a concurrent Chain and there are enough Entities, they are partitioned
+   * across the Threads of the Chain, otherwise they are checked within the
+   * current Thread. Every Entity is checked, i.e. there is no shortcut on
+   * the first invalid Entity.
+   *
+   * @param entities
+   * @param check
+   * @return true if all Entities are valid, false else
+   * @throws ValidationException
+   *           if a Check failed with an Exception
+   */
+  public static <T> boolean checkAll(final List<T> entities, final EntityCheck<T> check) throws ValidationException {
+    if ((entities == null) || entities.isEmpty()) {
+      return true;
+    }
+    final Partitioner partitioner = PARTITIONER.get();
+    if ((partitioner == null) || (entities.size() < (2 * MIN_PARTITION_SIZE))) {
+      return checkRange(entities, 0, entities.size(), check);
+    }
+    return partitioner.checkAll(entities, check);
+  }
+
+  private static <T> boolean checkRange(final List<T> entities, final int from, final int to, final EntityCheck<T> check) {
+    boolean valid = true;
+    for (int idx = from; idx < to; idx++) {
+      if (!check.check(entities.get(idx))) {
+        valid = false;
+      }
+    }
+    return valid;
+  }
+
+  /**
+   * Wait for a Task. If it was not started yet, it is executed within the
+   * current Thread, so waiting Threads never block a Pool.
+   */
+  private static <V> V await(final FutureTask<V> task) throws InterruptedException, ExecutionException {
+    task.run(); // no-op if already running or done
+    return task.get();
+  }
+
+  private static ValidationException toValidationException(final Throwable t) {
+    if (t instanceof ValidationException) {
+      return (ValidationException) t;
+    }
+    return new ValidationException(String.valueOf(t.getMessage()), t);
+  }
+
+  // ----------------------------------------------------------------
+
+  private static class Partitioner {
+
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    Partitioner(final ExecutorService executor, final int parallelism) {
+      this.executor = executor;
+      this.parallelism = parallelism;
+    }
+
+    <T> boolean checkAll(final List<T> entities, final EntityCheck<T> check) throws ValidationException {
+      final int size = entities.size();
+      final int chunk = Math.max(MIN_PARTITION_SIZE, (size + (this.parallelism * PARTITIONS_PER_THREAD) - 1) / (this.parallelism * PARTITIONS_PER_THREAD));
+      final List<FutureTask<Boolean>> tasks = new ArrayList<FutureTask<Boolean>>();
+      for (int from = 0; from < size; from += chunk) {
+        final int lower = from;
+        final int upper = Math.min(size, from + chunk);
+        final FutureTask<Boolean> task = new FutureTask<Boolean>(new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            return Boolean.valueOf(checkRange(entities, lower, upper, check));
+          }
+        });
+        tasks.add(task);
+        if (lower > 0) {
+          this.executor.execute(task); // first Partition is checked by this Thread
+        }
+      }
+      boolean valid = true;
+      try {
+        for (final FutureTask<Boolean> task : tasks) {
+          if (!await(task).booleanValue()) {
+            valid = false;
+          }
+        }
+      }
+      catch (final InterruptedException iex) {
+        Thread.currentThread().interrupt();
+        throw new ValidationException("Interrupted while checking Entities.", iex);
+      }
+      catch (final ExecutionException exex) {
+        throw toValidationException(exex.getCause());
+      }
+      return valid;
+    }
+  }
+
+  private static class SkippedException extends ValidationException {
+
+    private static final long serialVersionUID = 1L;
+
+    SkippedException(final String message) {
+      super(message);
+    }
+  }
+
+  private static class Node {
+
+    private final Validator validator;
+    private final List<Node> dependencies;
+    private final FutureTask<ValidationException> task;
+
+    Node(final Validator validator, final KnowledgeBase kb, final Partitioner partitioner) {
+      this.validator = validator;
+      this.dependencies = new ArrayList<Node>();
+      this.task = new FutureTask<ValidationException>(new Callable<ValidationException>() {
+        @Override
+        public ValidationException call() throws Exception {
+          for (final Node d : Node.this.dependencies) {
+            if (d.await() != null) {
+              LOGGER.warn("Skipping {} because {} failed.", validator.getClass().getName(), d.validator.getClass().getName());
+              return new SkippedException("Skipped " + validator.getClass().getName());
+            }
+          }
+          if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace(String.valueOf(validator));
+          }
+          final Partitioner previous = PARTITIONER.get();
+          PARTITIONER.set(partitioner);
+          try {
+            validator.validate(kb);
+            return null;
+          }
+          catch (final ValidationException vex) {
+            return vex;
+          }
+          finally {
+            PARTITIONER.set(previous);
+          }
+        }
+      });
+    }
+
+    /**
+     * @return Error of this Validator; null if valid
+     */
+    ValidationException await() {
+      try {
+        return ValidatorChain.await(this.task);
+      }
+      catch (final InterruptedException iex) {
+        Thread.currentThread().interrupt();
+        return new ValidationException("Interrupted while validating.", iex);
+      }
+      catch (final ExecutionException exex) {
+        return toValidationException(exex.getCause());
+      }
+    }
+
+    @Override
+    public String toString() {
+      return this.validator.getClass().getName();
+    }
+  }
+
+  private static class ValidatorThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable r) {
+      final Thread t = new Thread(r, "KnowledgeBase-Validator-" + this.counter.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+}
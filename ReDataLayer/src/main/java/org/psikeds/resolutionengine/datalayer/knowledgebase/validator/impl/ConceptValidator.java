@@ -15,6 +15,7 @@
 package org.psikeds.resolutionengine.datalayer.knowledgebase.validator.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -23,6 +24,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.commons.lang.StringUtils;
 
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.DependentValidator;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.ValidationException;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator;
 import org.psikeds.resolutionengine.datalayer.vo.Concept;
@@ -35,10 +37,20 @@ import org.psikeds.resolutionengine.datalayer.vo.FeatureValue;
  * @author marco@juliano.de
  * 
  */
-public class ConceptValidator implements Validator {
+public class ConceptValidator implements DependentValidator {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ConceptValidator.class);
 
+  private static final List<Class<? extends Validator>> DEPENDENCIES = Arrays.<Class<? extends Validator>> asList(FeatureValidator.class);
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.validator.DependentValidator#getDependencies()
+   */
+  @Override
+  public List<Class<? extends Validator>> getDependencies() {
+    return DEPENDENCIES;
+  }
+
   /**
    * @see org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator#validate(org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase)
    */
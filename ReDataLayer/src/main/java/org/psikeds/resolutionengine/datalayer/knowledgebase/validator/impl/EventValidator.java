@@ -14,6 +14,7 @@
  *******************************************************************************/
 package org.psikeds.resolutionengine.datalayer.knowledgebase.validator.impl;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -22,8 +23,10 @@ import org.slf4j.LoggerFactory;
 import org.apache.commons.lang.StringUtils;
 
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.DependentValidator;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.ValidationException;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.ValidatorChain;
 import org.psikeds.resolutionengine.datalayer.vo.Concept;
 import org.psikeds.resolutionengine.datalayer.vo.Event;
 import org.psikeds.resolutionengine.datalayer.vo.Events;
@@ -38,10 +41,20 @@ import org.psikeds.resolutionengine.datalayer.vo.Variants;
  * @author marco@juliano.de
  * 
  */
-public class EventValidator implements Validator {
+public class EventValidator implements DependentValidator {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(EventValidator.class);
 
+  private static final List<Class<? extends Validator>> DEPENDENCIES = Arrays.<Class<? extends Validator>> asList(VariantValidator.class, FulfillsValidator.class, ConstitutesValidator.class);
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.validator.DependentValidator#getDependencies()
+   */
+  @Override
+  public List<Class<? extends Validator>> getDependencies() {
+    return DEPENDENCIES;
+  }
+
   /**
    * @see org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator#validate(org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase)
    */
@@ -69,72 +82,14 @@ public class EventValidator implements Validator {
       final Events events = (kb == null ? null : kb.getEvents());
       final List<Event> lst = (events == null ? null : events.getEvent());
       if ((lst != null) && !lst.isEmpty()) {
-        long count = 0;
-        for (final Event e : lst) {
-          count++;
-          // --- Step 1: lookup and double check ---
-          final String eid = (e == null ? null : e.getEventID());
-          if (StringUtils.isEmpty(eid)) {
-            valid = false;
-            LOGGER.warn("Illegal Event: {}", e);
-            continue;
-          }
-          final Event lookup = kb.getEvent(eid);
-          if ((lookup == null) || !eid.equals(lookup.getEventID())) {
-            valid = false;
-            LOGGER.warn("Event not found: {}", e);
-            continue;
-          }
-          if (LOGGER.isTraceEnabled()) {
-            LOGGER.trace("Checking Event: {}", e);
-          }
-          // --- Step 2: check basics ---
-          if (StringUtils.isEmpty(e.getLabel()) || !e.getLabel().equals(lookup.getLabel())) {
-            valid = false;
-            LOGGER.warn("Event {} has no Label.", eid);
-          }
-          final String vid = e.getVariantID();
-          final Variant v = (StringUtils.isEmpty(vid) ? null : kb.getVariant(vid));
-          if ((v == null) || !vid.equals(v.getVariantID())) {
-            valid = false;
-            LOGGER.warn("Variant {} referenced by Event {} does not exists!", vid, eid);
-            continue;
-          }
-          final List<String> ctx = e.getContext();
-          if ((ctx == null) || ctx.isEmpty()) {
-            valid = false;
-            LOGGER.warn("Event {} has no Context-Path!", eid);
-            continue;
+        // Events are independent of each other, i.e. they can be checked concurrently
+        valid = ValidatorChain.checkAll(lst, new ValidatorChain.EntityCheck<Event>() {
+          @Override
+          public boolean check(final Event e) {
+            return checkEvent(kb, e);
           }
-          final String trigger = e.getTriggerID();
-          if (StringUtils.isEmpty(trigger)) {
-            valid = false;
-            LOGGER.warn("Event {} has no Trigger!", eid);
-            continue;
-          }
-          // --- Step 3: check trigger ---
-          final String type = e.getTriggerType();
-          if (Event.TRIGGER_TYPE_VARIANT.equals(type)) {
-            if (!checkVariantTriggerAndContextPath(kb, eid, vid, ctx, trigger)) {
-              valid = false;
-            }
-          }
-          else if (Event.TRIGGER_TYPE_FEATURE_VALUE.equals(type)) {
-            if (!checkFeatureValueTriggerAndContextPath(kb, eid, vid, ctx, trigger)) {
-              valid = false;
-            }
-          }
-          else if (Event.TRIGGER_TYPE_CONCEPT.equals(type)) {
-            if (!checkConceptTriggerAndContextPath(kb, eid, vid, ctx, trigger)) {
-              valid = false;
-            }
-          }
-          else {
-            valid = false;
-            LOGGER.warn("Event {} has illegal Trigger-Type: {}", eid, type);
-          }
-        }
-        LOGGER.debug("Checked {} Events.", count);
+        });
+        LOGGER.debug("Checked {} Events.", lst.size());
       }
     }
     catch (final Exception ex) {
@@ -146,6 +101,67 @@ public class EventValidator implements Validator {
     }
   }
 
+  private boolean checkEvent(final KnowledgeBase kb, final Event e) {
+    // --- Step 1: lookup and double check ---
+    final String eid = (e == null ? null : e.getEventID());
+    if (StringUtils.isEmpty(eid)) {
+      LOGGER.warn("Illegal Event: {}", e);
+      return false;
+    }
+    final Event lookup = kb.getEvent(eid);
+    if ((lookup == null) || !eid.equals(lookup.getEventID())) {
+      LOGGER.warn("Event not found: {}", e);
+      return false;
+    }
+    if (LOGGER.isTraceEnabled()) {
+      LOGGER.trace("Checking Event: {}", e);
+    }
+    // --- Step 2: check basics ---
+    boolean valid = true;
+    if (StringUtils.isEmpty(e.getLabel()) || !e.getLabel().equals(lookup.getLabel())) {
+      valid = false;
+      LOGGER.warn("Event {} has no Label.", eid);
+    }
+    final String vid = e.getVariantID();
+    final Variant v = (StringUtils.isEmpty(vid) ? null : kb.getVariant(vid));
+    if ((v == null) || !vid.equals(v.getVariantID())) {
+      LOGGER.warn("Variant {} referenced by Event {} does not exists!", vid, eid);
+      return false;
+    }
+    final List<String> ctx = e.getContext();
+    if ((ctx == null) || ctx.isEmpty()) {
+      LOGGER.warn("Event {} has no Context-Path!", eid);
+      return false;
+    }
+    final String trigger = e.getTriggerID();
+    if (StringUtils.isEmpty(trigger)) {
+      LOGGER.warn("Event {} has no Trigger!", eid);
+      return false;
+    }
+    // --- Step 3: check trigger ---
+    final String type = e.getTriggerType();
+    if (Event.TRIGGER_TYPE_VARIANT.equals(type)) {
+      if (!checkVariantTriggerAndContextPath(kb, eid, vid, ctx, trigger)) {
+        valid = false;
+      }
+    }
+    else if (Event.TRIGGER_TYPE_FEATURE_VALUE.equals(type)) {
+      if (!checkFeatureValueTriggerAndContextPath(kb, eid, vid, ctx, trigger)) {
+        valid = false;
+      }
+    }
+    else if (Event.TRIGGER_TYPE_CONCEPT.equals(type)) {
+      if (!checkConceptTriggerAndContextPath(kb, eid, vid, ctx, trigger)) {
+        valid = false;
+      }
+    }
+    else {
+      valid = false;
+      LOGGER.warn("Event {} has illegal Trigger-Type: {}", eid, type);
+    }
+    return valid;
+  }
+
   // ----------------------------------------------------------------
 
   private boolean checkVariantTriggerAndContextPath(final KnowledgeBase kb, final String eventId, final String rootVariantId, final List<String> ctx, final String triggeringVariantId) {
@@ -14,7 +14,10 @@
  *******************************************************************************/
 package org.psikeds.resolutionengine.datalayer.knowledgebase.validator.impl;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,10 +25,13 @@ import org.slf4j.LoggerFactory;
 import org.apache.commons.lang.StringUtils;
 
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.DependentValidator;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.ValidationException;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator;
 import org.psikeds.resolutionengine.datalayer.vo.Feature;
 import org.psikeds.resolutionengine.datalayer.vo.FeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueList;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange;
 import org.psikeds.resolutionengine.datalayer.vo.FeatureValues;
 import org.psikeds.resolutionengine.datalayer.vo.Features;
 
@@ -36,10 +42,20 @@ import org.psikeds.resolutionengine.datalayer.vo.Features;
  * @author marco@juliano.de
  * 
  */
-public class FeatureValidator implements Validator {
+public class FeatureValidator implements DependentValidator {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(FeatureValidator.class);
 
+  private static final List<Class<? extends Validator>> DEPENDENCIES = Collections.emptyList();
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.validator.DependentValidator#getDependencies()
+   */
+  @Override
+  public List<Class<? extends Validator>> getDependencies() {
+    return DEPENDENCIES;
+  }
+
   /**
    * @see org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator#validate(org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase)
    */
@@ -67,7 +83,16 @@ public class FeatureValidator implements Validator {
       }
       else if (hasFeatures && hasValues) {
         // 1.: check all feature values and their references to features
-        for (final FeatureValue fv : valueList) {
+        // values of ranges are not materialized, ranges are checked as a whole
+        final Set<String> rangeIds = new HashSet<String>();
+        for (final FeatureValueRange<? extends FeatureValue> range : FeatureValueList.getRanges(valueList)) {
+          valueCount += range.size();
+          rangeIds.add(range.getRangeID());
+          if (!isValidRange(kb, range, featureList)) {
+            valid = false;
+          }
+        }
+        for (final FeatureValue fv : FeatureValueList.getDiscreteValues(valueList)) {
           valueCount++;
           final String featureId = (fv == null ? null : fv.getFeatureID());
           final String featureValueId = (fv == null ? null : fv.getFeatureValueID());
@@ -153,8 +178,19 @@ public class FeatureValidator implements Validator {
             LOGGER.warn("Feature {} has no Values!", featureId);
             continue;
           }
+          for (final FeatureValueRange<? extends FeatureValue> range : FeatureValueList.getRanges(values)) {
+            final String vType = range.getMinimum().getType();
+            if (StringUtils.isEmpty(vType) || !vType.equals(fType)) {
+              valid = false;
+              LOGGER.warn("Feature {} and Range {} are not of the same Type: {} vs. {}", featureId, range.getRangeID(), fType, vType);
+            }
+            if (!rangeIds.contains(range.getRangeID())) {
+              valid = false;
+              LOGGER.warn("Range {} referenced by Feature {} is not within List of all Values. Check Implementation!!!\n{}", range.getRangeID(), featureId, f);
+            }
+          }
           // check feature values of this features
-          for (final FeatureValue fv : values) {
+          for (final FeatureValue fv : FeatureValueList.getDiscreteValues(values)) {
             // lookup references
             final String featureValueId = (fv == null ? null : fv.getFeatureValueID());
             if (StringUtils.isEmpty(featureValueId)) {
@@ -199,4 +235,46 @@ public class FeatureValidator implements Validator {
       throw new ValidationException("Could not validate Features or FeatureValues: " + ex.getMessage(), ex);
     }
   }
+
+  // ----------------------------------------------------------------
+
+  private static boolean isValidRange(final KnowledgeBase kb, final FeatureValueRange<? extends FeatureValue> range, final List<Feature> featureList) {
+    boolean valid = true;
+    final String featureId = range.getFeatureID();
+    final String rangeId = range.getRangeID();
+    if (StringUtils.isEmpty(featureId) || StringUtils.isEmpty(rangeId)) {
+      LOGGER.warn("Corrupt Range, IDs missing! Feature-ID = {} ; Range-ID = {}", featureId, rangeId);
+      return false;
+    }
+    if (LOGGER.isTraceEnabled()) {
+      LOGGER.trace("Checking Range {} of Feature {}", rangeId, featureId);
+    }
+    final Feature f = kb.getFeature(featureId);
+    if ((f == null) || !featureId.equals(f.getFeatureID())) {
+      LOGGER.warn("Feature {} referenced by Range {} does not exist!", featureId, rangeId);
+      return false;
+    }
+    if (f.getRange(rangeId) == null) {
+      valid = false;
+      LOGGER.warn("Range {} has a Reference to Feature {} but not vice versa. Check Implementation!!!\n{}", rangeId, featureId, f);
+    }
+    if (!featureList.contains(f)) {
+      valid = false;
+      LOGGER.warn("Feature {} referenced by Range {} is not within List of all Features. Check Implementation!!!\n{}", featureId, rangeId, f);
+    }
+    // double check: lookup of first and last value by id
+    for (final FeatureValue fv : new FeatureValue[] { range.get(0), range.get(range.size() - 1) }) {
+      final FeatureValue lookup = kb.getFeatureValue(fv.getFeatureValueID());
+      if ((lookup == null) || !featureId.equals(lookup.getFeatureID()) || !fv.getFeatureValueID().equals(lookup.getFeatureValueID())
+          || StringUtils.isEmpty(lookup.getValue()) || !lookup.getValue().equals(fv.getValue())) {
+        valid = false;
+        LOGGER.warn("Feature-Value of Range {} not found: {}", rangeId, fv);
+      }
+      if (StringUtils.isEmpty(f.getType()) || !f.getType().equals(fv.getType())) {
+        valid = false;
+        LOGGER.warn("Feature {} and Range {} are not of the same Type: {} vs. {}", featureId, rangeId, f.getType(), fv.getType());
+      }
+    }
+    return valid;
+  }
 }
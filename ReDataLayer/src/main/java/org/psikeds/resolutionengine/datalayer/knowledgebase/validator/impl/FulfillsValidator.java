@@ -14,6 +14,7 @@
  *******************************************************************************/
 package org.psikeds.resolutionengine.datalayer.knowledgebase.validator.impl;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -22,6 +23,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.commons.lang.StringUtils;
 
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.DependentValidator;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.ValidationException;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator;
 import org.psikeds.resolutionengine.datalayer.vo.Alternatives;
@@ -35,10 +37,20 @@ import org.psikeds.resolutionengine.datalayer.vo.Variant;
  * @author marco@juliano.de
  * 
  */
-public class FulfillsValidator implements Validator {
+public class FulfillsValidator implements DependentValidator {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(FulfillsValidator.class);
 
+  private static final List<Class<? extends Validator>> DEPENDENCIES = Collections.emptyList();
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.validator.DependentValidator#getDependencies()
+   */
+  @Override
+  public List<Class<? extends Validator>> getDependencies() {
+    return DEPENDENCIES;
+  }
+
   /**
    * @see org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator#validate(org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase)
    */
@@ -14,6 +14,7 @@
  *******************************************************************************/
 package org.psikeds.resolutionengine.datalayer.knowledgebase.validator.impl;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -23,6 +24,7 @@ import org.apache.commons.lang.StringUtils;
 
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.util.RelationHelper;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.DependentValidator;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.ValidationException;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator;
 import org.psikeds.resolutionengine.datalayer.vo.Event;
@@ -38,10 +40,20 @@ import org.psikeds.resolutionengine.datalayer.vo.Variant;
  * @author marco@juliano.de
  * 
  */
-public class RelationValidator implements Validator {
+public class RelationValidator implements DependentValidator {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RelationValidator.class);
 
+  private static final List<Class<? extends Validator>> DEPENDENCIES = Arrays.<Class<? extends Validator>> asList(EventValidator.class);
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.validator.DependentValidator#getDependencies()
+   */
+  @Override
+  public List<Class<? extends Validator>> getDependencies() {
+    return DEPENDENCIES;
+  }
+
   /**
    * @see org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator#validate(org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase)
    */
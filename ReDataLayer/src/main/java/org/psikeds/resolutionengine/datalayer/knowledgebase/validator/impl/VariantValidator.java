@@ -14,6 +14,8 @@
  *******************************************************************************/
 package org.psikeds.resolutionengine.datalayer.knowledgebase.validator.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -22,11 +24,14 @@ import org.slf4j.LoggerFactory;
 import org.apache.commons.lang.StringUtils;
 
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.DependentValidator;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.ValidationException;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator;
 import org.psikeds.resolutionengine.datalayer.vo.Concept;
 import org.psikeds.resolutionengine.datalayer.vo.Feature;
 import org.psikeds.resolutionengine.datalayer.vo.FeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueList;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange;
 import org.psikeds.resolutionengine.datalayer.vo.Variant;
 import org.psikeds.resolutionengine.datalayer.vo.Variants;
 
@@ -36,10 +41,20 @@ import org.psikeds.resolutionengine.datalayer.vo.Variants;
  * @author marco@juliano.de
  * 
  */
-public class VariantValidator implements Validator {
+public class VariantValidator implements DependentValidator {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(VariantValidator.class);
 
+  private static final List<Class<? extends Validator>> DEPENDENCIES = Arrays.<Class<? extends Validator>> asList(FeatureValidator.class, ConceptValidator.class);
+
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.validator.DependentValidator#getDependencies()
+   */
+  @Override
+  public List<Class<? extends Validator>> getDependencies() {
+    return DEPENDENCIES;
+  }
+
   /**
    * @see org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator#validate(org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase)
    */
@@ -95,7 +110,12 @@ public class VariantValidator implements Validator {
               LOGGER.warn("Variant {} defines no Features but has Feature-Values.", vid);
             }
             else {
-              for (final FeatureValue fv : values) {
+              // values of ranges are not materialized, so only the first value of each range is looked up
+              final List<FeatureValue> checked = new ArrayList<FeatureValue>(FeatureValueList.getDiscreteValues(values));
+              for (final FeatureValueRange<? extends FeatureValue> range : FeatureValueList.getRanges(values)) {
+                checked.add(range.get(0));
+              }
+              for (final FeatureValue fv : checked) {
                 final String featureId = (fv == null ? null : fv.getFeatureID());
                 final Feature f = (StringUtils.isEmpty(featureId) ? null : kb.getFeature(featureId));
                 if ((f == null) || !featureId.equals(f.getFeatureID())) {
@@ -15,18 +15,25 @@
 package org.psikeds.resolutionengine.datalayer.vo;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
+
 /**
  * This is a Feature-Definition/Declaration, i.e. Type and possible Values of an
  * Attribute that can be assigned to a Variant.
  * 
  * Note: Feature-ID must be globally unique!
  * 
+ * Ranges of Values are kept as symbolic {@link FeatureValueRange}s within a
+ * {@link FeatureValueList}, i.e. they are never materialized.
+ * 
+ * The sorted {@link FeatureValueDomain} of all discrete Values is built on
+ * first Use and dropped whenever Values are added or replaced.
+ * 
  * @author marco@juliano.de
  * 
  */
@@ -43,7 +50,8 @@ public class Feature extends ValueObject implements Serializable {
   private String description;
   private String type;
   private String unit;
-  private List<FeatureValue> values;
+  private FeatureValueList values;
+  private transient volatile FeatureValueDomain domain;
 
   public Feature() {
     this(null);
@@ -120,21 +128,24 @@ public class Feature extends ValueObject implements Serializable {
 
   public List<FeatureValue> getValues() {
     if (this.values == null) {
-      this.values = new ArrayList<FeatureValue>();
+      this.values = new FeatureValueList();
     }
     return this.values;
   }
 
   public boolean addValue(final FeatureValue value) {
+    this.domain = null;
     return ((value != null) && getValues().add(value));
   }
 
   public boolean addValue(final Collection<? extends FeatureValue> values) {
+    this.domain = null;
     return ((values != null) && !values.isEmpty() && getValues().addAll(values));
   }
 
   public void setValues(final List<FeatureValue> values) {
-    this.values = values;
+    this.values = ((values == null) || (values instanceof FeatureValueList) ? (FeatureValueList) values : new FeatureValueList(values));
+    this.domain = null;
   }
 
   public void clearValues() {
@@ -142,5 +153,45 @@ public class Feature extends ValueObject implements Serializable {
       this.values.clear();
       this.values = null;
     }
+    this.domain = null;
+  }
+
+  /**
+   * @return sorted Domain of all discrete Values of this Feature, i.e.
+   *         without the Values of its Ranges
+   */
+  @JsonIgnore
+  public FeatureValueDomain getDomain() {
+    FeatureValueDomain dom = this.domain;
+    if (dom == null) {
+      dom = new FeatureValueDomain(getFeatureID(), FeatureValueList.getDiscreteValues(getValues()));
+      this.domain = dom;
+    }
+    return dom;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @return all symbolic Ranges of Values of this Feature
+   */
+  @JsonIgnore
+  public List<FeatureValueRange<? extends FeatureValue>> getRanges() {
+    return FeatureValueList.getRanges(getValues());
+  }
+
+  /**
+   * @param rangeID
+   * @return symbolic Range of Values; null if there is no such Range
+   */
+  public FeatureValueRange<? extends FeatureValue> getRange(final String rangeID) {
+    if ((this.values != null) && (rangeID != null)) {
+      for (final FeatureValueRange<? extends FeatureValue> range : getRanges()) {
+        if (rangeID.equals(range.getRangeID())) {
+          return range;
+        }
+      }
+    }
+    return null;
   }
 }
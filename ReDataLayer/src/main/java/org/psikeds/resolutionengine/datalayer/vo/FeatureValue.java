@@ -29,6 +29,9 @@ import org.codehaus.jackson.annotate.JsonSubTypes;
  * 
  * Note: Both Feature-ID and Feature-Value-ID must be globally unique!
  * 
+ * The Value is parsed only once into a {@link FeatureValueKey} that is
+ * used for all Comparisons, see {@link #toSortKey()}.
+ * 
  * @author marco@juliano.de
  * 
  */
@@ -44,6 +47,8 @@ public class FeatureValue extends ValueObject implements Serializable {
   protected String type;
   protected String value;
 
+  private transient volatile FeatureValueKey sortKey;
+
   public FeatureValue() {
     this(null, null, null);
   }
@@ -97,6 +102,29 @@ public class FeatureValue extends ValueObject implements Serializable {
 
   public void setValue(final String val) {
     this.value = val;
+    resetSortKey();
+  }
+
+  /**
+   * @return pre-parsed Key of this Value, created once and cached until
+   *         the Value is changed
+   */
+  @JsonIgnore
+  public FeatureValueKey toSortKey() {
+    FeatureValueKey key = this.sortKey;
+    if (key == null) {
+      key = createSortKey();
+      this.sortKey = key;
+    }
+    return key;
+  }
+
+  protected FeatureValueKey createSortKey() {
+    return FeatureValueKey.valueOf(this.value);
+  }
+
+  protected void resetSortKey() {
+    this.sortKey = null;
   }
 
   @JsonIgnore
@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.datalayer.vo;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Domain of a Feature, i.e. a Table of all its Values sorted by their
+ * {@link FeatureValueKey}. Every Value is identified by its Position
+ * (Ordinal) within this Table, so that any Subset of Values can be
+ * represented as a compact {@link BitSet}.
+ * 
+ * Relations are evaluated as Masks: Because the Table is sorted, all Values
+ * fulfilling an Operation against a Reference-Value are a contiguous Range
+ * of Ordinals (or its Complement), found by a binary Search. Narrowing a
+ * Set of possible Values is then just an AND of two BitSets.
+ * 
+ * A Domain is immutable and can be shared between Sessions and Threads.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class FeatureValueDomain {
+
+  private static final Comparator<FeatureValue> KEY_ORDER = new Comparator<FeatureValue>() {
+    @Override
+    public int compare(final FeatureValue fv1, final FeatureValue fv2) {
+      return fv1.toSortKey().compareTo(fv2.toSortKey());
+    }
+  };
+
+  private final String featureID;
+  private final FeatureValue[] values;
+  private final FeatureValueKey[] keys;
+  private final Map<String, Integer> ordinals;
+
+  public FeatureValueDomain(final String featureID, final Collection<? extends FeatureValue> values) {
+    this.featureID = featureID;
+    final int len = (values == null ? 0 : values.size());
+    this.values = (len == 0 ? new FeatureValue[0] : values.toArray(new FeatureValue[len]));
+    Arrays.sort(this.values, KEY_ORDER); // stable, i.e. equal Values keep their Order
+    this.keys = new FeatureValueKey[len];
+    this.ordinals = new HashMap<String, Integer>(Math.max(16, len * 2));
+    for (int i = 0; i < len; i++) {
+      this.keys[i] = this.values[i].toSortKey();
+      final String fvid = this.values[i].getFeatureValueID();
+      if ((fvid != null) && !this.ordinals.containsKey(fvid)) {
+        this.ordinals.put(fvid, Integer.valueOf(i));
+      }
+    }
+  }
+
+  // ----------------------------------------------------------------
+
+  public String getFeatureID() {
+    return this.featureID;
+  }
+
+  public int size() {
+    return this.values.length;
+  }
+
+  /**
+   * @param ordinal
+   * @return Feature-Value at this Position of the sorted Table
+   */
+  public FeatureValue get(final int ordinal) {
+    return this.values[ordinal];
+  }
+
+  /**
+   * @param featureValueID
+   * @return Position of the Value within the sorted Table; -1 if the Value
+   *         is not Part of this Domain
+   */
+  public int ordinal(final String featureValueID) {
+    final Integer ord = (featureValueID == null ? null : this.ordinals.get(featureValueID));
+    return (ord == null ? -1 : ord.intValue());
+  }
+
+  /**
+   * @return BitSet containing all Values of this Domain
+   */
+  public BitSet all() {
+    final BitSet bs = new BitSet(this.values.length);
+    bs.set(0, this.values.length);
+    return bs;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Get all Values of this Domain fulfilling an Operation, i.e.
+   * [ Value op Reference ] is true.
+   * 
+   * @param op
+   *          RelationOperator
+   * @param ref
+   *          Reference-Value (may be part of another Domain)
+   * @return BitSet of matching Ordinals
+   */
+  public BitSet mask(final RelationOperator op, final FeatureValue ref) {
+    final BitSet bs = new BitSet(this.values.length);
+    if (op == null) {
+      return bs;
+    }
+    if (ref == null) {
+      // everything is greater than and not equal to null
+      if (RelationOperator.NOT_EQUAL.equals(op) || RelationOperator.GREATER_THAN.equals(op) || RelationOperator.GREATER_OR_EQUAL.equals(op)) {
+        bs.set(0, this.values.length);
+      }
+      return bs;
+    }
+    final FeatureValueKey key = ref.toSortKey();
+    final int lo = lowerBound(key);
+    final int hi = upperBound(key, lo);
+    if (RelationOperator.EQUAL.equals(op)) {
+      bs.set(lo, hi);
+    }
+    else if (RelationOperator.NOT_EQUAL.equals(op)) {
+      bs.set(0, lo);
+      bs.set(hi, this.values.length);
+    }
+    else if (RelationOperator.LESS_THAN.equals(op)) {
+      bs.set(0, lo);
+    }
+    else if (RelationOperator.LESS_OR_EQUAL.equals(op)) {
+      bs.set(0, hi);
+    }
+    else if (RelationOperator.GREATER_THAN.equals(op)) {
+      bs.set(hi, this.values.length);
+    }
+    else if (RelationOperator.GREATER_OR_EQUAL.equals(op)) {
+      bs.set(lo, this.values.length);
+    }
+    return bs;
+  }
+
+  /**
+   * Get all Values of this Domain fulfilling an Operation against a Set of
+   * Reference-Values: A Value is equal if it equals any of the References,
+   * it is not equal if it equals none of them. Less or greater is decided
+   * against the Maximum or Minimum of the References.
+   * 
+   * Symbolic Ranges within the References are not expanded: A Value equals
+   * a Range if the Range contains a Value with the same Key (binary Search),
+   * Minimum and Maximum of a Range are its End-Points.
+   * 
+   * @param op
+   *          RelationOperator
+   * @param refs
+   *          Reference-Values (may be part of another Domain)
+   * @return BitSet of matching Ordinals
+   */
+  public BitSet mask(final RelationOperator op, final Collection<? extends FeatureValue> refs) {
+    if (RelationOperator.EQUAL.equals(op) || RelationOperator.NOT_EQUAL.equals(op)) {
+      final BitSet bs = new BitSet(this.values.length);
+      for (final FeatureValue ref : FeatureValueList.getDiscreteValues(refs)) {
+        if (ref != null) {
+          bs.or(mask(RelationOperator.EQUAL, ref));
+        }
+      }
+      for (final FeatureValueRange<? extends FeatureValue> range : FeatureValueList.getRanges(refs)) {
+        final int lo = lowerBound(range.getMinimum().toSortKey());
+        final int hi = upperBound(range.getMaximum().toSortKey(), lo);
+        for (int i = lo; i < hi; i++) {
+          if (range.indexOfKey(this.keys[i]) >= 0) {
+            bs.set(i);
+          }
+        }
+      }
+      if (RelationOperator.NOT_EQUAL.equals(op)) {
+        bs.flip(0, this.values.length);
+      }
+      return bs;
+    }
+    FeatureValue min = null;
+    FeatureValue max = null;
+    for (final FeatureValue ref : FeatureValueList.getDiscreteValues(refs)) {
+      if (ref != null) {
+        min = ((min == null) || (KEY_ORDER.compare(ref, min) < 0) ? ref : min);
+        max = ((max == null) || (KEY_ORDER.compare(ref, max) > 0) ? ref : max);
+      }
+    }
+    for (final FeatureValueRange<? extends FeatureValue> range : FeatureValueList.getRanges(refs)) {
+      final FeatureValue rmin = range.getMinimum();
+      final FeatureValue rmax = range.getMaximum();
+      min = ((min == null) || (KEY_ORDER.compare(rmin, min) < 0) ? rmin : min);
+      max = ((max == null) || (KEY_ORDER.compare(rmax, max) > 0) ? rmax : max);
+    }
+    final boolean less = RelationOperator.LESS_THAN.equals(op) || RelationOperator.LESS_OR_EQUAL.equals(op);
+    return mask(op, (less ? max : min));
+  }
+
+  // ----------------------------------------------------------------
+
+  // first position with a key greater than or equal to the given one
+  private int lowerBound(final FeatureValueKey key) {
+    int lo = 0;
+    int hi = this.keys.length;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (this.keys[mid].compareTo(key) < 0) {
+        lo = mid + 1;
+      }
+      else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  // first position with a key greater than the given one
+  private int upperBound(final FeatureValueKey key, final int from) {
+    int lo = from;
+    int hi = this.keys.length;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (this.keys[mid].compareTo(key) <= 0) {
+        lo = mid + 1;
+      }
+      else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.datalayer.vo;
+
+import java.math.BigDecimal;
+
+/**
+ * Pre-parsed Sort-Key of a {@link FeatureValue}. The Value is analyzed
+ * only once when the Key is created, so that comparing two Keys is just
+ * a primitive Comparison without any Parsing, Exceptions or Allocations.
+ * 
+ * Ordering is the same as before: Null-Values first, then Strings
+ * (alphabetically, ignoring leading and trailing Whitespace), then Numbers
+ * (mathematically). Integral Numbers fitting into a long are compared as
+ * long, all other Numbers as BigDecimal.
+ * 
+ * Keys are immutable and can therefore be shared between Threads.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public final class FeatureValueKey implements Comparable<FeatureValueKey> {
+
+  private static final int KIND_NULL = 0;
+  private static final int KIND_STRING = 1;
+  private static final int KIND_NUMBER = 2;
+
+  private static final int MAX_LONG_DIGITS = 18;
+
+  private static final BigDecimal MIN_LONG = BigDecimal.valueOf(Long.MIN_VALUE);
+  private static final BigDecimal MAX_LONG = BigDecimal.valueOf(Long.MAX_VALUE);
+
+  public static final FeatureValueKey NULL_KEY = new FeatureValueKey(KIND_NULL, false, 0L, null, null);
+
+  private final int kind;
+  private final boolean integral;
+  private final long longKey;
+  private final BigDecimal decimalKey;
+  private final String stringKey;
+  private final int hash;
+
+  private FeatureValueKey(final int kind, final boolean integral, final long longKey, final BigDecimal decimalKey, final String stringKey) {
+    this.kind = kind;
+    this.integral = integral;
+    this.longKey = longKey;
+    this.decimalKey = decimalKey;
+    this.stringKey = stringKey;
+    this.hash = calculateHash();
+  }
+
+  // ----------------------------------------------------------------
+
+  public boolean isNull() {
+    return this.kind == KIND_NULL;
+  }
+
+  public boolean isNumber() {
+    return this.kind == KIND_NUMBER;
+  }
+
+  public boolean isIntegral() {
+    return this.integral;
+  }
+
+  /**
+   * @return Value as long; only meaningful if this Key is integral
+   */
+  public long longValue() {
+    return this.longKey;
+  }
+
+  /**
+   * @return Value as BigDecimal; null if this Key is not a Number
+   */
+  public BigDecimal decimalValue() {
+    return this.decimalKey;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @see java.lang.Comparable#compareTo(java.lang.Object)
+   */
+  @Override
+  public int compareTo(final FeatureValueKey other) {
+    if (this.kind != other.kind) {
+      return (this.kind < other.kind ? -1 : 1);
+    }
+    if (this.kind == KIND_NUMBER) {
+      if (this.integral && other.integral) {
+        return (this.longKey < other.longKey ? -1 : (this.longKey == other.longKey ? 0 : 1));
+      }
+      return this.decimalKey.compareTo(other.decimalKey);
+    }
+    if (this.kind == KIND_STRING) {
+      return this.stringKey.compareTo(other.stringKey);
+    }
+    // null equals null
+    return 0;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    return (obj instanceof FeatureValueKey) && (compareTo((FeatureValueKey) obj) == 0);
+  }
+
+  @Override
+  public int hashCode() {
+    return this.hash;
+  }
+
+  // equal Keys have the same Hash, e.g. 1 and 1.000 or 0.5 and 0.50
+  private int calculateHash() {
+    if (this.kind == KIND_NUMBER) {
+      return (this.integral ? (int) (this.longKey ^ (this.longKey >>> 32)) : this.decimalKey.stripTrailingZeros().hashCode());
+    }
+    return (this.kind == KIND_STRING ? this.stringKey.hashCode() : 0);
+  }
+
+  @Override
+  public String toString() {
+    if (this.kind == KIND_NUMBER) {
+      return (this.integral ? String.valueOf(this.longKey) : this.decimalKey.toString());
+    }
+    return (this.kind == KIND_STRING ? this.stringKey : "null");
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Create Key for a String-Value. The Value is a Number if it can be
+   * parsed as BigDecimal, otherwise it is treated as a String.
+   * 
+   * @param val
+   * @return FeatureValueKey
+   */
+  public static FeatureValueKey valueOf(final String val) {
+    if (val == null) {
+      return NULL_KEY;
+    }
+    if (isPlainLong(val)) {
+      return valueOf(Long.parseLong(val));
+    }
+    BigDecimal bd = null;
+    try {
+      bd = new BigDecimal(val);
+    }
+    catch (final Exception ex) {
+      bd = null;
+    }
+    if (bd != null) {
+      return valueOf(bd);
+    }
+    return new FeatureValueKey(KIND_STRING, false, 0L, null, val.trim());
+  }
+
+  public static FeatureValueKey valueOf(final long val) {
+    return new FeatureValueKey(KIND_NUMBER, true, val, BigDecimal.valueOf(val), null);
+  }
+
+  public static FeatureValueKey valueOf(final BigDecimal val) {
+    if (val == null) {
+      return NULL_KEY;
+    }
+    final boolean integral = ((val.signum() == 0) || (val.scale() <= 0) || (val.stripTrailingZeros().scale() <= 0))
+        && (val.compareTo(MIN_LONG) >= 0) && (val.compareTo(MAX_LONG) <= 0);
+    return new FeatureValueKey(KIND_NUMBER, integral, (integral ? val.longValue() : 0L), val, null);
+  }
+
+  // optional minus followed by at most 18 digits always fits into a long
+  private static boolean isPlainLong(final String val) {
+    final int len = val.length();
+    final int start = ((len > 0) && (val.charAt(0) == '-') ? 1 : 0);
+    if ((len <= start) || ((len - start) > MAX_LONG_DIGITS)) {
+      return false;
+    }
+    for (int i = start; i < len; i++) {
+      final char c = val.charAt(i);
+      if ((c < '0') || (c > '9')) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,367 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.datalayer.vo;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List of Feature-Values keeping {@link FeatureValueRange}s symbolic.
+ * 
+ * The List consists of Segments: Chunks of discrete Values and complete
+ * Ranges. Adding a Range (or another FeatureValueList) just adds its
+ * Segments, i.e. Values of a Range are never materialized by this List but
+ * created on Demand when accessed by Index or Iterator.
+ * 
+ * Removing or inserting a single Value within a Range splits the Range into
+ * two Sub-Ranges.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class FeatureValueList extends AbstractList<FeatureValue> implements RandomAccess, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final List<List<? extends FeatureValue>> segments;
+  private final boolean readOnly;
+  private int size;
+
+  public FeatureValueList() {
+    this(null);
+  }
+
+  public FeatureValueList(final Collection<? extends FeatureValue> values) {
+    this(values, false);
+  }
+
+  private FeatureValueList(final Collection<? extends FeatureValue> values, final boolean readOnly) {
+    super();
+    this.segments = new ArrayList<List<? extends FeatureValue>>();
+    this.size = 0;
+    if (values != null) {
+      addAll(values);
+    }
+    this.readOnly = readOnly;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @return all symbolic Ranges of this List
+   */
+  public List<FeatureValueRange<? extends FeatureValue>> getRanges() {
+    final List<FeatureValueRange<? extends FeatureValue>> ranges = new ArrayList<FeatureValueRange<? extends FeatureValue>>();
+    for (final List<? extends FeatureValue> seg : this.segments) {
+      if (seg instanceof FeatureValueRange) {
+        ranges.add((FeatureValueRange<? extends FeatureValue>) seg);
+      }
+    }
+    return ranges;
+  }
+
+  /**
+   * @return all Values of this List not being Part of a Range
+   */
+  public List<FeatureValue> getDiscreteValues() {
+    final List<FeatureValue> values = new ArrayList<FeatureValue>();
+    for (final List<? extends FeatureValue> seg : this.segments) {
+      if (!(seg instanceof FeatureValueRange)) {
+        values.addAll(seg);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * @return true if this List contains at least one Range
+   */
+  public boolean hasRanges() {
+    for (final List<? extends FeatureValue> seg : this.segments) {
+      if (seg instanceof FeatureValueRange) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @see java.util.AbstractCollection#size()
+   */
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * @see java.util.AbstractList#get(int)
+   */
+  @Override
+  public FeatureValue get(final int index) {
+    checkIndex(index, this.size);
+    int idx = index;
+    for (final List<? extends FeatureValue> seg : this.segments) {
+      final int len = seg.size();
+      if (idx < len) {
+        return seg.get(idx);
+      }
+      idx -= len;
+    }
+    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+  }
+
+  /**
+   * @see java.util.AbstractList#set(int, java.lang.Object)
+   */
+  @Override
+  public FeatureValue set(final int index, final FeatureValue value) {
+    final FeatureValue old = remove(index);
+    add(index, value);
+    return old;
+  }
+
+  /**
+   * @see java.util.AbstractList#add(int, java.lang.Object)
+   */
+  @Override
+  public void add(final int index, final FeatureValue value) {
+    checkWritable();
+    if ((index < 0) || (index > this.size)) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+    }
+    int idx = index;
+    int i = 0;
+    while ((i < this.segments.size()) && (idx > this.segments.get(i).size())) {
+      idx -= this.segments.get(i).size();
+      i++;
+    }
+    if (i == this.segments.size()) {
+      discreteSegment(i).add(value);
+    }
+    else {
+      final List<? extends FeatureValue> seg = this.segments.get(i);
+      if (!(seg instanceof FeatureValueRange)) {
+        discreteSegment(i).add(idx, value);
+      }
+      else if (idx == seg.size()) {
+        discreteSegment(i + 1).add(0, value);
+      }
+      else if (idx == 0) {
+        discreteSegment(i).add(value);
+      }
+      else {
+        // insert into the middle of a range: split it
+        final FeatureValueRange<? extends FeatureValue> range = (FeatureValueRange<? extends FeatureValue>) seg;
+        this.segments.set(i, range.subList(0, idx));
+        this.segments.add(i + 1, range.subList(idx, range.size()));
+        discreteSegment(i + 1).add(value);
+      }
+    }
+    this.size++;
+    this.modCount++;
+  }
+
+  /**
+   * @see java.util.AbstractList#remove(int)
+   */
+  @Override
+  public FeatureValue remove(final int index) {
+    checkWritable();
+    checkIndex(index, this.size);
+    int idx = index;
+    int i = 0;
+    while (idx >= this.segments.get(i).size()) {
+      idx -= this.segments.get(i).size();
+      i++;
+    }
+    final List<? extends FeatureValue> seg = this.segments.get(i);
+    final FeatureValue old;
+    if (seg instanceof FeatureValueRange) {
+      // remove from a range: split it
+      final FeatureValueRange<? extends FeatureValue> range = (FeatureValueRange<? extends FeatureValue>) seg;
+      old = range.get(idx);
+      this.segments.remove(i);
+      if ((idx + 1) < range.size()) {
+        this.segments.add(i, range.subList(idx + 1, range.size()));
+      }
+      if (idx > 0) {
+        this.segments.add(i, range.subList(0, idx));
+      }
+    }
+    else {
+      old = seg.remove(idx);
+      if (seg.isEmpty()) {
+        this.segments.remove(i);
+      }
+    }
+    this.size--;
+    this.modCount++;
+    return old;
+  }
+
+  /**
+   * Ranges are added symbolically, Segments of another FeatureValueList
+   * are copied.
+   * 
+   * @see java.util.AbstractCollection#addAll(java.util.Collection)
+   */
+  @Override
+  public boolean addAll(final Collection<? extends FeatureValue> values) {
+    checkWritable();
+    if ((values == null) || values.isEmpty()) {
+      return false;
+    }
+    if (values instanceof FeatureValueRange) {
+      this.segments.add((FeatureValueRange<? extends FeatureValue>) values);
+    }
+    else if (values instanceof FeatureValueList) {
+      for (final List<? extends FeatureValue> seg : new ArrayList<List<? extends FeatureValue>>(((FeatureValueList) values).segments)) {
+        if (seg instanceof FeatureValueRange) {
+          this.segments.add(seg);
+        }
+        else {
+          discreteSegment(this.segments.size()).addAll(seg);
+        }
+      }
+    }
+    else {
+      discreteSegment(this.segments.size()).addAll(values);
+    }
+    this.size += values.size();
+    this.modCount++;
+    return true;
+  }
+
+  /**
+   * @see java.util.AbstractList#clear()
+   */
+  @Override
+  public void clear() {
+    checkWritable();
+    this.segments.clear();
+    this.size = 0;
+    this.modCount++;
+  }
+
+  /**
+   * Lookup Segment by Segment, i.e. Values of Ranges are found by their ID
+   * without iterating over the Range.
+   * 
+   * @see java.util.AbstractList#indexOf(java.lang.Object)
+   */
+  @Override
+  public int indexOf(final Object o) {
+    int start = 0;
+    for (final List<? extends FeatureValue> seg : this.segments) {
+      final int idx = seg.indexOf(o);
+      if (idx >= 0) {
+        return start + idx;
+      }
+      start += seg.size();
+    }
+    return -1;
+  }
+
+  /**
+   * @see java.util.AbstractCollection#contains(java.lang.Object)
+   */
+  @Override
+  public boolean contains(final Object o) {
+    return (indexOf(o) >= 0);
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @param values
+   * @return read-only Copy of the Values keeping all Ranges symbolic
+   */
+  public static FeatureValueList unmodifiableCopy(final Collection<? extends FeatureValue> values) {
+    return new FeatureValueList(values, true);
+  }
+
+  /**
+   * @param values
+   * @return all symbolic Ranges within the Values
+   */
+  public static List<FeatureValueRange<? extends FeatureValue>> getRanges(final Collection<? extends FeatureValue> values) {
+    if (values instanceof FeatureValueList) {
+      return ((FeatureValueList) values).getRanges();
+    }
+    if ((values instanceof FeatureValueRange) && !values.isEmpty()) {
+      return Collections.<FeatureValueRange<? extends FeatureValue>> singletonList((FeatureValueRange<? extends FeatureValue>) values);
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * @param values
+   * @return all Values not being Part of a Range
+   */
+  public static Collection<? extends FeatureValue> getDiscreteValues(final Collection<? extends FeatureValue> values) {
+    if (values instanceof FeatureValueList) {
+      return ((FeatureValueList) values).getDiscreteValues();
+    }
+    if ((values == null) || (values instanceof FeatureValueRange)) {
+      return Collections.emptyList();
+    }
+    return values;
+  }
+
+  // ----------------------------------------------------------------
+
+  // discrete segment at the given position, inserting a new one if necessary
+  private List<FeatureValue> discreteSegment(final int pos) {
+    if (pos < this.segments.size()) {
+      final List<? extends FeatureValue> seg = this.segments.get(pos);
+      if (!(seg instanceof FeatureValueRange)) {
+        return asDiscrete(seg);
+      }
+    }
+    if (pos > 0) {
+      final List<? extends FeatureValue> prev = this.segments.get(pos - 1);
+      if ((pos == this.segments.size()) && !(prev instanceof FeatureValueRange)) {
+        return asDiscrete(prev);
+      }
+    }
+    final List<FeatureValue> seg = new ArrayList<FeatureValue>();
+    this.segments.add(pos, seg);
+    return seg;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<FeatureValue> asDiscrete(final List<? extends FeatureValue> seg) {
+    return (List<FeatureValue>) seg;
+  }
+
+  private void checkWritable() {
+    if (this.readOnly) {
+      throw new UnsupportedOperationException("FeatureValueList is read-only.");
+    }
+  }
+
+  private static void checkIndex(final int index, final int size) {
+    if ((index < 0) || (index >= size)) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+}
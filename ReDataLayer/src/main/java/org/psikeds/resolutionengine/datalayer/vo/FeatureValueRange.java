@@ -0,0 +1,533 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.datalayer.vo;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * A Range of numeric Feature-Values, i.e. all Values from a Minimum up to a
+ * Maximum with a given Increment.
+ * 
+ * The Range is kept symbolically: Values and their IDs are calculated on
+ * Demand, so a Range needs constant Memory regardless of its Size. The ID of
+ * the n-th Value is the Range-ID followed by a Type-specific Prefix and n,
+ * e.g. R1_I1, R1_I2, ... Sub-Lists are Sub-Ranges, i.e. a Value has the same
+ * ID within a Range and within all of its Sub-Ranges.
+ * 
+ * Because the Values of a Range are ordered, a Relation against a
+ * Reference-Value narrows a Range to one or two Sub-Ranges, i.e. Minimum,
+ * Maximum and Increment are adjusted without creating any Value, see
+ * {@link #select(RelationOperator, FeatureValue)}.
+ * 
+ * A Range is immutable.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public abstract class FeatureValueRange<T extends FeatureValue> extends AbstractList<T> implements RandomAccess, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final Comparator<int[]> INTERVAL_ORDER = new Comparator<int[]>() {
+    @Override
+    public int compare(final int[] i1, final int[] i2) {
+      return (i1[0] < i2[0] ? -1 : (i1[0] == i2[0] ? 0 : 1));
+    }
+  };
+
+  protected final String featureID;
+  protected final String rangeID;
+  protected final int offset; // position of the first value within the complete range
+  protected final int size;
+
+  protected FeatureValueRange(final String featureID, final String rangeID, final int offset, final int size) {
+    this.featureID = featureID;
+    this.rangeID = rangeID;
+    this.offset = offset;
+    this.size = size;
+  }
+
+  // ----------------------------------------------------------------
+
+  public String getFeatureID() {
+    return this.featureID;
+  }
+
+  public String getRangeID() {
+    return this.rangeID;
+  }
+
+  public int getOffset() {
+    return this.offset;
+  }
+
+  /**
+   * @param featureValueID
+   * @return true if the ID belongs to a Value of the complete Range, i.e.
+   *         not only of this Sub-Range; false else
+   */
+  public boolean isWithinRange(final String featureValueID) {
+    return (getPosition(featureValueID) >= 0);
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @see java.util.AbstractCollection#size()
+   */
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * @see java.util.AbstractList#get(int)
+   */
+  @Override
+  public T get(final int index) {
+    if ((index < 0) || (index >= this.size)) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+    }
+    return createValue(this.offset + index);
+  }
+
+  /**
+   * Lookup of the Position by the ID of the Value, i.e. without iterating
+   * over the Range and without creating any Value. IDs of Values are unique,
+   * so the Value belongs to this Range if its ID and its Feature do.
+   * 
+   * @see java.util.AbstractList#indexOf(java.lang.Object)
+   */
+  @Override
+  public int indexOf(final Object o) {
+    if (!(o instanceof FeatureValue)) {
+      return -1;
+    }
+    final FeatureValue fv = (FeatureValue) o;
+    if ((this.featureID == null) || !this.featureID.equals(fv.getFeatureID())) {
+      return -1;
+    }
+    return indexOf(fv.getFeatureValueID());
+  }
+
+  /**
+   * @param featureValueID
+   * @return Index of the Value within this (Sub-)Range; -1 if the ID does not
+   *         belong to this (Sub-)Range
+   */
+  public int indexOf(final String featureValueID) {
+    final int pos = getPosition(featureValueID);
+    return ((pos < this.offset) || (pos >= (this.offset + this.size)) ? -1 : pos - this.offset);
+  }
+
+  /**
+   * @param featureValueID
+   * @return Feature-Value of this (Sub-)Range; null if the ID does not belong
+   *         to this (Sub-)Range
+   */
+  public T getFeatureValue(final String featureValueID) {
+    final int idx = indexOf(featureValueID);
+    return (idx < 0 ? null : get(idx));
+  }
+
+  /**
+   * Lookup of a Value by a binary Search over the Keys of the Range.
+   * 
+   * @param key
+   * @return Index of a Value with this Key; -1 if there is no such Value
+   */
+  public int indexOfKey(final FeatureValueKey key) {
+    final int lo = lowerBound(key);
+    if ((lo < this.size) && (keyOf(lo).compareTo(key) == 0)) {
+      return toIndex(lo);
+    }
+    return -1;
+  }
+
+  /**
+   * @return smallest Value of this Range; null if the Range is empty
+   */
+  public T getMinimum() {
+    return (this.size == 0 ? null : get(toIndex(0)));
+  }
+
+  /**
+   * @return biggest Value of this Range; null if the Range is empty
+   */
+  public T getMaximum() {
+    return (this.size == 0 ? null : get(toIndex(this.size - 1)));
+  }
+
+  /**
+   * IDs of Values are unique, i.e. first and last Index are the same.
+   * 
+   * @see java.util.AbstractList#lastIndexOf(java.lang.Object)
+   */
+  @Override
+  public int lastIndexOf(final Object o) {
+    return indexOf(o);
+  }
+
+  /**
+   * @see java.util.AbstractCollection#contains(java.lang.Object)
+   */
+  @Override
+  public boolean contains(final Object o) {
+    return (indexOf(o) >= 0);
+  }
+
+  /**
+   * @return Sub-Range; the Sub-Range is not a View backed by this Range but
+   *         an independent (and still symbolic) Range.
+   * @see java.util.AbstractList#subList(int, int)
+   */
+  @Override
+  public FeatureValueRange<T> subList(final int fromIndex, final int toIndex) {
+    if ((fromIndex < 0) || (toIndex > this.size) || (fromIndex > toIndex)) {
+      throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + this.size);
+    }
+    return createRange(this.offset + fromIndex, toIndex - fromIndex);
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Get all Values of this Range fulfilling an Operation, i.e.
+   * [ Value op Reference ] is true. Because the Range is ordered, these are
+   * at most two Sub-Ranges found by a binary Search.
+   * 
+   * @param op
+   *          RelationOperator
+   * @param ref
+   *          Reference-Value
+   * @return List of (non-empty) Sub-Ranges
+   */
+  public List<FeatureValueRange<T>> select(final RelationOperator op, final FeatureValue ref) {
+    final List<FeatureValueRange<T>> result = new ArrayList<FeatureValueRange<T>>(2);
+    if ((op == null) || (this.size == 0)) {
+      return result;
+    }
+    if (ref == null) {
+      // everything is greater than and not equal to null
+      if (RelationOperator.NOT_EQUAL.equals(op) || RelationOperator.GREATER_THAN.equals(op) || RelationOperator.GREATER_OR_EQUAL.equals(op)) {
+        result.add(this);
+      }
+      return result;
+    }
+    final FeatureValueKey key = ref.toSortKey();
+    final int lo = lowerBound(key);
+    final int hi = upperBound(key, lo);
+    if (RelationOperator.EQUAL.equals(op)) {
+      addSorted(result, lo, hi);
+    }
+    else if (RelationOperator.NOT_EQUAL.equals(op)) {
+      addSorted(result, 0, lo);
+      addSorted(result, hi, this.size);
+    }
+    else if (RelationOperator.LESS_THAN.equals(op)) {
+      addSorted(result, 0, lo);
+    }
+    else if (RelationOperator.LESS_OR_EQUAL.equals(op)) {
+      addSorted(result, 0, hi);
+    }
+    else if (RelationOperator.GREATER_THAN.equals(op)) {
+      addSorted(result, hi, this.size);
+    }
+    else if (RelationOperator.GREATER_OR_EQUAL.equals(op)) {
+      addSorted(result, lo, this.size);
+    }
+    return result;
+  }
+
+  /**
+   * Get all Values of this Range fulfilling an Operation against a Set of
+   * Reference-Values: A Value is equal if it equals any of the References,
+   * it is not equal if it equals none of them. Less or greater is decided
+   * against the Maximum or Minimum of the References.
+   * 
+   * References can contain other Ranges. Equality against another Range is
+   * exact if the Values of this Range within the other one are all Members
+   * of it (e.g. same or finer Increment); otherwise all Values between
+   * Minimum and Maximum of the other Range are kept, i.e. Equality is
+   * decided conservatively and never drops a Value that could match.
+   * 
+   * @param op
+   *          RelationOperator
+   * @param refs
+   *          Reference-Values
+   * @return List of (non-empty) Sub-Ranges
+   */
+  public List<FeatureValueRange<T>> select(final RelationOperator op, final Collection<? extends FeatureValue> refs) {
+    final boolean equal = RelationOperator.EQUAL.equals(op);
+    if (equal || RelationOperator.NOT_EQUAL.equals(op)) {
+      // sorted positions of all values matching any reference
+      final List<int[]> matches = new ArrayList<int[]>();
+      for (final FeatureValue ref : FeatureValueList.getDiscreteValues(refs)) {
+        if (ref != null) {
+          final FeatureValueKey key = ref.toSortKey();
+          final int lo = lowerBound(key);
+          final int hi = upperBound(key, lo);
+          if (lo < hi) {
+            matches.add(new int[] { lo, hi });
+          }
+        }
+      }
+      for (final FeatureValueRange<? extends FeatureValue> other : FeatureValueList.getRanges(refs)) {
+        final int[] m = matchRange(other, equal);
+        if (m != null) {
+          matches.add(m);
+        }
+      }
+      return selectSorted(merge(matches), equal);
+    }
+    FeatureValue min = null;
+    FeatureValue max = null;
+    for (final FeatureValue ref : FeatureValueList.getDiscreteValues(refs)) {
+      if (ref != null) {
+        min = min(min, ref);
+        max = max(max, ref);
+      }
+    }
+    for (final FeatureValueRange<? extends FeatureValue> other : FeatureValueList.getRanges(refs)) {
+      if (!other.isEmpty()) {
+        min = min(min, other.getMinimum());
+        max = max(max, other.getMaximum());
+      }
+    }
+    final boolean less = RelationOperator.LESS_THAN.equals(op) || RelationOperator.LESS_OR_EQUAL.equals(op);
+    return select(op, (less ? max : min));
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @return Prefix of the Position within the IDs of the Values
+   */
+  protected abstract String getPrefix();
+
+  /**
+   * @param position
+   *          Position of the Value within the complete Range
+   * @return new Feature-Value
+   */
+  protected abstract T createValue(int position);
+
+  /**
+   * @param newOffset
+   * @param newSize
+   * @return new Sub-Range of the complete Range
+   */
+  protected abstract FeatureValueRange<T> createRange(int newOffset, int newSize);
+
+  /**
+   * @param position
+   *          Position of the Value within the complete Range
+   * @return Sort-Key of the Value, i.e. without creating the Value itself
+   */
+  protected abstract FeatureValueKey createKey(int position);
+
+  /**
+   * @return true if Values are ascending with their Position, false if they
+   *         are descending
+   */
+  protected abstract boolean isAscending();
+
+  protected String createFeatureValueID(final int position) {
+    return this.rangeID + getPrefix() + String.valueOf(position + 1);
+  }
+
+  /**
+   * @param featureValueID
+   * @return Position within the complete Range; -1 if the ID does not belong
+   *         to this Range
+   */
+  protected int getPosition(final String featureValueID) {
+    return getPosition(this.rangeID + getPrefix(), featureValueID);
+  }
+
+  /**
+   * @param prefix
+   *          Range-ID followed by the Type-specific Prefix
+   * @param featureValueID
+   * @return Position of the Value within its Range; -1 if the ID does not
+   *         belong to a Range with this Prefix
+   */
+  public static int getPosition(final String prefix, final String featureValueID) {
+    if (StringUtils.isEmpty(prefix) || StringUtils.isEmpty(featureValueID) || (featureValueID.length() <= prefix.length()) || !featureValueID.startsWith(prefix)) {
+      return -1;
+    }
+    final String number = featureValueID.substring(prefix.length());
+    for (int i = 0; i < number.length(); i++) {
+      if (!Character.isDigit(number.charAt(i))) {
+        return -1;
+      }
+    }
+    try {
+      return Integer.parseInt(number) - 1;
+    }
+    catch (final NumberFormatException nfex) {
+      return -1;
+    }
+  }
+
+  /**
+   * @param featureValueID
+   * @return ID of the Range the Value belongs to; null if the ID is not the
+   *         ID of a Value of any Range
+   */
+  public static String getRangeID(final String featureValueID) {
+    if (StringUtils.isEmpty(featureValueID)) {
+      return null;
+    }
+    int idx = featureValueID.length();
+    while ((idx > 0) && Character.isDigit(featureValueID.charAt(idx - 1))) {
+      idx--;
+    }
+    if ((idx == featureValueID.length()) || (idx < 3)) {
+      return null;
+    }
+    final String prefix = featureValueID.substring(idx - 2, idx);
+    if (!IntegerFeatureValueRange.PREFIX.equals(prefix) && !FloatFeatureValueRange.PREFIX.equals(prefix)) {
+      return null;
+    }
+    return featureValueID.substring(0, idx - 2);
+  }
+
+  // ----------------------------------------------------------------
+
+  // Index within this Range of the i-th smallest Value
+  private int toIndex(final int sorted) {
+    return (isAscending() ? sorted : this.size - 1 - sorted);
+  }
+
+  // Key of the i-th smallest Value
+  private FeatureValueKey keyOf(final int sorted) {
+    return createKey(this.offset + toIndex(sorted));
+  }
+
+  // first sorted position with a key greater than or equal to the given one
+  private int lowerBound(final FeatureValueKey key) {
+    int lo = 0;
+    int hi = this.size;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (keyOf(mid).compareTo(key) < 0) {
+        lo = mid + 1;
+      }
+      else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  // first sorted position with a key greater than the given one
+  private int upperBound(final FeatureValueKey key, final int from) {
+    int lo = from;
+    int hi = this.size;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (keyOf(mid).compareTo(key) <= 0) {
+        lo = mid + 1;
+      }
+      else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  // add Sub-Range of the sorted positions [from, to)
+  private void addSorted(final List<FeatureValueRange<T>> result, final int from, final int to) {
+    if (from < to) {
+      result.add(isAscending() ? subList(from, to) : subList(this.size - to, this.size - from));
+    }
+  }
+
+  // sorted positions [from, to) of all Values equal to a Value of another Range
+  private int[] matchRange(final FeatureValueRange<? extends FeatureValue> other, final boolean equal) {
+    if (other.isEmpty()) {
+      return null;
+    }
+    final int lo = lowerBound(other.getMinimum().toSortKey());
+    final int hi = upperBound(other.getMaximum().toSortKey(), lo);
+    if (lo >= hi) {
+      return null;
+    }
+    // two consecutive Members of both Ranges imply that all Values in between are Members, too
+    final boolean exact = (other.indexOfKey(keyOf(lo)) >= 0) && (((hi - lo) == 1) || (other.indexOfKey(keyOf(lo + 1)) >= 0));
+    if (exact || equal) {
+      return new int[] { lo, hi };
+    }
+    // not equal: only remove what is certainly equal
+    return null;
+  }
+
+  private List<FeatureValueRange<T>> selectSorted(final List<int[]> matches, final boolean equal) {
+    final List<FeatureValueRange<T>> result = new ArrayList<FeatureValueRange<T>>();
+    if (equal) {
+      for (final int[] m : matches) {
+        addSorted(result, m[0], m[1]);
+      }
+    }
+    else {
+      int from = 0;
+      for (final int[] m : matches) {
+        addSorted(result, from, m[0]);
+        from = m[1];
+      }
+      addSorted(result, from, this.size);
+    }
+    return result;
+  }
+
+  // sort and merge overlapping intervals of sorted positions
+  private static List<int[]> merge(final List<int[]> intervals) {
+    final List<int[]> result = new ArrayList<int[]>(intervals.size());
+    if (!intervals.isEmpty()) {
+      final int[][] arr = intervals.toArray(new int[intervals.size()][]);
+      Arrays.sort(arr, INTERVAL_ORDER);
+      int[] cur = new int[] { arr[0][0], arr[0][1] };
+      for (int i = 1; i < arr.length; i++) {
+        if (arr[i][0] <= cur[1]) {
+          cur[1] = Math.max(cur[1], arr[i][1]);
+        }
+        else {
+          result.add(cur);
+          cur = new int[] { arr[i][0], arr[i][1] };
+        }
+      }
+      result.add(cur);
+    }
+    return result;
+  }
+
+  private static FeatureValue min(final FeatureValue fv1, final FeatureValue fv2) {
+    return ((fv1 == null) || (fv2.toSortKey().compareTo(fv1.toSortKey()) < 0) ? fv2 : fv1);
+  }
+
+  private static FeatureValue max(final FeatureValue fv1, final FeatureValue fv2) {
+    return ((fv1 == null) || (fv2.toSortKey().compareTo(fv1.toSortKey()) > 0) ? fv2 : fv1);
+  }
+}
@@ -15,14 +15,14 @@
 package org.psikeds.resolutionengine.datalayer.vo;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
 import javax.xml.bind.annotation.XmlRootElement;
 
 /**
- * List of FeatureValues.
+ * List of FeatureValues; Ranges of Values are kept symbolic, see
+ * {@link FeatureValueList}.
  * 
  * @author marco@juliano.de
  * 
@@ -32,7 +32,7 @@ public class FeatureValues extends ValueObject implements Serializable {
 
   private static final long serialVersionUID = 1L;
 
-  private List<FeatureValue> value;
+  private FeatureValueList value;
 
   public FeatureValues() {
     this(null);
@@ -45,7 +45,7 @@ public class FeatureValues extends ValueObject implements Serializable {
 
   public List<FeatureValue> getValue() {
     if (this.value == null) {
-      this.value = new ArrayList<FeatureValue>();
+      this.value = new FeatureValueList();
     }
     return this.value;
   }
@@ -59,6 +59,6 @@ public class FeatureValues extends ValueObject implements Serializable {
   }
 
   public void setValue(final List<FeatureValue> lst) {
-    this.value = lst;
+    this.value = ((lst == null) || (lst instanceof FeatureValueList) ? (FeatureValueList) lst : new FeatureValueList(lst));
   }
 }
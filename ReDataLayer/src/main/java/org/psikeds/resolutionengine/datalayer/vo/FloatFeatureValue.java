@@ -157,6 +157,7 @@ public class FloatFeatureValue extends FeatureValue implements Serializable {
     this.value = null; // string represenation of value is never used for float-implementation!
     this.decimalValue = val;
     this.scale = (this.decimalValue == null ? MIN_FLOAT_SCALE : this.decimalValue.scale());
+    resetSortKey();
   }
 
   @JsonIgnore
@@ -197,6 +198,14 @@ public class FloatFeatureValue extends FeatureValue implements Serializable {
     return this.decimalValue;
   }
 
+  /**
+   * @see org.psikeds.resolutionengine.datalayer.vo.FeatureValue#createSortKey()
+   */
+  @Override
+  protected FeatureValueKey createSortKey() {
+    return FeatureValueKey.valueOf(this.decimalValue);
+  }
+
   // ----------------------------------------------------------------
 
   public static long toIntegerValue(final BigDecimal val, final int rounding) {
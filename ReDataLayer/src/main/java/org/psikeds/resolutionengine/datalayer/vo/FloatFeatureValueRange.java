@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.datalayer.vo;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * A symbolic Range of Float-Feature-Values.
+ * 
+ * The n-th Value is calculated exactly as Minimum + n * Increment, i.e.
+ * Rounding-Errors are not accumulated along the Range. The Value is only
+ * rounded to the Scale of the Range, so that a Value and its Sort-Key are
+ * always the same.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class FloatFeatureValueRange extends FeatureValueRange<FloatFeatureValue> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final String PREFIX = "_F";
+
+  private final BigDecimal min;
+  private final BigDecimal inc;
+  private final int scale;
+  private final int roundingMode;
+
+  public FloatFeatureValueRange(final String featureID, final String rangeID, final BigDecimal min, final BigDecimal inc, final int size, final int scale, final int roundingMode) {
+    this(featureID, rangeID, min, inc, 0, size, scale, roundingMode);
+  }
+
+  protected FloatFeatureValueRange(final String featureID, final String rangeID, final BigDecimal min, final BigDecimal inc, final int offset, final int size, final int scale,
+      final int roundingMode) {
+    super(featureID, rangeID, offset, size);
+    this.min = min;
+    this.inc = inc;
+    this.scale = scale;
+    this.roundingMode = roundingMode;
+  }
+
+  public BigDecimal getMin() {
+    return this.min;
+  }
+
+  public BigDecimal getInc() {
+    return this.inc;
+  }
+
+  public int getScale() {
+    return this.scale;
+  }
+
+  public int getRoundingMode() {
+    return this.roundingMode;
+  }
+
+  // ----------------------------------------------------------------
+
+  @Override
+  protected String getPrefix() {
+    return PREFIX;
+  }
+
+  @Override
+  protected FloatFeatureValue createValue(final int position) {
+    return new FloatFeatureValue(this.featureID, createFeatureValueID(position), calculate(position), this.roundingMode);
+  }
+
+  @Override
+  protected FeatureValueKey createKey(final int position) {
+    return FeatureValueKey.valueOf(calculate(position));
+  }
+
+  @Override
+  protected boolean isAscending() {
+    return (this.inc.signum() >= 0);
+  }
+
+  @Override
+  protected FloatFeatureValueRange createRange(final int newOffset, final int newSize) {
+    return new FloatFeatureValueRange(this.featureID, this.rangeID, this.min, this.inc, newOffset, newSize, this.scale, this.roundingMode);
+  }
+
+  // ----------------------------------------------------------------
+
+  private BigDecimal calculate(final int position) {
+    final BigDecimal val = this.min.add(this.inc.multiply(BigDecimal.valueOf(position)));
+    return (this.scale > FloatFeatureValue.MIN_FLOAT_SCALE ? val.setScale(this.scale, this.roundingMode) : val);
+  }
+}
@@ -48,5 +48,6 @@ public class IntegerFeatureValue extends FeatureValue implements Serializable {
   @JsonIgnore
   public void setValue(final long val) {
     this.value = String.valueOf(val);
+    resetSortKey();
   }
 }
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.datalayer.vo;
+
+import java.io.Serializable;
+
+/**
+ * A symbolic Range of Integer-Feature-Values.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class IntegerFeatureValueRange extends FeatureValueRange<IntegerFeatureValue> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final String PREFIX = "_I";
+
+  private final long min;
+  private final long inc;
+
+  public IntegerFeatureValueRange(final String featureID, final String rangeID, final long min, final long inc, final int size) {
+    this(featureID, rangeID, min, inc, 0, size);
+  }
+
+  protected IntegerFeatureValueRange(final String featureID, final String rangeID, final long min, final long inc, final int offset, final int size) {
+    super(featureID, rangeID, offset, size);
+    this.min = min;
+    this.inc = inc;
+  }
+
+  public long getMin() {
+    return this.min;
+  }
+
+  public long getInc() {
+    return this.inc;
+  }
+
+  // ----------------------------------------------------------------
+
+  @Override
+  protected String getPrefix() {
+    return PREFIX;
+  }
+
+  @Override
+  protected IntegerFeatureValue createValue(final int position) {
+    return new IntegerFeatureValue(this.featureID, createFeatureValueID(position), this.min + (position * this.inc));
+  }
+
+  @Override
+  protected FeatureValueKey createKey(final int position) {
+    return FeatureValueKey.valueOf(this.min + (position * this.inc));
+  }
+
+  @Override
+  protected boolean isAscending() {
+    return (this.inc >= 0);
+  }
+
+  @Override
+  protected IntegerFeatureValueRange createRange(final int newOffset, final int newSize) {
+    return new IntegerFeatureValueRange(this.featureID, this.rangeID, this.min, this.inc, newOffset, newSize);
+  }
+}
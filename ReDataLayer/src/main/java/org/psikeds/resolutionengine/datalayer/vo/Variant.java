@@ -47,7 +47,7 @@ public class Variant extends ValueObject implements Serializable {
   private boolean singleton;
   private boolean implicit;
   private List<String> featureIds; // distinct features referenced by all values and concepts
-  private List<FeatureValue> featureValues;
+  private FeatureValueList featureValues;
   private List<Concept> concepts;
 
   public Variant() {
@@ -156,13 +156,13 @@ public class Variant extends ValueObject implements Serializable {
 
   public List<FeatureValue> getFeatureValues() {
     if (this.featureValues == null) {
-      this.featureValues = new ArrayList<FeatureValue>();
+      this.featureValues = new FeatureValueList();
     }
     return this.featureValues;
   }
 
   public void setFeatureValues(final List<FeatureValue> featureValues) {
-    this.featureValues = featureValues;
+    this.featureValues = ((featureValues == null) || (featureValues instanceof FeatureValueList) ? (FeatureValueList) featureValues : new FeatureValueList(featureValues));
   }
 
   public boolean addFeatureValue(final FeatureValue value) {
@@ -34,7 +34,9 @@ import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.xml.DOMConfigurator;
 
 import org.psikeds.common.util.JSONHelper;
+import org.psikeds.knowledgebase.xml.KBParser;
 import org.psikeds.knowledgebase.xml.impl.XMLParser;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.impl.StaxKnowledgeBaseParser;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.impl.XmlKnowledgeBaseFactory;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.Validator;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.impl.ConceptValidator;
@@ -102,20 +104,64 @@ public class KnowledgeBaseTest {
    */
   @Test
   public void testKnowledgeBase() throws Exception {
+    checkKnowledgeBase(new XMLParser(XML));
+  }
+
+  /**
+   * Test method for KnowledgeBase and KnowledgeBaseFactory using the
+   * StaxKnowledgeBaseParser.
+   */
+  @Test
+  public void testKnowledgeBaseWithStaxParser() throws Exception {
+    checkKnowledgeBase(new StaxKnowledgeBaseParser(XML));
+  }
+
+  /**
+   * Test method comparing XMLParser (JAXB) and StaxKnowledgeBaseParser:
+   * Both must create the same Knowledge-Base-Data.
+   */
+  @Test
+  public void testStaxParserVersusXmlParser() throws Exception {
+    boolean ok = false;
+    LOGGER.info("Starting comparison of StaxKnowledgeBaseParser and XMLParser ...");
+    try {
+      final KnowledgeBaseFactory jaxbFactory = new XmlKnowledgeBaseFactory(new XMLParser(XML), createValidators());
+      final KnowledgeBaseFactory staxFactory = new XmlKnowledgeBaseFactory(new StaxKnowledgeBaseParser(XML), createValidators());
+      final String jaxbData = JSONHelper.dump(getKnowledgeData(jaxbFactory.create()));
+      final String staxData = JSONHelper.dump(getKnowledgeData(staxFactory.create()));
+      assertEquals("StaxKnowledgeBaseParser and XMLParser created different Knowledge-Base-Data!", jaxbData, staxData);
+      ok = true;
+    }
+    finally {
+      LOGGER.info("... comparison of StaxKnowledgeBaseParser and XMLParser finished " + (ok ? "without problems." : "with ERRORS!!!"));
+    }
+  }
+
+  private static KnowledgeData getKnowledgeData(final KnowledgeBase kb) {
+    // MetaData is skipped: XML-Dates can be mapped to different but equivalent Calendars
+    return new KnowledgeData(null, kb.getFeatures(), kb.getFeatureValues(), kb.getConcepts(), kb.getPurposes(), kb.getVariants(), kb.getAlternatives(),
+        kb.getConstituents(), kb.getEvents(), kb.getRules(), kb.getRelationParameters(), kb.getRelations());
+  }
+
+  private static List<Validator> createValidators() {
+    final List<Validator> validators = new ArrayList<Validator>();
+    validators.add(new FeatureValidator());
+    validators.add(new ConceptValidator());
+    validators.add(new FulfillsValidator());
+    validators.add(new ConstitutesValidator());
+    validators.add(new VariantValidator());
+    validators.add(new EventValidator());
+    validators.add(new RuleValidator());
+    validators.add(new RelationValidator());
+    return validators;
+  }
+
+  private void checkKnowledgeBase(final KBParser parser) throws Exception {
     boolean ok = false;
     LOGGER.info("Starting test of KnowledgeBase ...");
     try {
-      LOGGER.info(" ... parsing XML " + XML + " ...");
-      final XMLParser parser = new XMLParser(XML);
-      final List<Validator> validators = new ArrayList<Validator>();
-      validators.add(new FeatureValidator());
-      validators.add(new ConceptValidator());
-      validators.add(new FulfillsValidator());
-      validators.add(new ConstitutesValidator());
-      validators.add(new VariantValidator());
-      validators.add(new EventValidator());
-      validators.add(new RuleValidator());
-      validators.add(new RelationValidator());
+      LOGGER.info(" ... parsing XML " + XML + " with " + parser.getClass().getSimpleName() + " ...");
+      final List<Validator> validators = createValidators();
       final KnowledgeBaseFactory factory = new XmlKnowledgeBaseFactory(parser, validators);
       final KnowledgeBase kb = factory.create();
       assertNotNull("Failed to load KB from File " + XML, kb);
@@ -138,7 +184,7 @@ public class KnowledgeBaseTest {
       final List<FeatureValue> fvlst = allFeatureValues.getValue();
       assertNotNull("No List of FeatureValues!", fvlst);
       result = fvlst.size();
-      expected = 397;
+      expected = 399;
       assertEquals("KB has " + result + " FeatureValues total, not expected " + expected, expected, result);
 
       LOGGER.info("... checking Concepts ...");
@@ -240,6 +286,9 @@ public class KnowledgeBaseTest {
         final List<Variant> ffvlst = ffvs.getVariant();
         assertNotNull("No List of fulfilling Variants!", ffvlst);
         assertFalse("Purpose " + purposeId + " is not fulfilled by any Variant!", ffvlst.isEmpty());
+        for (final Variant v : ffvlst) {
+          assertTrue("Variant " + v.getVariantID() + " does not fulfill Purpose " + purposeId, kb.isFulfilledBy(purposeId, v.getVariantID()));
+        }
       }
 
       LOGGER.info("... checking all Variants ...");
@@ -17,12 +17,15 @@ package org.psikeds.resolutionengine.datalayer.knowledgebase.util;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import org.junit.BeforeClass;
@@ -33,9 +36,16 @@ import org.slf4j.LoggerFactory;
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.xml.DOMConfigurator;
 
+import org.psikeds.resolutionengine.datalayer.vo.Feature;
 import org.psikeds.resolutionengine.datalayer.vo.FeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueDomain;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueKey;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueList;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange;
 import org.psikeds.resolutionengine.datalayer.vo.FloatFeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.FloatFeatureValueRange;
 import org.psikeds.resolutionengine.datalayer.vo.IntegerFeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.IntegerFeatureValueRange;
 import org.psikeds.resolutionengine.datalayer.vo.RelationOperator;
 
 public class ComparatorTest {
@@ -492,4 +502,267 @@ public class ComparatorTest {
       LOGGER.info("... Test 3: Double-sided comparison of FeatureValue-Lists finished " + (ok ? "without problems." : "with ERRORS!!!"));
     }
   }
+
+  /**
+   * Test method for symbolic Value-Ranges.
+   */
+  @Test
+  public void test4_FeatureValueRange() throws Exception {
+    boolean ok = false;
+    LOGGER.info("Starting Test 4: Symbolic Value-Ranges ...");
+    try {
+      LOGGER.info("... calculating Integer-Range ...");
+      final IntegerFeatureValueRange irange = FeatureValueHelper.calculateIntegerRange("F1", "R1", 10, 20, 2);
+      LOGGER.trace("irange = {}", irange);
+      assertEquals(6, irange.size());
+      assertEquals(10, irange.get(0).toIntegerValue());
+      assertEquals(20, irange.get(5).toIntegerValue());
+      assertEquals(3, irange.indexOf(irange.get(3)));
+      assertTrue(irange.contains(irange.get(5)));
+      assertEquals(2, irange.subList(2, 4).size());
+      assertEquals(irange.get(2), irange.subList(2, 4).get(0));
+      LOGGER.info("... calculating descending Integer-Range ...");
+      final IntegerFeatureValueRange drange = FeatureValueHelper.calculateIntegerRange("F1", "R2", 5, 1, -1);
+      assertEquals(5, drange.size());
+      assertEquals(1, drange.get(4).toIntegerValue());
+      LOGGER.info("... calculating Float-Range without Rounding-Errors ...");
+      final FloatFeatureValueRange frange = FeatureValueHelper.calculateFloatRange("F2", "R10", new BigDecimal("0.0"), new BigDecimal("1.0"), new BigDecimal("0.1"));
+      LOGGER.trace("frange = {}", frange);
+      assertEquals(11, frange.size());
+      assertEquals(1.0f, frange.get(10).toFloatValue(), 0.0f);
+      LOGGER.info("... checking Range-Membership ...");
+      assertTrue(FeatureValueHelper.isWithinRange("F2", "R10", frange.get(7)));
+      assertFalse(FeatureValueHelper.isWithinRange("F2", "R1", frange.get(7)));
+      assertFalse(FeatureValueHelper.isWithinRange("F1", "R10", irange.get(0)));
+      assertTrue(FeatureValueHelper.isWithinRange("F1", "R1", irange.get(0)));
+      assertEquals("R1", FeatureValueRange.getRangeID(irange.get(3).getFeatureValueID()));
+      assertNull(FeatureValueRange.getRangeID("FV1"));
+      assertEquals(irange.get(3), irange.getFeatureValue(irange.get(3).getFeatureValueID()));
+      LOGGER.info("... narrowing Ranges ...");
+      List<FeatureValueRange<IntegerFeatureValue>> sub = irange.select(RelationOperator.GREATER_THAN, new IntegerFeatureValue("F3", "FV13", 13));
+      assertEquals(1, sub.size());
+      assertEquals(4, sub.get(0).size());
+      assertEquals(irange.get(2), sub.get(0).get(0));
+      sub = irange.select(RelationOperator.NOT_EQUAL, new IntegerFeatureValue("F3", "FV14", 14));
+      assertEquals(2, sub.size());
+      assertEquals(2, sub.get(0).size());
+      assertEquals(3, sub.get(1).size());
+      sub = drange.select(RelationOperator.LESS_OR_EQUAL, new IntegerFeatureValue("F3", "FV2", 2));
+      assertEquals(1, sub.size());
+      assertEquals(drange.get(3), sub.get(0).get(0));
+      assertEquals(1, sub.get(0).getMinimum().toIntegerValue());
+      assertEquals(3, frange.select(RelationOperator.GREATER_OR_EQUAL, new FloatFeatureValue("F3", "FV075", "0.75")).get(0).size());
+      LOGGER.info("... narrowing Ranges against other Ranges ...");
+      final List<FeatureValue> fine = new FeatureValueList(FeatureValueHelper.calculateIntegerRange("F3", "R3", 0, 100, 1));
+      assertEquals(6, irange.select(RelationOperator.EQUAL, fine).get(0).size());
+      assertTrue(irange.select(RelationOperator.NOT_EQUAL, fine).isEmpty());
+      final List<FeatureValue> coarse = new FeatureValueList(FeatureValueHelper.calculateIntegerRange("F3", "R4", 12, 20, 4));
+      assertEquals(5, irange.select(RelationOperator.EQUAL, coarse).get(0).size());
+      assertEquals(6, irange.select(RelationOperator.NOT_EQUAL, coarse).get(0).size());
+      assertEquals(5, irange.select(RelationOperator.LESS_THAN, coarse).get(0).size());
+      LOGGER.info("... keeping Ranges symbolic ...");
+      final Feature f = new Feature("F1");
+      f.addValue(irange);
+      f.addValue(new IntegerFeatureValue("F1", "FV99", 99));
+      assertEquals(7, f.getValues().size());
+      assertEquals(1, f.getRanges().size());
+      assertEquals(1, f.getDomain().size());
+      assertTrue(f.getValues().contains(irange.get(1)));
+      final FeatureValueList lst = new FeatureValueList(f.getValues());
+      assertEquals(irange.get(2), lst.remove(2));
+      assertEquals(6, lst.size());
+      assertEquals(2, lst.getRanges().size());
+      assertEquals(irange.get(3), lst.get(2));
+      // done
+      ok = true;
+    }
+    catch (final AssertionError ae) {
+      ok = false;
+      LOGGER.error("Functional Error: " + ae.getMessage(), ae);
+      throw ae;
+    }
+    catch (final Throwable t) {
+      ok = false;
+      LOGGER.error("Technical Error: " + t.getMessage(), t);
+      fail(t.getMessage());
+    }
+    finally {
+      LOGGER.info("... Test 4: Symbolic Value-Ranges finished " + (ok ? "without problems." : "with ERRORS!!!"));
+    }
+  }
+
+  /**
+   * Test method for pre-parsed Sort-Keys of Feature-Values.
+   */
+  @Test
+  public void test5_FeatureValueKey() throws Exception {
+    boolean ok = false;
+    LOGGER.info("Starting Test 5: Pre-parsed Sort-Keys ...");
+    try {
+      LOGGER.info("... comparing Keys of different Types ...");
+      final FeatureValueKey nul = new FeatureValue("F1", "FV0", null).toSortKey();
+      final FeatureValueKey str = new FeatureValue("F1", "FV1", " abc ").toSortKey();
+      final FeatureValueKey one = new IntegerFeatureValue("F1", "FV2", 1).toSortKey();
+      final FeatureValueKey onef = new FloatFeatureValue("F1", "FV3", "1.000").toSortKey();
+      final FeatureValueKey half = new FeatureValue("F1", "FV4", "0.5").toSortKey();
+      final FeatureValueKey big = new FeatureValue("F1", "FV5", "123456789012345678901234567890").toSortKey();
+      assertTrue(nul.isNull());
+      assertFalse(str.isNumber());
+      assertTrue(one.isIntegral());
+      assertTrue(onef.isIntegral());
+      assertFalse(half.isIntegral());
+      assertFalse(big.isIntegral());
+      assertTrue(nul.compareTo(str) < 0);
+      assertTrue(str.compareTo(half) < 0);
+      assertTrue(half.compareTo(one) < 0);
+      assertEquals(0, one.compareTo(onef));
+      assertEquals(one, onef);
+      assertEquals(one.hashCode(), onef.hashCode());
+      assertTrue(big.compareTo(one) > 0);
+      assertEquals(0, str.compareTo(new FeatureValue("F1", "FV6", "abc").toSortKey()));
+      LOGGER.info("... changing Values ...");
+      final IntegerFeatureValue fvi = new IntegerFeatureValue("F1", "FV7", 7);
+      final FeatureValueKey seven = fvi.toSortKey();
+      assertEquals(7, seven.longValue());
+      assertSame("Sort-Key is parsed again.", seven, fvi.toSortKey());
+      fvi.setValue(8);
+      assertNotSame("Sort-Key not invalidated.", seven, fvi.toSortKey());
+      assertEquals(8, fvi.toSortKey().longValue());
+      final FloatFeatureValue fvf = new FloatFeatureValue("F1", "FV8", "7.5");
+      assertTrue(fvf.toSortKey().compareTo(fvi.toSortKey()) < 0);
+      fvf.setValue(new BigDecimal("8.5"));
+      assertTrue(fvf.toSortKey().compareTo(fvi.toSortKey()) > 0);
+      // done
+      ok = true;
+    }
+    catch (final AssertionError ae) {
+      ok = false;
+      LOGGER.error("Functional Error: " + ae.getMessage(), ae);
+      throw ae;
+    }
+    catch (final Throwable t) {
+      ok = false;
+      LOGGER.error("Technical Error: " + t.getMessage(), t);
+      fail(t.getMessage());
+    }
+    finally {
+      LOGGER.info("... Test 5: Pre-parsed Sort-Keys finished " + (ok ? "without problems." : "with ERRORS!!!"));
+    }
+  }
+
+  /**
+   * Test method for BitSet-Masks over the Domain of a Feature.
+   */
+  @Test
+  public void test6_FeatureValueDomain() throws Exception {
+    boolean ok = false;
+    LOGGER.info("Starting Test 6: Domain of a Feature ...");
+    try {
+      LOGGER.info("... creating Domain ...");
+      final Feature f = new Feature("F1");
+      f.addValue(new ArrayList<FeatureValue>(FeatureValueHelper.calculateIntegerRange("F1", "R1", 10, 1, -1)));
+      final FeatureValueDomain dom = f.getDomain();
+      assertEquals(10, dom.size());
+      assertEquals(1, dom.get(0).toIntegerValue());
+      assertEquals(10, dom.get(9).toIntegerValue());
+      assertEquals(0, dom.ordinal(f.getValues().get(9).getFeatureValueID()));
+      assertEquals(-1, dom.ordinal("UNKNOWN"));
+      LOGGER.info("... applying Masks ...");
+      final FeatureValue five = new IntegerFeatureValue("F2", "FV5", 5);
+      final FeatureValue half = new FloatFeatureValue("F2", "FV55", "5.5");
+      BitSet mask = dom.mask(RelationOperator.LESS_THAN, five);
+      assertEquals(4, mask.cardinality());
+      assertEquals(3, mask.nextClearBit(0) - 1);
+      mask = dom.mask(RelationOperator.LESS_OR_EQUAL, half);
+      assertEquals(5, mask.cardinality());
+      mask = dom.mask(RelationOperator.GREATER_THAN, half);
+      assertEquals(5, mask.cardinality());
+      assertEquals(5, mask.nextSetBit(0));
+      mask = dom.mask(RelationOperator.EQUAL, five);
+      assertEquals(1, mask.cardinality());
+      assertTrue(mask.get(4));
+      mask = dom.mask(RelationOperator.NOT_EQUAL, five);
+      assertEquals(9, mask.cardinality());
+      assertEquals(10, dom.mask(RelationOperator.GREATER_OR_EQUAL, (FeatureValue) null).cardinality());
+      LOGGER.info("... applying Masks against Lists ...");
+      final List<FeatureValue> refs = new ArrayList<FeatureValue>();
+      refs.add(five);
+      refs.add(new IntegerFeatureValue("F2", "FV7", 7));
+      assertEquals(2, dom.mask(RelationOperator.EQUAL, refs).cardinality());
+      assertEquals(8, dom.mask(RelationOperator.NOT_EQUAL, refs).cardinality());
+      assertEquals(6, dom.mask(RelationOperator.LESS_THAN, refs).cardinality());
+      assertEquals(6, dom.mask(RelationOperator.GREATER_OR_EQUAL, refs).cardinality());
+      mask = dom.all();
+      mask.and(dom.mask(RelationOperator.GREATER_THAN, refs));
+      mask.and(dom.mask(RelationOperator.LESS_THAN, new IntegerFeatureValue("F2", "FV9", 9)));
+      assertEquals(3, mask.cardinality());
+      LOGGER.info("... applying Masks against Ranges ...");
+      final List<FeatureValue> range = new FeatureValueList(FeatureValueHelper.calculateIntegerRange("F2", "R2", 2, 8, 2));
+      assertEquals(4, dom.mask(RelationOperator.EQUAL, range).cardinality());
+      assertEquals(6, dom.mask(RelationOperator.NOT_EQUAL, range).cardinality());
+      assertEquals(7, dom.mask(RelationOperator.LESS_THAN, range).cardinality());
+      assertEquals(8, dom.mask(RelationOperator.GREATER_THAN, range).cardinality());
+      // done
+      ok = true;
+    }
+    catch (final AssertionError ae) {
+      ok = false;
+      LOGGER.error("Functional Error: " + ae.getMessage(), ae);
+      throw ae;
+    }
+    catch (final Throwable t) {
+      ok = false;
+      LOGGER.error("Technical Error: " + t.getMessage(), t);
+      fail(t.getMessage());
+    }
+    finally {
+      LOGGER.info("... Test 6: Domain of a Feature finished " + (ok ? "without problems." : "with ERRORS!!!"));
+    }
+  }
+
+  /**
+   * Test method for double-sided Comparison of larger Lists, i.e. Hash-Joins
+   * and distinct Combination of Values.
+   */
+  @Test
+  public void test7_LargeFeatureValueLists() throws Exception {
+    boolean ok = false;
+    LOGGER.info("Starting Test 7: Double-sided comparison of larger FeatureValue-Lists ...");
+    try {
+      for (int size = 10; size <= 1000; size *= 10) {
+        LOGGER.info("... creating two Lists of {} Feature-Values each ...", size);
+        // left side: 0 .. size-1 ; right side: size/2 .. 3*size/2-1, i.e. half of the values are overlapping
+        final List<FeatureValue> left = new ArrayList<FeatureValue>(FeatureValueHelper.calculateIntegerRange("FL", "RL", 0, size - 1, 1));
+        final List<FeatureValue> right = new ArrayList<FeatureValue>(FeatureValueHelper.calculateIntegerRange("FR", "RR", size / 2, ((3 * size) / 2) - 1, 1));
+        final int expectedEqual = size / 2;
+        final List<FeatureValue> equal = FeatureValueHelper.isEqual(left, right);
+        final List<FeatureValue> notEqual = FeatureValueHelper.notEqual(left, right);
+        final List<FeatureValue> combined = new ArrayList<FeatureValue>(left);
+        FeatureValueHelper.addAllDistinct(combined, left);
+        FeatureValueHelper.addAllDistinct(combined, right);
+        assertEquals(expectedEqual, equal.size());
+        assertEquals(size - expectedEqual, notEqual.size());
+        assertEquals(2 * size, combined.size());
+        for (final FeatureValue fv : equal) {
+          assertTrue(fv.toIntegerValue() >= (size / 2));
+          assertFalse(notEqual.contains(fv));
+        }
+      }
+      // done
+      ok = true;
+    }
+    catch (final AssertionError ae) {
+      ok = false;
+      LOGGER.error("Functional Error: " + ae.getMessage(), ae);
+      throw ae;
+    }
+    catch (final Throwable t) {
+      ok = false;
+      LOGGER.error("Technical Error: " + t.getMessage(), t);
+      fail(t.getMessage());
+    }
+    finally {
+      LOGGER.info("... Test 7: Double-sided comparison of larger FeatureValue-Lists finished " + (ok ? "without problems." : "with ERRORS!!!"));
+    }
+  }
 }
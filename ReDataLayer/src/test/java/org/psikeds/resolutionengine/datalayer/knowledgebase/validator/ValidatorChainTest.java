@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.datalayer.knowledgebase.validator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.xml.DOMConfigurator;
+
+import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+
+/**
+ * Test case for {@link ValidatorChain}.
+ * 
+ * @author marco@juliano.de
+ */
+public class ValidatorChainTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ValidatorChainTest.class);
+
+  private static final int THREADS = 4;
+  private static final int NUM_ENTITIES = 10000;
+
+  private static String LOG4J;
+
+  @BeforeClass
+  public static void setUpBeforeClass() {
+    BasicConfigurator.configure();
+    LOG4J = System.getProperty("org.psikeds.test.log4j.xml", "../ResolutionEngine/src/main/resources/log4j.xml");
+    DOMConfigurator.configure(LOG4J);
+  }
+
+  /**
+   * Dependent Validators must not start before their Dependencies finished.
+   */
+  @Test
+  public void testDependencies() {
+    LOGGER.info("Testing Dependencies of Validators ...");
+    final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+    final Validator first = new FirstValidator(log, 100, false);
+    final Validator second = new SecondValidator(log, 0, false);
+    final Validator third = new ThirdValidator(log, 0, false);
+    new ValidatorChain(Arrays.asList(third, second, first), THREADS).validate(null);
+    assertEquals(6, log.size());
+    assertTrue(log.indexOf("end First") < log.indexOf("start Second"));
+    assertTrue(log.indexOf("end Second") < log.indexOf("start Third"));
+    LOGGER.info("... Dependencies OK.");
+  }
+
+  /**
+   * Dependents of a failed Validator are skipped and Errors are reported in
+   * the Order of the Chain, not in the Order of their Occurrence.
+   */
+  @Test
+  public void testErrors() {
+    LOGGER.info("Testing Errors of Validators ...");
+    final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+    final Validator first = new FirstValidator(log, 100, true);
+    final Validator second = new SecondValidator(log, 0, false);
+    final Validator other = new OtherValidator(log, 0, true);
+    try {
+      new ValidatorChain(Arrays.asList(first, second, other), THREADS).validate(null);
+      fail("Errors were not reported!");
+    }
+    catch (final ValidationException vex) {
+      assertEquals("KnowledgeBase is not valid: FirstValidator failed OtherValidator failed", vex.getMessage());
+    }
+    assertFalse("Dependent Validator was not skipped!", log.contains("start Second"));
+    LOGGER.info("... Errors OK.");
+  }
+
+  /**
+   * Cyclic Dependencies must be detected.
+   */
+  @Test
+  public void testCycles() {
+    final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+    try {
+      new ValidatorChain(Arrays.<Validator> asList(new CyclicValidator(log, 0, false), new OtherCyclicValidator(log, 0, false), new FirstValidator(log, 0, false)), THREADS).validate(null);
+      fail("Cyclic Dependencies were not detected!");
+    }
+    catch (final ValidationException vex) {
+      assertTrue("Validator was invoked!", log.isEmpty());
+    }
+  }
+
+  /**
+   * Every Entity must be checked exactly once, regardless of Partitioning.
+   */
+  @Test
+  public void testPartitioning() {
+    LOGGER.info("Testing Partitioning of Entities ...");
+    final List<Integer> entities = new ArrayList<Integer>();
+    for (int i = 0; i < NUM_ENTITIES; i++) {
+      entities.add(Integer.valueOf(i));
+    }
+    final AtomicInteger counter = new AtomicInteger();
+    final boolean[] results = new boolean[2];
+    final Validator val = new Validator() {
+      @Override
+      public void validate(final KnowledgeBase kb) throws ValidationException {
+        results[0] = ValidatorChain.checkAll(entities, new ValidatorChain.EntityCheck<Integer>() {
+          @Override
+          public boolean check(final Integer entity) {
+            counter.incrementAndGet();
+            return true;
+          }
+        });
+        results[1] = ValidatorChain.checkAll(entities, new ValidatorChain.EntityCheck<Integer>() {
+          @Override
+          public boolean check(final Integer entity) {
+            counter.incrementAndGet();
+            return entity.intValue() != (NUM_ENTITIES - 1);
+          }
+        });
+      }
+    };
+    new ValidatorChain(Arrays.asList(val, new FirstValidator(null, 0, false)), THREADS).validate(null);
+    assertEquals(2 * NUM_ENTITIES, counter.get());
+    assertTrue(results[0]);
+    assertFalse("Invalid Entity in last Partition not detected!", results[1]);
+    LOGGER.info("... Partitioning OK.");
+  }
+
+  // ----------------------------------------------------------------
+
+  private static class TestValidator implements DependentValidator {
+
+    private final List<String> log;
+    private final long sleep;
+    private final boolean fail;
+    private final List<Class<? extends Validator>> deps;
+
+    TestValidator(final List<String> log, final long sleep, final boolean fail, final List<Class<? extends Validator>> deps) {
+      this.log = log;
+      this.sleep = sleep;
+      this.fail = fail;
+      this.deps = deps;
+    }
+
+    @Override
+    public List<Class<? extends Validator>> getDependencies() {
+      return this.deps;
+    }
+
+    @Override
+    public void validate(final KnowledgeBase kb) throws ValidationException {
+      final String name = getClass().getSimpleName().replace("Validator", "");
+      if (this.log != null) {
+        this.log.add("start " + name);
+      }
+      try {
+        Thread.sleep(this.sleep);
+      }
+      catch (final InterruptedException iex) {
+        Thread.currentThread().interrupt();
+      }
+      if (this.log != null) {
+        this.log.add("end " + name);
+      }
+      if (this.fail) {
+        throw new ValidationException(getClass().getSimpleName() + " failed");
+      }
+    }
+  }
+
+  private static class FirstValidator extends TestValidator {
+    FirstValidator(final List<String> log, final long sleep, final boolean fail) {
+      super(log, sleep, fail, Collections.<Class<? extends Validator>> emptyList());
+    }
+  }
+
+  private static class SecondValidator extends TestValidator {
+    SecondValidator(final List<String> log, final long sleep, final boolean fail) {
+      super(log, sleep, fail, Arrays.<Class<? extends Validator>> asList(FirstValidator.class));
+    }
+  }
+
+  private static class ThirdValidator extends TestValidator {
+    ThirdValidator(final List<String> log, final long sleep, final boolean fail) {
+      super(log, sleep, fail, Arrays.<Class<? extends Validator>> asList(SecondValidator.class));
+    }
+  }
+
+  private static class OtherValidator extends TestValidator {
+    OtherValidator(final List<String> log, final long sleep, final boolean fail) {
+      super(log, sleep, fail, Collections.<Class<? extends Validator>> emptyList());
+    }
+  }
+
+  private static class CyclicValidator extends TestValidator {
+    CyclicValidator(final List<String> log, final long sleep, final boolean fail) {
+      super(log, sleep, fail, Arrays.<Class<? extends Validator>> asList(OtherCyclicValidator.class));
+    }
+  }
+
+  private static class OtherCyclicValidator extends TestValidator {
+    OtherCyclicValidator(final List<String> log, final long sleep, final boolean fail) {
+      super(log, sleep, fail, Arrays.<Class<? extends Validator>> asList(CyclicValidator.class));
+    }
+  }
+}
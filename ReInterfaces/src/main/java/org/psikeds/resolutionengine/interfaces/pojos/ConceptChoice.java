@@ -38,7 +38,7 @@ public class ConceptChoice extends Choice implements Serializable {
   private Concepts concepts;
 
   public ConceptChoice() {
-    this(null);
+    this((String) null);
   }
 
   public ConceptChoice(final String parentVariantID) {
@@ -63,6 +63,11 @@ public class ConceptChoice extends Choice implements Serializable {
     setConcepts(concepts);
   }
 
+  // copy constructor, list of concepts is copied, concepts themselves are shared
+  public ConceptChoice(final ConceptChoice cc) {
+    this(cc.getParentVariantID(), (cc.concepts == null ? null : new Concepts(cc.concepts)));
+  }
+
   // ----------------------------------------------------------------
 
   public Concepts getConcepts() {
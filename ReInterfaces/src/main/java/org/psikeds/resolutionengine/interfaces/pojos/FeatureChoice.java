@@ -20,6 +20,7 @@ import java.util.Collection;
 import javax.xml.bind.annotation.XmlRootElement;
 
 import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
 
 /**
  * A possible Choice: Which Values can be choosen for a Feature
@@ -30,6 +31,19 @@ import org.codehaus.jackson.annotate.JsonIgnore;
  * 
  * Note 2: Feature-ID and Variant-ID must point to existing Objects!
  * 
+ * Note 3: Possible Values are either discrete Values or symbolic Ranges of
+ * Values; use {@link #getNumberOfPossibleValues()} and
+ * {@link #getPossibleValue(int)} to access both of them.
+ * 
+ * Note 4: Compatibility of the Wire-Format: The Attribute possibleRanges was
+ * added later. It is only written if there are any Ranges, which is never
+ * the Case unless symbolic Ranges are enabled on the Server (Setting
+ * resolutionengine.transformer.ranges.symbolic). Otherwise Ranges are
+ * expanded into possibleValues just like before. Clients that enable it
+ * must evaluate possibleRanges, too; Clients ignoring it would only see the
+ * discrete Values and could neither display nor choose any Value of a
+ * Range.
+ * 
  * @author marco@juliano.de
  * 
  */
@@ -40,6 +54,7 @@ public class FeatureChoice extends Choice implements Serializable {
 
   private String featureID;
   private FeatureValues possibleValues;
+  private FeatureValueRanges possibleRanges;
 
   public FeatureChoice() {
     this(null, null, null);
@@ -68,6 +83,12 @@ public class FeatureChoice extends Choice implements Serializable {
     setValue(value);
   }
 
+  // copy constructor, possible values and ranges are copied, values and ranges themselves are shared
+  public FeatureChoice(final FeatureChoice fc) {
+    this(fc.getParentVariantID(), fc.getFeatureID(), (fc.possibleValues == null ? null : new FeatureValues(fc.possibleValues)));
+    setPossibleRanges(fc.possibleRanges == null ? null : new FeatureValueRanges(fc.possibleRanges));
+  }
+
   // ----------------------------------------------------------------
 
   public String getFeatureID() {
@@ -109,6 +130,103 @@ public class FeatureChoice extends Choice implements Serializable {
       this.possibleValues.clear();
       this.possibleValues = null;
     }
+    clearPossibleRanges();
+  }
+
+  // not written if empty, so that Clients unaware of Ranges do not get an unknown Attribute
+  @JsonSerialize(include = JsonSerialize.Inclusion.NON_DEFAULT)
+  public FeatureValueRanges getPossibleRanges() {
+    if (this.possibleRanges == null) {
+      this.possibleRanges = new FeatureValueRanges();
+    }
+    return this.possibleRanges;
+  }
+
+  public void setPossibleRanges(final FeatureValueRanges possibleRanges) {
+    this.possibleRanges = possibleRanges;
+  }
+
+  public void addPossibleRange(final FeatureValueRange range) {
+    if ((range != null) && (range.getSize() > 0)) {
+      getPossibleRanges().add(range);
+      setFeatureID(range.getFeatureID());
+    }
+  }
+
+  public void clearPossibleRanges() {
+    if (this.possibleRanges != null) {
+      this.possibleRanges.clear();
+      this.possibleRanges = null;
+    }
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @return Number of all possible Values, i.e. discrete Values and Values
+   *         of all Ranges
+   */
+  @JsonIgnore
+  public int getNumberOfPossibleValues() {
+    int num = (this.possibleValues == null ? 0 : this.possibleValues.size());
+    if (this.possibleRanges != null) {
+      for (final FeatureValueRange range : this.possibleRanges) {
+        num += range.getSize();
+      }
+    }
+    return num;
+  }
+
+  /**
+   * @param index
+   *          Index within all possible Values, i.e. discrete Values first,
+   *          followed by the Values of all Ranges
+   * @return possible Value
+   */
+  @JsonIgnore
+  public FeatureValue getPossibleValue(final int index) {
+    int idx = index;
+    final int num = (this.possibleValues == null ? 0 : this.possibleValues.size());
+    if ((idx >= 0) && (idx < num)) {
+      return this.possibleValues.get(idx);
+    }
+    idx -= num;
+    if ((idx >= 0) && (this.possibleRanges != null)) {
+      for (final FeatureValueRange range : this.possibleRanges) {
+        if (idx < range.getSize()) {
+          return range.getFeatureValue(idx);
+        }
+        idx -= range.getSize();
+      }
+    }
+    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + getNumberOfPossibleValues());
+  }
+
+  /**
+   * @param featureValueID
+   * @return possible Value with this ID; null if there is no such Value
+   */
+  @JsonIgnore
+  public FeatureValue getPossibleValue(final String featureValueID) {
+    if (featureValueID == null) {
+      return null;
+    }
+    if (this.possibleValues != null) {
+      for (final FeatureValue fv : this.possibleValues) {
+        if ((fv != null) && featureValueID.equals(fv.getFeatureValueID())) {
+          return fv;
+        }
+      }
+    }
+    if (this.possibleRanges != null) {
+      for (final FeatureValueRange range : this.possibleRanges) {
+        final FeatureValue fv = range.getFeatureValue(featureValueID);
+        if (fv != null) {
+          return fv;
+        }
+      }
+    }
+    return null;
   }
 
   @JsonIgnore
@@ -152,10 +270,9 @@ public class FeatureChoice extends Choice implements Serializable {
   public FeatureValue matches(final FeatureDecission fd) {
     try {
       if (this.parentVariantID.equals(fd.getVariantID()) && this.featureID.equals(fd.getFeatureID())) {
-        for (final FeatureValue fv : this.possibleValues) {
-          if (fv.getFeatureID().equals(fd.getFeatureID()) && fv.getFeatureValueID().equals(fd.getFeatureValueID())) {
-            return fv;
-          }
+        final FeatureValue fv = getPossibleValue(fd.getFeatureValueID());
+        if ((fv != null) && fv.getFeatureID().equals(fd.getFeatureID())) {
+          return fv;
         }
       }
     }
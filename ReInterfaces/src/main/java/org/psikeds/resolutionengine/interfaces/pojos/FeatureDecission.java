@@ -42,7 +42,7 @@ public class FeatureDecission extends Decission implements Serializable {
   }
 
   public FeatureDecission(final FeatureChoice choice, final int index) {
-    this(choice, choice.getPossibleValues().get(index).getFeatureValueID());
+    this(choice, choice.getPossibleValue(index).getFeatureValueID());
   }
 
   public FeatureDecission(final FeatureChoice choice, final String featureValueID) {
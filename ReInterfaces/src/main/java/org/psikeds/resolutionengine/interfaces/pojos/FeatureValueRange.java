@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.interfaces.pojos;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.codehaus.jackson.annotate.JsonIgnore;
+
+/**
+ * Interface object representing a symbolic Range of numeric Feature-Values,
+ * i.e. the Values Minimum + n * Increment for n = Offset ... Offset+Size-1.
+ * 
+ * Values of a Range are not transferred but calculated on Demand. The ID of
+ * the n-th Value of the complete Range is the Range-ID followed by a
+ * Type-specific Prefix and n, e.g. R1_I1, R1_I2, ... or R2_F1, R2_F2, ...
+ * 
+ * Note: Range-ID and Feature-ID must point to existing Objects!
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+@XmlRootElement(name = "FeatureValueRange")
+public class FeatureValueRange extends POJO implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final String PREFIX_INTEGER = "_I";
+  public static final String PREFIX_FLOAT = "_F";
+
+  private String featureID;
+  private String valueType;
+  private String minimum;
+  private String increment;
+  private int scale;
+  private int roundingMode;
+  private int offset;
+  private int size;
+
+  public FeatureValueRange() {
+    this(null, null, null, null, null, 0, 0, 0, 0);
+  }
+
+  public FeatureValueRange(final String featureID, final String rangeID, final String valueType, final String minimum, final String increment, final int scale,
+      final int roundingMode, final int offset, final int size) {
+    super(rangeID);
+    setFeatureID(featureID);
+    setValueType(valueType);
+    setMinimum(minimum);
+    setIncrement(increment);
+    setScale(scale);
+    setRoundingMode(roundingMode);
+    setOffset(offset);
+    setSize(size);
+  }
+
+  // ----------------------------------------------------------------
+
+  public String getRangeID() {
+    return getId();
+  }
+
+  public void setRangeID(final String rangeID) {
+    setId(rangeID);
+  }
+
+  public String getFeatureID() {
+    return this.featureID;
+  }
+
+  public void setFeatureID(final String featureID) {
+    this.featureID = featureID;
+  }
+
+  public String getValueType() {
+    return this.valueType;
+  }
+
+  public void setValueType(final String valueType) {
+    this.valueType = valueType;
+  }
+
+  public String getMinimum() {
+    return this.minimum;
+  }
+
+  public void setMinimum(final String minimum) {
+    this.minimum = minimum;
+  }
+
+  public String getIncrement() {
+    return this.increment;
+  }
+
+  public void setIncrement(final String increment) {
+    this.increment = increment;
+  }
+
+  public int getScale() {
+    return this.scale;
+  }
+
+  public void setScale(final int scale) {
+    this.scale = scale;
+  }
+
+  public int getRoundingMode() {
+    return this.roundingMode;
+  }
+
+  public void setRoundingMode(final int roundingMode) {
+    this.roundingMode = roundingMode;
+  }
+
+  public int getOffset() {
+    return this.offset;
+  }
+
+  public void setOffset(final int offset) {
+    this.offset = offset;
+  }
+
+  public int getSize() {
+    return this.size;
+  }
+
+  public void setSize(final int size) {
+    this.size = size;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @param index
+   *          Index within this (Sub-)Range
+   * @return ID of the Value
+   */
+  @JsonIgnore
+  public String getFeatureValueID(final int index) {
+    checkIndex(index);
+    return getRangeID() + getPrefix() + String.valueOf(this.offset + index + 1);
+  }
+
+  /**
+   * @param index
+   *          Index within this (Sub-)Range
+   * @return new Feature-Value
+   */
+  @JsonIgnore
+  public FeatureValue getFeatureValue(final int index) {
+    checkIndex(index);
+    BigDecimal val = new BigDecimal(this.minimum).add(new BigDecimal(this.increment).multiply(BigDecimal.valueOf(this.offset + index)));
+    if (this.scale > 0) {
+      val = val.setScale(this.scale, this.roundingMode);
+    }
+    return new FeatureValue(this.featureID, getFeatureValueID(index), (val.scale() > 0 ? val.toPlainString() : val.toString()));
+  }
+
+  /**
+   * @param featureValueID
+   * @return Feature-Value of this (Sub-)Range; null if the ID does not belong
+   *         to this (Sub-)Range
+   */
+  @JsonIgnore
+  public FeatureValue getFeatureValue(final String featureValueID) {
+    final int idx = indexOf(featureValueID);
+    return (idx < 0 ? null : getFeatureValue(idx));
+  }
+
+  /**
+   * Lookup of a Value by its ID, i.e. without iterating over the Range.
+   * 
+   * @param featureValueID
+   * @return Index within this (Sub-)Range; -1 if the ID does not belong to
+   *         this (Sub-)Range
+   */
+  @JsonIgnore
+  public int indexOf(final String featureValueID) {
+    final String prefix = getRangeID() + getPrefix();
+    if ((featureValueID == null) || (featureValueID.length() <= prefix.length()) || !featureValueID.startsWith(prefix)) {
+      return -1;
+    }
+    final String number = featureValueID.substring(prefix.length());
+    for (int i = 0; i < number.length(); i++) {
+      if (!Character.isDigit(number.charAt(i))) {
+        return -1;
+      }
+    }
+    try {
+      final int idx = Integer.parseInt(number) - 1 - this.offset;
+      return ((idx < 0) || (idx >= this.size) ? -1 : idx);
+    }
+    catch (final NumberFormatException nfex) {
+      return -1;
+    }
+  }
+
+  /**
+   * @param fromIndex
+   *          inclusive
+   * @param toIndex
+   *          exclusive
+   * @return new Sub-Range
+   */
+  @JsonIgnore
+  public FeatureValueRange subRange(final int fromIndex, final int toIndex) {
+    if ((fromIndex < 0) || (toIndex > this.size) || (fromIndex > toIndex)) {
+      throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + this.size);
+    }
+    return new FeatureValueRange(this.featureID, getRangeID(), this.valueType, this.minimum, this.increment, this.scale, this.roundingMode, this.offset + fromIndex,
+        toIndex - fromIndex);
+  }
+
+  // ----------------------------------------------------------------
+
+  private String getPrefix() {
+    return (Feature.VALUE_TYPE_FLOAT.equals(this.valueType) ? PREFIX_FLOAT : PREFIX_INTEGER);
+  }
+
+  private void checkIndex(final int index) {
+    if ((index < 0) || (index >= this.size)) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+    }
+  }
+}
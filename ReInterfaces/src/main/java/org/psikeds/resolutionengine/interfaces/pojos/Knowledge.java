@@ -18,6 +18,8 @@ import java.io.Serializable;
 
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
+
 /**
  * Interface object representing the current Knowledge, i.e. everything
  * we know so far.
@@ -28,6 +30,10 @@ import javax.xml.bind.annotation.XmlRootElement;
  * created. In the End there is a Tree of Knowledge-Entities and no Choices
  * left, then our Resolution-Process is finished.
  * 
+ * Knowledge can be copied without Serialization, e.g. for Predictions.
+ * Original and Copy are independent of each other afterwards (see
+ * {@link #copy()}).
+ * 
  * @author marco@juliano.de
  * 
  */
@@ -39,6 +45,7 @@ public class Knowledge extends POJO implements Serializable {
   private KnowledgeEntities entities;
   private VariantChoices choices;
   private boolean stable;
+  private transient KnowledgeIndex index;
 
   public Knowledge() {
     this(null);
@@ -79,6 +86,26 @@ public class Knowledge extends POJO implements Serializable {
     this.entities = entities;
   }
 
+  /**
+   * @return Index of all Knowledge-Entities, built on first Access and
+   *         updated when Entities are added
+   */
+  @JsonIgnore
+  public KnowledgeIndex getIndex() {
+    if ((this.index == null) || !this.index.isValid()) {
+      this.index = new KnowledgeIndex(this);
+    }
+    return this.index;
+  }
+
+  @JsonIgnore
+  public void invalidateIndex() {
+    if (this.index != null) {
+      this.index.invalidate();
+      this.index = null;
+    }
+  }
+
   public void addKnowledgeEntity(final KnowledgeEntity ke) {
     if (ke != null) {
       getEntities().add(ke);
@@ -92,6 +119,7 @@ public class Knowledge extends POJO implements Serializable {
   }
 
   public void clearEntities() {
+    invalidateIndex();
     if (this.entities != null) {
       this.entities.clear();
       this.entities = null;
@@ -130,4 +158,41 @@ public class Knowledge extends POJO implements Serializable {
       this.choices = null;
     }
   }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Create a Copy of this Knowledge, i.e. of the whole Tree of Entities and
+   * of all Choices. This Knowledge is not modified, so a Copy can be made
+   * of a Session that is used concurrently by other Readers.
+   * 
+   * @return Copy of this Knowledge
+   */
+  public Knowledge copy() {
+    final Knowledge copy = new Knowledge(copyEntities(this.entities), copyChoices(this.choices));
+    copy.setStable(this.stable);
+    return copy;
+  }
+
+  private static KnowledgeEntities copyEntities(final KnowledgeEntities entities) {
+    if (entities == null) {
+      return null;
+    }
+    final KnowledgeEntities copy = new KnowledgeEntities(entities.size());
+    for (final KnowledgeEntity ke : entities) {
+      copy.add(ke == null ? null : ke.copy());
+    }
+    return copy;
+  }
+
+  private static VariantChoices copyChoices(final VariantChoices choices) {
+    if (choices == null) {
+      return null;
+    }
+    final VariantChoices copy = new VariantChoices(choices.size());
+    for (final VariantChoice vc : choices) {
+      copy.add(vc == null ? null : new VariantChoice(vc));
+    }
+    return copy;
+  }
 }
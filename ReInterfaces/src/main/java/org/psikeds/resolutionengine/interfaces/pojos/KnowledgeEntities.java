@@ -17,6 +17,7 @@ package org.psikeds.resolutionengine.interfaces.pojos;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 
 import javax.xml.bind.annotation.XmlRootElement;
 
@@ -28,6 +29,10 @@ import org.codehaus.jackson.annotate.JsonTypeInfo;
  * Type-Information due to Java-Type-Erasure resulting in errors during JSON-
  * Deserialization!
  * 
+ * If the List is Part of a Knowledge-Tree with a {@link KnowledgeIndex},
+ * added Entities are reported to the Index and all other Modifications
+ * invalidate it.
+ * 
  * @author marco@juliano.de
  * 
  */
@@ -37,6 +42,9 @@ public class KnowledgeEntities extends ArrayList<KnowledgeEntity> implements Ser
 
   private static final long serialVersionUID = 1L;
 
+  private transient KnowledgeIndex index;
+  private transient KnowledgeEntity owner;
+
   public KnowledgeEntities() {
     super();
   }
@@ -48,4 +56,102 @@ public class KnowledgeEntities extends ArrayList<KnowledgeEntity> implements Ser
   public KnowledgeEntities(final int initialCapacity) {
     super(initialCapacity);
   }
+
+  // ----------------------------------------------------------------
+
+  void attach(final KnowledgeIndex index, final KnowledgeEntity owner) {
+    this.index = index;
+    this.owner = owner;
+  }
+
+  void invalidateIndex() {
+    if (this.index != null) {
+      this.index.invalidate();
+      this.index = null;
+    }
+  }
+
+  @Override
+  public boolean add(final KnowledgeEntity ke) {
+    final boolean modified = super.add(ke);
+    if (modified && (this.index != null)) {
+      this.index.added(this.owner, Collections.singletonList(ke));
+    }
+    return modified;
+  }
+
+  @Override
+  public void add(final int idx, final KnowledgeEntity ke) {
+    super.add(idx, ke);
+    if (this.index != null) {
+      this.index.added(this.owner, Collections.singletonList(ke));
+    }
+  }
+
+  @Override
+  public boolean addAll(final Collection<? extends KnowledgeEntity> c) {
+    final boolean modified = super.addAll(c);
+    if (modified && (this.index != null)) {
+      this.index.added(this.owner, c);
+    }
+    return modified;
+  }
+
+  @Override
+  public boolean addAll(final int idx, final Collection<? extends KnowledgeEntity> c) {
+    final boolean modified = super.addAll(idx, c);
+    if (modified && (this.index != null)) {
+      this.index.added(this.owner, c);
+    }
+    return modified;
+  }
+
+  @Override
+  public KnowledgeEntity set(final int idx, final KnowledgeEntity ke) {
+    invalidateIndex();
+    return super.set(idx, ke);
+  }
+
+  @Override
+  public KnowledgeEntity remove(final int idx) {
+    invalidateIndex();
+    return super.remove(idx);
+  }
+
+  @Override
+  public boolean remove(final Object obj) {
+    invalidateIndex();
+    return super.remove(obj);
+  }
+
+  @Override
+  public boolean removeAll(final Collection<?> c) {
+    invalidateIndex();
+    return super.removeAll(c);
+  }
+
+  @Override
+  public boolean retainAll(final Collection<?> c) {
+    invalidateIndex();
+    return super.retainAll(c);
+  }
+
+  @Override
+  public void clear() {
+    invalidateIndex();
+    super.clear();
+  }
+
+  @Override
+  protected void removeRange(final int fromIndex, final int toIndex) {
+    invalidateIndex();
+    super.removeRange(fromIndex, toIndex);
+  }
+
+  @Override
+  public Object clone() {
+    final KnowledgeEntities copy = (KnowledgeEntities) super.clone();
+    copy.attach(null, null);
+    return copy;
+  }
 }
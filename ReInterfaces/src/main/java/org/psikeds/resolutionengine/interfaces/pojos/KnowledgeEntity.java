@@ -37,6 +37,11 @@ import org.codehaus.jackson.annotate.JsonIgnore;
  * Initially these are possible Variant-Choices, i.e. Purposes for which a
  * constituting Variant must yet be selected.
  * 
+ * A KE can be copied together with all of its Children (see
+ * {@link Knowledge#copy()}). Copy and Original do not share any Lists or
+ * Choices, only the immutable Purposes, Variants and Feature-Values, so
+ * both can be modified independently afterwards.
+ * 
  * @author marco@juliano.de
  * 
  */
@@ -108,6 +113,10 @@ public class KnowledgeEntity extends POJO implements Serializable {
   }
 
   public void setVariant(final Variant variant) {
+    if (this.children != null) {
+      // entity is indexed by its variant
+      this.children.invalidateIndex();
+    }
     this.variant = variant;
   }
 
@@ -303,4 +312,48 @@ public class KnowledgeEntity extends POJO implements Serializable {
   public boolean hasConcepts() {
     return ((this.variant != null) && (this.variant.getConcepts() != null) && !this.variant.getConcepts().isEmpty());
   }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Create a Copy of this Entity and all of its Children. This Entity is
+   * not modified.
+   * 
+   * @return Copy of this Entity
+   */
+  KnowledgeEntity copy() {
+    final KnowledgeEntity copy = new KnowledgeEntity();
+    copy.setId(getId());
+    copy.purpose = this.purpose;
+    copy.variant = this.variant;
+    copy.quantity = this.quantity;
+    if (this.features != null) {
+      copy.features = new FeatureValues(this.features);
+    }
+    if (this.children != null) {
+      copy.children = new KnowledgeEntities(this.children.size());
+      for (final KnowledgeEntity child : this.children) {
+        copy.children.add(child == null ? null : child.copy());
+      }
+    }
+    if (this.possibleVariants != null) {
+      copy.possibleVariants = new VariantChoices(this.possibleVariants.size());
+      for (final VariantChoice vc : this.possibleVariants) {
+        copy.possibleVariants.add(vc == null ? null : new VariantChoice(vc));
+      }
+    }
+    if (this.possibleFeatures != null) {
+      copy.possibleFeatures = new FeatureChoices(this.possibleFeatures.size());
+      for (final FeatureChoice fc : this.possibleFeatures) {
+        copy.possibleFeatures.add(fc == null ? null : new FeatureChoice(fc));
+      }
+    }
+    if (this.possibleConcepts != null) {
+      copy.possibleConcepts = new ConceptChoices(this.possibleConcepts.size());
+      for (final ConceptChoice cc : this.possibleConcepts) {
+        copy.possibleConcepts.add(cc == null ? null : new ConceptChoice(cc));
+      }
+    }
+    return copy;
+  }
 }
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.interfaces.pojos;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the Tree of Knowledge-Entities: All Entities by the IDs of
+ * their Variants (in Pre-Order, i.e. the same Order as walking the Tree
+ * recursively) plus a Link from every Entity to its Parent.
+ * 
+ * The Index is attached to all Lists of Entities within the Tree. New
+ * Entities added to one of these Lists are inserted into the Index.
+ * Any other Modification (removing or replacing Entities, changing the
+ * Variant of an Entity) invalidates the Index, so that it will be rebuilt
+ * on next Access, see {@link Knowledge#getIndex()}.
+ * 
+ * Note: Like the Knowledge itself an Index is not thread-safe and is
+ * never serialized.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class KnowledgeIndex {
+
+  private final Knowledge knowledge;
+  private final Map<String, List<KnowledgeEntity>> byVariant;
+  private final Map<KnowledgeEntity, KnowledgeEntity> parents;
+  private boolean valid;
+
+  KnowledgeIndex(final Knowledge knowledge) {
+    this.knowledge = knowledge;
+    this.byVariant = new HashMap<String, List<KnowledgeEntity>>();
+    this.parents = new IdentityHashMap<KnowledgeEntity, KnowledgeEntity>();
+    this.valid = true;
+    final KnowledgeEntities entities = knowledge.getEntities();
+    entities.attach(this, null);
+    for (final KnowledgeEntity ke : entities) {
+      register(null, ke, false);
+    }
+  }
+
+  // ----------------------------------------------------------------
+
+  public boolean isValid() {
+    return this.valid;
+  }
+
+  public void invalidate() {
+    this.valid = false;
+  }
+
+  public int size() {
+    return this.parents.size();
+  }
+
+  public boolean contains(final KnowledgeEntity ke) {
+    return this.parents.containsKey(ke);
+  }
+
+  /**
+   * @param variantId
+   *          ID of a Variant
+   * @return new List of all Entities of this Variant in Pre-Order; empty
+   *         List if there are none
+   */
+  public KnowledgeEntities getEntities(final String variantId) {
+    final List<KnowledgeEntity> lst = this.byVariant.get(variantId);
+    return (lst == null ? new KnowledgeEntities() : new KnowledgeEntities(lst));
+  }
+
+  /**
+   * @param ke
+   *          KnowledgeEntity
+   * @return Parent-Entity; null for Entities on the Top-Level of the
+   *         Knowledge or for Entities that are not contained in the Tree
+   */
+  public KnowledgeEntity getParent(final KnowledgeEntity ke) {
+    return this.parents.get(ke);
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Callback of attached Lists: New Entities were added to the Children of
+   * the Owner (or to the Top-Level of the Knowledge if Owner is null).
+   */
+  void added(final KnowledgeEntity owner, final Collection<? extends KnowledgeEntity> entities) {
+    if (!this.valid) {
+      return;
+    }
+    if ((owner != null) && !contains(owner)) {
+      // list is not part of the tree any more
+      invalidate();
+      return;
+    }
+    for (final KnowledgeEntity ke : entities) {
+      if ((ke == null) || contains(ke)) {
+        // same entity at two places? index cannot represent this
+        invalidate();
+        return;
+      }
+      register(owner, ke, true);
+    }
+  }
+
+  private void register(final KnowledgeEntity parent, final KnowledgeEntity ke, final boolean sorted) {
+    if (ke == null) {
+      return;
+    }
+    this.parents.put(ke, parent);
+    final Variant v = ke.getVariant();
+    final String vid = (v == null ? null : v.getVariantID());
+    List<KnowledgeEntity> lst = this.byVariant.get(vid);
+    if (lst == null) {
+      lst = new ArrayList<KnowledgeEntity>();
+      this.byVariant.put(vid, lst);
+    }
+    if (sorted) {
+      insert(lst, ke);
+    }
+    else {
+      // building the index walks the tree in pre-order anyway
+      lst.add(ke);
+    }
+    final KnowledgeEntities children = ke.getChildren();
+    children.attach(this, ke);
+    for (final KnowledgeEntity child : children) {
+      register(ke, child, sorted);
+    }
+  }
+
+  private void insert(final List<KnowledgeEntity> lst, final KnowledgeEntity ke) {
+    int low = 0;
+    int high = lst.size();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (precedes(lst.get(mid), ke)) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    lst.add(low, ke);
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @return true if Entity a is visited before Entity b when walking the
+   *         Tree in Pre-Order, false else
+   */
+  private boolean precedes(final KnowledgeEntity a, final KnowledgeEntity b) {
+    final List<KnowledgeEntity> pathA = pathTo(a);
+    final List<KnowledgeEntity> pathB = pathTo(b);
+    final int len = Math.min(pathA.size(), pathB.size());
+    int i = 0;
+    while ((i < len) && (pathA.get(i) == pathB.get(i))) {
+      i++;
+    }
+    if (i == pathA.size()) {
+      // a is b or an ancestor of b
+      return (pathA.size() < pathB.size());
+    }
+    if (i == pathB.size()) {
+      // b is an ancestor of a
+      return false;
+    }
+    final KnowledgeEntity parent = (i == 0 ? null : pathA.get(i - 1));
+    final KnowledgeEntities siblings = (parent == null ? this.knowledge.getEntities() : parent.getChildren());
+    return (indexOf(siblings, pathA.get(i)) < indexOf(siblings, pathB.get(i)));
+  }
+
+  private List<KnowledgeEntity> pathTo(final KnowledgeEntity ke) {
+    final List<KnowledgeEntity> path = new ArrayList<KnowledgeEntity>();
+    for (KnowledgeEntity current = ke; current != null; current = this.parents.get(current)) {
+      path.add(0, current);
+    }
+    return path;
+  }
+
+  private static int indexOf(final List<KnowledgeEntity> lst, final KnowledgeEntity ke) {
+    // note: identity, not equality of entities
+    for (int i = 0; i < lst.size(); i++) {
+      if (lst.get(i) == ke) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
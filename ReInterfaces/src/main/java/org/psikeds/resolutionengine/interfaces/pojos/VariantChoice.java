@@ -46,7 +46,7 @@ public class VariantChoice extends Choice implements Serializable {
   private long quantity;
 
   public VariantChoice() {
-    this(null);
+    this((Purpose) null);
   }
 
   public VariantChoice(final Purpose purpose) {
@@ -72,6 +72,11 @@ public class VariantChoice extends Choice implements Serializable {
     setQuantity(qty);
   }
 
+  // copy constructor, list of variants is copied, variants themselves are shared
+  public VariantChoice(final VariantChoice vc) {
+    this(vc.getParentVariantID(), vc.getPurpose(), (vc.variants == null ? null : new Variants(vc.variants)), vc.getQuantity());
+  }
+
   public Purpose getPurpose() {
     return this.purpose;
   }
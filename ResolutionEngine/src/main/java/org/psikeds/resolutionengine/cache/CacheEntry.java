@@ -22,6 +22,14 @@ import org.psikeds.common.cache.LimitedHashMap;
  * A Cache-Entry is a Map of serializable Objects all related
  * to the corresponding Session.
  * 
+ * The Map is in Access-Order, i.e. even reading an Object modifies it.
+ * Concurrent Requests for the same Session must therefore use the
+ * synchronized Accessors getObject(), saveObject() and removeObject().
+ * 
+ * The Version of the Knowledge-Base a Session is working with is kept
+ * within the Map as well, so that encoded Sessions can be decoded against
+ * the same Version, see {@link SessionCodec}.
+ * 
  * @author marco@juliano.de
  * 
  */
@@ -31,6 +39,8 @@ public class CacheEntry extends LimitedHashMap<String, Serializable> {
 
   public static final int DEFAULT_MAX_OBJECTS_PER_SESSION = 8;
 
+  public static final String KEY_KNOWLEDGE_BASE_VERSION = "KnowledgeBaseVersion";
+
   public CacheEntry() {
     this(DEFAULT_MAX_OBJECTS_PER_SESSION);
   }
@@ -46,4 +56,43 @@ public class CacheEntry extends LimitedHashMap<String, Serializable> {
   public void setMaxObjectsPerSession(final int maxObjectsPerSession) {
     setMaxSize(maxObjectsPerSession);
   }
+
+  // ----------------------------------------------------------------
+
+  public synchronized Serializable getObject(final String key) {
+    return get(key);
+  }
+
+  public synchronized void saveObject(final String key, final Serializable obj) {
+    put(key, obj);
+  }
+
+  public synchronized Serializable removeObject(final String key) {
+    return remove(key);
+  }
+
+  /**
+   * @return number of Version of the Knowledge-Base used by this Session;
+   *         0 if unknown
+   */
+  public synchronized int getKnowledgeBaseVersion() {
+    final Serializable version = get(KEY_KNOWLEDGE_BASE_VERSION);
+    return (version instanceof Integer ? ((Integer) version).intValue() : 0);
+  }
+
+  public synchronized void setKnowledgeBaseVersion(final int version) {
+    put(KEY_KNOWLEDGE_BASE_VERSION, Integer.valueOf(version));
+  }
+
+  /**
+   * @param weigher
+   * @return estimated Size of all Objects of this Session in Bytes
+   */
+  public synchronized long weigh(final Weigher weigher) {
+    long weight = 0L;
+    for (final Serializable obj : values()) {
+      weight += weigher.weigh(obj);
+    }
+    return weight;
+  }
 }
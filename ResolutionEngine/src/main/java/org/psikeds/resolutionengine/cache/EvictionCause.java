@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.cache;
+
+/**
+ * Enum of all Reasons why a Session can be evicted from the
+ * {@link ResolutionCache} without being removed explicitly.
+ *
+ * @author marco@juliano.de
+ *
+ */
+public enum EvictionCause {
+
+  SIZE("size"),
+  WEIGHT("weight"),
+  IDLE("idle"),
+  LIFETIME("lifetime");
+
+  private String cause;
+
+  private EvictionCause(final String str) {
+    this.cause = str;
+  }
+
+  public String value() {
+    return this.cause;
+  }
+
+  @Override
+  public String toString() {
+    return value();
+  }
+}
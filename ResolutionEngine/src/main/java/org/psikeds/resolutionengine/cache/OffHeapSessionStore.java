@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.cache;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Second Tier of the {@link ResolutionCache}: Serialized Sessions are kept
+ * in direct ByteBuffers outside of the Java-Heap. Most Sessions are idle
+ * between two Clicks of the User, so moving them off-heap reduces GC-Pressure
+ * and allows one Node to hold far more open Sessions.
+ * 
+ * The total Size of all Buffers is limited. If the Limit would be exceeded,
+ * a Session is not spilled but simply stays on the Heap. A maximum Size <= 0
+ * disables this Tier completely.
+ * 
+ * Note: Direct Memory is also limited by the VM-Parameter
+ * -XX:MaxDirectMemorySize, which must be at least the configured Size.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class OffHeapSessionStore {
+
+  public static final long DEFAULT_MAX_SIZE = 0L;
+
+  private final AtomicLong size;
+  private final AtomicLong spilled;
+  private final AtomicLong rehydrated;
+  private volatile long maxSize;
+
+  public OffHeapSessionStore() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  public OffHeapSessionStore(final long maxSize) {
+    this.maxSize = maxSize;
+    this.size = new AtomicLong(0);
+    this.spilled = new AtomicLong(0);
+    this.rehydrated = new AtomicLong(0);
+  }
+
+  // ----------------------------------------------------------------
+
+  public long getMaxSize() {
+    return this.maxSize;
+  }
+
+  public void setMaxSize(final long maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  public boolean isEnabled() {
+    return this.maxSize > 0;
+  }
+
+  /**
+   * @return current Size of all Buffers in Bytes
+   */
+  public long getSize() {
+    return this.size.get();
+  }
+
+  /**
+   * @return total number of Sessions moved off-heap
+   */
+  public long getSpillCount() {
+    return this.spilled.get();
+  }
+
+  /**
+   * @return total number of Sessions moved back onto the Heap
+   */
+  public long getRehydrationCount() {
+    return this.rehydrated.get();
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Copy Data into a new direct Buffer.
+   * 
+   * @param data
+   * @return Buffer or null if there is not enough Space left
+   */
+  public ByteBuffer store(final byte[] data) {
+    if ((data == null) || !reserve(data.length)) {
+      return null;
+    }
+    final ByteBuffer buf = ByteBuffer.allocateDirect(data.length);
+    buf.put(data);
+    buf.flip();
+    this.spilled.incrementAndGet();
+    return buf;
+  }
+
+  /**
+   * Copy Data back onto the Heap and release the Buffer.
+   * 
+   * @param buf
+   * @return Data
+   */
+  public byte[] load(final ByteBuffer buf) {
+    final byte[] data = new byte[buf.remaining()];
+    buf.duplicate().get(data);
+    release(buf);
+    this.rehydrated.incrementAndGet();
+    return data;
+  }
+
+  /**
+   * Release a Buffer that is not needed any more. Direct Memory itself
+   * is freed as soon as the Buffer is garbage collected.
+   * 
+   * @param buf
+   */
+  public void release(final ByteBuffer buf) {
+    if (buf != null) {
+      this.size.addAndGet(-buf.capacity());
+    }
+  }
+
+  private boolean reserve(final int len) {
+    long current = this.size.get();
+    while ((this.maxSize > 0) && ((current + len) <= this.maxSize)) {
+      if (this.size.compareAndSet(current, current + len)) {
+        return true;
+      }
+      current = this.size.get();
+    }
+    return false;
+  }
+}
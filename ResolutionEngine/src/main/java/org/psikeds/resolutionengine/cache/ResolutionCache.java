@@ -14,39 +14,231 @@
  *******************************************************************************/
 package org.psikeds.resolutionengine.cache;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.commons.lang.StringUtils;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
 import org.psikeds.common.cache.LimitedHashMap;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.impl.VersionedKnowledgeBase;
 
 /**
  * The ResolutionCache is holding all information regarding the current
  * Resolutions / Sessions.
- * 
+ *
+ * The Cache is used concurrently by all Worker-Threads of the Webservices.
+ * Therefore Sessions are distributed over several Segments, each guarded
+ * by its own Lock, so that Requests of different Sessions do not block each
+ * other. Each Segment is kept in Access-Order, so its eldest Entry is the
+ * least recently used Session of that Segment. The maximum Number and Weight
+ * of Sessions are split evenly into Budgets of the Segments. A Segment
+ * exceeding its Budget evicts its own least recently used Sessions, i.e.
+ * Eviction never has to look at or lock other Segments. Expiry is strictly
+ * LRU within a Segment and approximately LRU across the whole Cache.
+ *
+ * Objects of a single Session (see {@link CacheEntry}) are synchronized on
+ * the Cache-Entry itself.
+ *
+ * Additionally Sessions expire after a maximum Idle-Time (i.e. no Access)
+ * or after a maximum Lifetime (i.e. since Creation), so that abandoned
+ * Sessions do not pin their Knowledge until LRU-Expiry evicts live ones.
+ * Expired Sessions are detected on Access and removed periodically by a
+ * Sweeper-Thread with low Priority. A Timeout <= 0 is interpreted as
+ * unlimited.
+ *
+ * Besides the Number of Sessions also their Weight, i.e. their estimated
+ * Size in Bytes (see {@link Weigher}), is limited. Sessions holding a deep
+ * Knowledge-Tree of a large Knowledge-Base are much bigger than initial
+ * ones, so limiting the total Weight is the better Way to size the Cache
+ * for the available Heap. The Weight of a Session is updated whenever one
+ * of its Objects is saved. If the Weight of a Segment exceeds its Budget,
+ * its least recently used Sessions on the Heap are evicted, but never its
+ * last remaining one.
+ *
+ * Sessions being idle for a while can be spilled to a second, off-heap Tier
+ * (see {@link OffHeapSessionStore}) by the Sweeper. Such Sessions keep their
+ * Place within the LRU-Order of all Sessions, but do not have any Weight on
+ * the Heap and are therefore not part of the LRU-Order of Sessions on the
+ * Heap, which is used for Weight-based Eviction. They are deserialized
+ * transparently with the next Access. Sessions checked
+ * out by a Request (see {@link #checkout(String)}) are never spilled, because
+ * their Objects might be modified while they are serialized.
+ *
+ * Every Session on the Heap or off-heap references the Version of the
+ * Knowledge-Base it was started with (see {@link VersionedKnowledgeBase#acquire(int)}),
+ * so that this Version is retained until the Session is removed.
+ *
  * @author marco@juliano.de
- * 
+ *
  */
-public class ResolutionCache extends LimitedHashMap<String, CacheEntry> {
+public class ResolutionCache implements InitializingBean, DisposableBean {
 
-  private static final long serialVersionUID = 1L;
   private static final Logger LOGGER = LoggerFactory.getLogger(ResolutionCache.class);
 
   public static final int DEFAULT_MAX_SESSIONS_PER_SERVER = LimitedHashMap.DEFAULT_MAX_MAP_SIZE;
   public static final int DEFAULT_MAX_OBJECTS_PER_SESSION = CacheEntry.DEFAULT_MAX_OBJECTS_PER_SESSION;
+  public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+  public static final long DEFAULT_IDLE_TIMEOUT = 0L;
+  public static final long DEFAULT_LIFETIME = 0L;
+  public static final long DEFAULT_SWEEPER_INTERVAL = 60000L;
+  public static final long DEFAULT_MAX_WEIGHT = 0L;
+  public static final long DEFAULT_SPILL_AFTER = 0L;
+
+  private static final int MAX_SEGMENTS = 1 << 12;
 
-  private int maxObjectsPerSession;
+  private final Segment[] segments;
+  private final int segmentMask;
+  private final AtomicInteger size;
+  private final AtomicLong[] evictions;
+  private final AtomicLong weight;
+  private final AtomicLong peakWeight;
+
+  private volatile int maxSessionsPerServer;
+  private volatile int maxObjectsPerSession;
+  private volatile long idleTimeout;
+  private volatile long lifetime;
+  private long sweeperInterval;
+  private ScheduledExecutorService sweeper;
+  private volatile long maxWeight;
+  private Weigher weigher;
+  private volatile long spillAfter;
+  private OffHeapSessionStore offHeapStore;
+  private SessionCodec codec;
+  private KnowledgeBase kb;
 
   public ResolutionCache() {
     this(DEFAULT_MAX_SESSIONS_PER_SERVER, DEFAULT_MAX_OBJECTS_PER_SESSION);
   }
 
   public ResolutionCache(final int maxSessionsPerServer, final int maxObjectsPerSession) {
-    super(maxSessionsPerServer);
+    this(maxSessionsPerServer, maxObjectsPerSession, DEFAULT_CONCURRENCY_LEVEL);
+  }
+
+  public ResolutionCache(final int maxSessionsPerServer, final int maxObjectsPerSession, final int concurrencyLevel) {
+    this(maxSessionsPerServer, maxObjectsPerSession, concurrencyLevel, DEFAULT_IDLE_TIMEOUT, DEFAULT_LIFETIME, DEFAULT_SWEEPER_INTERVAL);
+  }
+
+  public ResolutionCache(final int maxSessionsPerServer, final int maxObjectsPerSession, final int concurrencyLevel,
+      final long idleTimeout, final long lifetime, final long sweeperInterval) {
+    this(maxSessionsPerServer, maxObjectsPerSession, concurrencyLevel, idleTimeout, lifetime, sweeperInterval, DEFAULT_MAX_WEIGHT, null);
+  }
+
+  public ResolutionCache(final int maxSessionsPerServer, final int maxObjectsPerSession, final int concurrencyLevel,
+      final long idleTimeout, final long lifetime, final long sweeperInterval, final long maxWeight, final Weigher weigher) {
+    this.maxWeight = maxWeight;
+    this.weigher = (weigher == null ? new SessionWeigher() : weigher);
+    this.spillAfter = DEFAULT_SPILL_AFTER;
+    this.offHeapStore = new OffHeapSessionStore();
+    this.codec = new SessionCodec();
+    this.maxSessionsPerServer = maxSessionsPerServer;
     this.maxObjectsPerSession = maxObjectsPerSession;
+    this.idleTimeout = idleTimeout;
+    this.lifetime = lifetime;
+    this.sweeperInterval = sweeperInterval;
+    this.sweeper = null;
+    // number of segments is the next power of two >= concurrency level
+    int num = 1;
+    while ((num < concurrencyLevel) && (num < MAX_SEGMENTS)) {
+      num <<= 1;
+    }
+    this.segments = new Segment[num];
+    for (int i = 0; i < num; i++) {
+      this.segments[i] = new Segment();
+    }
+    this.segmentMask = num - 1;
+    distributeBudgets();
+    this.size = new AtomicInteger(0);
+    this.evictions = new AtomicLong[EvictionCause.values().length];
+    for (int i = 0; i < this.evictions.length; i++) {
+      this.evictions[i] = new AtomicLong(0);
+    }
+    this.weight = new AtomicLong(0);
+    this.peakWeight = new AtomicLong(0);
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Start Sweeper-Thread removing expired Sessions periodically.
+   *
+   * @throws Exception
+   * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+   */
+  @Override
+  public void afterPropertiesSet() throws Exception {
+    if (LOGGER.isInfoEnabled()) {
+      final StringBuilder sb = new StringBuilder("Config: Max. Sessions per Server: {}\n");
+      sb.append("Max. Objects per Session: {}\n");
+      sb.append("Concurrency-Level: {}\n");
+      sb.append("Idle-Timeout of Sessions: {} ms\n");
+      sb.append("Lifetime of Sessions: {} ms\n");
+      sb.append("Sweeper-Interval: {} ms\n");
+      sb.append("Max. Weight of all Sessions: {} Bytes\n");
+      sb.append("Weigher: {}\n");
+      sb.append("Spill idle Sessions off-heap after: {} ms\n");
+      sb.append("Max. Size of off-heap Sessions: {} Bytes");
+      LOGGER.info(sb.toString(), this.maxSessionsPerServer, this.maxObjectsPerSession, getConcurrencyLevel(), this.idleTimeout, this.lifetime, this.sweeperInterval,
+          this.maxWeight, this.weigher.getClass().getName(), this.spillAfter, this.offHeapStore.getMaxSize());
+    }
+    startSweeper();
+  }
+
+  /**
+   * Stop Sweeper-Thread.
+   *
+   * @throws Exception
+   * @see org.springframework.beans.factory.DisposableBean#destroy()
+   */
+  @Override
+  public void destroy() throws Exception {
+    stopSweeper();
+  }
+
+  public synchronized void startSweeper() {
+    if ((this.sweeper == null) && (this.sweeperInterval > 0) && ((this.idleTimeout > 0) || (this.lifetime > 0) || isSpillingEnabled())) {
+      this.sweeper = Executors.newSingleThreadScheduledExecutor(new SweeperThreadFactory());
+      this.sweeper.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            sweep();
+          }
+          catch (final Exception ex) {
+            // never let the sweeper die
+            LOGGER.warn("Could not sweep ResolutionCache: " + ex.getMessage(), ex);
+          }
+        }
+      }, this.sweeperInterval, this.sweeperInterval, TimeUnit.MILLISECONDS);
+      LOGGER.debug("Started Sweeper of ResolutionCache.");
+    }
+  }
+
+  public synchronized void stopSweeper() {
+    if (this.sweeper != null) {
+      this.sweeper.shutdownNow();
+      this.sweeper = null;
+      LOGGER.debug("Stopped Sweeper of ResolutionCache.");
+    }
   }
 
   // ----------------------------------------------------------------
@@ -60,23 +252,191 @@ public class ResolutionCache extends LimitedHashMap<String, CacheEntry> {
   }
 
   public int getMaxSessionsPerServer() {
-    return getMaxSize();
+    return this.maxSessionsPerServer;
   }
 
   public void setMaxSessionsPerServer(final int maxSessionsPerServer) {
-    setMaxSize(maxSessionsPerServer);
+    this.maxSessionsPerServer = maxSessionsPerServer;
+    distributeBudgets();
+  }
+
+  public long getIdleTimeout() {
+    return this.idleTimeout;
+  }
+
+  public void setIdleTimeout(final long idleTimeout) {
+    this.idleTimeout = idleTimeout;
+  }
+
+  public long getLifetime() {
+    return this.lifetime;
+  }
+
+  public void setLifetime(final long lifetime) {
+    this.lifetime = lifetime;
+  }
+
+  public long getSweeperInterval() {
+    return this.sweeperInterval;
+  }
+
+  public void setSweeperInterval(final long sweeperInterval) {
+    this.sweeperInterval = sweeperInterval;
+  }
+
+  public long getMaxWeight() {
+    return this.maxWeight;
+  }
+
+  public void setMaxWeight(final long maxWeight) {
+    this.maxWeight = maxWeight;
+    distributeBudgets();
+  }
+
+  public Weigher getWeigher() {
+    return this.weigher;
+  }
+
+  public void setWeigher(final Weigher weigher) {
+    this.weigher = (weigher == null ? new SessionWeigher() : weigher);
+  }
+
+  public long getSpillAfter() {
+    return this.spillAfter;
+  }
+
+  public void setSpillAfter(final long spillAfter) {
+    this.spillAfter = spillAfter;
+  }
+
+  public OffHeapSessionStore getOffHeapStore() {
+    return this.offHeapStore;
+  }
+
+  public void setOffHeapStore(final OffHeapSessionStore offHeapStore) {
+    this.offHeapStore = (offHeapStore == null ? new OffHeapSessionStore() : offHeapStore);
+  }
+
+  public SessionCodec getSessionCodec() {
+    return this.codec;
+  }
+
+  public void setSessionCodec(final SessionCodec codec) {
+    this.codec = (codec == null ? new SessionCodec() : codec);
+  }
+
+  public KnowledgeBase getKnowledgeBase() {
+    return this.kb;
+  }
+
+  public void setKnowledgeBase(final KnowledgeBase kb) {
+    this.kb = kb;
+  }
+
+  public boolean isSpillingEnabled() {
+    return (this.spillAfter > 0) && this.offHeapStore.isEnabled();
+  }
+
+  public int getConcurrencyLevel() {
+    return this.segments.length;
+  }
+
+  /**
+   * @return current number of Sessions in this Cache
+   */
+  public int size() {
+    return this.size.get();
+  }
+
+  public boolean isEmpty() {
+    return size() <= 0;
+  }
+
+  /**
+   * @return current Weight of all Sessions in Bytes
+   */
+  public long getWeight() {
+    return this.weight.get();
+  }
+
+  /**
+   * @return highest Weight of all Sessions since Creation of this Cache
+   */
+  public long getPeakWeight() {
+    return this.peakWeight.get();
+  }
+
+  /**
+   * @return total number of evicted Sessions
+   */
+  public long getEvictionCount() {
+    long total = 0;
+    for (final AtomicLong count : this.evictions) {
+      total += count.get();
+    }
+    return total;
+  }
+
+  /**
+   * @param cause
+   * @return number of Sessions evicted for this Reason
+   */
+  public long getEvictionCount(final EvictionCause cause) {
+    return (cause == null ? 0 : this.evictions[cause.ordinal()].get());
+  }
+
+  /**
+   * Remove all Sessions from this Cache.
+   */
+  public void clear() {
+    for (final Segment seg : this.segments) {
+      synchronized (seg) {
+        for (final Node node : seg.map.values()) {
+          removed(seg, node);
+        }
+        seg.map.clear();
+        seg.heap.clear();
+      }
+    }
   }
 
   // ----------------------------------------------------------------
 
   public CacheEntry getSession(final String sessionID, final boolean create) {
     CacheEntry sessionData = null;
+    boolean created = false;
     try {
       if (!StringUtils.isEmpty(sessionID)) {
-        sessionData = get(sessionID);
-        if ((sessionData == null) && create) {
-          sessionData = new CacheEntry(this.maxObjectsPerSession);
-          saveSession(sessionID, sessionData);
+        final Segment seg = segmentFor(sessionID);
+        final long now = System.currentTimeMillis();
+        synchronized (seg) {
+          Node node = seg.get(sessionID);
+          if ((node != null) && expire(seg, sessionID, node, now)) {
+            node = null;
+          }
+          if ((node != null) && (node.spilled != null)) {
+            if (rehydrate(seg, node)) {
+              created = true; // weight changed
+            }
+            else {
+              seg.remove(sessionID);
+              removed(seg, node);
+              node = null;
+            }
+          }
+          if ((node == null) && create) {
+            node = new Node(sessionID, new CacheEntry(this.maxObjectsPerSession), now);
+            seg.put(node);
+            this.size.incrementAndGet();
+            created = true;
+          }
+          if (node != null) {
+            node.lastAccess = now;
+            sessionData = node.entry;
+          }
+          if (created) {
+            evictIfNecessary(seg);
+          }
         }
       }
       return sessionData;
@@ -90,7 +450,30 @@ public class ResolutionCache extends LimitedHashMap<String, CacheEntry> {
     try {
       if ((sessionData != null) && !StringUtils.isEmpty(sessionID)) {
         sessionData.setMaxObjectsPerSession(this.maxObjectsPerSession);
-        put(sessionID, sessionData);
+        final long sessionWeight = sessionData.weigh(this.weigher);
+        final Segment seg = segmentFor(sessionID);
+        final long now = System.currentTimeMillis();
+        synchronized (seg) {
+          Node node = seg.get(sessionID);
+          if ((node != null) && expire(seg, sessionID, node, now)) {
+            node = null;
+          }
+          if (node == null) {
+            node = new Node(sessionID, sessionData, now);
+            seg.put(node);
+            this.size.incrementAndGet();
+          }
+          else {
+            releaseSpilled(node);
+            node.entry = sessionData;
+            seg.put(node); // back on the heap, if it was spilled
+          }
+          node.lastAccess = now;
+          addWeight(seg, sessionWeight - node.weight);
+          node.weight = sessionWeight;
+          referenceVersion(node);
+          evictIfNecessary(seg);
+        }
       }
     }
     finally {
@@ -102,7 +485,17 @@ public class ResolutionCache extends LimitedHashMap<String, CacheEntry> {
     CacheEntry sessionData = null;
     try {
       if (!StringUtils.isEmpty(sessionID)) {
-        sessionData = remove(sessionID);
+        final Segment seg = segmentFor(sessionID);
+        synchronized (seg) {
+          final Node node = seg.remove(sessionID);
+          if (node != null) {
+            if (node.spilled != null) {
+              rehydrate(seg, node);
+            }
+            removed(seg, node);
+            sessionData = node.entry;
+          }
+        }
       }
       return sessionData;
     }
@@ -111,6 +504,54 @@ public class ResolutionCache extends LimitedHashMap<String, CacheEntry> {
     }
   }
 
+  /**
+   * Mark a Session as being used by a Request. A Session that is checked out
+   * is neither spilled off-heap nor serialized by the Sweeper. Every Checkout
+   * must be followed by a {@link #checkin(String)}. Checkouts are counted per
+   * Session-ID, i.e. they survive Removal and Re-Creation of the Session.
+   * 
+   * @param sessionID
+   */
+  public void checkout(final String sessionID) {
+    if (!StringUtils.isEmpty(sessionID)) {
+      final Segment seg = segmentFor(sessionID);
+      synchronized (seg) {
+        final Integer count = seg.checkouts.get(sessionID);
+        seg.checkouts.put(sessionID, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+      }
+    }
+  }
+
+  /**
+   * Release a Session checked out by a Request.
+   * 
+   * @param sessionID
+   */
+  public void checkin(final String sessionID) {
+    if (!StringUtils.isEmpty(sessionID)) {
+      final Segment seg = segmentFor(sessionID);
+      synchronized (seg) {
+        final Integer count = seg.checkouts.get(sessionID);
+        if ((count == null) || (count.intValue() <= 1)) {
+          seg.checkouts.remove(sessionID);
+        }
+        else {
+          seg.checkouts.put(sessionID, Integer.valueOf(count.intValue() - 1));
+        }
+      }
+    }
+  }
+
+  public boolean isCheckedOut(final String sessionID) {
+    if (StringUtils.isEmpty(sessionID)) {
+      return false;
+    }
+    final Segment seg = segmentFor(sessionID);
+    synchronized (seg) {
+      return seg.checkouts.containsKey(sessionID);
+    }
+  }
+
   // ----------------------------------------------------------------
 
   public Serializable getObject(final String sessionID, final String key) {
@@ -118,7 +559,7 @@ public class ResolutionCache extends LimitedHashMap<String, CacheEntry> {
     try {
       final CacheEntry sessionData = getSession(sessionID, false);
       if ((sessionData != null) && !StringUtils.isEmpty(key)) {
-        obj = sessionData.get(key);
+        obj = sessionData.getObject(key);
       }
       return obj;
     }
@@ -132,8 +573,8 @@ public class ResolutionCache extends LimitedHashMap<String, CacheEntry> {
       if ((obj != null) && !StringUtils.isEmpty(key)) {
         final CacheEntry sessionData = getSession(sessionID, true);
         if (sessionData != null) {
-          sessionData.put(key, obj);
-          saveSession(sessionID, sessionData);
+          sessionData.saveObject(key, obj);
+          updateWeight(sessionID, sessionData);
         }
       }
     }
@@ -147,8 +588,8 @@ public class ResolutionCache extends LimitedHashMap<String, CacheEntry> {
     try {
       final CacheEntry sessionData = getSession(sessionID, false);
       if ((sessionData != null) && !StringUtils.isEmpty(key)) {
-        obj = sessionData.remove(key);
-        saveSession(sessionID, sessionData);
+        obj = sessionData.removeObject(key);
+        updateWeight(sessionID, sessionData);
       }
       return obj;
     }
@@ -156,4 +597,375 @@ public class ResolutionCache extends LimitedHashMap<String, CacheEntry> {
       LOGGER.trace("removeObject: {} , {} = {}", sessionID, key, obj);
     }
   }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Remove all Sessions that exceeded their Idle-Timeout or Lifetime and
+   * spill Sessions being idle for a while to the off-heap Tier.
+   * Invoked periodically by the Sweeper-Thread. Every Segment is locked
+   * only while it is swept, i.e. concurrent Requests are blocked shortly.
+   * Sessions are serialized without holding the Lock of their Segment.
+   *
+   * @return number of removed Sessions
+   */
+  public int sweep() {
+    int removed = 0;
+    final boolean spilling = isSpillingEnabled();
+    if ((this.idleTimeout > 0) || (this.lifetime > 0) || spilling) {
+      final long now = System.currentTimeMillis();
+      final List<Node> candidates = new ArrayList<Node>();
+      for (final Segment seg : this.segments) {
+        synchronized (seg) {
+          final Iterator<Map.Entry<String, Node>> iter = seg.map.entrySet().iterator();
+          while (iter.hasNext()) {
+            final Node node = iter.next().getValue();
+            final EvictionCause cause = getExpiryCause(node, now);
+            if (cause != null) {
+              iter.remove();
+              seg.heap.remove(node.sessionID);
+              expired(seg, node, cause);
+              removed++;
+            }
+            else if (spilling && (node.entry != null) && ((now - node.lastAccess) > this.spillAfter) && !seg.checkouts.containsKey(node.sessionID)) {
+              candidates.add(node);
+            }
+          }
+        }
+      }
+      if (!candidates.isEmpty()) {
+        spill(candidates);
+      }
+      if ((removed > 0) && LOGGER.isDebugEnabled()) {
+        LOGGER.debug("Sweeper removed {} expired Sessions, {} Sessions remaining. Weight = {}, Peak = {}. Total Evictions: size = {}, weight = {}, idle = {}, lifetime = {}", removed, size(),
+            getWeight(), getPeakWeight(), getEvictionCount(EvictionCause.SIZE), getEvictionCount(EvictionCause.WEIGHT), getEvictionCount(EvictionCause.IDLE), getEvictionCount(EvictionCause.LIFETIME));
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Check whether a Session is expired and remove it from its Segment.
+   * Caller must hold the Lock of the Segment.
+   */
+  private boolean expire(final Segment seg, final String sessionID, final Node node, final long now) {
+    final EvictionCause cause = getExpiryCause(node, now);
+    if (cause != null) {
+      seg.remove(sessionID);
+      expired(seg, node, cause);
+      return true;
+    }
+    return false;
+  }
+
+  private EvictionCause getExpiryCause(final Node node, final long now) {
+    if ((this.lifetime > 0) && ((now - node.created) > this.lifetime)) {
+      return EvictionCause.LIFETIME;
+    }
+    if ((this.idleTimeout > 0) && ((now - node.lastAccess) > this.idleTimeout)) {
+      return EvictionCause.IDLE;
+    }
+    return null;
+  }
+
+  /**
+   * Caller must hold the Lock of the Segment.
+   */
+  private void expired(final Segment seg, final Node node, final EvictionCause cause) {
+    removed(seg, node);
+    this.evictions[cause.ordinal()].incrementAndGet();
+    LOGGER.debug("Session {} expired, Cause = {}", node.sessionID, cause);
+  }
+
+  /**
+   * Caller must hold the Lock of the Segment.
+   */
+  private void removed(final Segment seg, final Node node) {
+    this.size.decrementAndGet();
+    addWeight(seg, -node.weight);
+    releaseSpilled(node);
+    releaseVersion(node);
+    node.removed = true;
+  }
+
+  /**
+   * Reference the Version of the Knowledge-Base used by a Session, if it
+   * was set or changed. Caller must hold the Lock of its Segment.
+   */
+  private void referenceVersion(final Node node) {
+    final int version = node.entry.getKnowledgeBaseVersion();
+    if ((version != node.version) && (this.kb instanceof VersionedKnowledgeBase)) {
+      final VersionedKnowledgeBase vkb = (VersionedKnowledgeBase) this.kb;
+      if ((version > 0) && !vkb.acquire(version)) {
+        LOGGER.debug("Session {} uses Version {} of Knowledge-Base, which is not available anymore.", node.sessionID, version);
+      }
+      releaseVersion(node);
+      node.version = version;
+    }
+  }
+
+  /**
+   * Release the Reference of a Session to its Version of the Knowledge-Base.
+   * Caller must hold the Lock of its Segment.
+   */
+  private void releaseVersion(final Node node) {
+    if ((node.version > 0) && (this.kb instanceof VersionedKnowledgeBase)) {
+      ((VersionedKnowledgeBase) this.kb).release(node.version);
+    }
+    node.version = 0;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Move idle Sessions off-heap. A Session is only replaced by its
+   * serialized Form if it was neither accessed nor checked out while it
+   * was serialized. A Session that cannot be serialized stays on the Heap.
+   */
+  private void spill(final List<Node> candidates) {
+    int count = 0;
+    for (final Node node : candidates) {
+      final Segment seg = segmentFor(node.sessionID);
+      final CacheEntry entry;
+      final long lastAccess;
+      synchronized (seg) {
+        entry = node.entry;
+        lastAccess = node.lastAccess;
+      }
+      if ((entry == null) || node.removed) {
+        continue;
+      }
+      ByteBuffer buf = null;
+      try {
+        buf = this.offHeapStore.store(this.codec.encode(entry));
+      }
+      catch (final IOException ex) {
+        LOGGER.warn("Could not serialize Session " + node.sessionID + ": " + ex.getMessage(), ex);
+        continue;
+      }
+      catch (final RuntimeException ex) {
+        // e.g. session was modified concurrently, just skip it
+        LOGGER.warn("Could not serialize Session " + node.sessionID + ": " + ex.getMessage(), ex);
+        continue;
+      }
+      if (buf == null) {
+        LOGGER.debug("Off-heap Tier is full, {} Bytes in use.", this.offHeapStore.getSize());
+        break;
+      }
+      synchronized (seg) {
+        if (!node.removed && (node.entry == entry) && (node.lastAccess == lastAccess) && !seg.checkouts.containsKey(node.sessionID)) {
+          node.spilled = buf;
+          node.entry = null;
+          seg.heap.remove(node.sessionID); // no weight to evict anymore
+          addWeight(seg, -node.weight);
+          node.weight = 0L;
+          buf = null;
+          count++;
+        }
+      }
+      // session was accessed meanwhile
+      this.offHeapStore.release(buf);
+    }
+    if (count > 0) {
+      LOGGER.debug("Spilled {} idle Sessions off-heap, {} Bytes in use.", count, this.offHeapStore.getSize());
+    }
+  }
+
+  /**
+   * Move a Session back onto the Heap. Caller must hold the Lock of its Segment.
+   *
+   * @return true if Session could be restored, false otherwise
+   */
+  private boolean rehydrate(final Segment seg, final Node node) {
+    try {
+      node.entry = this.codec.decodeCacheEntry(this.offHeapStore.load(node.spilled));
+      node.spilled = null;
+      node.weight = node.entry.weigh(this.weigher);
+      addWeight(seg, node.weight);
+      if (!node.removed && seg.map.containsKey(node.sessionID)) {
+        seg.heap.put(node.sessionID, node);
+      }
+      LOGGER.trace("Rehydrated Session {}", node.sessionID);
+      return true;
+    }
+    catch (final IOException ex) {
+      LOGGER.warn("Could not rehydrate Session " + node.sessionID + ": " + ex.getMessage(), ex);
+      node.spilled = null; // already released by load()
+      node.entry = null;
+      return false;
+    }
+    catch (final RuntimeException ex) {
+      LOGGER.warn("Could not rehydrate Session " + node.sessionID + ": " + ex.getMessage(), ex);
+      node.spilled = null; // already released by load()
+      node.entry = null;
+      return false;
+    }
+  }
+
+  private void releaseSpilled(final Node node) {
+    if (node.spilled != null) {
+      this.offHeapStore.release(node.spilled);
+      node.spilled = null;
+    }
+  }
+
+  /**
+   * Caller must hold the Lock of the Segment.
+   */
+  private void addWeight(final Segment seg, final long delta) {
+    seg.weight += delta;
+    final long current = this.weight.addAndGet(delta);
+    long peak = this.peakWeight.get();
+    while ((current > peak) && !this.peakWeight.compareAndSet(peak, current)) {
+      peak = this.peakWeight.get();
+    }
+  }
+
+  /**
+   * Re-weigh a Session after one of its Objects was changed.
+   */
+  private void updateWeight(final String sessionID, final CacheEntry sessionData) {
+    final long sessionWeight = sessionData.weigh(this.weigher);
+    final Segment seg = segmentFor(sessionID);
+    synchronized (seg) {
+      final Node node = seg.get(sessionID);
+      if ((node != null) && (node.entry == sessionData)) {
+        addWeight(seg, sessionWeight - node.weight);
+        node.weight = sessionWeight;
+        referenceVersion(node);
+        evictIfNecessary(seg);
+      }
+    }
+  }
+
+  private Segment segmentFor(final String sessionID) {
+    // spread bits of hash code, sessionIDs often differ in their last characters only
+    int h = sessionID.hashCode();
+    h ^= (h >>> 16);
+    h ^= (h >>> 7) ^ (h >>> 4);
+    return this.segments[h & this.segmentMask];
+  }
+
+  /**
+   * Split the maximum Number and Weight of Sessions evenly into the Budgets
+   * of all Segments and evict Sessions exceeding the new Budgets. Every
+   * Segment may hold at least one Session. A Maximum <= 0 is interpreted
+   * as unlimited.
+   */
+  private void distributeBudgets() {
+    final int num = this.segments.length;
+    final int maxSessions = this.maxSessionsPerServer;
+    final long maxBytes = this.maxWeight;
+    for (int i = 0; i < num; i++) {
+      final Segment seg = this.segments[i];
+      synchronized (seg) {
+        seg.maxSessions = (maxSessions <= 0 ? 0 : Math.max(1, (maxSessions / num) + (i < (maxSessions % num) ? 1 : 0)));
+        seg.maxWeight = (maxBytes <= 0 ? 0L : Math.max(1L, (maxBytes / num) + (i < (maxBytes % num) ? 1 : 0)));
+        evictIfNecessary(seg);
+      }
+    }
+  }
+
+  /**
+   * Evict least recently used Sessions of a Segment until it does not exceed
+   * its Budget of Sessions and Weight any more. Spilled Sessions do not have
+   * any Weight, so evicting them because of the Weight-Limit would not help.
+   * They are only evicted if there are too many Sessions. Caller must hold
+   * the Lock of the Segment.
+   */
+  private void evictIfNecessary(final Segment seg) {
+    while (seg.isOversized()) {
+      final Node eldest = seg.remove(seg.map.keySet().iterator().next());
+      expired(seg, eldest, EvictionCause.SIZE);
+    }
+    while (seg.isOverweight()) {
+      final Node eldest = seg.remove(seg.heap.keySet().iterator().next());
+      expired(seg, eldest, EvictionCause.WEIGHT);
+    }
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * A Session in a Segment of the Cache, the Time of its last Access, its Time of Creation, its current Weight and the referenced
+   * Version of the Knowledge-Base. Either the Entry itself or its serialized
+   * Form (when spilled off-heap) is set.
+   */
+  private static final class Node {
+
+    private final String sessionID;
+    private CacheEntry entry;
+    private final long created;
+    private long lastAccess;
+    private long weight;
+    private ByteBuffer spilled;
+    private int version; // referenced version of knowledge-base
+    private boolean removed;
+
+    private Node(final String sessionID, final CacheEntry entry, final long created) {
+      this.sessionID = sessionID;
+      this.entry = entry;
+      this.created = created;
+      this.lastAccess = created;
+    }
+  }
+
+  /**
+   * Part of the Cache guarded by its own Lock. Both Maps are in Access-Order,
+   * i.e. their first Entry is always the least recently used Session of all
+   * Sessions respectively of the Sessions on the Heap. Additionally the
+   * Number of Checkouts of its Sessions is counted.
+   */
+  private static final class Segment {
+
+    private final Map<String, Node> map = new LinkedHashMap<String, Node>(LimitedHashMap.DEFAULT_INITIAL_CAPACITY, LimitedHashMap.DEFAULT_LOAD_FACTOR, LimitedHashMap.LRU_ACCESS_ORDER);
+    private final Map<String, Node> heap = new LinkedHashMap<String, Node>(LimitedHashMap.DEFAULT_INITIAL_CAPACITY, LimitedHashMap.DEFAULT_LOAD_FACTOR, LimitedHashMap.LRU_ACCESS_ORDER);
+    private final Map<String, Integer> checkouts = new HashMap<String, Integer>();
+    private long weight; // weight of all sessions on the heap
+    private int maxSessions; // budget, <= 0 for unlimited
+    private long maxWeight; // budget, <= 0 for unlimited
+
+    private Node get(final String sessionID) {
+      final Node node = this.map.get(sessionID);
+      if ((node != null) && (node.entry != null)) {
+        this.heap.get(sessionID); // access-order
+      }
+      return node;
+    }
+
+    private void put(final Node node) {
+      this.map.put(node.sessionID, node);
+      if (node.entry != null) {
+        this.heap.put(node.sessionID, node);
+      }
+    }
+
+    private Node remove(final String sessionID) {
+      this.heap.remove(sessionID);
+      return this.map.remove(sessionID);
+    }
+
+    private boolean isOversized() {
+      return (this.maxSessions > 0) && (this.map.size() > this.maxSessions);
+    }
+
+    private boolean isOverweight() {
+      return (this.maxWeight > 0) && (this.heap.size() > 1) && (this.weight > this.maxWeight);
+    }
+  }
+
+  /**
+   * Sweeper is a Daemon-Thread with low Priority, i.e. it will neither
+   * prevent Shutdown nor compete with Worker-Threads for CPU.
+   */
+  private static final class SweeperThreadFactory implements ThreadFactory {
+
+    @Override
+    public Thread newThread(final Runnable r) {
+      final Thread t = new Thread(r, "ResolutionCache-Sweeper");
+      t.setDaemon(true);
+      t.setPriority(Thread.MIN_PRIORITY);
+      return t;
+    }
+  }
 }
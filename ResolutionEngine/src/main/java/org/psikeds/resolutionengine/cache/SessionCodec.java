@@ -0,0 +1,718 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.psikeds.common.util.StringPool;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.impl.VersionedKnowledgeBase;
+import org.psikeds.resolutionengine.interfaces.pojos.Concept;
+import org.psikeds.resolutionengine.interfaces.pojos.ConceptChoice;
+import org.psikeds.resolutionengine.interfaces.pojos.ConceptChoices;
+import org.psikeds.resolutionengine.interfaces.pojos.Concepts;
+import org.psikeds.resolutionengine.interfaces.pojos.Feature;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureChoice;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureChoices;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureValue;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureValueRange;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureValueRanges;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureValues;
+import org.psikeds.resolutionengine.interfaces.pojos.Features;
+import org.psikeds.resolutionengine.interfaces.pojos.Knowledge;
+import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntities;
+import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntity;
+import org.psikeds.resolutionengine.interfaces.pojos.Purpose;
+import org.psikeds.resolutionengine.interfaces.pojos.Variant;
+import org.psikeds.resolutionengine.interfaces.pojos.VariantChoice;
+import org.psikeds.resolutionengine.interfaces.pojos.VariantChoices;
+import org.psikeds.resolutionengine.interfaces.pojos.Variants;
+import org.psikeds.resolutionengine.rules.RulesAndEventsHandler;
+
+/**
+ * Compact binary Encoding of Sessions, i.e. of Knowledge, RAEH and
+ * whole Cache-Entries. Used for spilling Sessions off-heap and for
+ * transferring them to other Nodes.
+ * 
+ * Every String (IDs, Labels, ...) is written only once per Message and
+ * afterwards referenced by its Index. A RulesAndEventsHandler is encoded
+ * just by the IDs of its Events, Rules and Relations, which are looked up
+ * in the Knowledge-Base again when decoding. An encoded Cache-Entry also
+ * carries the Version of the Knowledge-Base the Session is working with,
+ * so it is decoded against this Version and not against the newest one,
+ * see {@link VersionedKnowledgeBase#getKnowledgeBase(int)}. Without a Knowledge-Base
+ * and for any other Object, Java-Serialization is used as Fallback.
+ * 
+ * Decoded Strings are replaced by their Instances from the
+ * {@link StringPool} of the Version of the Knowledge-Base the Session is
+ * decoded against (or from an explicitly set Pool), so that decoded and
+ * copied Sessions are not holding their own Copies of IDs and Labels.
+ * 
+ * A Codec has no State of its own and can be shared by many Threads.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class SessionCodec {
+
+  private static final int MAGIC = 0x50534B53; // "PSKS"
+  private static final int VERSION = 3;
+
+  private static final int TYPE_NULL = 0;
+  private static final int TYPE_KNOWLEDGE = 1;
+  private static final int TYPE_RULES_AND_EVENTS = 2;
+  private static final int TYPE_SERIALIZED = 3;
+
+  private static final int STRING_NULL = 0;
+  private static final int STRING_NEW = 1;
+  private static final int STRING_REF_OFFSET = 2;
+
+  private KnowledgeBase kb;
+  private StringPool stringPool;
+
+  public SessionCodec() {
+    this(null);
+  }
+
+  public SessionCodec(final KnowledgeBase kb) {
+    this(kb, null);
+  }
+
+  public SessionCodec(final KnowledgeBase kb, final StringPool stringPool) {
+    this.kb = kb;
+    this.stringPool = stringPool;
+  }
+
+  public KnowledgeBase getKnowledgeBase() {
+    return this.kb;
+  }
+
+  public void setKnowledgeBase(final KnowledgeBase kb) {
+    this.kb = kb;
+  }
+
+  public StringPool getStringPool() {
+    return this.stringPool;
+  }
+
+  public void setStringPool(final StringPool stringPool) {
+    this.stringPool = stringPool;
+  }
+
+  // ----------------------------------------------------------------
+
+  public byte[] encode(final Knowledge knowledge) throws IOException {
+    final Encoder enc = new Encoder();
+    enc.writeKnowledge(knowledge);
+    return enc.toByteArray();
+  }
+
+  public Knowledge decodeKnowledge(final byte[] data) throws IOException {
+    return new Decoder(data).readKnowledge();
+  }
+
+  /**
+   * Create a deep Copy of some Knowledge, e.g. for a Prediction.
+   * 
+   * @param knowledge
+   * @return Copy of Knowledge
+   * @throws IOException
+   */
+  public Knowledge copy(final Knowledge knowledge) throws IOException {
+    return decodeKnowledge(encode(knowledge));
+  }
+
+  public byte[] encode(final RulesAndEventsHandler raeh) throws IOException {
+    final Encoder enc = new Encoder();
+    enc.writeRulesAndEvents(raeh);
+    return enc.toByteArray();
+  }
+
+  public RulesAndEventsHandler decodeRulesAndEventsHandler(final byte[] data) throws IOException {
+    return new Decoder(data).readRulesAndEvents();
+  }
+
+  /**
+   * Encode all Objects of a Session.
+   * 
+   * @param entry
+   *          Session
+   * @return encoded Session
+   * @throws IOException
+   */
+  public byte[] encode(final CacheEntry entry) throws IOException {
+    final Encoder enc = new Encoder();
+    synchronized (entry) {
+      enc.writeVarInt(entry.getMaxObjectsPerSession());
+      enc.writeVarInt(entry.getKnowledgeBaseVersion());
+      enc.writeVarInt(entry.size());
+      for (final Map.Entry<String, Serializable> e : entry.entrySet()) {
+        enc.writeString(e.getKey());
+        enc.writeValue(e.getValue());
+      }
+    }
+    return enc.toByteArray();
+  }
+
+  public CacheEntry decodeCacheEntry(final byte[] data) throws IOException {
+    final Decoder dec = new Decoder(data);
+    final CacheEntry entry = new CacheEntry(dec.readVarInt());
+    final int version = dec.readVarInt();
+    if ((version > 0) && (this.kb instanceof VersionedKnowledgeBase)) {
+      dec.kb = ((VersionedKnowledgeBase) this.kb).getKnowledgeBase(version);
+    }
+    final int num = dec.readVarInt();
+    for (int i = 0; i < num; i++) {
+      final String key = dec.readString();
+      entry.put(key, dec.readValue());
+    }
+    return entry;
+  }
+
+  // ----------------------------------------------------------------
+
+  private class Encoder {
+
+    private final ByteArrayOutputStream bytes;
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings;
+
+    private Encoder() throws IOException {
+      this.bytes = new ByteArrayOutputStream(1024);
+      this.out = new DataOutputStream(this.bytes);
+      this.strings = new HashMap<String, Integer>();
+      this.out.writeInt(MAGIC);
+      this.out.writeByte(VERSION);
+    }
+
+    private byte[] toByteArray() throws IOException {
+      this.out.flush();
+      return this.bytes.toByteArray();
+    }
+
+    private void writeVarInt(int value) throws IOException {
+      while ((value & ~0x7F) != 0) {
+        this.out.writeByte((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      this.out.writeByte(value);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+      while ((value & ~0x7FL) != 0) {
+        this.out.writeByte((int) ((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      this.out.writeByte((int) value);
+    }
+
+    private void writeString(final String str) throws IOException {
+      if (str == null) {
+        writeVarInt(STRING_NULL);
+        return;
+      }
+      final Integer idx = this.strings.get(str);
+      if (idx != null) {
+        writeVarInt(idx.intValue() + STRING_REF_OFFSET);
+        return;
+      }
+      this.strings.put(str, Integer.valueOf(this.strings.size()));
+      final byte[] utf8 = str.getBytes("UTF-8");
+      writeVarInt(STRING_NEW);
+      writeVarInt(utf8.length);
+      this.out.write(utf8);
+    }
+
+    private boolean writePresence(final Object obj) throws IOException {
+      this.out.writeBoolean(obj != null);
+      return (obj != null);
+    }
+
+    private void writeValue(final Serializable obj) throws IOException {
+      if (obj == null) {
+        writeVarInt(TYPE_NULL);
+      }
+      else if (obj instanceof Knowledge) {
+        writeVarInt(TYPE_KNOWLEDGE);
+        writeKnowledge((Knowledge) obj);
+      }
+      else if ((obj instanceof RulesAndEventsHandler) && (SessionCodec.this.kb != null)) {
+        writeVarInt(TYPE_RULES_AND_EVENTS);
+        writeRulesAndEvents((RulesAndEventsHandler) obj);
+      }
+      else {
+        writeVarInt(TYPE_SERIALIZED);
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(baos);
+        try {
+          oos.writeObject(obj);
+        }
+        finally {
+          oos.close();
+        }
+        writeVarInt(baos.size());
+        baos.writeTo(this.out);
+      }
+    }
+
+    // ----------------------------------------------------------------
+
+    private void writeRulesAndEvents(final RulesAndEventsHandler raeh) throws IOException {
+      if (writePresence(raeh)) {
+        for (final String[] ids : raeh.getAllObjectIDs()) {
+          writeVarInt(ids.length);
+          for (final String id : ids) {
+            writeString(id);
+          }
+        }
+      }
+    }
+
+    private void writeKnowledge(final Knowledge k) throws IOException {
+      if (writePresence(k)) {
+        this.out.writeBoolean(k.isStable());
+        final KnowledgeEntities entities = k.getEntities();
+        writeVarInt(entities.size());
+        for (final KnowledgeEntity ke : entities) {
+          writeKnowledgeEntity(ke);
+        }
+        writeVariantChoices(k.getChoices());
+      }
+    }
+
+    private void writeKnowledgeEntity(final KnowledgeEntity ke) throws IOException {
+      if (writePresence(ke)) {
+        writeVarLong(ke.getQuantity());
+        writePurpose(ke.getPurpose());
+        writeVariant(ke.getVariant());
+        writeFeatureValues(ke.getFeatures());
+        final KnowledgeEntities children = ke.getChildren();
+        writeVarInt(children.size());
+        for (final KnowledgeEntity child : children) {
+          writeKnowledgeEntity(child);
+        }
+        writeVariantChoices(ke.getPossibleVariants());
+        final FeatureChoices fcs = ke.getPossibleFeatures();
+        writeVarInt(fcs.size());
+        for (final FeatureChoice fc : fcs) {
+          if (writePresence(fc)) {
+            writeString(fc.getParentVariantID());
+            writeString(fc.getFeatureID());
+            writeFeatureValues(fc.getPossibleValues());
+            writeFeatureValueRanges(fc.getPossibleRanges());
+          }
+        }
+        final ConceptChoices ccs = ke.getPossibleConcepts();
+        writeVarInt(ccs.size());
+        for (final ConceptChoice cc : ccs) {
+          if (writePresence(cc)) {
+            writeString(cc.getParentVariantID());
+            writeConcepts(cc.getConcepts());
+          }
+        }
+      }
+    }
+
+    private void writeVariantChoices(final VariantChoices vcs) throws IOException {
+      writeVarInt(vcs.size());
+      for (final VariantChoice vc : vcs) {
+        if (writePresence(vc)) {
+          writeString(vc.getParentVariantID());
+          writePurpose(vc.getPurpose());
+          writeVarLong(vc.getQuantity());
+          final Variants variants = vc.getVariants();
+          writeVarInt(variants.size());
+          for (final Variant v : variants) {
+            writeVariant(v);
+          }
+        }
+      }
+    }
+
+    private void writePurpose(final Purpose p) throws IOException {
+      if (writePresence(p)) {
+        writeString(p.getPurposeID());
+        writeString(p.getLabel());
+        writeString(p.getDescription());
+        this.out.writeBoolean(p.isRoot());
+      }
+    }
+
+    private void writeVariant(final Variant v) throws IOException {
+      if (writePresence(v)) {
+        writeString(v.getVariantID());
+        writeString(v.getLabel());
+        writeString(v.getDescription());
+        final Features features = v.getFeatures();
+        writeVarInt(features.size());
+        for (final Feature f : features) {
+          if (writePresence(f)) {
+            writeString(f.getFeatureID());
+            writeString(f.getLabel());
+            writeString(f.getDescription());
+            writeString(f.getValueType());
+            writeString(f.getUnit());
+          }
+        }
+        writeConcepts(v.getConcepts());
+      }
+    }
+
+    private void writeConcepts(final Concepts concepts) throws IOException {
+      writeVarInt(concepts.size());
+      for (final Concept c : concepts) {
+        if (writePresence(c)) {
+          writeString(c.getConceptID());
+          writeString(c.getLabel());
+          writeString(c.getDescription());
+          final List<String> fids = c.getFeatureIds();
+          writeVarInt(fids.size());
+          for (final String fid : fids) {
+            writeString(fid);
+          }
+          writeFeatureValues(c.getValues());
+        }
+      }
+    }
+
+    private void writeFeatureValues(final FeatureValues values) throws IOException {
+      writeVarInt(values.size());
+      for (final FeatureValue fv : values) {
+        if (writePresence(fv)) {
+          writeString(fv.getFeatureID());
+          writeString(fv.getFeatureValueID());
+          writeString(fv.getValue());
+        }
+      }
+    }
+
+    // ranges are written symbolically, i.e. their values are never materialized
+    private void writeFeatureValueRanges(final FeatureValueRanges ranges) throws IOException {
+      writeVarInt(ranges.size());
+      for (final FeatureValueRange range : ranges) {
+        if (writePresence(range)) {
+          writeString(range.getFeatureID());
+          writeString(range.getRangeID());
+          writeString(range.getValueType());
+          writeString(range.getMinimum());
+          writeString(range.getIncrement());
+          writeVarInt(range.getScale());
+          writeVarInt(range.getRoundingMode());
+          writeVarInt(range.getOffset());
+          writeVarInt(range.getSize());
+        }
+      }
+    }
+  }
+
+  // ----------------------------------------------------------------
+
+  private class Decoder {
+
+    private final DataInputStream in;
+    private final List<String> strings;
+    private KnowledgeBase kb;
+
+    private Decoder(final byte[] data) throws IOException {
+      this.in = new DataInputStream(new ByteArrayInputStream(data));
+      this.kb = SessionCodec.this.kb;
+      this.strings = new ArrayList<String>();
+      if (this.in.readInt() != MAGIC) {
+        throw new IOException("Not an encoded Session.");
+      }
+      final int version = this.in.readUnsignedByte();
+      if (version != VERSION) {
+        throw new IOException("Unsupported Version of encoded Session: " + version);
+      }
+    }
+
+    private int readVarInt() throws IOException {
+      int value = 0;
+      int shift = 0;
+      int b;
+      do {
+        b = this.in.readUnsignedByte();
+        value |= (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+
+    private long readVarLong() throws IOException {
+      long value = 0L;
+      int shift = 0;
+      int b;
+      do {
+        b = this.in.readUnsignedByte();
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+
+    private String readString() throws IOException {
+      final int code = readVarInt();
+      if (code == STRING_NULL) {
+        return null;
+      }
+      if (code != STRING_NEW) {
+        return this.strings.get(code - STRING_REF_OFFSET);
+      }
+      final byte[] utf8 = new byte[readVarInt()];
+      this.in.readFully(utf8);
+      String str = new String(utf8, "UTF-8");
+      final StringPool pool = (SessionCodec.this.stringPool != null ? SessionCodec.this.stringPool : (this.kb == null ? null : this.kb.getStringPool()));
+      if (pool != null) {
+        // never add Strings of a Session to the Pool, just reuse known ones
+        str = pool.lookup(str);
+      }
+      this.strings.add(str);
+      return str;
+    }
+
+    private Serializable readValue() throws IOException {
+      final int type = readVarInt();
+      switch (type) {
+        case TYPE_NULL:
+          return null;
+        case TYPE_KNOWLEDGE:
+          return readKnowledge();
+        case TYPE_RULES_AND_EVENTS:
+          return readRulesAndEvents();
+        case TYPE_SERIALIZED:
+          final byte[] data = new byte[readVarInt()];
+          this.in.readFully(data);
+          final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+          try {
+            return (Serializable) ois.readObject();
+          }
+          catch (final ClassNotFoundException ex) {
+            throw new IOException("Could not deserialize Object: " + ex.getMessage());
+          }
+          finally {
+            ois.close();
+          }
+        default:
+          throw new IOException("Unknown Type of encoded Object: " + type);
+      }
+    }
+
+    // ----------------------------------------------------------------
+
+    private RulesAndEventsHandler readRulesAndEvents() throws IOException {
+      if (!this.in.readBoolean()) {
+        return null;
+      }
+      final String[][] ids = new String[RulesAndEventsHandler.NUMBER_OF_STACKS][];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = new String[readVarInt()];
+        for (int j = 0; j < ids[i].length; j++) {
+          ids[i][j] = readString();
+        }
+      }
+      if (this.kb == null) {
+        throw new IOException("Cannot decode RAEH without Knowledge-Base.");
+      }
+      return RulesAndEventsHandler.init(this.kb, ids);
+    }
+
+    private Knowledge readKnowledge() throws IOException {
+      if (!this.in.readBoolean()) {
+        return null;
+      }
+      final boolean stable = this.in.readBoolean();
+      final int num = readVarInt();
+      final KnowledgeEntities entities = new KnowledgeEntities(num);
+      for (int i = 0; i < num; i++) {
+        entities.add(readKnowledgeEntity());
+      }
+      final Knowledge k = new Knowledge(entities, readVariantChoices());
+      k.setStable(stable);
+      return k;
+    }
+
+    private KnowledgeEntity readKnowledgeEntity() throws IOException {
+      if (!this.in.readBoolean()) {
+        return null;
+      }
+      final long qty = readVarLong();
+      final Purpose purpose = readPurpose();
+      final Variant variant = readVariant();
+      final FeatureValues features = readFeatureValues();
+      int num = readVarInt();
+      final KnowledgeEntities children = new KnowledgeEntities(num);
+      for (int i = 0; i < num; i++) {
+        children.add(readKnowledgeEntity());
+      }
+      final VariantChoices vcs = readVariantChoices();
+      num = readVarInt();
+      final FeatureChoices fcs = new FeatureChoices(num);
+      for (int i = 0; i < num; i++) {
+        if (this.in.readBoolean()) {
+          final String parentVariantID = readString();
+          final String featureID = readString();
+          final FeatureChoice fc = new FeatureChoice(parentVariantID, featureID, readFeatureValues());
+          fc.setPossibleRanges(readFeatureValueRanges());
+          fcs.add(fc);
+        }
+        else {
+          fcs.add(null);
+        }
+      }
+      num = readVarInt();
+      final ConceptChoices ccs = new ConceptChoices(num);
+      for (int i = 0; i < num; i++) {
+        if (this.in.readBoolean()) {
+          final String parentVariantID = readString();
+          ccs.add(new ConceptChoice(parentVariantID, readConcepts()));
+        }
+        else {
+          ccs.add(null);
+        }
+      }
+      return new KnowledgeEntity(qty, purpose, variant, features, children, vcs, fcs, ccs);
+    }
+
+    private VariantChoices readVariantChoices() throws IOException {
+      final int num = readVarInt();
+      final VariantChoices vcs = new VariantChoices(num);
+      for (int i = 0; i < num; i++) {
+        if (this.in.readBoolean()) {
+          final String parentVariantID = readString();
+          final Purpose purpose = readPurpose();
+          final long qty = readVarLong();
+          final int numVariants = readVarInt();
+          final Variants variants = new Variants(numVariants);
+          for (int j = 0; j < numVariants; j++) {
+            variants.add(readVariant());
+          }
+          vcs.add(new VariantChoice(parentVariantID, purpose, variants, qty));
+        }
+        else {
+          vcs.add(null);
+        }
+      }
+      return vcs;
+    }
+
+    private Purpose readPurpose() throws IOException {
+      if (!this.in.readBoolean()) {
+        return null;
+      }
+      final String purposeID = readString();
+      final String label = readString();
+      final String description = readString();
+      return new Purpose(label, description, purposeID, this.in.readBoolean());
+    }
+
+    private Variant readVariant() throws IOException {
+      if (!this.in.readBoolean()) {
+        return null;
+      }
+      final String variantID = readString();
+      final String label = readString();
+      final String description = readString();
+      final int num = readVarInt();
+      final Features features = new Features(num);
+      for (int i = 0; i < num; i++) {
+        if (this.in.readBoolean()) {
+          final String featureID = readString();
+          final String flabel = readString();
+          final String fdescription = readString();
+          final String valueType = readString();
+          features.add(new Feature(flabel, fdescription, featureID, valueType, readString()));
+        }
+        else {
+          features.add(null);
+        }
+      }
+      return new Variant(label, description, variantID, features, readConcepts());
+    }
+
+    private Concepts readConcepts() throws IOException {
+      final int num = readVarInt();
+      final Concepts concepts = new Concepts(num);
+      for (int i = 0; i < num; i++) {
+        if (this.in.readBoolean()) {
+          final String conceptID = readString();
+          final String label = readString();
+          final String description = readString();
+          final int numFeatures = readVarInt();
+          final List<String> fids = new ArrayList<String>(numFeatures);
+          for (int j = 0; j < numFeatures; j++) {
+            fids.add(readString());
+          }
+          concepts.add(new Concept(label, description, conceptID, fids, readFeatureValues()));
+        }
+        else {
+          concepts.add(null);
+        }
+      }
+      return concepts;
+    }
+
+    private FeatureValues readFeatureValues() throws IOException {
+      final int num = readVarInt();
+      final FeatureValues values = new FeatureValues(num);
+      for (int i = 0; i < num; i++) {
+        if (this.in.readBoolean()) {
+          final String featureID = readString();
+          final String featureValueID = readString();
+          values.add(new FeatureValue(featureID, featureValueID, readString()));
+        }
+        else {
+          values.add(null);
+        }
+      }
+      return values;
+    }
+
+    private FeatureValueRanges readFeatureValueRanges() throws IOException {
+      final int num = readVarInt();
+      if (num == 0) {
+        return null;
+      }
+      final FeatureValueRanges ranges = new FeatureValueRanges(num);
+      for (int i = 0; i < num; i++) {
+        if (this.in.readBoolean()) {
+          final String featureID = readString();
+          final String rangeID = readString();
+          final String valueType = readString();
+          final String minimum = readString();
+          final String increment = readString();
+          final int scale = readVarInt();
+          final int roundingMode = readVarInt();
+          final int offset = readVarInt();
+          ranges.add(new FeatureValueRange(featureID, rangeID, valueType, minimum, increment, scale, roundingMode, offset, readVarInt()));
+        }
+        else {
+          ranges.add(null);
+        }
+      }
+      return ranges;
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.cache;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+import org.psikeds.resolutionengine.interfaces.pojos.Concept;
+import org.psikeds.resolutionengine.interfaces.pojos.ConceptChoice;
+import org.psikeds.resolutionengine.interfaces.pojos.Concepts;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureChoice;
+import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntities;
+import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntity;
+import org.psikeds.resolutionengine.interfaces.pojos.Knowledge;
+import org.psikeds.resolutionengine.interfaces.pojos.Variant;
+import org.psikeds.resolutionengine.interfaces.pojos.VariantChoice;
+import org.psikeds.resolutionengine.interfaces.pojos.VariantChoices;
+import org.psikeds.resolutionengine.rules.RulesAndEventsHandler;
+
+/**
+ * Default Weigher for the Objects of a Resolution-Session.
+ * 
+ * Knowledge is weighed by walking its Tree and counting POJOs and Lists.
+ * A RulesAndEventsHandler only references the Events, Rules and Relations
+ * of the Knowledge-Base, therefore just its Map-Entries are retained by
+ * the Session. All Sizes are rough Estimates for a 64-bit VM.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class SessionWeigher implements Weigher {
+
+  public static final long POJO_WEIGHT = 80L; // object, fields and composed id
+  public static final long LIST_WEIGHT = 40L; // arraylist with backing array
+  public static final long REFERENCE_WEIGHT = 8L; // one slot in a list or array
+  public static final long MAP_WEIGHT = 80L; // empty linked hashmap
+  public static final long MAP_ENTRY_WEIGHT = 48L; // linked hashmap entry incl. table slot
+  public static final long STRING_WEIGHT = 40L; // string object and char array without chars
+  public static final long ARRAY_WEIGHT = 16L; // array header without elements
+  public static final long DEFAULT_WEIGHT = 256L; // anything else
+
+  @Override
+  public long weigh(final Serializable obj) {
+    if (obj == null) {
+      return 0L;
+    }
+    if (obj instanceof Knowledge) {
+      return weigh((Knowledge) obj);
+    }
+    if (obj instanceof RulesAndEventsHandler) {
+      return weigh((RulesAndEventsHandler) obj);
+    }
+    if (obj instanceof String) {
+      return STRING_WEIGHT + (2L * ((String) obj).length());
+    }
+    if (obj instanceof byte[]) {
+      return ARRAY_WEIGHT + ((byte[]) obj).length;
+    }
+    return DEFAULT_WEIGHT;
+  }
+
+  // ----------------------------------------------------------------
+
+  public long weigh(final RulesAndEventsHandler raeh) {
+    return POJO_WEIGHT + (RulesAndEventsHandler.NUMBER_OF_STACKS * MAP_WEIGHT) + (raeh.countAllObjects() * MAP_ENTRY_WEIGHT);
+  }
+
+  public long weigh(final Knowledge knowledge) {
+    return POJO_WEIGHT + weigh(knowledge.getEntities()) + weigh(knowledge.getChoices());
+  }
+
+  // ----------------------------------------------------------------
+
+  private long weigh(final KnowledgeEntities entities) {
+    long weight = weighList(entities);
+    if (entities != null) {
+      for (final KnowledgeEntity ke : entities) {
+        weight += weigh(ke);
+      }
+    }
+    return weight;
+  }
+
+  private long weigh(final KnowledgeEntity ke) {
+    if (ke == null) {
+      return 0L;
+    }
+    long weight = POJO_WEIGHT;
+    weight += weighPojos(ke.getFeatures());
+    weight += weigh(ke.getChildren());
+    weight += weigh(ke.getPossibleVariants());
+    weight += weighList(ke.getPossibleFeatures());
+    for (final FeatureChoice fc : ke.getPossibleFeatures()) {
+      // note: ranges are symbolic, i.e. a range weighs the same regardless of its size
+      weight += POJO_WEIGHT + ((fc == null) ? 0L : weighPojos(fc.getPossibleValues()) + weighPojos(fc.getPossibleRanges()));
+    }
+    weight += weighList(ke.getPossibleConcepts());
+    for (final ConceptChoice cc : ke.getPossibleConcepts()) {
+      weight += POJO_WEIGHT + ((cc == null) ? 0L : weigh(cc.getConcepts()));
+    }
+    // note: purpose and variant are shared with the corresponding choice
+    return weight;
+  }
+
+  private long weigh(final VariantChoices choices) {
+    long weight = weighList(choices);
+    if (choices != null) {
+      for (final VariantChoice vc : choices) {
+        weight += POJO_WEIGHT;
+        if (vc != null) {
+          weight += POJO_WEIGHT; // purpose
+          weight += weighList(vc.getVariants());
+          for (final Variant v : vc.getVariants()) {
+            weight += POJO_WEIGHT + ((v == null) ? 0L : weighPojos(v.getFeatures()) + weigh(v.getConcepts()));
+          }
+        }
+      }
+    }
+    return weight;
+  }
+
+  private long weigh(final Concepts concepts) {
+    long weight = weighList(concepts);
+    if (concepts != null) {
+      for (final Concept c : concepts) {
+        weight += POJO_WEIGHT + ((c == null) ? 0L : weighPojos(c.getValues()) + weighList(c.getFeatureIds()));
+      }
+    }
+    return weight;
+  }
+
+  private static long weighPojos(final Collection<?> pojos) {
+    return (pojos == null ? 0L : weighList(pojos) + (pojos.size() * POJO_WEIGHT));
+  }
+
+  private static long weighList(final Collection<?> lst) {
+    return (lst == null ? 0L : LIST_WEIGHT + (lst.size() * REFERENCE_WEIGHT));
+  }
+}
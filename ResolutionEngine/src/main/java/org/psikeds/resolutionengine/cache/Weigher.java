@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.cache;
+
+import java.io.Serializable;
+
+/**
+ * A Weigher estimates the retained Size (in Bytes) of an Object stored
+ * in the {@link ResolutionCache}. The Weight of a Session is the Sum of
+ * the Weights of all its Objects.
+ * 
+ * Note: Weighing is done for every saved Object, so Implementations must
+ * be fast and thread-safe. An Estimate is sufficient.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public interface Weigher {
+
+  long weigh(Serializable obj);
+}
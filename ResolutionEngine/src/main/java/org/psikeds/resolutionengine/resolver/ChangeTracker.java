@@ -0,0 +1,495 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.resolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.psikeds.resolutionengine.interfaces.pojos.Concept;
+import org.psikeds.resolutionengine.interfaces.pojos.ConceptChoice;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureChoice;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureValue;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureValueRange;
+import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntities;
+import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntity;
+import org.psikeds.resolutionengine.interfaces.pojos.Purpose;
+import org.psikeds.resolutionengine.interfaces.pojos.Variant;
+import org.psikeds.resolutionengine.interfaces.pojos.VariantChoice;
+
+/**
+ * Change-Tracking for the Resolver-Chain within one Resolution-Request.
+ * 
+ * Every Knowledge-Entity is reduced to a Digest of everything an Evaluator
+ * can look at, i.e. Variant, Purpose, Quantity, selected Feature-Values,
+ * all Choices and (recursively) all Children. An Evaluator remembers the
+ * Nexus of every Event, Rule or Relation that was evaluated without any
+ * Effect. In the next Pass it is skipped unless its Nexus (or anything
+ * below) was changed in the meantime.
+ * 
+ * A Nexus is remembered by its Digest, by the exact Number of Entities,
+ * Choices, Values and Concepts within it and by the Identities of its
+ * Entities. An Evaluation is only skipped if all of them are unchanged,
+ * so a replaced Entity or a Choice that lost or gained a Value is always
+ * evaluated again. The Digest is a 64-bit FNV-1a Hash, so a Nexus also
+ * keeps a canonical Snapshot of its Content. If the Digest is unchanged,
+ * this Content is compared as well before an Evaluation is skipped, i.e. a
+ * Hash-Collision never leads to a wrong Skip.
+ * 
+ * Note: Passes are not driven by a Set of dirty Entities. Every Pass still
+ * executes the full Resolver-Chain and every Evaluator still visits all of
+ * its Events, Rules and Relations. Only the Evaluation of those whose Nexus
+ * is unchanged is skipped.
+ * 
+ * Digests are only valid as long as the Knowledge is not modified, so
+ * they must be invalidated by every Resolver that changes the Knowledge.
+ * Remembered Evaluations are valid for the whole Request.
+ * 
+ * Evaluations not depending on the Knowledge at all (e.g. Rules, which only
+ * depend on the States of their Events) are remembered without a Digest and
+ * must be forgotten explicitly as soon as they are affected by a Change.
+ * 
+ * Note: A ChangeTracker is part of the SessionState and is neither shared
+ * between Threads nor cached between Requests.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class ChangeTracker {
+
+  public static final String SCOPE_EVENTS = "E/";
+  public static final String SCOPE_RULES = "R/";
+  public static final String SCOPE_RELATIONS = "L/";
+
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final long NULL_MARKER = 0x9e3779b97f4a7c15L;
+  private static final Nexus NO_NEXUS = new Nexus(new Digest(0L, 0, null), null);
+
+  private final Map<String, Nexus> evaluated;
+  private final Map<KnowledgeEntity, Digest> digests;
+
+  private int passes;
+  private int evaluations;
+  private int skipped;
+
+  public ChangeTracker() {
+    this.evaluated = new HashMap<String, Nexus>();
+    this.digests = new IdentityHashMap<KnowledgeEntity, Digest>();
+    this.passes = 0;
+    this.evaluations = 0;
+    this.skipped = 0;
+  }
+
+  // ----------------------------------------------------------------
+
+  public int getPasses() {
+    return this.passes;
+  }
+
+  public int getEvaluations() {
+    return this.evaluations;
+  }
+
+  public int getSkipped() {
+    return this.skipped;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Start the next Pass of the Resolver-Chain.
+   */
+  public void nextPass() {
+    this.passes++;
+    invalidate();
+  }
+
+  /**
+   * Knowledge was (or might have been) modified: Forget all Digests, but
+   * keep the remembered Evaluations.
+   */
+  public void invalidate() {
+    this.digests.clear();
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Check whether an Event, Rule or Relation was already evaluated without
+   * any Effect and its Nexus is unchanged since then.
+   * 
+   * @param scope
+   *          SCOPE_EVENTS, SCOPE_RULES or SCOPE_RELATIONS
+   * @param id
+   *          ID of Event, Rule or Relation
+   * @param nexus
+   *          current Nexus
+   * @return true if Evaluation can be skipped, false else
+   */
+  public boolean isUnchanged(final String scope, final String id, final KnowledgeEntities nexus) {
+    final Nexus last = this.evaluated.get(scope + id);
+    final boolean unchanged = ((last != null) && (last != NO_NEXUS) && last.equals(remember(nexus)));
+    if (unchanged) {
+      this.skipped++;
+    }
+    else {
+      this.evaluations++;
+    }
+    return unchanged;
+  }
+
+  /**
+   * Remember that an Event, Rule or Relation was evaluated without any
+   * Effect on this Nexus.
+   * 
+   * @param scope
+   *          SCOPE_EVENTS, SCOPE_RULES or SCOPE_RELATIONS
+   * @param id
+   *          ID of Event, Rule or Relation
+   * @param nexus
+   *          its Nexus
+   */
+  public void remember(final String scope, final String id, final KnowledgeEntities nexus) {
+    this.evaluated.put(scope + id, remember(nexus));
+  }
+
+  /**
+   * Check whether an Event, Rule or Relation was already evaluated without
+   * any Effect and was not forgotten since then.
+   * 
+   * @param scope
+   *          SCOPE_EVENTS, SCOPE_RULES or SCOPE_RELATIONS
+   * @param id
+   *          ID of Event, Rule or Relation
+   * @return true if Evaluation can be skipped, false else
+   */
+  public boolean isRemembered(final String scope, final String id) {
+    final boolean remembered = this.evaluated.containsKey(scope + id);
+    if (remembered) {
+      this.skipped++;
+    }
+    else {
+      this.evaluations++;
+    }
+    return remembered;
+  }
+
+  /**
+   * Remember that an Event, Rule or Relation was evaluated without any
+   * Effect, independent of its Nexus.
+   * 
+   * @param scope
+   *          SCOPE_EVENTS, SCOPE_RULES or SCOPE_RELATIONS
+   * @param id
+   *          ID of Event, Rule or Relation
+   */
+  public void remember(final String scope, final String id) {
+    this.evaluated.put(scope + id, NO_NEXUS);
+  }
+
+  /**
+   * Forget a remembered Evaluation, i.e. the Event, Rule or Relation will
+   * be evaluated again in the next Pass.
+   * 
+   * @param scope
+   *          SCOPE_EVENTS, SCOPE_RULES or SCOPE_RELATIONS
+   * @param id
+   *          ID of Event, Rule or Relation
+   */
+  public void forget(final String scope, final String id) {
+    this.evaluated.remove(scope + id);
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @param entities
+   *          KnowledgeEntities, e.g. a Nexus
+   * @return Digest of the Entities and everything below
+   */
+  public long digest(final KnowledgeEntities entities) {
+    return digestOf(entities).hash;
+  }
+
+  /**
+   * @param ke
+   *          KnowledgeEntity
+   * @return Digest of the Entity and everything below
+   */
+  public long digest(final KnowledgeEntity ke) {
+    return digestOf(ke).hash;
+  }
+
+  private Nexus remember(final KnowledgeEntities entities) {
+    final Digest d = digestOf(entities);
+    return new Nexus(d, (entities == null ? null : entities.toArray(new KnowledgeEntity[entities.size()])));
+  }
+
+  private Digest digestOf(final KnowledgeEntities entities) {
+    final Content c = new Content();
+    c.add(entities == null ? -1 : entities.size());
+    if (entities != null) {
+      for (final KnowledgeEntity ke : entities) {
+        c.add(digestOf(ke));
+      }
+    }
+    return c.toDigest();
+  }
+
+  private Digest digestOf(final KnowledgeEntity ke) {
+    if (ke == null) {
+      return new Digest(NULL_MARKER, 0, null);
+    }
+    final Digest known = this.digests.get(ke);
+    if (known != null) {
+      return known;
+    }
+    final Variant v = ke.getVariant();
+    final Purpose p = ke.getPurpose();
+    final Content c = new Content();
+    c.count(1);
+    c.add(v == null ? null : v.getVariantID());
+    c.add(p == null ? null : p.getPurposeID());
+    c.add(ke.getQuantity());
+    addValues(c, ke.getFeatures());
+    c.add(ke.getPossibleVariants() == null ? -1 : ke.getPossibleVariants().size());
+    if (ke.getPossibleVariants() != null) {
+      for (final VariantChoice vc : ke.getPossibleVariants()) {
+        c.count(1);
+        c.add(vc.getParentVariantID());
+        c.add(vc.getPurpose() == null ? null : vc.getPurpose().getPurposeID());
+        c.add(vc.getQuantity());
+        c.add(vc.getVariants() == null ? -1 : vc.getVariants().size());
+        if (vc.getVariants() != null) {
+          for (final Variant cv : vc.getVariants()) {
+            c.count(1);
+            c.add(cv == null ? null : cv.getVariantID());
+          }
+        }
+      }
+    }
+    c.add(ke.getPossibleFeatures() == null ? -1 : ke.getPossibleFeatures().size());
+    if (ke.getPossibleFeatures() != null) {
+      for (final FeatureChoice fc : ke.getPossibleFeatures()) {
+        c.count(1);
+        c.add(fc.getParentVariantID());
+        c.add(fc.getFeatureID());
+        addValues(c, fc.getPossibleValues());
+        addRanges(c, fc.getPossibleRanges());
+      }
+    }
+    c.add(ke.getPossibleConcepts() == null ? -1 : ke.getPossibleConcepts().size());
+    if (ke.getPossibleConcepts() != null) {
+      for (final ConceptChoice cc : ke.getPossibleConcepts()) {
+        c.count(1);
+        c.add(cc.getParentVariantID());
+        c.add(cc.getConcepts() == null ? -1 : cc.getConcepts().size());
+        if (cc.getConcepts() != null) {
+          for (final Concept con : cc.getConcepts()) {
+            c.count(1);
+            c.add(con == null ? null : con.getConceptID());
+            addValues(c, (con == null ? null : con.getValues()));
+          }
+        }
+      }
+    }
+    c.add(digestOf(ke.getChildren()));
+    final Digest d = c.toDigest();
+    this.digests.put(ke, d);
+    return d;
+  }
+
+  private static void addRanges(final Content c, final List<FeatureValueRange> ranges) {
+    c.add(ranges == null ? -1 : ranges.size());
+    if (ranges != null) {
+      for (final FeatureValueRange range : ranges) {
+        if (range == null) {
+          c.add(NULL_MARKER);
+        }
+        else {
+          // a (sub-)range is identified by its id, offset and size
+          c.count(range.getSize());
+          c.add(range.getRangeID());
+          c.add(range.getOffset());
+          c.add(range.getSize());
+        }
+      }
+    }
+  }
+
+  private static void addValues(final Content c, final List<FeatureValue> values) {
+    c.add(values == null ? -1 : values.size());
+    if (values != null) {
+      for (final FeatureValue fv : values) {
+        c.count(1);
+        if (fv == null) {
+          c.add(NULL_MARKER);
+        }
+        else {
+          c.add(fv.getFeatureID());
+          c.add(fv.getFeatureValueID());
+          c.add(fv.getValue());
+        }
+      }
+    }
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * FNV-1a over the Characters of a String.
+   * 
+   * @param h
+   *          Digest so far
+   * @param str
+   *          String (can be null)
+   * @return new Digest
+   */
+  public static long mix(long h, final String str) {
+    if (str == null) {
+      return mix(h, NULL_MARKER);
+    }
+    final int len = str.length();
+    for (int i = 0; i < len; i++) {
+      h = (h ^ str.charAt(i)) * FNV_PRIME;
+    }
+    // terminate, so that "ab"+"c" differs from "a"+"bc"
+    return (h ^ len) * FNV_PRIME;
+  }
+
+  /**
+   * FNV-1a over the Bytes of a long.
+   * 
+   * @param h
+   *          Digest so far
+   * @param value
+   *          long
+   * @return new Digest
+   */
+  public static long mix(long h, final long value) {
+    for (int shift = 0; shift < 64; shift += 8) {
+      h = (h ^ ((value >>> shift) & 0xff)) * FNV_PRIME;
+    }
+    return h;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Builder of a Digest: Everything added is mixed into the Hash and also
+   * kept as canonical Content.
+   */
+  private static final class Content {
+
+    private final List<Object> tokens = new ArrayList<Object>();
+    private long hash = FNV_OFFSET;
+    private int size = 0;
+
+    private void add(final String str) {
+      this.hash = mix(this.hash, str);
+      this.tokens.add(str);
+    }
+
+    private void add(final long value) {
+      this.hash = mix(this.hash, value);
+      this.tokens.add(Long.valueOf(value));
+    }
+
+    private void add(final Digest d) {
+      this.hash = mix(this.hash, d.hash);
+      this.tokens.add(d.content);
+      this.size += d.size;
+    }
+
+    private void count(final int num) {
+      this.size += num;
+    }
+
+    private Digest toDigest() {
+      return new Digest(this.hash, this.size, this.tokens.toArray());
+    }
+  }
+
+  /**
+   * Digest, exact Number of Elements and canonical Content of some
+   * Entities. The Content of Children is shared with their own Digests.
+   */
+  private static final class Digest {
+
+    private final long hash;
+    private final int size;
+    private final Object[] content;
+
+    private Digest(final long hash, final int size, final Object[] content) {
+      this.hash = hash;
+      this.size = size;
+      this.content = content;
+    }
+  }
+
+  /**
+   * Remembered Nexus of an Evaluation: its Digest, its exact Number of
+   * Elements, the Identities of its Entities and its canonical Content.
+   */
+  private static final class Nexus {
+
+    private final long hash;
+    private final int size;
+    private final KnowledgeEntity[] entities;
+    private final Object[] content;
+
+    private Nexus(final Digest d, final KnowledgeEntity[] entities) {
+      this.hash = d.hash;
+      this.size = d.size;
+      this.entities = entities;
+      this.content = d.content;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof Nexus)) {
+        return false;
+      }
+      final Nexus other = (Nexus) obj;
+      if ((this.hash != other.hash) || (this.size != other.size)) {
+        return false;
+      }
+      if ((this.entities == null) || (other.entities == null)) {
+        return (this.entities == other.entities);
+      }
+      if (this.entities.length != other.entities.length) {
+        return false;
+      }
+      for (int i = 0; i < this.entities.length; i++) {
+        // same Entities, not just equal ones
+        if (this.entities[i] != other.entities[i]) {
+          return false;
+        }
+      }
+      // same Digest, so compare the Content to rule out a Hash-Collision;
+      // unchanged Entities share their Content, which is compared by Identity
+      return Arrays.deepEquals(this.content, other.content);
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (this.hash ^ (this.hash >>> 32));
+    }
+  }
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.resolver;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.vo.Event;
+import org.psikeds.resolutionengine.datalayer.vo.Events;
+
+/**
+ * Prefix-Trie of the Context-Paths of all Events of a KnowledgeBase.
+ * 
+ * The first Level of the Trie is the Nexus-Variant of an Event, the
+ * following Levels are the Elements of its Context-Path. Events with the
+ * same Nexus and Context end at the same {@link Node}, so that an Evaluator
+ * can walk the Knowledge-Graph once per Node instead of once per Event.
+ * Every Node holds its Context-Path as a shared Array, i.e. walking a Path
+ * does not need any (Sub-)Lists.
+ * 
+ * The Trie is compiled once when the KnowledgeBase is loaded. Contexts not
+ * known at that Time are added on Demand. Nodes are never removed, so the
+ * Trie can be shared by all Threads.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class ContextTrie {
+
+  private final Node root;
+  private final AtomicInteger nodes;
+  private final AtomicInteger contexts;
+
+  public ContextTrie() {
+    this((KnowledgeBase) null);
+  }
+
+  public ContextTrie(final KnowledgeBase kb) {
+    this(kb == null ? null : kb.getEvents());
+  }
+
+  public ContextTrie(final Events events) {
+    this.root = new Node(null, null, null, -1);
+    this.nodes = new AtomicInteger(0);
+    this.contexts = new AtomicInteger(0);
+    if (events != null) {
+      for (final Event e : events.getEvent()) {
+        getNode(e);
+      }
+    }
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @return Number of Nodes within this Trie
+   */
+  public int getNodeCount() {
+    return this.nodes.get();
+  }
+
+  /**
+   * @return Number of distinct Contexts (Nexus plus Context-Path)
+   */
+  public int getContextCount() {
+    return this.contexts.get();
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Get the Node at which Nexus and Context-Path of an Event end. The Node
+   * is created if this Context is not known yet.
+   * 
+   * @param e
+   *          Event
+   * @return Node; null if Event has no Nexus or no Context
+   */
+  public Node getNode(final Event e) {
+    return (e == null ? null : getNode(e.getVariantID(), e.getContext()));
+  }
+
+  /**
+   * @param nexus
+   *          ID of the Variant that is the Nexus
+   * @param ctx
+   *          Context-Path
+   * @return Node; null if Nexus or Context is empty
+   */
+  public Node getNode(final String nexus, final List<String> ctx) {
+    if ((nexus == null) || (ctx == null) || ctx.isEmpty()) {
+      return null;
+    }
+    Node n = this.root.child(nexus);
+    for (final String pe : ctx) {
+      n = n.child(pe);
+    }
+    if (n.path == null) {
+      synchronized (n) {
+        if (n.path == null) {
+          n.path = ctx.toArray(new String[ctx.size()]);
+          this.contexts.incrementAndGet();
+        }
+      }
+    }
+    return n;
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * A Node of the Trie, i.e. a Nexus and a (partial) Context-Path.
+   * Nodes have Identity-Semantics and can be used as Keys of Maps.
+   */
+  public final class Node {
+
+    private final Node parent;
+    private final String nexus;
+    private final String element;
+    private final int depth;
+    private final ConcurrentMap<String, Node> children;
+    private volatile String[] path;
+
+    private Node(final Node parent, final String nexus, final String element, final int depth) {
+      this.parent = parent;
+      this.nexus = nexus;
+      this.element = element;
+      this.depth = depth;
+      this.children = new ConcurrentHashMap<String, Node>();
+      this.path = null;
+    }
+
+    public Node getParent() {
+      return this.parent;
+    }
+
+    public String getNexus() {
+      return this.nexus;
+    }
+
+    public String getElement() {
+      return this.element;
+    }
+
+    /**
+     * @return Length of the Context-Path up to this Node; 0 for the Nexus
+     */
+    public int getDepth() {
+      return this.depth;
+    }
+
+    /**
+     * @return true if at least one Context ends at this Node
+     */
+    public boolean isContext() {
+      return (this.path != null);
+    }
+
+    /**
+     * @return Context-Path up to this Node; null if no Context ends here.
+     *         Callers must not modify this Array!
+     */
+    public String[] getPath() {
+      return this.path;
+    }
+
+    private Node child(final String key) {
+      final String k = (key == null ? "" : key);
+      Node n = this.children.get(k);
+      if (n == null) {
+        final Node created = (this.depth < 0 ? new Node(this, key, null, 0) : new Node(this, this.nexus, key, this.depth + 1));
+        n = this.children.putIfAbsent(k, created);
+        if (n == null) {
+          n = created;
+          ContextTrie.this.nodes.incrementAndGet();
+        }
+      }
+      return n;
+    }
+
+    @Override
+    public String toString() {
+      if (this.depth < 0) {
+        return "";
+      }
+      if (this.depth == 0) {
+        return this.nexus + ":";
+      }
+      return this.parent.toString() + (this.depth == 1 ? " " : " / ") + this.element;
+    }
+  }
+}
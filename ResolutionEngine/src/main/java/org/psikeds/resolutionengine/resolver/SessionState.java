@@ -40,6 +40,7 @@ public class SessionState {
   private Warnings warnings;
   private Errors errors;
   private RulesAndEventsHandler raeh;
+  private ChangeTracker tracker;
 
   public SessionState(final String sessionID, final Metadata metadata, final Knowledge knowledge, final RulesAndEventsHandler raeh) {
     this.sessionID = sessionID;
@@ -48,6 +49,7 @@ public class SessionState {
     this.warnings = null;
     this.errors = null;
     this.raeh = raeh;
+    this.tracker = null;
   }
 
   // ----------------------------------------------------------------
@@ -84,6 +86,17 @@ public class SessionState {
     this.raeh = raeh;
   }
 
+  public ChangeTracker getChangeTracker() {
+    if (this.tracker == null) {
+      this.tracker = new ChangeTracker();
+    }
+    return this.tracker;
+  }
+
+  public void setChangeTracker(final ChangeTracker tracker) {
+    this.tracker = tracker;
+  }
+
   // ----------------------------------------------------------------
 
   public Warnings getWarnings() {
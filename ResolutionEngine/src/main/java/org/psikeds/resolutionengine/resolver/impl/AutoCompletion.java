@@ -33,7 +33,6 @@ import org.psikeds.resolutionengine.interfaces.pojos.Concepts;
 import org.psikeds.resolutionengine.interfaces.pojos.Decission;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureChoice;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureChoices;
-import org.psikeds.resolutionengine.interfaces.pojos.FeatureValues;
 import org.psikeds.resolutionengine.interfaces.pojos.Knowledge;
 import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntities;
 import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntity;
@@ -220,7 +219,7 @@ public class AutoCompletion implements InitializingBean, Resolver {
               LOGGER.trace("Creating Choices and KE for Variant {}", vid);
               // ensure clean data, therefore lookup variant from knowledge base (again)
               final org.psikeds.resolutionengine.datalayer.vo.Variant variant = this.kb.getVariant(vid);
-              v = this.trans.valueObject2Pojo(variant, this.kb.getFeatures(vid), this.kb.getAttachedConcepts(vid));
+              v = this.trans.valueObject2Pojo(variant, this.kb.getFeaturesView(vid), this.kb.getAttachedConcepts(vid));
               final long qty = this.kb.getQuantity(pid, vid);
               // get new choices for this variant
               final VariantChoices newVariantChoices = ChoicesHelper.getNewVariantChoices(this.kb, this.trans, variant);
@@ -240,14 +239,15 @@ public class AutoCompletion implements InitializingBean, Resolver {
           final FeatureChoice fc = (FeatureChoice) c;
           final String fid = fc.getFeatureID();
           final String parent = fc.getParentVariantID();
-          final FeatureValues values = fc.getPossibleValues();
-          if (values.size() < 2) {
+          // note: values of ranges are counted but not materialized
+          final int num = fc.getNumberOfPossibleValues();
+          if (num < 2) {
             LOGGER.trace("Found FC: {}", fc);
-            if (!values.isEmpty()) {
+            if (num > 0) {
               //exactly one feature value
-              FeatureValueHelper.applyFeatureValue(parentEntity, values.get(0));
+              FeatureValueHelper.applyFeatureValue(parentEntity, fc.getPossibleValue(0));
               completionMessage(fid, parent, state, fc);
-              values.clear();
+              fc.clearPossibleValues();
             }
             removed = true;
           }
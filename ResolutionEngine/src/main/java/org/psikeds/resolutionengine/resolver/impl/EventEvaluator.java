@@ -14,7 +14,11 @@
  *******************************************************************************/
 package org.psikeds.resolutionengine.resolver.impl;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +39,8 @@ import org.psikeds.resolutionengine.interfaces.pojos.Purpose;
 import org.psikeds.resolutionengine.interfaces.pojos.Variant;
 import org.psikeds.resolutionengine.interfaces.pojos.VariantChoice;
 import org.psikeds.resolutionengine.interfaces.pojos.VariantChoices;
+import org.psikeds.resolutionengine.resolver.ChangeTracker;
+import org.psikeds.resolutionengine.resolver.ContextTrie;
 import org.psikeds.resolutionengine.resolver.ResolutionException;
 import org.psikeds.resolutionengine.resolver.Resolver;
 import org.psikeds.resolutionengine.resolver.SessionState;
@@ -53,6 +59,14 @@ import org.psikeds.resolutionengine.util.KnowledgeHelper;
  * Decission will be ignored, Metadata is optional and will be used for
  * Information about Changes to the State of Events.
  * 
+ * Events that are still possible are only evaluated again if their Nexus
+ * was changed since the last Pass, see {@link ChangeTracker}.
+ * 
+ * The Context-Paths of all Events are compiled into a {@link ContextTrie}
+ * when the Knowledge-Base is set. Within one Pass the Knowledge-Graph is
+ * walked only once per distinct Context, the resulting Trigger-Points are
+ * then checked for every Event sharing this Context.
+ * 
  * @author marco@juliano.de
  * 
  */
@@ -66,6 +80,7 @@ public class EventEvaluator implements InitializingBean, Resolver {
   private KnowledgeBase kb;
   private Transformer trans;
   private boolean updateConditionalRelations;
+  private volatile ContextTrie contexts;
 
   public EventEvaluator() {
     this(null);
@@ -87,6 +102,7 @@ public class EventEvaluator implements InitializingBean, Resolver {
 
   public void setKnowledgeBase(final KnowledgeBase kb) {
     this.kb = kb;
+    this.contexts = null;
   }
 
   public Transformer getTransformer() {
@@ -118,6 +134,26 @@ public class EventEvaluator implements InitializingBean, Resolver {
     LOGGER.info("Config: Update conditional Relations = {}", this.updateConditionalRelations);
     Validate.notNull(this.kb, "No Knowledge-Base!");
     Validate.notNull(this.trans, "No Transformer!");
+    final ContextTrie trie = getContextTrie();
+    LOGGER.info("Compiled {} Contexts of Events into {} Nodes.", trie.getContextCount(), trie.getNodeCount());
+  }
+
+  /**
+   * @return Trie of the Contexts of all Events of the current Knowledge-Base;
+   *         compiled on first Access
+   */
+  public ContextTrie getContextTrie() {
+    ContextTrie trie = this.contexts;
+    if (trie == null) {
+      synchronized (this) {
+        trie = this.contexts;
+        if (trie == null) {
+          trie = new ContextTrie(this.kb);
+          this.contexts = trie;
+        }
+      }
+    }
+    return trie;
   }
 
   // ----------------------------------------------------------------
@@ -144,10 +180,15 @@ public class EventEvaluator implements InitializingBean, Resolver {
       if ((knowledge == null) || (raeh == null)) {
         throw new ResolutionException("Knowledge or RulesAndEventsHandler missing!");
       }
+      final ChangeTracker tracker = state.getChangeTracker();
+      tracker.invalidate();
+      final ContextTrie trie = getContextTrie();
+      final Map<ContextTrie.Node, ContextWalk> walks = new HashMap<ContextTrie.Node, ContextWalk>();
       for (final Event e : raeh.getRelevantEvents()) {
         // Check every relevant Event, i.e. neither obsolete nor triggered yet
-        checkEvent(e, knowledge, raeh, metadata);
+        checkEvent(e, knowledge, raeh, metadata, tracker, trie, walks);
       }
+      LOGGER.debug("Walked {} distinct Contexts of Events.", walks.size());
       if (this.updateConditionalRelations) {
         LOGGER.debug("Updating all conditional Relations according to latest Events.");
         raeh.updateAllConditionalRelations();
@@ -177,7 +218,8 @@ public class EventEvaluator implements InitializingBean, Resolver {
 
   // ----------------------------------------------------------------
 
-  private boolean checkEvent(final Event e, final Knowledge knowledge, final RulesAndEventsHandler raeh, final Metadata metadata) {
+  private boolean checkEvent(final Event e, final Knowledge knowledge, final RulesAndEventsHandler raeh, final Metadata metadata, final ChangeTracker tracker, final ContextTrie trie,
+      final Map<ContextTrie.Node, ContextWalk> walks) {
     boolean stillPossible = false;
     final String eid = (e == null ? null : e.getEventID());
     try {
@@ -194,13 +236,27 @@ public class EventEvaluator implements InitializingBean, Resolver {
         return stillPossible;
       }
       final KnowledgeEntities root = KnowledgeHelper.findRoot(e, knowledge);
-      if ((root == null) || root.isEmpty()) {
+      final ContextTrie.Node node = trie.getNode(e);
+      if ((root == null) || root.isEmpty() || (node == null)) {
         LOGGER.debug("Nothing to do. Nexus {} of Event {} is not included in the current Knowledge (yet).", e.getVariantID(), eid);
         stillPossible = true;
         return stillPossible;
       }
+      if (tracker.isUnchanged(ChangeTracker.SCOPE_EVENTS, eid, root)) {
+        LOGGER.debug("Nothing to do. Nexus {} of Event {} is unchanged since last Evaluation.", e.getVariantID(), eid);
+        stillPossible = true;
+        return stillPossible;
+      }
       LOGGER.debug("Nexus {} of Event {} is: {}", e.getVariantID(), eid, shortDisplayKE(root));
-      stillPossible = checkKnowledgeEntities(e, ctx, root, true, raeh, metadata);
+      ContextWalk walk = walks.get(node);
+      if (walk == null) {
+        walk = walkContext(node, root);
+        walks.put(node, walk);
+      }
+      else {
+        LOGGER.trace("Context {} of Event {} was already walked.", node, eid);
+      }
+      stillPossible = checkTriggers(e, walk, raeh, metadata);
       if (raeh.isRelevant(e)) {
         if (!stillPossible) {
           // Whether an Event is obsolete can only be decided on the highest Level,
@@ -211,6 +267,7 @@ public class EventEvaluator implements InitializingBean, Resolver {
         }
         else {
           LOGGER.debug("Event {} is still possible.", eid);
+          tracker.remember(ChangeTracker.SCOPE_EVENTS, eid, root);
         }
       }
       return stillPossible;
@@ -220,165 +277,135 @@ public class EventEvaluator implements InitializingBean, Resolver {
     }
   }
 
-  private boolean checkKnowledgeEntities(final Event e, final List<String> path, final KnowledgeEntities entities, final boolean isVariant, final RulesAndEventsHandler raeh, final Metadata metadata) {
-    boolean stillPossible = false;
-    final String eid = (e == null ? null : e.getEventID());
-    try {
-      LOGGER.trace("--> checkKnowledgeEntities(); E = {}; Entities = {}", eid, shortDisplayKE(entities));
-      for (final KnowledgeEntity ke : entities) {
-        if (!raeh.isRelevant(e)) {
-          // Fail fast: Event was already triggered or made obsolete
-          stillPossible = false;
-          return stillPossible;
-        }
-        if (ke != null) {
-          if (checkKnowledgeEntity(e, path, ke, isVariant, raeh, metadata)) {
-            // Succeed fast: Event is still possible in this Part of the Knowledge-Graph
-            stillPossible = true;
-            return stillPossible;
-          }
-          if (checkChoices(e, path, ke, isVariant, raeh, metadata)) {
-            // Succeed fast: Event is still possible in this Part of the Knowledge-Graph
-            stillPossible = true;
-            return stillPossible;
-          }
-        }
-      }
-      // Nothing special happend, but Event is not possible in this Part
-      // of the Knowledge-Graph any more
-      return stillPossible;
+  /**
+   * Check the Trigger of an Event at all Trigger-Points of its Context in
+   * the same Order as they were encountered while walking the Context.
+   * Stops as soon as the Event is triggered or obsolete.
+   */
+  private boolean checkTriggers(final Event e, final ContextWalk walk, final RulesAndEventsHandler raeh, final Metadata metadata) {
+    final String eid = e.getEventID();
+    for (int i = 0; i < walk.size(); i++) {
+      final boolean matching = checkTrigger(e, walk.getEntity(i), walk.isVariant(i), raeh, metadata);
+      if (matching || !raeh.isRelevant(e)) {
+        // Event was triggered or made obsolete
+        return false;
+      }
+      LOGGER.trace("Trigger of Event {} is still possible at {}", eid, shortDisplayKE(walk.getEntity(i)));
     }
-    finally {
-      LOGGER.trace("<-- checkKnowledgeEntities(); E = {}; Entities = {}; Still possible = {}", eid, shortDisplayKE(entities), stillPossible);
+    if (walk.isInvalid()) {
+      final String msg = "Current Path Element is empty!";
+      LOGGER.debug(msg);
+      markEventObsolete(e, raeh, metadata);
+      throw new ResolutionException(msg);
     }
+    return walk.isStillPossible();
   }
 
-  private boolean checkKnowledgeEntity(final Event e, final List<String> path, final KnowledgeEntity ke, final boolean isVariant, final RulesAndEventsHandler raeh, final Metadata metadata) {
-    boolean stillPossible = false;
-    boolean matching = false;
-    final String eid = (e == null ? null : e.getEventID());
+  // ----------------------------------------------------------------
+
+  /**
+   * Walk the Context-Path of a Node of the Trie through the Knowledge-Graph,
+   * i.e. without looking at any Trigger. Every Entity where the Trigger of
+   * an Event must be checked is recorded as Trigger-Point. The Walk assumes
+   * that all Triggers are still undecided, therefore it is valid for all
+   * Events sharing this Context until one of them is triggered or obsolete.
+   */
+  private ContextWalk walkContext(final ContextTrie.Node node, final KnowledgeEntities root) {
+    final ContextWalk walk = new ContextWalk();
     try {
-      LOGGER.trace("--> checkKnowledgeEntity(); E = {}; KE = {}; Path = {}", eid, shortDisplayKE(ke), path);
-      final int len = (path == null ? 0 : path.size());
-      if (len <= 0) {
-        // we walked the complete path
-        matching = checkTrigger(e, ke, isVariant, raeh, metadata);
-        if (!matching && raeh.isRelevant(e)) {
-          LOGGER.debug("Walked complete Path and Trigger of Event {} is still possible.", eid);
-          stillPossible = true;
-        }
-        else {
-          stillPossible = false;
-        }
-        return stillPossible;
-      }
-      // Check the current ID in our Context Path
-      final String currentPathElement = path.get(0);
-      matching = checkCurrentPathElement(e, currentPathElement, ke, isVariant, raeh, metadata);
-      if (!matching) {
-        // Current Path Element was not matching, but
-        // let's see whether there is a matching Choice
-        stillPossible = checkChoices(e, currentPathElement, ke.getPossibleVariants(), isVariant, raeh, metadata);
-        if (stillPossible) {
-          LOGGER.debug("Path {} of Event {} is matching to Choice of this KE: {}", path, eid, shortDisplayKE(ke));
-        }
-        else {
-          LOGGER.debug("Path {} of Event {} is matching neither KE nor any Choice: {}", path, eid, shortDisplayKE(ke));
-        }
-        return stillPossible;
-      }
-      // Current Element was matching, Event is still possible ...  
-      if (len == 1) {
-        // ... and this was the last Element.
-        LOGGER.debug("Path {} of Event {} ends at this KE: {}", path, eid, shortDisplayKE(ke));
-        matching = checkTrigger(e, ke, isVariant, raeh, metadata);
-        if (!matching && raeh.isRelevant(e)) {
-          LOGGER.debug("Trigger of Event {} is still possible.", eid);
-          stillPossible = true;
-        }
-        else {
-          stillPossible = false;
-        }
-        return stillPossible;
-      }
-      // Length > 1, i.e. Event is still possible but there is still some portion of the
-      // Context Path left. Let's see whether next part is matching a Choice, too.
-      stillPossible = checkChoices(e, path.subList(1, len), ke, !isVariant, raeh, metadata);
-      if (stillPossible) {
-        LOGGER.debug("Next PE of Event {} is also matching to Choice of KE {} --> not matching but still possible.", eid, shortDisplayKE(ke));
-        matching = false;
-        return stillPossible;
-      }
-      // So the Event is still possible but not matching one of the Choices.
-      // Now we must dig deeper into this part of the Knowledge-Graph.
-      // Let's see whether next part is matching to this KE, too.
-      stillPossible = checkKnowledgeEntity(e, path.subList(1, len), ke, !isVariant, raeh, metadata);
-      if (stillPossible) {
-        if (len > 2) {
-          LOGGER.debug("Next PE of Event {} is also matching to KE {} --> Recursion!", eid, shortDisplayKE(ke));
-          matching = false;
-          stillPossible = checkKnowledgeEntities(e, path.subList(2, len), ke.getChildren(), isVariant, raeh, metadata);
-        }
-        else { // len <= 2
-          LOGGER.debug("Path {} of Event {} ends at this KE: {}", path, eid, shortDisplayKE(ke));
-          matching = checkTrigger(e, ke, !isVariant, raeh, metadata);
-          if (!matching && raeh.isRelevant(e)) {
-            LOGGER.debug("Trigger of Event {} is still possible.", eid);
-            stillPossible = true;
-          }
-          else {
-            stillPossible = false;
-          }
-        }
-        return stillPossible;
-      }
-      // Let's do some Recursion ;-)
-      LOGGER.debug("PE of Event {} matching to this KE: {} --> Recursion!", eid, shortDisplayKE(ke));
-      matching = false;
-      stillPossible = checkKnowledgeEntities(e, path.subList(1, len), ke.getChildren(), !isVariant, raeh, metadata);
-      return stillPossible;
+      LOGGER.trace("--> walkContext(); Context = {}", node);
+      walk.setStillPossible(walkEntities(walk, node.getPath(), 0, root, true));
+      return walk;
     }
     finally {
-      LOGGER.trace("<-- checkKnowledgeEntity(); E = {}; KE = {}; Path = {}; matching = {}; stillPossible = {}", eid, shortDisplayKE(ke), path, matching, stillPossible);
+      LOGGER.trace("<-- walkContext(); Context = {}; Trigger-Points = {}; Still possible = {}", node, walk.size(), walk.isStillPossible());
     }
   }
 
-  private boolean checkCurrentPathElement(final Event e, final String currentPathElement, final KnowledgeEntity ke, final boolean isVariant, final RulesAndEventsHandler raeh, final Metadata metadata) {
-    boolean matching = false;
-    final String eid = (e == null ? null : e.getEventID());
-    try {
-      LOGGER.trace("--> checkCurrentPathElement(); E = {}; KE = {}; PE = {}; isVariant = {}", eid, shortDisplayKE(ke), currentPathElement, isVariant);
-      if (StringUtils.isEmpty(currentPathElement)) {
-        final String msg = "Current Path Element is empty!";
-        LOGGER.debug(msg);
-        markEventObsolete(e, raeh, metadata);
-        throw new ResolutionException(msg);
-      }
-      if (isVariant) {
-        // we are expecting a variant
-        LOGGER.trace("Checking whether {} is matching to Variant.", currentPathElement);
-        final Variant v = (ke == null ? null : ke.getVariant());
-        final String vid = (v == null ? null : v.getVariantID());
-        if (currentPathElement.equals(vid)) {
-          LOGGER.debug("Current PE is matching to Variant-ID: {}", vid);
-          matching = true;
+  private boolean walkEntities(final ContextWalk walk, final String[] path, final int offset, final KnowledgeEntities entities, final boolean isVariant) {
+    for (final KnowledgeEntity ke : entities) {
+      if (ke != null) {
+        if (walkEntity(walk, path, offset, ke, isVariant)) {
+          // Succeed fast: Event is still possible in this Part of the Knowledge-Graph
+          return true;
         }
-      }
-      else {
-        // we are expecting a purpose
-        LOGGER.trace("Checking whether {} is matching to Purpose.", currentPathElement);
-        final Purpose p = (ke == null ? null : ke.getPurpose());
-        final String pid = (p == null ? null : p.getPurposeID());
-        if (currentPathElement.equals(pid)) {
-          LOGGER.debug("Current PE is matching to Purpose-ID: {}", pid);
-          matching = true;
+        if (walk.isInvalid()) {
+          // Fail fast: Context is not valid
+          return false;
+        }
+        if (checkChoices(path[offset], ke.getPossibleVariants(), isVariant)) {
+          // Succeed fast: Event is still possible in this Part of the Knowledge-Graph
+          return true;
         }
       }
-      return matching;
     }
-    finally {
-      LOGGER.trace("<-- checkCurrentPathElement(); E = {}; KE = {}; PE = {}; isVariant = {}; matching = {}", eid, shortDisplayKE(ke), currentPathElement, isVariant, matching);
+    // Nothing special happend, but Event is not possible in this Part
+    // of the Knowledge-Graph any more
+    return false;
+  }
+
+  private boolean walkEntity(final ContextWalk walk, final String[] path, final int offset, final KnowledgeEntity ke, final boolean isVariant) {
+    final int len = path.length - offset;
+    if (len <= 0) {
+      // we walked the complete path
+      walk.addTriggerPoint(ke, isVariant);
+      return true;
+    }
+    // Check the current ID in our Context Path
+    final String currentPathElement = path[offset];
+    if (StringUtils.isEmpty(currentPathElement)) {
+      LOGGER.debug("Current Path Element is empty!");
+      walk.setInvalid();
+      return false;
+    }
+    if (!checkCurrentPathElement(currentPathElement, ke, isVariant)) {
+      // Current Path Element was not matching, but
+      // let's see whether there is a matching Choice
+      return checkChoices(currentPathElement, ke.getPossibleVariants(), isVariant);
+    }
+    // Current Element was matching, Event is still possible ...
+    if (len == 1) {
+      // ... and this was the last Element.
+      walk.addTriggerPoint(ke, isVariant);
+      return true;
     }
+    // Length > 1, i.e. Event is still possible but there is still some portion of the
+    // Context Path left. Let's see whether next part is matching a Choice, too.
+    if (checkChoices(path[offset + 1], ke.getPossibleVariants(), !isVariant)) {
+      LOGGER.trace("Next PE is also matching to Choice of KE {} --> not matching but still possible.", shortDisplayKE(ke));
+      return true;
+    }
+    // So the Event is still possible but not matching one of the Choices.
+    // Now we must dig deeper into this part of the Knowledge-Graph.
+    // Let's see whether next part is matching to this KE, too.
+    if (walkEntity(walk, path, offset + 1, ke, !isVariant)) {
+      if (len > 2) {
+        LOGGER.trace("Next PE is also matching to KE {} --> Recursion!", shortDisplayKE(ke));
+        return walkEntities(walk, path, offset + 2, ke.getChildren(), isVariant);
+      }
+      // len <= 2, i.e. Path ends at this KE
+      walk.addTriggerPoint(ke, !isVariant);
+      return true;
+    }
+    if (walk.isInvalid()) {
+      return false;
+    }
+    // Let's do some Recursion ;-)
+    LOGGER.trace("PE {} matching to KE {} --> Recursion!", currentPathElement, shortDisplayKE(ke));
+    return walkEntities(walk, path, offset + 1, ke.getChildren(), !isVariant);
+  }
+
+  private boolean checkCurrentPathElement(final String currentPathElement, final KnowledgeEntity ke, final boolean isVariant) {
+    if (isVariant) {
+      // we are expecting a variant
+      final Variant v = (ke == null ? null : ke.getVariant());
+      final String vid = (v == null ? null : v.getVariantID());
+      return currentPathElement.equals(vid);
+    }
+    // we are expecting a purpose
+    final Purpose p = (ke == null ? null : ke.getPurpose());
+    final String pid = (p == null ? null : p.getPurposeID());
+    return currentPathElement.equals(pid);
   }
 
   // ----------------------------------------------------------------
@@ -509,65 +536,35 @@ public class EventEvaluator implements InitializingBean, Resolver {
 
   // ----------------------------------------------------------------
 
-  private boolean checkChoices(final Event e, final List<String> path, final KnowledgeEntity ke, final boolean isVariant, final RulesAndEventsHandler raeh, final Metadata metadata) {
-    return checkChoices(e, path.get(0), ke.getPossibleVariants(), isVariant, raeh, metadata);
-  }
-
-  private boolean checkChoices(final Event e, final String currentPathElement, final VariantChoices choices, final boolean isVariant, final RulesAndEventsHandler raeh, final Metadata metadata) {
-    boolean matchingChoice = false;
-    final String eid = (e == null ? null : e.getEventID());
-    try {
-      LOGGER.trace("--> checkChoices(); E = {}; PE = {}; isVariant = {}\nChoices = {}", eid, currentPathElement, isVariant, choices);
-      for (final VariantChoice vc : choices) {
-        // Loop over all Choices and as soon as one is matching we are finished
-        matchingChoice = checkChoice(e, currentPathElement, vc, isVariant, raeh, metadata);
-        if (matchingChoice) {
-          // fail/succeed fast
-          return matchingChoice;
-        }
+  private boolean checkChoices(final String currentPathElement, final VariantChoices choices, final boolean isVariant) {
+    for (final VariantChoice vc : choices) {
+      // Loop over all Choices and as soon as one is matching we are finished
+      if (checkChoice(currentPathElement, vc, isVariant)) {
+        LOGGER.trace("PE {} is matching VariantChoice {}", currentPathElement, vc);
+        return true;
       }
-      LOGGER.debug("PE {} of Event {} is not matching to any of the Variant-Choices.", currentPathElement, eid);
-      return matchingChoice;
-    }
-    finally {
-      LOGGER.trace("<-- checkChoices(); E = {}; PE = {}; isVariant = {}; matchingChoice = {}", eid, currentPathElement, isVariant, matchingChoice);
     }
+    return false;
   }
 
-  private boolean checkChoice(final Event e, final String currentPathElement, final VariantChoice vc, final boolean isVariant, final RulesAndEventsHandler raeh, final Metadata metadata) {
-    boolean matchingChoice = false;
-    final String eid = (e == null ? null : e.getEventID());
-    try {
-      LOGGER.trace("--> checkChoice(); E = {}; PE = {}; isVariant = {}\nVariantChoice = {}", eid, currentPathElement, isVariant, vc);
-      if (isVariant) {
-        // Is Path Element matching any selectable Variant of this Choice?
-        final List<Variant> lst = vc.getVariants();
-        if (lst != null) {
-          for (final Variant v : lst) {
-            final String vid = (v == null ? null : v.getVariantID());
-            matchingChoice = currentPathElement.equals(vid);
-            if (matchingChoice) {
-              LOGGER.debug("PE {} is matching Variant {} of VariantChoice {}", currentPathElement, vid, vc);
-              return matchingChoice;
-            }
+  private boolean checkChoice(final String currentPathElement, final VariantChoice vc, final boolean isVariant) {
+    if (isVariant) {
+      // Is Path Element matching any selectable Variant of this Choice?
+      final List<Variant> lst = vc.getVariants();
+      if (lst != null) {
+        for (final Variant v : lst) {
+          final String vid = (v == null ? null : v.getVariantID());
+          if (currentPathElement.equals(vid)) {
+            return true;
           }
         }
       }
-      else {
-        // Is Path Element matching Purpose of this Choice?
-        final Purpose p = vc.getPurpose();
-        final String pid = (p == null ? null : p.getPurposeID());
-        matchingChoice = currentPathElement.equals(pid);
-        if (matchingChoice) {
-          LOGGER.debug("PE {} is matching Purpose {} of VariantChoice {}", currentPathElement, pid, vc);
-          return matchingChoice;
-        }
-      }
-      return matchingChoice;
-    }
-    finally {
-      LOGGER.trace("<-- checkChoice(); E = {}; PE = {}; isVariant = {}; matchingChoice = {}", eid, currentPathElement, isVariant, matchingChoice);
+      return false;
     }
+    // Is Path Element matching Purpose of this Choice?
+    final Purpose p = vc.getPurpose();
+    final String pid = (p == null ? null : p.getPurposeID());
+    return currentPathElement.equals(pid);
   }
 
   // ----------------------------------------------------------------
@@ -615,4 +612,59 @@ public class EventEvaluator implements InitializingBean, Resolver {
   public static String shortDisplayKE(final KnowledgeEntities entities) {
     return KnowledgeEntityHelper.shortDisplayKE(entities);
   }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Result of walking one Context through the Knowledge-Graph: All
+   * Trigger-Points in the Order they were encountered and whether the
+   * Context is still possible if none of them is triggered.
+   */
+  private static final class ContextWalk {
+
+    private final List<KnowledgeEntity> entities;
+    private final BitSet variants;
+    private boolean stillPossible;
+    private boolean invalid;
+
+    ContextWalk() {
+      this.entities = new ArrayList<KnowledgeEntity>();
+      this.variants = new BitSet();
+      this.stillPossible = false;
+      this.invalid = false;
+    }
+
+    void addTriggerPoint(final KnowledgeEntity ke, final boolean isVariant) {
+      this.variants.set(this.entities.size(), isVariant);
+      this.entities.add(ke);
+    }
+
+    int size() {
+      return this.entities.size();
+    }
+
+    KnowledgeEntity getEntity(final int idx) {
+      return this.entities.get(idx);
+    }
+
+    boolean isVariant(final int idx) {
+      return this.variants.get(idx);
+    }
+
+    boolean isStillPossible() {
+      return this.stillPossible;
+    }
+
+    void setStillPossible(final boolean stillPossible) {
+      this.stillPossible = stillPossible;
+    }
+
+    boolean isInvalid() {
+      return this.invalid;
+    }
+
+    void setInvalid() {
+      this.invalid = true;
+    }
+  }
 }
@@ -14,7 +14,14 @@
  *******************************************************************************/
 package org.psikeds.resolutionengine.resolver.impl;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +32,7 @@ import org.apache.commons.lang.Validate;
 import org.springframework.beans.factory.InitializingBean;
 
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.vo.Event;
 import org.psikeds.resolutionengine.datalayer.vo.Feature;
 import org.psikeds.resolutionengine.datalayer.vo.FeatureValue;
 import org.psikeds.resolutionengine.datalayer.vo.Relation;
@@ -35,11 +43,13 @@ import org.psikeds.resolutionengine.interfaces.pojos.ConceptChoice;
 import org.psikeds.resolutionengine.interfaces.pojos.Concepts;
 import org.psikeds.resolutionengine.interfaces.pojos.Decission;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureChoice;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureValueRanges;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureValues;
 import org.psikeds.resolutionengine.interfaces.pojos.Knowledge;
 import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntities;
 import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntity;
 import org.psikeds.resolutionengine.interfaces.pojos.Metadata;
+import org.psikeds.resolutionengine.resolver.ChangeTracker;
 import org.psikeds.resolutionengine.resolver.ResolutionException;
 import org.psikeds.resolutionengine.resolver.Resolver;
 import org.psikeds.resolutionengine.resolver.SessionState;
@@ -58,6 +68,19 @@ import org.psikeds.resolutionengine.util.RelationHelper;
  * Decission will be ignored, Metadata is optional and will be used for
  * Information about Changes to the State of Relations, if present.
  * 
+ * Relations are propagated to a local Fixpoint within one Pass: All active
+ * Relations are put into a Queue and indexed by the Feature-Variables of
+ * their Parameters before the first Evaluation. Whenever the Evaluation of
+ * a Relation removes Values of a Feature-Variable, all Relations having a
+ * Parameter on this Feature-Variable are enqueued again (AC-3), no matter
+ * whether they were evaluated or skipped before.
+ * 
+ * The full Chain of Resolvers is only needed afterwards if another Resolver
+ * depends on the narrowed Values, i.e. if a relevant Event is triggered by
+ * a Value or Concept of a narrowed Feature-Variable (Rules only depend on
+ * Events) or if a narrowed Choice can be auto-completed, i.e. has less than
+ * two Values or Concepts left. Otherwise the Knowledge is stable.
+ * 
  * @author marco@juliano.de
  * 
  */
@@ -66,9 +89,11 @@ public class RelationEvaluator implements InitializingBean, Resolver {
   private static final Logger LOGGER = LoggerFactory.getLogger(RelationEvaluator.class);
 
   public static final Transformer DEFAULT_TRANSFORMER = new Vo2PojoTransformer();
+  public static final int DEFAULT_MAX_EVALUATIONS_PER_RELATION = 32;
 
   private KnowledgeBase kb;
   private Transformer trans;
+  private int maxEvaluationsPerRelation;
 
   public RelationEvaluator() {
     this(null);
@@ -79,8 +104,13 @@ public class RelationEvaluator implements InitializingBean, Resolver {
   }
 
   public RelationEvaluator(final KnowledgeBase kb, final Transformer trans) {
+    this(kb, trans, DEFAULT_MAX_EVALUATIONS_PER_RELATION);
+  }
+
+  public RelationEvaluator(final KnowledgeBase kb, final Transformer trans, final int maxEvaluationsPerRelation) {
     this.kb = kb;
     this.trans = trans;
+    this.maxEvaluationsPerRelation = maxEvaluationsPerRelation;
   }
 
   public KnowledgeBase getKnowledgeBase() {
@@ -99,6 +129,14 @@ public class RelationEvaluator implements InitializingBean, Resolver {
     this.trans = trans;
   }
 
+  public int getMaxEvaluationsPerRelation() {
+    return this.maxEvaluationsPerRelation;
+  }
+
+  public void setMaxEvaluationsPerRelation(final int maxEvaluationsPerRelation) {
+    this.maxEvaluationsPerRelation = maxEvaluationsPerRelation;
+  }
+
   // ----------------------------------------------------------------
 
   /**
@@ -109,6 +147,8 @@ public class RelationEvaluator implements InitializingBean, Resolver {
    */
   @Override
   public void afterPropertiesSet() throws Exception {
+    LOGGER.info("Config: Max. Evaluations per Relation and Pass = {}", this.maxEvaluationsPerRelation);
+    Validate.isTrue(this.maxEvaluationsPerRelation > 0, "Max. Evaluations per Relation must be positive!");
     Validate.notNull(this.kb, "No Knowledge-Base!");
     Validate.notNull(this.trans, "No Transformer!");
   }
@@ -139,7 +179,8 @@ public class RelationEvaluator implements InitializingBean, Resolver {
       // Check Relations, i.e. apply or expire Relations depending on their Context and Condition
       stable = checkRelations(knowledge, state);
       if (!stable) {
-        // A Relation was applied and it is neccessary to execute the full Resolver-Chain once again
+        // Relations narrowed Values that Events or the Auto-Completion depend on, so the
+        // full Resolver-Chain must be executed once again
         LOGGER.debug("Knowledge is not stable, need another Iteration of all Resolvers!");
         knowledge.setStable(false);
       }
@@ -170,11 +211,22 @@ public class RelationEvaluator implements InitializingBean, Resolver {
 
   private boolean checkRelations(final Knowledge knowledge, final SessionState state) {
     boolean stable = true;
+    boolean narrowed = false;
     try {
       LOGGER.trace("--> checkRelations()");
       final RulesAndEventsHandler raeh = state.getRaeh();
+      final ChangeTracker tracker = state.getChangeTracker();
+      tracker.invalidate();
       final List<Relation> rels = raeh.getActiveRelations();
-      for (final Relation r : rels) {
+      final Propagation prop = new Propagation(rels);
+      final int maxEvaluations = Math.max(1, rels.size()) * Math.max(1, this.maxEvaluationsPerRelation);
+      while (!prop.isEmpty()) {
+        if (prop.getEvaluations() >= maxEvaluations) {
+          LOGGER.warn("No Fixpoint of Relations after {} Evaluations. Remaining Relations will be evaluated in the next Pass.", prop.getEvaluations());
+          stable = false;
+          break;
+        }
+        final Relation r = prop.poll();
         final String relationId = (r == null ? null : r.getRelationID());
         final String rootVariantId = (r == null ? null : r.getVariantID());
         if (StringUtils.isEmpty(relationId) || StringUtils.isEmpty(rootVariantId)) {
@@ -183,6 +235,10 @@ public class RelationEvaluator implements InitializingBean, Resolver {
           markRelationObsolete(r, state);
           throw new ResolutionException(msg);
         }
+        if (!raeh.isActive(r)) {
+          LOGGER.debug("Relation {} is not active any more. Skipping Evaluation.", relationId);
+          continue;
+        }
         if (LOGGER.isTraceEnabled()) {
           LOGGER.trace("Checking Relation: {}", r);
         }
@@ -209,13 +265,26 @@ public class RelationEvaluator implements InitializingBean, Resolver {
           LOGGER.debug("Nexus {} of Relation {} is not included in the current Knowledge yet. Skipping Evaluation.", rootVariantId, relationId);
           continue;
         }
-        else {
-          LOGGER.debug("Nexus {} of Relation {} is: {}", rootVariantId, relationId, shortDisplayKE(root));
-          // evaluate relation
-          if (!checkRelation(r, root, state)) {
-            stable = false;
-          }
+        if (tracker.isUnchanged(ChangeTracker.SCOPE_RELATIONS, relationId, root)) {
+          LOGGER.debug("Nexus {} of Relation {} is unchanged since last Evaluation. Skipping Evaluation.", rootVariantId, relationId);
+          continue;
         }
+        LOGGER.debug("Nexus {} of Relation {} is: {}", rootVariantId, relationId, shortDisplayKE(root));
+        // evaluate relation
+        if (!checkRelation(r, root, state, prop)) {
+          narrowed = true;
+          tracker.invalidate();
+          // re-enqueue all relations depending on the changed feature variables, including this one
+          final int num = prop.propagate();
+          LOGGER.debug("Relation {} changed some Entities --> {} Relation(s) enqueued again.", relationId, num);
+        }
+        else if (raeh.isActive(r)) {
+          tracker.remember(ChangeTracker.SCOPE_RELATIONS, relationId, root);
+        }
+      }
+      LOGGER.debug("Evaluated {} Relation(s) with {} Propagation(s).", prop.getEvaluations(), prop.getPropagations());
+      if (stable && narrowed) {
+        stable = !isAnotherPassRequired(prop, raeh);
       }
       return stable;
     }
@@ -224,7 +293,46 @@ public class RelationEvaluator implements InitializingBean, Resolver {
     }
   }
 
-  private boolean checkRelation(final Relation r, final KnowledgeEntities root, final SessionState state) {
+  private boolean isAnotherPassRequired(final Propagation prop, final RulesAndEventsHandler raeh) {
+    if (prop.isDecidable()) {
+      LOGGER.debug("Relations narrowed a Choice that can be auto-completed now.");
+      return true;
+    }
+    for (final Event e : raeh.getRelevantEvents()) {
+      if (dependsOn(e, prop.getNarrowed())) {
+        LOGGER.debug("Event {} depends on the narrowed Feature-Variables {}", e.getEventID(), prop.getNarrowed());
+        return true;
+      }
+    }
+    LOGGER.debug("No Event depends on the narrowed Feature-Variables {}", prop.getNarrowed());
+    return false;
+  }
+
+  private boolean dependsOn(final Event e, final Set<String> featureIds) {
+    final String tid = (e == null ? null : e.getTriggerID());
+    if (StringUtils.isEmpty(tid)) {
+      return false;
+    }
+    if (Event.TRIGGER_TYPE_FEATURE_VALUE.equals(e.getTriggerType())) {
+      final FeatureValue fv = this.kb.getFeatureValue(tid);
+      return ((fv != null) && featureIds.contains(fv.getFeatureID()));
+    }
+    if (Event.TRIGGER_TYPE_CONCEPT.equals(e.getTriggerType())) {
+      final org.psikeds.resolutionengine.datalayer.vo.Concept con = this.kb.getConcept(tid);
+      if (con != null) {
+        for (final String fid : con.getFeatureIds()) {
+          if (featureIds.contains(fid)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+    // Relations never change Variants
+    return false;
+  }
+
+  private boolean checkRelation(final Relation r, final KnowledgeEntities root, final SessionState state, final Propagation prop) {
     boolean stable = true;
     try {
       LOGGER.trace("--> checkRelation(); Relation = {}", r.getRelationID());
@@ -233,7 +341,7 @@ public class RelationEvaluator implements InitializingBean, Resolver {
           // Fail fast: Relation was already made obsolete
           return stable;
         }
-        if (!checkRelation(r, ke, state)) {
+        if (!checkRelation(r, ke, state, prop)) {
           stable = false;
         }
       }
@@ -244,7 +352,7 @@ public class RelationEvaluator implements InitializingBean, Resolver {
     }
   }
 
-  private boolean checkRelation(final Relation r, final KnowledgeEntity root, final SessionState state) {
+  private boolean checkRelation(final Relation r, final KnowledgeEntity root, final SessionState state, final Propagation prop) {
     boolean stable = true;
     try {
       LOGGER.trace("--> checkRelation(); Relation = {}; root = {}", r.getRelationID(), shortDisplayKE(root));
@@ -281,6 +389,7 @@ public class RelationEvaluator implements InitializingBean, Resolver {
             LOGGER.trace("Right Constant = {}", rightConstant);
             if (evaluateSingleSidedRelation(r, leftEntity, leftParameter, op, rightConstant, state)) {
               stable = false;
+              prop.changed(left, leftEntity);
               LOGGER.debug("Relation {} removed some Values/Choices of left Entity {}", r.getRelationID(), shortDisplayKE(leftEntity));
             }
           }
@@ -306,6 +415,7 @@ public class RelationEvaluator implements InitializingBean, Resolver {
             LOGGER.debug("Changing Operator from {} to {}", op, comp);
             if (evaluateSingleSidedRelation(r, rightEntity, rightParameter, comp, leftConstant, state)) {
               stable = false;
+              prop.changed(right, rightEntity);
               LOGGER.debug("Relation {} removed some Values/Choices of right Entity {}", r.getRelationID(), shortDisplayKE(rightEntity));
             }
           }
@@ -328,6 +438,8 @@ public class RelationEvaluator implements InitializingBean, Resolver {
           LOGGER.trace("Right Parameter = {}", rightParameter);
           if (evaluateDoubleSidedRelation(r, leftEntity, leftParameter, op, rightEntity, rightParameter, state)) {
             stable = false;
+            prop.changed(left, leftEntity);
+            prop.changed(right, rightEntity);
             LOGGER.debug("Relation {} removed some Values/Choices of either left Entity {} or right Entity {}", r.getRelationID(), shortDisplayKE(leftEntity), shortDisplayKE(rightEntity));
           }
         }
@@ -412,16 +524,19 @@ public class RelationEvaluator implements InitializingBean, Resolver {
         if (featureId.equals(fc.getFeatureID())) {
           // this is a choice for the required feature
           final FeatureValues oldFvs = fc.getPossibleValues();
-          final int oldSize = (oldFvs == null ? 0 : oldFvs.size());
+          final FeatureValueRanges oldRanges = fc.getPossibleRanges();
+          final int oldSize = fc.getNumberOfPossibleValues();
           if (oldSize > 0) {
-            LOGGER.trace("{} old Feature-Values = {}", oldSize, oldFvs);
-            // get all values that are fulfilling the relation
+            LOGGER.trace("{} old Feature-Values = {}; Ranges = {}", oldSize, oldFvs, oldRanges);
+            // get all values that are fulfilling the relation, ranges are narrowed without materializing them
             LOGGER.debug("Checking possible Feature-Values of KE {} against {} {} = {}", shortDisplayKE(leftEntity), operator, rightConstant.getFeatureValueID(), rightConstant.getValue());
-            final FeatureValues newFvs = RelationHelper.fulfillsOperation(this.kb, this.trans, oldFvs, op, rightConstant);
-            final int newSize = (newFvs == null ? 0 : newFvs.size());
-            LOGGER.trace("{} new Feature-Values = {}", newSize, newFvs);
+            final FeatureValues newFvs = RelationHelper.fulfillsOperation(this.kb, leftParameter.getDomain(), oldFvs, op, rightConstant);
+            final FeatureValueRanges newRanges = RelationHelper.fulfillsOperation(this.kb, oldRanges, op, rightConstant);
+            final int newSize = (newFvs == null ? 0 : newFvs.size()) + ChoicesHelper.getNumberOfValues(newRanges);
+            LOGGER.trace("{} new Feature-Values = {}; Ranges = {}", newSize, newFvs, newRanges);
             if (oldSize != newSize) {
               fc.setPossibleValues(newFvs);
+              fc.setPossibleRanges(newRanges);
               removedValues = true;
               LOGGER.debug("Applied Relation {} to Feature-Choices of KE {}. Removed {} possible Values: {}", relationId, shortDisplayKE(leftEntity), (oldSize - newSize), fc);
             }
@@ -549,11 +664,15 @@ public class RelationEvaluator implements InitializingBean, Resolver {
       // Step 2: lookup possible feature values of all choices on both sides
       LOGGER.debug("Getting choices of left Entity {} and right Entity {}", shortDisplayKE(leftEntity), shortDisplayKE(rightEntity));
       final FeatureValues leftChoiceFvs = ChoicesHelper.getFeatureValues(leftEntity, leftFeatureId);
-      final int leftChoiceSize = (leftChoiceFvs == null ? 0 : leftChoiceFvs.size());
-      LOGGER.trace("{} choosable Feature-Values on left Side: {}", leftChoiceSize, leftChoiceFvs);
+      final FeatureValueRanges leftChoiceRanges = ChoicesHelper.getFeatureValueRanges(leftEntity, leftFeatureId);
+      final int leftRangeSize = ChoicesHelper.getNumberOfValues(leftChoiceRanges);
+      final int leftChoiceSize = (leftChoiceFvs == null ? 0 : leftChoiceFvs.size()) + leftRangeSize;
+      LOGGER.trace("{} choosable Feature-Values on left Side: {}; Ranges = {}", leftChoiceSize, leftChoiceFvs, leftChoiceRanges);
       final FeatureValues rightChoiceFvs = ChoicesHelper.getFeatureValues(rightEntity, rightFeatureId);
-      final int rightChoiceSize = (rightChoiceFvs == null ? 0 : rightChoiceFvs.size());
-      LOGGER.trace("{} choosable Feature-Values on right Side: {}", rightChoiceSize, rightChoiceFvs);
+      final FeatureValueRanges rightChoiceRanges = ChoicesHelper.getFeatureValueRanges(rightEntity, rightFeatureId);
+      final int rightRangeSize = ChoicesHelper.getNumberOfValues(rightChoiceRanges);
+      final int rightChoiceSize = (rightChoiceFvs == null ? 0 : rightChoiceFvs.size()) + rightRangeSize;
+      LOGGER.trace("{} choosable Feature-Values on right Side: {}; Ranges = {}", rightChoiceSize, rightChoiceFvs, rightChoiceRanges);
       final Concepts leftConcepts = ChoicesHelper.getConcepts(leftEntity, leftFeatureId);
       final FeatureValues leftConceptFvs = ChoicesHelper.getFeatureValues(leftConcepts, leftFeatureId);
       final int leftConceptSize = (leftConceptFvs == null ? 0 : leftConceptFvs.size());
@@ -573,19 +692,23 @@ public class RelationEvaluator implements InitializingBean, Resolver {
       }
       // Step 3: compare all values from both sides against each other
       final FeatureValues allLeftFvs = FeatureValueHelper.combineValues(leftChoiceFvs, leftConceptFvs);
-      final int oldLeftSize = (allLeftFvs == null ? 0 : allLeftFvs.size());
-      LOGGER.debug("Total of {} old combined Feature-Values on left Side:\n{}", oldLeftSize, allLeftFvs);
+      final int oldLeftSize = (allLeftFvs == null ? 0 : allLeftFvs.size()) + leftRangeSize;
+      LOGGER.debug("Total of {} old combined Feature-Values on left Side:\n{}\nRanges = {}", oldLeftSize, allLeftFvs, leftChoiceRanges);
       final FeatureValues allRightFvs = FeatureValueHelper.combineValues(rightChoiceFvs, rightConceptFvs);
-      final int oldRightSize = (allRightFvs == null ? 0 : allRightFvs.size());
-      LOGGER.debug("Total of {} old combined Feature-Values on right Side:\n{}", oldRightSize, allRightFvs);
+      final int oldRightSize = (allRightFvs == null ? 0 : allRightFvs.size()) + rightRangeSize;
+      LOGGER.debug("Total of {} old combined Feature-Values on right Side:\n{}\nRanges = {}", oldRightSize, allRightFvs, rightChoiceRanges);
+      // references for both sides, ranges stay symbolic
+      final List<org.psikeds.resolutionengine.datalayer.vo.FeatureValue> leftRefs = FeatureValueHelper.pojo2ValueObject(this.kb, allLeftFvs, leftChoiceRanges);
+      final List<org.psikeds.resolutionengine.datalayer.vo.FeatureValue> rightRefs = FeatureValueHelper.pojo2ValueObject(this.kb, allRightFvs, rightChoiceRanges);
       if (oldLeftSize > 0) {
         LOGGER.debug("Applying Relation {} to left KE {}", relationId, shortDisplayKE(leftEntity));
-        final FeatureValues newLeftFvs = RelationHelper.fulfillsOperation(this.kb, this.trans, allLeftFvs, op, allRightFvs);
-        final int newLeftSize = (newLeftFvs == null ? 0 : newLeftFvs.size());
-        LOGGER.debug("Total of {} new matching Feature-Values on left Side:\n{}", newLeftSize, newLeftFvs);
+        final FeatureValues newLeftFvs = RelationHelper.fulfillsOperation(this.kb, leftParameter.getDomain(), allLeftFvs, op, rightRefs);
+        final FeatureValueRanges newLeftRanges = RelationHelper.fulfillsOperation(this.kb, leftChoiceRanges, op, rightRefs);
+        final int newLeftSize = (newLeftFvs == null ? 0 : newLeftFvs.size()) + ChoicesHelper.getNumberOfValues(newLeftRanges);
+        LOGGER.debug("Total of {} new matching Feature-Values on left Side:\n{}\nRanges = {}", newLeftSize, newLeftFvs, newLeftRanges);
         if (oldLeftSize != newLeftSize) {
           removedValues = true;
-          KnowledgeEntityHelper.cleanupKnowledgeEntity(leftEntity, leftFeatureId, newLeftFvs);
+          KnowledgeEntityHelper.cleanupKnowledgeEntity(leftEntity, leftFeatureId, newLeftFvs, newLeftRanges);
           LOGGER.debug("Applied Relation {} to Concept- and Feature-Choices regarding Feature {} of left KE {}. Removed {} possible Values.", relationId, leftFeatureId, shortDisplayKE(leftEntity),
               (oldLeftSize - newLeftSize));
           LOGGER.trace("Resulting left KE = {}", leftEntity);
@@ -600,12 +723,14 @@ public class RelationEvaluator implements InitializingBean, Resolver {
       }
       if (oldRightSize > 0) {
         LOGGER.debug("Applying Relation {} to right KE {}", relationId, shortDisplayKE(rightEntity));
-        final FeatureValues newRightFvs = RelationHelper.fulfillsOperation(this.kb, this.trans, allRightFvs, RelationHelper.getComplementaryOperator(op), allLeftFvs);
-        final int newRightSize = (newRightFvs == null ? 0 : newRightFvs.size());
-        LOGGER.debug("Total of {} new matching Feature-Values on right Side:\n{}", newRightSize, newRightFvs);
+        final RelationOperator comp = RelationHelper.getComplementaryOperator(op);
+        final FeatureValues newRightFvs = RelationHelper.fulfillsOperation(this.kb, rightParameter.getDomain(), allRightFvs, comp, leftRefs);
+        final FeatureValueRanges newRightRanges = RelationHelper.fulfillsOperation(this.kb, rightChoiceRanges, comp, leftRefs);
+        final int newRightSize = (newRightFvs == null ? 0 : newRightFvs.size()) + ChoicesHelper.getNumberOfValues(newRightRanges);
+        LOGGER.debug("Total of {} new matching Feature-Values on right Side:\n{}\nRanges = {}", newRightSize, newRightFvs, newRightRanges);
         if (oldRightSize != newRightSize) {
           removedValues = true;
-          KnowledgeEntityHelper.cleanupKnowledgeEntity(rightEntity, rightFeatureId, newRightFvs);
+          KnowledgeEntityHelper.cleanupKnowledgeEntity(rightEntity, rightFeatureId, newRightFvs, newRightRanges);
           LOGGER.debug("Applied Relation {} to Concept- and Feature-Choices regarding Feature {} of right KE {}. Removed {} possible Values.", relationId, rightFeatureId, shortDisplayKE(rightEntity),
               (oldRightSize - newRightSize));
           LOGGER.trace("Resulting right KE = {}", rightEntity);
@@ -698,4 +823,145 @@ public class RelationEvaluator implements InitializingBean, Resolver {
   public static String shortDisplayKE(final KnowledgeEntities entities) {
     return KnowledgeEntityHelper.shortDisplayKE(entities);
   }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Queue of Relations to be evaluated within one Pass. All Relations are
+   * indexed by the Feature-Variables of their Parameters up front, so also
+   * Relations skipped as unchanged are woken by a Change. Changing an Entity
+   * also changes the Feature-Variables of its Concepts, because removing a
+   * Concept-Choice also removes Values of all other Features of this Concept.
+   */
+  private static final class Propagation {
+
+    private final Map<String, Relation> queue;
+    private final Map<String, List<Relation>> byVariable;
+    private final Set<String> changed;
+    private final Set<String> narrowed;
+    private boolean decidable;
+    private int evaluations;
+    private int propagations;
+
+    Propagation(final List<Relation> rels) {
+      this.queue = new LinkedHashMap<String, Relation>();
+      this.byVariable = new HashMap<String, List<Relation>>();
+      this.changed = new LinkedHashSet<String>();
+      this.narrowed = new LinkedHashSet<String>();
+      this.decidable = false;
+      this.evaluations = 0;
+      this.propagations = 0;
+      if (rels != null) {
+        for (final Relation r : rels) {
+          enqueue(r);
+          if (r != null) {
+            link(r.getLeftSide(), r);
+            link(r.getRightSide(), r);
+          }
+        }
+      }
+    }
+
+    private void link(final RelationParameter rp, final Relation r) {
+      final String fid = getFeatureVariable(rp);
+      if (fid == null) {
+        return;
+      }
+      List<Relation> lst = this.byVariable.get(fid);
+      if (lst == null) {
+        lst = new ArrayList<Relation>(1);
+        this.byVariable.put(fid, lst);
+      }
+      if (!lst.contains(r)) {
+        lst.add(r);
+      }
+    }
+
+    private static String getFeatureVariable(final RelationParameter rp) {
+      return ((rp == null) || rp.isConstant() ? null : rp.getParameterValue());
+    }
+
+    int getEvaluations() {
+      return this.evaluations;
+    }
+
+    int getPropagations() {
+      return this.propagations;
+    }
+
+    Set<String> getNarrowed() {
+      return this.narrowed;
+    }
+
+    boolean isDecidable() {
+      return this.decidable;
+    }
+
+    boolean isEmpty() {
+      return this.queue.isEmpty();
+    }
+
+    void enqueue(final Relation r) {
+      final String rid = (r == null ? null : r.getRelationID());
+      if (!this.queue.containsKey(rid)) {
+        this.queue.put(rid, r);
+      }
+    }
+
+    Relation poll() {
+      final Iterator<Relation> iter = this.queue.values().iterator();
+      final Relation r = iter.next();
+      iter.remove();
+      this.evaluations++;
+      return r;
+    }
+
+    void changed(final RelationParameter rp, final KnowledgeEntity ke) {
+      final String fid = getFeatureVariable(rp);
+      if (fid != null) {
+        this.changed.add(fid);
+        this.narrowed.add(fid);
+      }
+      if ((fid != null) && (ke != null) && (ke.getPossibleFeatures() != null)) {
+        for (final FeatureChoice fc : ke.getPossibleFeatures()) {
+          if ((fc != null) && fid.equals(fc.getFeatureID()) && (fc.getNumberOfPossibleValues() < 2)) {
+            this.decidable = true;
+          }
+        }
+      }
+      if ((ke != null) && (ke.getPossibleConcepts() != null)) {
+        for (final ConceptChoice cc : ke.getPossibleConcepts()) {
+          if ((cc.getConcepts() == null) || (cc.getConcepts().size() < 2)) {
+            this.decidable = true;
+          }
+          if (cc.getConcepts() != null) {
+            for (final Concept con : cc.getConcepts()) {
+              if ((con != null) && (con.getFeatureIds() != null)) {
+                this.changed.addAll(con.getFeatureIds());
+                this.narrowed.addAll(con.getFeatureIds());
+              }
+            }
+          }
+        }
+      }
+    }
+
+    int propagate() {
+      int num = 0;
+      for (final String fid : this.changed) {
+        final List<Relation> rels = this.byVariable.get(fid);
+        if (rels != null) {
+          for (final Relation r : rels) {
+            if (!this.queue.containsKey(r.getRelationID())) {
+              this.queue.put(r.getRelationID(), r);
+              num++;
+            }
+          }
+        }
+      }
+      this.changed.clear();
+      this.propagations += num;
+      return num;
+    }
+  }
 }
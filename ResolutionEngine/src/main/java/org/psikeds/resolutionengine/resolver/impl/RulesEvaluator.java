@@ -14,6 +14,7 @@
  *******************************************************************************/
 package org.psikeds.resolutionengine.resolver.impl;
 
+import java.util.LinkedList;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -27,6 +28,7 @@ import org.springframework.beans.factory.InitializingBean;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
 import org.psikeds.resolutionengine.datalayer.vo.Event;
 import org.psikeds.resolutionengine.datalayer.vo.Rule;
+import org.psikeds.resolutionengine.datalayer.vo.Rules;
 import org.psikeds.resolutionengine.interfaces.pojos.Concept;
 import org.psikeds.resolutionengine.interfaces.pojos.Decission;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureValue;
@@ -38,9 +40,11 @@ import org.psikeds.resolutionengine.interfaces.pojos.Metadata;
 import org.psikeds.resolutionengine.interfaces.pojos.Purpose;
 import org.psikeds.resolutionengine.interfaces.pojos.Variant;
 import org.psikeds.resolutionengine.interfaces.pojos.VariantChoice;
+import org.psikeds.resolutionengine.resolver.ChangeTracker;
 import org.psikeds.resolutionengine.resolver.ResolutionException;
 import org.psikeds.resolutionengine.resolver.Resolver;
 import org.psikeds.resolutionengine.resolver.SessionState;
+import org.psikeds.resolutionengine.rules.RuleNetwork;
 import org.psikeds.resolutionengine.rules.RulesAndEventsHandler;
 import org.psikeds.resolutionengine.transformer.Transformer;
 import org.psikeds.resolutionengine.transformer.impl.Vo2PojoTransformer;
@@ -55,6 +59,10 @@ import org.psikeds.resolutionengine.util.KnowledgeHelper;
  * Decission will be ignored, Metadata is optional and will be used for
  * Information about Changes to the State of Rules, if present.
  * 
+ * Rules are compiled into a {@link RuleNetwork}. A Rule that was kept in
+ * one Pass is only examined again after one of its Premise- or Conclusion-
+ * Events was triggered or became obsolete.
+ * 
  * @author marco@juliano.de
  * 
  */
@@ -67,11 +75,15 @@ public class RulesEvaluator implements InitializingBean, Resolver {
   public static final boolean DEFAULT_CREATE_NON_CHOOSABLE_ENTITIES = false;
   public static final boolean DEFAULT_KEEP_MODUS_TOLLENS_FOR_LATER = true;
 
+  // networks of the rules of the latest versions of the knowledge-base
+  private static final int MAX_RULE_NETWORKS = 4;
+
   private KnowledgeBase kb;
   private Transformer trans;
   private boolean autoCreateConclusionPath;
   private boolean createNonChoosableEntities;
   private boolean keepModusTollensForLater;
+  private final LinkedList<RuleNetwork> networks = new LinkedList<RuleNetwork>(); // newest first
 
   public RulesEvaluator() {
     this(null);
@@ -151,6 +163,29 @@ public class RulesEvaluator implements InitializingBean, Resolver {
     }
     Validate.notNull(this.kb, "No Knowledge-Base!");
     Validate.notNull(this.trans, "No Transformer!");
+    LOGGER.info("Compiled {} Rules into Rule-Network.", getRuleNetwork().size());
+  }
+
+  /**
+   * @return Network of the Rules of the current Knowledge-Base; compiled on
+   *         first Access
+   */
+  public RuleNetwork getRuleNetwork() {
+    final Rules rules = (this.kb == null ? null : this.kb.getRules());
+    synchronized (this.networks) {
+      for (final RuleNetwork network : this.networks) {
+        // every Call returns a new Container, so look for the same Rules
+        if (network.isCompiledFrom(rules)) {
+          return network;
+        }
+      }
+      final RuleNetwork network = new RuleNetwork(rules);
+      this.networks.addFirst(network);
+      if (this.networks.size() > MAX_RULE_NETWORKS) {
+        this.networks.removeLast();
+      }
+      return network;
+    }
   }
 
   // ----------------------------------------------------------------
@@ -179,7 +214,7 @@ public class RulesEvaluator implements InitializingBean, Resolver {
         throw new ResolutionException("Knowledge or RulesAndEventsHandler missing!");
       }
       // Check Rules, i.e. apply or expire Rules depending on their Context, Premise or Conclusion
-      stable = checkRules(knowledge, raeh, metadata);
+      stable = checkRules(knowledge, raeh, metadata, state.getChangeTracker());
       if (!stable) {
         // A rule was applied and it is neccessary to execute the full Resolver-Chain once again
         LOGGER.debug("Knowledge is not stable, need another Iteration of all Resolvers!");
@@ -210,10 +245,13 @@ public class RulesEvaluator implements InitializingBean, Resolver {
 
   // ----------------------------------------------------------------
 
-  private boolean checkRules(final Knowledge knowledge, final RulesAndEventsHandler raeh, final Metadata metadata) {
+  private boolean checkRules(final Knowledge knowledge, final RulesAndEventsHandler raeh, final Metadata metadata, final ChangeTracker tracker) {
     boolean stable = true;
     try {
       LOGGER.trace("--> checkRules()");
+      tracker.invalidate();
+      final RuleNetwork network = getRuleNetwork();
+      propagateChangedEvents(network, raeh, tracker);
       final List<Rule> rules = raeh.getRelevantRules();
       for (final Rule r : rules) {
         final String ruleId = (r == null ? null : r.getRuleID());
@@ -221,6 +259,10 @@ public class RulesEvaluator implements InitializingBean, Resolver {
           markRuleObsolete(r, raeh, metadata);
           throw new ResolutionException("Invalid Rule!");
         }
+        if (tracker.isRemembered(ChangeTracker.SCOPE_RULES, ruleId)) {
+          LOGGER.debug("Nothing to do. Events of Rule {} are unchanged since last Evaluation.", ruleId);
+          continue;
+        }
         // check root / nexus
         final KnowledgeEntities root = KnowledgeHelper.findRoot(r, knowledge);
         if ((root == null) || root.isEmpty()) {
@@ -278,6 +320,7 @@ public class RulesEvaluator implements InitializingBean, Resolver {
           if (!applyRuleModusPonens(r, ceid, root, knowledge, raeh, metadata)) {
             stable = false;
           }
+          tracker.invalidate();
           continue;
         }
         if (conclusionObsolete) {
@@ -286,13 +329,16 @@ public class RulesEvaluator implements InitializingBean, Resolver {
             if (!applyRuleModusTollens(r, possiblePremiseID, root, knowledge, raeh, metadata)) {
               stable = false;
             }
+            tracker.invalidate();
           }
           else {
             LOGGER.debug("Keeping Rule {}, because Conclusion {} is obsolete/impossible but Premises are not decided yet.", ruleId, ceid);
+            keepRule(r, network, tracker);
           }
           continue;
         }
         LOGGER.debug("Keeping still possible Rule: {}", ruleId);
+        keepRule(r, network, tracker);
       }
       return stable;
     }
@@ -303,6 +349,27 @@ public class RulesEvaluator implements InitializingBean, Resolver {
 
   // ----------------------------------------------------------------
 
+  private static void propagateChangedEvents(final RuleNetwork network, final RulesAndEventsHandler raeh, final ChangeTracker tracker) {
+    // wake up all rules depending on an event that was triggered or became obsolete
+    for (final String eid : raeh.drainChangedEvents()) {
+      for (final Rule r : network.getRulesByPremise(eid)) {
+        tracker.forget(ChangeTracker.SCOPE_RULES, r.getRuleID());
+      }
+      for (final Rule r : network.getRulesByConclusion(eid)) {
+        tracker.forget(ChangeTracker.SCOPE_RULES, r.getRuleID());
+      }
+    }
+  }
+
+  private static void keepRule(final Rule r, final RuleNetwork network, final ChangeTracker tracker) {
+    // only rules within the network are woken up again, so all others must be examined in every pass
+    if (network.contains(r)) {
+      tracker.remember(ChangeTracker.SCOPE_RULES, r.getRuleID());
+    }
+  }
+
+  // ----------------------------------------------------------------
+
   private boolean applyRuleModusPonens(final Rule r, final String conclusionEventID, final KnowledgeEntities root, final Knowledge knowledge, final RulesAndEventsHandler raeh, final Metadata metadata) {
     boolean stable = true;
     final String ruleId = (r == null ? null : r.getRuleID());
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+import org.psikeds.resolutionengine.datalayer.vo.Rule;
+import org.psikeds.resolutionengine.datalayer.vo.Rules;
+
+/**
+ * Network of all Rules of a KnowledgeBase, i.e. precomputed Indexes from
+ * every Premise-Event and every Conclusion-Event to the Rules depending on
+ * it.
+ * 
+ * The Decission about a Rule only depends on the States of its Events.
+ * Therefore a Rule that was kept in one Pass must not be examined again
+ * until one of its Events was triggered or became obsolete. These State-
+ * Transitions are journaled by the {@link RulesAndEventsHandler} and
+ * propagated to the dependent Rules via this Network.
+ * 
+ * A Network is immutable and can be shared by all Threads.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class RuleNetwork {
+
+  private final List<Rule> source;
+  private final Map<String, Rule> rules;
+  private final Map<String, List<Rule>> byPremise;
+  private final Map<String, List<Rule>> byConclusion;
+
+  public RuleNetwork(final Rules source) {
+    this.source = (source == null ? null : source.getRule());
+    this.rules = new HashMap<String, Rule>();
+    this.byPremise = new HashMap<String, List<Rule>>();
+    this.byConclusion = new HashMap<String, List<Rule>>();
+    if (source != null) {
+      for (final Rule r : source.getRule()) {
+        compile(r);
+      }
+    }
+  }
+
+  private void compile(final Rule r) {
+    final String rid = (r == null ? null : r.getRuleID());
+    if (StringUtils.isEmpty(rid)) {
+      return;
+    }
+    this.rules.put(rid, r);
+    final List<String> premises = r.getPremiseEventID();
+    if (premises != null) {
+      for (final String peid : premises) {
+        link(this.byPremise, peid, r);
+      }
+    }
+    link(this.byConclusion, r.getConclusionEventID(), r);
+  }
+
+  private static void link(final Map<String, List<Rule>> index, final String eid, final Rule r) {
+    if (StringUtils.isEmpty(eid)) {
+      return;
+    }
+    List<Rule> lst = index.get(eid);
+    if (lst == null) {
+      lst = new ArrayList<Rule>(1);
+      index.put(eid, lst);
+    }
+    if (!lst.contains(r)) {
+      lst.add(r);
+    }
+  }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * @param rules
+   *          Rules of a KnowledgeBase
+   * @return true if this Network was compiled from exactly these Rules,
+   *         i.e. from the same List of Rules of the same Version of the
+   *         KnowledgeBase, even if wrapped by another Container
+   */
+  public boolean isCompiledFrom(final Rules rules) {
+    return (this.source == (rules == null ? null : rules.getRule()));
+  }
+
+  /**
+   * @param r
+   *          Rule
+   * @return true if exactly this Rule is Part of this Network, i.e. all
+   *         Changes of its Events are propagated to it
+   */
+  public boolean contains(final Rule r) {
+    return ((r != null) && (this.rules.get(r.getRuleID()) == r));
+  }
+
+  /**
+   * @return Number of Rules within this Network
+   */
+  public int size() {
+    return this.rules.size();
+  }
+
+  /**
+   * @param eid
+   *          ID of an Event
+   * @return Rules having this Event as Premise; never null
+   */
+  public List<Rule> getRulesByPremise(final String eid) {
+    return lookup(this.byPremise, eid);
+  }
+
+  /**
+   * @param eid
+   *          ID of an Event
+   * @return Rules having this Event as Conclusion; never null
+   */
+  public List<Rule> getRulesByConclusion(final String eid) {
+    return lookup(this.byConclusion, eid);
+  }
+
+  private static List<Rule> lookup(final Map<String, List<Rule>> index, final String eid) {
+    final List<Rule> lst = (eid == null ? null : index.get(eid));
+    return (lst == null ? Collections.<Rule> emptyList() : Collections.unmodifiableList(lst));
+  }
+}
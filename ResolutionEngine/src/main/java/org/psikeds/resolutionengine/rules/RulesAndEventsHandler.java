@@ -15,8 +15,13 @@
 package org.psikeds.resolutionengine.rules;
 
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +43,13 @@ import org.psikeds.resolutionengine.interfaces.pojos.Knowledge;
  * of Resolution and the corresponding Knowledge, Rules and Events are in one of
  * the States Relevant/Active, Obsolete or Triggered.
  * 
+ * Copies are cheap: A Copy shares all Stacks with its Original and a Stack
+ * is copied only when it is modified by one of them while the other one is
+ * still using it.
+ * 
+ * Every Event that becomes obsolete or triggered is journaled, so that
+ * Rules depending on it can be re-examined, see {@link RuleNetwork}.
+ * 
  * @author marco@juliano.de
  * 
  */
@@ -51,17 +63,35 @@ public class RulesAndEventsHandler implements Serializable {
   private static final int MAX_NUM_RULES = RuleStack.DEFAULT_MAX_MAP_SIZE;
   private static final int MAX_NUM_RELATIONS = RelationStack.DEFAULT_MAX_MAP_SIZE;
 
-  private final EventStack relevantEvents;
-  private final EventStack obsoleteEvents;
-  private final EventStack triggeredEvents;
+  public static final int NUMBER_OF_STACKS = 9;
+
+  private static final int RELEVANT_EVENTS = 0;
+  private static final int OBSOLETE_EVENTS = 1;
+  private static final int TRIGGERED_EVENTS = 2;
+  private static final int RELEVANT_RULES = 3;
+  private static final int OBSOLETE_RULES = 4;
+  private static final int TRIGGERED_RULES = 5;
+  private static final int ACTIVE_RELATIONS = 6;
+  private static final int OBSOLETE_RELATIONS = 7;
+  private static final int UNFULFILLABLE_RELATIONS = 8;
+
+  private EventStack relevantEvents;
+  private EventStack obsoleteEvents;
+  private EventStack triggeredEvents;
+
+  private RuleStack relevantRules;
+  private RuleStack obsoleteRules;
+  private RuleStack triggeredRules;
+
+  private RelationStack activeRelations;
+  private RelationStack obsoleteRelations;
+  private RelationStack unfulfillableRelations;
 
-  private final RuleStack relevantRules;
-  private final RuleStack obsoleteRules;
-  private final RuleStack triggeredRules;
+  // handlers sharing a stack with this one, null if stack is not shared
+  private transient Share[] shares;
 
-  private final RelationStack activeRelations;
-  private final RelationStack obsoleteRelations;
-  private final RelationStack unfulfillableRelations;
+  // IDs of events changed since last drainChangedEvents(), not shared with a copy
+  private transient List<String> changedEvents;
 
   private RulesAndEventsHandler(final List<Event> relevantEvents, final List<Rule> relevantRules, final List<Relation> activeRelations) {
     this(relevantEvents, MAX_NUM_EVENTS, relevantRules, MAX_NUM_RULES, activeRelations, MAX_NUM_RELATIONS);
@@ -82,17 +112,84 @@ public class RulesAndEventsHandler implements Serializable {
     this.activeRelations.setRelations(activeRelations);
   }
 
-  // copy constructor
+  // copy constructor, sharing all stacks until they are modified
   private RulesAndEventsHandler(final RulesAndEventsHandler raeh) {
-    this.obsoleteEvents = new EventStack(raeh.obsoleteEvents);
-    this.triggeredEvents = new EventStack(raeh.triggeredEvents);
-    this.relevantEvents = new EventStack(raeh.relevantEvents);
-    this.obsoleteRules = new RuleStack(raeh.obsoleteRules);
-    this.triggeredRules = new RuleStack(raeh.triggeredRules);
-    this.relevantRules = new RuleStack(raeh.relevantRules);
-    this.obsoleteRelations = new RelationStack(raeh.obsoleteRelations);
-    this.unfulfillableRelations = new RelationStack(raeh.unfulfillableRelations);
-    this.activeRelations = new RelationStack(raeh.activeRelations);
+    this.obsoleteEvents = raeh.obsoleteEvents;
+    this.triggeredEvents = raeh.triggeredEvents;
+    this.relevantEvents = raeh.relevantEvents;
+    this.obsoleteRules = raeh.obsoleteRules;
+    this.triggeredRules = raeh.triggeredRules;
+    this.relevantRules = raeh.relevantRules;
+    this.obsoleteRelations = raeh.obsoleteRelations;
+    this.unfulfillableRelations = raeh.unfulfillableRelations;
+    this.activeRelations = raeh.activeRelations;
+    this.shares = new Share[NUMBER_OF_STACKS];
+    synchronized (raeh) {
+      if (raeh.shares == null) {
+        raeh.shares = new Share[NUMBER_OF_STACKS];
+      }
+      for (int i = 0; i < NUMBER_OF_STACKS; i++) {
+        if (raeh.shares[i] == null) {
+          raeh.shares[i] = new Share(raeh);
+        }
+        this.shares[i] = raeh.shares[i];
+        this.shares[i].join(this);
+      }
+    }
+  }
+
+  /**
+   * Make sure that a Stack is not shared any more before modifying it.
+   * A Stack is only copied if another Handler is still using it, i.e.
+   * after a Copy was discarded or has replaced the Stack by its own one,
+   * the Stack is modified in place again.
+   * 
+   * @param stack
+   *          Index of Stack
+   */
+  private synchronized void modify(final int stack) {
+    final Share share = (this.shares == null ? null : this.shares[stack]);
+    if (share == null) {
+      return;
+    }
+    this.shares[stack] = null;
+    if (!share.isSharedBy(this)) {
+      share.leave(this);
+      return;
+    }
+    switch (stack) {
+      case RELEVANT_EVENTS:
+        this.relevantEvents = new EventStack(this.relevantEvents);
+        break;
+      case OBSOLETE_EVENTS:
+        this.obsoleteEvents = new EventStack(this.obsoleteEvents);
+        break;
+      case TRIGGERED_EVENTS:
+        this.triggeredEvents = new EventStack(this.triggeredEvents);
+        break;
+      case RELEVANT_RULES:
+        this.relevantRules = new RuleStack(this.relevantRules);
+        break;
+      case OBSOLETE_RULES:
+        this.obsoleteRules = new RuleStack(this.obsoleteRules);
+        break;
+      case TRIGGERED_RULES:
+        this.triggeredRules = new RuleStack(this.triggeredRules);
+        break;
+      case ACTIVE_RELATIONS:
+        this.activeRelations = new RelationStack(this.activeRelations);
+        break;
+      case OBSOLETE_RELATIONS:
+        this.obsoleteRelations = new RelationStack(this.obsoleteRelations);
+        break;
+      case UNFULFILLABLE_RELATIONS:
+        this.unfulfillableRelations = new RelationStack(this.unfulfillableRelations);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown Stack: " + stack);
+    }
+    // leave only after copying, so others do not modify the stack meanwhile
+    share.leave(this);
   }
 
   // ----------------------------------------------------------------
@@ -102,11 +199,15 @@ public class RulesAndEventsHandler implements Serializable {
   }
 
   public void setRelevantEvents(final Collection<? extends Event> events) {
+    modify(RELEVANT_EVENTS);
     this.relevantEvents.setEvents(events);
+    eventsChanged(events);
   }
 
   public void addRelevantEvents(final Collection<? extends Event> events) {
+    modify(RELEVANT_EVENTS);
     this.relevantEvents.addEvents(events);
+    eventsChanged(events);
   }
 
   public boolean isRelevant(final String eid) {
@@ -134,13 +235,54 @@ public class RulesAndEventsHandler implements Serializable {
   }
 
   public Event setObsolete(final Event e) {
+    if (!isRelevant(e)) {
+      return null;
+    }
+    modify(RELEVANT_EVENTS);
+    modify(OBSOLETE_EVENTS);
+    eventChanged(e);
     return this.relevantEvents.move2stack(e, this.obsoleteEvents);
   }
 
   public Event setTriggered(final Event e) {
+    if (!isRelevant(e)) {
+      return null;
+    }
+    modify(RELEVANT_EVENTS);
+    modify(TRIGGERED_EVENTS);
+    eventChanged(e);
     return this.relevantEvents.move2stack(e, this.triggeredEvents);
   }
 
+  private void eventChanged(final Event e) {
+    if (this.changedEvents == null) {
+      this.changedEvents = new ArrayList<String>();
+    }
+    this.changedEvents.add(e.getEventID());
+  }
+
+  private void eventsChanged(final Collection<? extends Event> events) {
+    if (events != null) {
+      for (final Event e : events) {
+        if (e != null) {
+          eventChanged(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Get and clear the Journal of Events that were triggered or became
+   * obsolete since the last Call.
+   * 
+   * @return IDs of changed Events; never null
+   */
+  public List<String> drainChangedEvents() {
+    final List<String> changed = this.changedEvents;
+    this.changedEvents = null;
+    return (changed == null ? Collections.<String> emptyList() : changed);
+  }
+
   // ----------------------------------------------------------------
 
   public List<Rule> getRelevantRules() {
@@ -148,18 +290,30 @@ public class RulesAndEventsHandler implements Serializable {
   }
 
   public void setRelevantRules(final Collection<? extends Rule> rules) {
+    modify(RELEVANT_RULES);
     this.relevantRules.setRules(rules);
   }
 
   public void addRelevantRules(final Collection<? extends Rule> rules) {
+    modify(RELEVANT_RULES);
     this.relevantRules.addRules(rules);
   }
 
   public Rule setObsolete(final Rule r) {
+    if (!this.relevantRules.containsRule(r)) {
+      return null;
+    }
+    modify(RELEVANT_RULES);
+    modify(OBSOLETE_RULES);
     return this.relevantRules.move2stack(r, this.obsoleteRules);
   }
 
   public Rule setTriggered(final Rule r) {
+    if (!this.relevantRules.containsRule(r)) {
+      return null;
+    }
+    modify(RELEVANT_RULES);
+    modify(TRIGGERED_RULES);
     return this.relevantRules.move2stack(r, this.triggeredRules);
   }
 
@@ -170,10 +324,12 @@ public class RulesAndEventsHandler implements Serializable {
   }
 
   public void setActiveRelations(final Collection<? extends Relation> rels) {
+    modify(ACTIVE_RELATIONS);
     this.activeRelations.setRelations(rels);
   }
 
   public void addActiveRelations(final Collection<? extends Relation> rels) {
+    modify(ACTIVE_RELATIONS);
     this.activeRelations.addRelations(rels);
   }
 
@@ -194,10 +350,20 @@ public class RulesAndEventsHandler implements Serializable {
   }
 
   public Relation setObsolete(final Relation r) {
+    if (!isActive(r)) {
+      return null;
+    }
+    modify(ACTIVE_RELATIONS);
+    modify(OBSOLETE_RELATIONS);
     return this.activeRelations.move2stack(r, this.obsoleteRelations);
   }
 
   public Relation setUnfulfillable(final Relation r) {
+    if (!isActive(r)) {
+      return null;
+    }
+    modify(ACTIVE_RELATIONS);
+    modify(UNFULFILLABLE_RELATIONS);
     return this.activeRelations.move2stack(r, this.unfulfillableRelations);
   }
 
@@ -252,6 +418,36 @@ public class RulesAndEventsHandler implements Serializable {
 
   // ----------------------------------------------------------------
 
+  /**
+   * @return total number of Events, Rules and Relations on all Stacks
+   */
+  public int countAllObjects() {
+    return this.relevantEvents.size() + this.obsoleteEvents.size() + this.triggeredEvents.size()
+        + this.relevantRules.size() + this.obsoleteRules.size() + this.triggeredRules.size()
+        + this.activeRelations.size() + this.obsoleteRelations.size() + this.unfulfillableRelations.size();
+  }
+
+  /**
+   * Get the IDs of all Events, Rules and Relations on all Stacks, e.g. for
+   * encoding this Handler in a compact Form. Stacks are in the Order
+   * relevant, obsolete and triggered Events; relevant, obsolete and
+   * triggered Rules; active, obsolete and unfulfillable Relations.
+   * 
+   * @return Array of IDs for each of the NUMBER_OF_STACKS Stacks
+   */
+  public String[][] getAllObjectIDs() {
+    return new String[][] {
+        getIDs(this.relevantEvents), getIDs(this.obsoleteEvents), getIDs(this.triggeredEvents),
+        getIDs(this.relevantRules), getIDs(this.obsoleteRules), getIDs(this.triggeredRules),
+        getIDs(this.activeRelations), getIDs(this.obsoleteRelations), getIDs(this.unfulfillableRelations) };
+  }
+
+  private static String[] getIDs(final Map<String, ?> stack) {
+    return stack.keySet().toArray(new String[stack.size()]);
+  }
+
+  // ----------------------------------------------------------------
+
   public static RulesAndEventsHandler init(final KnowledgeBase kb) {
     final Events events = kb == null ? null : kb.getEvents();
     final Rules rules = kb == null ? null : kb.getRules();
@@ -280,6 +476,70 @@ public class RulesAndEventsHandler implements Serializable {
     return raeh;
   }
 
+  /**
+   * Recreate a Handler from the IDs of its Events, Rules and Relations.
+   * Objects no longer contained in the Knowledge-Base are skipped.
+   * 
+   * @param kb
+   *          Knowledge-Base for looking up Events, Rules and Relations
+   * @param ids
+   *          IDs as returned by getAllObjectIDs()
+   * @return RulesAndEventsHandler
+   * @see #getAllObjectIDs()
+   */
+  public static RulesAndEventsHandler init(final KnowledgeBase kb, final String[][] ids) {
+    if ((ids == null) || (ids.length != NUMBER_OF_STACKS)) {
+      throw new IllegalArgumentException("Expected IDs for " + NUMBER_OF_STACKS + " Stacks.");
+    }
+    final RulesAndEventsHandler raeh = new RulesAndEventsHandler(null, null, null);
+    addEvents(kb, ids[0], raeh.relevantEvents);
+    addEvents(kb, ids[1], raeh.obsoleteEvents);
+    addEvents(kb, ids[2], raeh.triggeredEvents);
+    addRules(kb, ids[3], raeh.relevantRules);
+    addRules(kb, ids[4], raeh.obsoleteRules);
+    addRules(kb, ids[5], raeh.triggeredRules);
+    addRelations(kb, ids[6], raeh.activeRelations);
+    addRelations(kb, ids[7], raeh.obsoleteRelations);
+    addRelations(kb, ids[8], raeh.unfulfillableRelations);
+    return raeh;
+  }
+
+  private static void addEvents(final KnowledgeBase kb, final String[] ids, final EventStack stack) {
+    for (final String eid : ids) {
+      final Event e = kb.getEvent(eid);
+      if (e == null) {
+        LOGGER.debug("Skipping unknown Event: {}", eid);
+      }
+      else {
+        stack.addEvent(e);
+      }
+    }
+  }
+
+  private static void addRules(final KnowledgeBase kb, final String[] ids, final RuleStack stack) {
+    for (final String rid : ids) {
+      final Rule r = kb.getRule(rid);
+      if (r == null) {
+        LOGGER.debug("Skipping unknown Rule: {}", rid);
+      }
+      else {
+        stack.addRule(r);
+      }
+    }
+  }
+
+  private static void addRelations(final KnowledgeBase kb, final String[] ids, final RelationStack stack) {
+    for (final String rid : ids) {
+      final Relation r = kb.getRelation(rid);
+      if (r == null) {
+        LOGGER.debug("Skipping unknown Relation: {}", rid);
+      }
+      else {
+        stack.addRelation(r);
+      }
+    }
+  }
+
   // ----------------------------------------------------------------
 
   public static RulesAndEventsHandler copy(final RulesAndEventsHandler raeh) {
@@ -290,6 +550,47 @@ public class RulesAndEventsHandler implements Serializable {
     return copy(this);
   }
 
+  /**
+   * All Handlers sharing a Stack. Handlers are referenced weakly, so a
+   * discarded Copy does not keep the Stack shared.
+   */
+  private static final class Share {
+
+    private final List<WeakReference<RulesAndEventsHandler>> handlers = new ArrayList<WeakReference<RulesAndEventsHandler>>(2);
+
+    private Share(final RulesAndEventsHandler raeh) {
+      join(raeh);
+    }
+
+    private synchronized void join(final RulesAndEventsHandler raeh) {
+      this.handlers.add(new WeakReference<RulesAndEventsHandler>(raeh));
+    }
+
+    private synchronized void leave(final RulesAndEventsHandler raeh) {
+      final Iterator<WeakReference<RulesAndEventsHandler>> iter = this.handlers.iterator();
+      while (iter.hasNext()) {
+        final RulesAndEventsHandler h = iter.next().get();
+        if ((h == null) || (h == raeh)) {
+          iter.remove();
+        }
+      }
+    }
+
+    private synchronized boolean isSharedBy(final RulesAndEventsHandler raeh) {
+      final Iterator<WeakReference<RulesAndEventsHandler>> iter = this.handlers.iterator();
+      while (iter.hasNext()) {
+        final RulesAndEventsHandler h = iter.next().get();
+        if (h == null) {
+          iter.remove(); // discarded
+        }
+        else if (h != raeh) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
   // ----------------------------------------------------------------
 
   public static void logContents(final RulesAndEventsHandler raeh) {
@@ -26,9 +26,10 @@ import org.apache.commons.lang.Validate;
 import org.springframework.beans.factory.InitializingBean;
 
 import org.psikeds.common.idgen.IdGenerator;
-import org.psikeds.common.util.JSONHelper;
+import org.psikeds.resolutionengine.cache.CacheEntry;
 import org.psikeds.resolutionengine.cache.ResolutionCache;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.impl.VersionedKnowledgeBase;
 import org.psikeds.resolutionengine.datalayer.vo.Fulfills;
 import org.psikeds.resolutionengine.datalayer.vo.Purpose;
 import org.psikeds.resolutionengine.datalayer.vo.Purposes;
@@ -44,6 +45,7 @@ import org.psikeds.resolutionengine.interfaces.pojos.ResolutionResponse;
 import org.psikeds.resolutionengine.interfaces.pojos.VariantChoice;
 import org.psikeds.resolutionengine.interfaces.pojos.VariantChoices;
 import org.psikeds.resolutionengine.interfaces.services.ResolutionService;
+import org.psikeds.resolutionengine.resolver.ChangeTracker;
 import org.psikeds.resolutionengine.resolver.ResolutionException;
 import org.psikeds.resolutionengine.resolver.Resolver;
 import org.psikeds.resolutionengine.resolver.SessionState;
@@ -303,9 +305,11 @@ public class ResolutionBusinessService implements InitializingBean, ResolutionSe
     String newSessionID = null;
     boolean initialKnowledge = false;
     boolean freshSession = false;
+    boolean checkedOut = false;
     try {
       LOGGER.trace("--> handleRequest(); enforceSeparateSession = {}\nResolutionRequest = {}", enforceSeparateSession, req);
-      // --- Step 0: check preconditions
+      // --- Step 0: pin version of kb used by session and check preconditions
+      pinKnowledgeBase(req == null ? null : req.getSessionID());
       if (this.checkValidityAtRuntime) {
         checkValidity();
       }
@@ -349,6 +353,9 @@ public class ResolutionBusinessService implements InitializingBean, ResolutionSe
         freshSession = false;
         LOGGER.debug("Resuming existing Session: {}", newSessionID);
       }
+      // sessions must not be spilled off-heap while this request is working on them
+      checkoutSessions(oldSessionID, newSessionID);
+      checkedOut = true;
       if (freshSession) {
         this.cache.removeSession(newSessionID); // just to be sure!
       }
@@ -385,6 +392,7 @@ public class ResolutionBusinessService implements InitializingBean, ResolutionSe
         }
       }
       this.cache.saveObject(oldSessionID, SESS_KEY_KNOWLEDGE, knowledge);
+      saveKnowledgeBaseVersion(oldSessionID);
       // --- Step 4: get or create raeh
       RulesAndEventsHandler raeh = (RulesAndEventsHandler) this.cache.getObject(oldSessionID, SESS_KEY_RULES_AND_EVENTS);
       if (raeh == null) {
@@ -398,12 +406,13 @@ public class ResolutionBusinessService implements InitializingBean, ResolutionSe
       // --- Step 5: clone data if necessary
       if (!oldSessionID.equals(newSessionID)) {
         LOGGER.debug("Cloning Knowledge and RAEH for Usage in separate Session.");
-        knowledge = JSONHelper.copy(knowledge, Knowledge.class);
-        raeh = raeh.copy();
+        knowledge = knowledge.copy(); // deep copy, original is not modified
+        raeh = raeh.copy(); // copy-on-write, stacks are shared until modified
       }
       // --- Step 6: update cache for new session
       this.cache.saveObject(newSessionID, SESS_KEY_KNOWLEDGE, knowledge);
       this.cache.saveObject(newSessionID, SESS_KEY_RULES_AND_EVENTS, raeh);
+      saveKnowledgeBaseVersion(newSessionID);
       // --- Step 7: resolve Knowledge based on Decission(s)
       final SessionState state = new SessionState(newSessionID, metadata, knowledge, raeh);
       final Decissions decissions = (req == null ? null : req.getDecissions());
@@ -439,6 +448,10 @@ public class ResolutionBusinessService implements InitializingBean, ResolutionSe
       resp = new ResolutionResponse(newSessionID, metadata, errors);
     }
     finally {
+      if (checkedOut) {
+        checkinSessions(oldSessionID, newSessionID);
+      }
+      unpinKnowledgeBase();
       LOGGER.trace("<-- handleRequest(); enforceSeparateSession = {}; freshSession = {}; initialKnowledge = {}\noldSessionID = {}; newSessionID = {}\nResolutionResponse = {}", enforceSeparateSession,
           freshSession, initialKnowledge, oldSessionID, newSessionID, resp);
     }
@@ -447,6 +460,59 @@ public class ResolutionBusinessService implements InitializingBean, ResolutionSe
 
   // ----------------------------------------------------------------
 
+  private void checkoutSessions(final String oldSessionID, final String newSessionID) {
+    this.cache.checkout(oldSessionID);
+    if (!oldSessionID.equals(newSessionID)) {
+      this.cache.checkout(newSessionID);
+    }
+  }
+
+  private void checkinSessions(final String oldSessionID, final String newSessionID) {
+    this.cache.checkin(oldSessionID);
+    if (!oldSessionID.equals(newSessionID)) {
+      this.cache.checkin(newSessionID);
+    }
+  }
+
+  /**
+   * Pin the current Thread to the Version of the Knowledge-Base the Session
+   * was started with. New Sessions use the newest Version. A Session whose
+   * Version is not available anymore is invalidated, it is never moved to
+   * another Version silently.
+   * 
+   * @param sessionID
+   * @throws ResolutionException
+   *           if the Version of the Session is not available anymore
+   */
+  private void pinKnowledgeBase(final String sessionID) throws ResolutionException {
+    if (this.kb instanceof VersionedKnowledgeBase) {
+      final VersionedKnowledgeBase vkb = (VersionedKnowledgeBase) this.kb;
+      final CacheEntry sessionData = (StringUtils.isEmpty(sessionID) ? null : this.cache.getSession(sessionID, false));
+      final int version = (sessionData == null ? 0 : sessionData.getKnowledgeBaseVersion());
+      if (!vkb.isAvailable(version)) {
+        this.cache.removeSession(sessionID);
+        final String errmsg = "Session " + sessionID + " was started with Version " + version + " of the Knowledge-Base, which is not available anymore. Please start a new Session.";
+        LOGGER.warn(errmsg);
+        throw new ResolutionException(errmsg);
+      }
+      final int pinned = vkb.pin(version);
+      LOGGER.trace("Session {} uses Version {} of Knowledge-Base.", sessionID, pinned);
+    }
+  }
+
+  private void unpinKnowledgeBase() {
+    if (this.kb instanceof VersionedKnowledgeBase) {
+      ((VersionedKnowledgeBase) this.kb).unpin();
+    }
+  }
+
+  private void saveKnowledgeBaseVersion(final String sessionID) {
+    if (this.kb instanceof VersionedKnowledgeBase) {
+      final int version = ((VersionedKnowledgeBase) this.kb).getPinnedVersion();
+      this.cache.saveObject(sessionID, CacheEntry.KEY_KNOWLEDGE_BASE_VERSION, Integer.valueOf(version));
+    }
+  }
+
   private void checkValidity() throws ResolutionException {
     if (!this.kb.isValid()) {
       final String errmsg = "KnowledgeBase is not valid. Results may be incorrect!";
@@ -522,27 +588,37 @@ public class ResolutionBusinessService implements InitializingBean, ResolutionSe
   private Knowledge resolve(final SessionState state, final Decission decission, int iterationCountDown) {
     boolean ok = false;
     Knowledge knowledge = null;
+    Decission current = decission;
+    final ChangeTracker tracker = state.getChangeTracker();
     try {
       LOGGER.trace("--> resolve(); iterationCountDown = {}; Decission = {}", iterationCountDown, decission);
-      // in the beginning knowledge is clean/stable
-      knowledge = state.getKnowledge();
-      knowledge.setStable(true);
-      // Invoke every Resolver in Chain
-      for (final Resolver res : getResolvers()) {
-        knowledge = res.resolve(state, decission);
-      }
-      if (!knowledge.isStable()) {
+      while (true) {
+        // in the beginning of every Pass knowledge is clean/stable
+        tracker.nextPass();
+        knowledge = state.getKnowledge();
+        knowledge.setStable(true);
+        // Invoke every Resolver in Chain. Evaluators of Events, Rules and
+        // Relations still visit everything, but skip the Evaluation of all
+        // Events, Rules and Relations whose Nexus is unchanged since the
+        // last Pass.
+        for (final Resolver res : getResolvers()) {
+          knowledge = res.resolve(state, current);
+        }
+        if (knowledge.isStable()) {
+          break;
+        }
         // Some Resolver signaled that the Knowledge is not stable yet, i.e.
         // that it must be re-resolved again. This happens e.g. after a Rule
         // was applied or Choices with only one Variant were auto-completed.
         // Note: We do not supply any Decission because this was triggered
         // automatically and not by a Client-Interaction.
-        if (iterationCountDown > 0) {
-          knowledge = autoResolve(state, --iterationCountDown);
-        }
-        else {
+        if (iterationCountDown <= 0) {
           throw new ResolutionException("Aborted Resolution! Number of Iterations exceeds Maximum of " + this.maxResolutionIterations);
         }
+        iterationCountDown--;
+        state.setKnowledge(knowledge);
+        current = null;
+        LOGGER.debug("Auto-Resolution!");
       }
       // done
       ok = true;
@@ -550,6 +626,7 @@ public class ResolutionBusinessService implements InitializingBean, ResolutionSe
     }
     finally {
       state.setKnowledge(knowledge);
+      LOGGER.debug("Resolution needed {} Pass(es) so far, {} Evaluation(s) skipped, {} performed.", tracker.getPasses(), tracker.getSkipped(), tracker.getEvaluations());
       LOGGER.trace("<-- resolve(); iterationCountDown = {}; Result = " + (ok ? "OK." : "ERROR!") + "\nKnowledge = {}", iterationCountDown, knowledge);
     }
   }
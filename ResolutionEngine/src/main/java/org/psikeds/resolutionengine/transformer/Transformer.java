@@ -48,6 +48,11 @@ public interface Transformer {
       org.psikeds.resolutionengine.datalayer.vo.Features features,
       org.psikeds.resolutionengine.datalayer.vo.Concepts concepts);
 
+  org.psikeds.resolutionengine.interfaces.pojos.Variant valueObject2Pojo(
+      org.psikeds.resolutionengine.datalayer.vo.Variant vo,
+      List<org.psikeds.resolutionengine.datalayer.vo.Feature> features,
+      org.psikeds.resolutionengine.datalayer.vo.Concepts concepts);
+
   org.psikeds.resolutionengine.interfaces.pojos.Variant valueObject2Pojo(
       org.psikeds.resolutionengine.datalayer.vo.Variant vo,
       org.psikeds.resolutionengine.interfaces.pojos.Features features,
@@ -75,6 +80,9 @@ public interface Transformer {
   org.psikeds.resolutionengine.interfaces.pojos.FeatureValues valueObject2Pojo(
       org.psikeds.resolutionengine.datalayer.vo.FeatureValues vo);
 
+  org.psikeds.resolutionengine.interfaces.pojos.FeatureValueRange valueObject2Pojo(
+      org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange<? extends org.psikeds.resolutionengine.datalayer.vo.FeatureValue> vo);
+
   // ----------------------------------------------------------------
 
   org.psikeds.resolutionengine.interfaces.pojos.Feature valueObject2Pojo(
@@ -133,6 +141,12 @@ public interface Transformer {
       org.psikeds.resolutionengine.datalayer.vo.Variants variants,
       long qty);
 
+  org.psikeds.resolutionengine.interfaces.pojos.VariantChoice valueObject2Pojo(
+      String parentVariantID,
+      org.psikeds.resolutionengine.datalayer.vo.Purpose p,
+      List<org.psikeds.resolutionengine.datalayer.vo.Variant> variants,
+      long qty);
+
   // ----------------------------------------------------------------
 
   org.psikeds.resolutionengine.interfaces.pojos.ConceptChoice valueObject2Pojo(
@@ -24,6 +24,9 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.commons.lang.StringUtils;
 
+import org.psikeds.common.util.StringPool;
+
+import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
 import org.psikeds.resolutionengine.interfaces.pojos.Metadata;
 import org.psikeds.resolutionengine.transformer.Transformer;
 
@@ -34,12 +37,73 @@ import org.psikeds.resolutionengine.transformer.Transformer;
  * Note: For Safety-Reasons we will never transform POJOs
  * (from the Client!) back into Value-Objects (Server-Data!)
  * 
+ * Strings of the Value-Objects are passed by Reference. Strings that are
+ * computed on the fly, i.e. formatted Float-Values, are looked up in the
+ * {@link StringPool} of the current Version of the Knowledge-Base, so that
+ * not every Session is holding its own Copies. Nothing is ever added to
+ * that Pool.
+ * 
+ * Ranges of Feature-Values are by default expanded into discrete possible
+ * Values of a {@link org.psikeds.resolutionengine.interfaces.pojos.FeatureChoice},
+ * i.e. the Wire-Format is the same as before Ranges were kept symbolic.
+ * Clients understanding the Attribute possibleRanges may enable symbolic
+ * Ranges, see {@link #setSymbolicRanges(boolean)}. Expansion is limited to
+ * the first {@link #getMaxExpandedRangeSize()} Values of every Range, just
+ * like Ranges were limited when they were still materialized while loading
+ * the Knowledge-Base.
+ * 
  * @author marco@juliano.de
  */
 public class Vo2PojoTransformer implements Transformer {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(Vo2PojoTransformer.class);
 
+  public static final boolean DEFAULT_SYMBOLIC_RANGES = false;
+  public static final int DEFAULT_MAX_EXPANDED_RANGE_SIZE = 500;
+
+  private KnowledgeBase knowledgeBase;
+  private boolean symbolicRanges;
+  private int maxExpandedRangeSize;
+
+  public Vo2PojoTransformer() {
+    this(null);
+  }
+
+  public Vo2PojoTransformer(final KnowledgeBase knowledgeBase) {
+    setKnowledgeBase(knowledgeBase);
+    setSymbolicRanges(DEFAULT_SYMBOLIC_RANGES);
+    setMaxExpandedRangeSize(DEFAULT_MAX_EXPANDED_RANGE_SIZE);
+  }
+
+  public KnowledgeBase getKnowledgeBase() {
+    return this.knowledgeBase;
+  }
+
+  public void setKnowledgeBase(final KnowledgeBase knowledgeBase) {
+    this.knowledgeBase = knowledgeBase;
+  }
+
+  public boolean isSymbolicRanges() {
+    return this.symbolicRanges;
+  }
+
+  public void setSymbolicRanges(final boolean symbolicRanges) {
+    this.symbolicRanges = symbolicRanges;
+  }
+
+  public int getMaxExpandedRangeSize() {
+    return this.maxExpandedRangeSize;
+  }
+
+  public void setMaxExpandedRangeSize(final int maxExpandedRangeSize) {
+    this.maxExpandedRangeSize = (maxExpandedRangeSize < 0 ? DEFAULT_MAX_EXPANDED_RANGE_SIZE : maxExpandedRangeSize);
+  }
+
+  private String lookup(final String str) {
+    final StringPool pool = (this.knowledgeBase == null ? null : this.knowledgeBase.getStringPool());
+    return (pool == null ? str : pool.lookup(str));
+  }
+
   // ----------------------------------------------------------------
 
   @Override
@@ -107,6 +171,14 @@ public class Vo2PojoTransformer implements Transformer {
     return valueObject2Pojo(vo, valueObject2Pojo(features), valueObject2Pojo(concepts));
   }
 
+  @Override
+  public org.psikeds.resolutionengine.interfaces.pojos.Variant valueObject2Pojo(
+      final org.psikeds.resolutionengine.datalayer.vo.Variant vo,
+      final List<org.psikeds.resolutionengine.datalayer.vo.Feature> features,
+      final org.psikeds.resolutionengine.datalayer.vo.Concepts concepts) {
+    return valueObject2Pojo(vo, features2Pojo(features), valueObject2Pojo(concepts));
+  }
+
   @Override
   public org.psikeds.resolutionengine.interfaces.pojos.Variant valueObject2Pojo(
       final org.psikeds.resolutionengine.datalayer.vo.Variant vo,
@@ -122,10 +194,13 @@ public class Vo2PojoTransformer implements Transformer {
 
   @Override
   public org.psikeds.resolutionengine.interfaces.pojos.Variants valueObject2Pojo(final org.psikeds.resolutionengine.datalayer.vo.Variants vo) {
+    return (vo == null ? null : variants2Pojo(vo.getVariant()));
+  }
+
+  private org.psikeds.resolutionengine.interfaces.pojos.Variants variants2Pojo(final List<org.psikeds.resolutionengine.datalayer.vo.Variant> lst) {
     org.psikeds.resolutionengine.interfaces.pojos.Variants pojo = null;
-    if (vo != null) {
+    if (lst != null) {
       pojo = new org.psikeds.resolutionengine.interfaces.pojos.Variants();
-      final List<org.psikeds.resolutionengine.datalayer.vo.Variant> lst = vo.getVariant();
       for (final org.psikeds.resolutionengine.datalayer.vo.Variant v : lst) {
         pojo.add(valueObject2Pojo(v));
       }
@@ -163,7 +238,8 @@ public class Vo2PojoTransformer implements Transformer {
 
   @Override
   public org.psikeds.resolutionengine.interfaces.pojos.FeatureValue valueObject2Pojo(final org.psikeds.resolutionengine.datalayer.vo.FeatureValue vo) {
-    return (vo == null ? null : new org.psikeds.resolutionengine.interfaces.pojos.FeatureValue(vo.getFeatureID(), vo.getFeatureValueID(), vo.getValue()));
+    return (vo == null ? null : new org.psikeds.resolutionengine.interfaces.pojos.FeatureValue(vo.getFeatureID(),
+        lookup(vo.getFeatureValueID()), lookup(vo.getValue())));
   }
 
   @Override
@@ -184,6 +260,29 @@ public class Vo2PojoTransformer implements Transformer {
     return pojo;
   }
 
+  /**
+   * A symbolic Range stays symbolic, i.e. its Values are not materialized.
+   */
+  @Override
+  public org.psikeds.resolutionengine.interfaces.pojos.FeatureValueRange valueObject2Pojo(
+      final org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange<? extends org.psikeds.resolutionengine.datalayer.vo.FeatureValue> vo) {
+    org.psikeds.resolutionengine.interfaces.pojos.FeatureValueRange pojo = null;
+    if (vo instanceof org.psikeds.resolutionengine.datalayer.vo.IntegerFeatureValueRange) {
+      final org.psikeds.resolutionengine.datalayer.vo.IntegerFeatureValueRange irange = (org.psikeds.resolutionengine.datalayer.vo.IntegerFeatureValueRange) vo;
+      pojo = new org.psikeds.resolutionengine.interfaces.pojos.FeatureValueRange(irange.getFeatureID(), irange.getRangeID(),
+          org.psikeds.resolutionengine.interfaces.pojos.Feature.VALUE_TYPE_INTEGER, String.valueOf(irange.getMin()), String.valueOf(irange.getInc()),
+          0, org.psikeds.resolutionengine.datalayer.vo.FloatFeatureValue.DEFAULT_ROUNDING_MODE, irange.getOffset(), irange.size());
+    }
+    else if (vo instanceof org.psikeds.resolutionengine.datalayer.vo.FloatFeatureValueRange) {
+      final org.psikeds.resolutionengine.datalayer.vo.FloatFeatureValueRange frange = (org.psikeds.resolutionengine.datalayer.vo.FloatFeatureValueRange) vo;
+      pojo = new org.psikeds.resolutionengine.interfaces.pojos.FeatureValueRange(frange.getFeatureID(), frange.getRangeID(),
+          org.psikeds.resolutionengine.interfaces.pojos.Feature.VALUE_TYPE_FLOAT, frange.getMin().toPlainString(), frange.getInc().toPlainString(),
+          frange.getScale(), frange.getRoundingMode(), frange.getOffset(), frange.size());
+    }
+    LOGGER.trace("valueObject2Pojo: vo = {}\n--> pojo = {}", vo, pojo);
+    return pojo;
+  }
+
   // ----------------------------------------------------------------
 
   @Override
@@ -194,14 +293,17 @@ public class Vo2PojoTransformer implements Transformer {
 
   @Override
   public org.psikeds.resolutionengine.interfaces.pojos.Features valueObject2Pojo(final org.psikeds.resolutionengine.datalayer.vo.Features vo) {
+    return (vo == null ? null : features2Pojo(vo.getFeature()));
+  }
+
+  private org.psikeds.resolutionengine.interfaces.pojos.Features features2Pojo(final List<org.psikeds.resolutionengine.datalayer.vo.Feature> lst) {
     org.psikeds.resolutionengine.interfaces.pojos.Features pojo = null;
-    if (vo != null) {
+    if (lst != null) {
       pojo = new org.psikeds.resolutionengine.interfaces.pojos.Features();
-      final List<org.psikeds.resolutionengine.datalayer.vo.Feature> lst = vo.getFeature();
       for (final org.psikeds.resolutionengine.datalayer.vo.Feature f : lst) {
         pojo.add(valueObject2Pojo(f));
       }
-      LOGGER.trace("valueObject2Pojo: vo = {}\n--> pojo = {}", vo, pojo);
+      LOGGER.trace("valueObject2Pojo: vo = {}\n--> pojo = {}", lst, pojo);
     }
     return pojo;
   }
@@ -255,7 +357,22 @@ public class Vo2PojoTransformer implements Transformer {
     org.psikeds.resolutionengine.interfaces.pojos.FeatureChoice pojo = null;
     if (!StringUtils.isEmpty(parentVariantID) && (values != null)) {
       pojo = new org.psikeds.resolutionengine.interfaces.pojos.FeatureChoice(parentVariantID);
-      pojo.addPossibleValues(valueObject2Pojo(values));
+      // discrete values are transformed, ranges are either expanded or stay symbolic
+      pojo.addPossibleValues(valueObject2Pojo(new ArrayList<org.psikeds.resolutionengine.datalayer.vo.FeatureValue>(
+          org.psikeds.resolutionengine.datalayer.vo.FeatureValueList.getDiscreteValues(values))));
+      for (final org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange<? extends org.psikeds.resolutionengine.datalayer.vo.FeatureValue> range : org.psikeds.resolutionengine.datalayer.vo.FeatureValueList
+          .getRanges(values)) {
+        if (this.symbolicRanges) {
+          pojo.addPossibleRange(valueObject2Pojo(range));
+        }
+        else {
+          final int size = Math.min(range.size(), this.maxExpandedRangeSize);
+          if (size < range.size()) {
+            LOGGER.warn("Range {} of Feature {} has {} Values, expanding only the first {}.", range.getRangeID(), range.getFeatureID(), range.size(), size);
+          }
+          pojo.addPossibleValues(valueObject2Pojo(new ArrayList<org.psikeds.resolutionengine.datalayer.vo.FeatureValue>(range.subList(0, size))));
+        }
+      }
       LOGGER.trace("valueObject2Pojo: parentVariantID = {}\nvalues = {}\n--> pojo = {}", parentVariantID, values, pojo);
     }
     return pojo;
@@ -302,6 +419,15 @@ public class Vo2PojoTransformer implements Transformer {
     return valueObject2Pojo(parentVariantID, p, valueObject2Pojo(variants), qty);
   }
 
+  @Override
+  public org.psikeds.resolutionengine.interfaces.pojos.VariantChoice valueObject2Pojo(
+      final String parentVariantID,
+      final org.psikeds.resolutionengine.datalayer.vo.Purpose p,
+      final List<org.psikeds.resolutionengine.datalayer.vo.Variant> variants,
+      final long qty) {
+    return valueObject2Pojo(parentVariantID, p, variants2Pojo(variants), qty);
+  }
+
   // ----------------------------------------------------------------
 
   @Override
@@ -15,6 +15,7 @@
 package org.psikeds.resolutionengine.util;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 
@@ -32,6 +33,8 @@ import org.psikeds.resolutionengine.interfaces.pojos.Concepts;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureChoice;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureChoices;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureValue;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureValueRange;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureValueRanges;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureValues;
 import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntity;
 import org.psikeds.resolutionengine.interfaces.pojos.Purpose;
@@ -194,6 +197,10 @@ public abstract class ChoicesHelper {
                 removed = true;
               }
             }
+            if (removeFromRanges(fc, featureValueId)) {
+              LOGGER.debug("Removed FeatureValue {} of Feature {} from Ranges of Choices for Variant {}", featureValueId, fid, vid);
+              removed = true;
+            }
           }
         }
       }
@@ -205,8 +212,12 @@ public abstract class ChoicesHelper {
   }
 
   public static boolean cleanupFeatureChoices(final KnowledgeEntity ke, final String featureId, final FeatureValues vals, final boolean keep) {
+    return cleanupFeatureChoices(ke, featureId, vals, null, keep);
+  }
+
+  public static boolean cleanupFeatureChoices(final KnowledgeEntity ke, final String featureId, final FeatureValues vals, final FeatureValueRanges ranges, final boolean keep) {
     boolean removed = false;
-    final int num = (vals == null ? 0 : vals.size());
+    final int num = (vals == null ? 0 : vals.size()) + getNumberOfValues(ranges);
     try {
       LOGGER.trace("--> cleanupFeatureChoices(); keep = {}; #Values = {}; Feature = {}; KE = {}", keep, num, featureId, shortDisplayKE(ke));
       if (ke != null) {
@@ -222,20 +233,24 @@ public abstract class ChoicesHelper {
             while (valiter.hasNext()) {
               final FeatureValue fv = valiter.next();
               if (keep) {
-                if ((num <= 0) || !vals.contains(fv)) {
+                if ((vals == null) || !vals.contains(fv)) {
                   LOGGER.debug("Removing FeatureValue {} of Feature {} from Choices for Variant {}", fv.getFeatureValueID(), fv.getFeatureID(), fc.getParentVariantID());
                   valiter.remove();
                   removed = true;
                 }
               }
               else {
-                if ((num > 0) && vals.contains(fv)) {
+                if ((vals != null) && vals.contains(fv)) {
                   LOGGER.debug("Removing FeatureValue {} of Feature {} from Choices for Variant {}", fv.getFeatureValueID(), fv.getFeatureID(), fc.getParentVariantID());
                   valiter.remove();
                   removed = true;
                 }
               }
             }
+            if (retainRanges(fc, ranges, keep)) {
+              LOGGER.debug("Removed Values of Ranges of Feature {} from Choices for Variant {}", fid, fc.getParentVariantID());
+              removed = true;
+            }
           }
         }
       }
@@ -356,11 +371,7 @@ public abstract class ChoicesHelper {
             final String pid = c.getPurposeID();
             final org.psikeds.resolutionengine.datalayer.vo.Purpose p = kb.getPurpose(pid);
             // ... a new VariantChoice-POJO for the Client
-            final org.psikeds.resolutionengine.datalayer.vo.Fulfills ff = kb.getFulfills(pid);
-            final org.psikeds.resolutionengine.datalayer.vo.Variants variants = new org.psikeds.resolutionengine.datalayer.vo.Variants();
-            for (final String vid : ff.getVariantID()) {
-              variants.addVariant(kb.getVariant(vid));
-            }
+            final List<org.psikeds.resolutionengine.datalayer.vo.Variant> variants = kb.getFulfillingVariantsView(pid);
             final VariantChoice vc = trans.valueObject2Pojo(parentVariantID, p, variants, qty);
             LOGGER.debug("Adding new Variant-Choice: {}", vc);
             choices.add(vc);
@@ -381,10 +392,10 @@ public abstract class ChoicesHelper {
     try {
       LOGGER.trace("--> getNewFeatureChoices(); Variant = {}", parentVariantID);
       for (final String featureId : parentVariant.getFeatureIds()) {
-        // get all values allowed for this feature on this variant
-        final FeatureValues values = trans.valueObject2Pojo(kb.getFeatureValues(parentVariantID, featureId));
-        if ((values != null) && !values.isEmpty()) {
-          final FeatureChoice fc = new FeatureChoice(parentVariantID, featureId, values);
+        // get all values allowed for this feature on this variant, ranges stay symbolic
+        final FeatureChoice fc = trans.valueObject2Pojo(parentVariantID, kb.getFeatureValuesView(parentVariantID, featureId));
+        if ((fc != null) && (fc.getNumberOfPossibleValues() > 0)) {
+          fc.setFeatureID(featureId);
           LOGGER.debug("Adding new Feature-Choice: {}", fc);
           choices.add(fc);
         }
@@ -442,6 +453,31 @@ public abstract class ChoicesHelper {
     }
   }
 
+  public static FeatureValueRanges getFeatureValueRanges(final KnowledgeEntity ke, final String featureId) {
+    FeatureValueRanges result = null;
+    if ((ke != null) && !StringUtils.isEmpty(featureId)) {
+      for (final FeatureChoice fc : ke.getPossibleFeatures()) {
+        if (featureId.equals(fc.getFeatureID())) {
+          // there is at most one choice for a feature
+          result = fc.getPossibleRanges();
+          LOGGER.trace("Possible Feature-Value-Ranges of KE {} for Feature {}: {}", shortDisplayKE(ke), featureId, result);
+          return result;
+        }
+      }
+    }
+    return result;
+  }
+
+  public static int getNumberOfValues(final FeatureValueRanges ranges) {
+    int num = 0;
+    if (ranges != null) {
+      for (final FeatureValueRange range : ranges) {
+        num += range.getSize();
+      }
+    }
+    return num;
+  }
+
   public static FeatureValues getFeatureValues(final Concepts concepts, final String featureId) {
     FeatureValues result = null;
     try {
@@ -507,6 +543,75 @@ public abstract class ChoicesHelper {
 
   // ----------------------------------------------------------------
 
+  // remove a single value from the ranges of a choice by splitting its range, all ranges if no value is given
+  private static boolean removeFromRanges(final FeatureChoice fc, final String featureValueId) {
+    final FeatureValueRanges ranges = fc.getPossibleRanges();
+    if (ranges.isEmpty()) {
+      return false;
+    }
+    if (StringUtils.isEmpty(featureValueId)) {
+      fc.clearPossibleRanges();
+      return true;
+    }
+    for (int i = 0; i < ranges.size(); i++) {
+      final FeatureValueRange range = ranges.get(i);
+      final int idx = range.indexOf(featureValueId);
+      if (idx >= 0) {
+        ranges.remove(i);
+        if ((idx + 1) < range.getSize()) {
+          ranges.add(i, range.subRange(idx + 1, range.getSize()));
+        }
+        if (idx > 0) {
+          ranges.add(i, range.subRange(0, idx));
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // keep (or remove) those parts of the ranges of a choice that are overlapping the given ranges
+  private static boolean retainRanges(final FeatureChoice fc, final FeatureValueRanges vals, final boolean keep) {
+    final FeatureValueRanges ranges = fc.getPossibleRanges();
+    if (ranges.isEmpty()) {
+      return false;
+    }
+    boolean changed = false;
+    final FeatureValueRanges result = new FeatureValueRanges();
+    for (final FeatureValueRange range : ranges) {
+      // mark overlapping positions within this range
+      final BitSet mask = new BitSet(range.getSize());
+      if (vals != null) {
+        for (final FeatureValueRange val : vals) {
+          if ((val != null) && range.getRangeID().equals(val.getRangeID())) {
+            final int from = Math.max(range.getOffset(), val.getOffset()) - range.getOffset();
+            final int to = Math.min(range.getOffset() + range.getSize(), val.getOffset() + val.getSize()) - range.getOffset();
+            if (from < to) {
+              mask.set(from, to);
+            }
+          }
+        }
+      }
+      if (!keep) {
+        mask.flip(0, range.getSize());
+      }
+      if (mask.cardinality() != range.getSize()) {
+        changed = true;
+      }
+      for (int from = mask.nextSetBit(0); from >= 0; from = mask.nextSetBit(from)) {
+        final int to = mask.nextClearBit(from);
+        result.add(range.subRange(from, to));
+        from = to;
+      }
+    }
+    if (changed) {
+      fc.setPossibleRanges(result);
+    }
+    return changed;
+  }
+
+  // ----------------------------------------------------------------
+
   public static String shortDisplayKE(final KnowledgeEntity ke) {
     return KnowledgeEntityHelper.shortDisplayKE(ke);
   }
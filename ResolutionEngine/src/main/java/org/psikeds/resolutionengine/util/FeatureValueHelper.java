@@ -16,7 +16,9 @@ package org.psikeds.resolutionengine.util;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +32,7 @@ import org.psikeds.resolutionengine.interfaces.pojos.ConceptChoices;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureChoice;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureChoices;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureValue;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureValueRange;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureValues;
 import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntity;
 import org.psikeds.resolutionengine.resolver.ResolutionException;
@@ -92,8 +95,8 @@ public abstract class FeatureValueHelper {
       if ((fclst != null) && !fclst.isEmpty()) {
         for (final FeatureChoice fc : fclst) {
           if (featureID.equals(fc.getFeatureID())) {
-            final FeatureValues vals = fc.getPossibleValues();
-            if ((vals != null) && vals.contains(fv)) {
+            // values of ranges are looked up by id without materializing the range
+            if (fc.getPossibleValue(featureValueID) != null) {
               LOGGER.debug("Found matching Feature-Value {} within Feature-Choice of KE {}", featureValueID, shortDisplayKE(ke));
               ret = RET_FV_POSSIBLE;
               return ret;
@@ -226,6 +229,35 @@ public abstract class FeatureValueHelper {
     return lst;
   }
 
+  public static org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange<? extends org.psikeds.resolutionengine.datalayer.vo.FeatureValue> pojo2ValueObject(final KnowledgeBase kb,
+      final FeatureValueRange pojo) {
+    final String featureId = (pojo == null ? null : pojo.getFeatureID());
+    final org.psikeds.resolutionengine.datalayer.vo.Feature f = (((kb == null) || StringUtils.isEmpty(featureId)) ? null : kb.getFeature(featureId));
+    final org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange<? extends org.psikeds.resolutionengine.datalayer.vo.FeatureValue> range = (f == null ? null : f.getRange(pojo.getRangeID()));
+    final int from = (pojo == null ? 0 : pojo.getOffset() - (range == null ? 0 : range.getOffset()));
+    final int to = (pojo == null ? 0 : from + pojo.getSize());
+    if ((range == null) || (from < 0) || (to > range.size()) || (from > to)) {
+      LOGGER.warn("Range {} is unknown or out of Bounds: {}", (pojo == null ? null : pojo.getRangeID()), pojo);
+      return null;
+    }
+    // lookup range from kb to ensure clean data, the sub-range is still symbolic
+    return range.subList(from, to);
+  }
+
+  public static org.psikeds.resolutionengine.datalayer.vo.FeatureValueList pojo2ValueObject(final KnowledgeBase kb, final Collection<? extends FeatureValue> values,
+      final Collection<? extends FeatureValueRange> ranges) {
+    final org.psikeds.resolutionengine.datalayer.vo.FeatureValueList lst = new org.psikeds.resolutionengine.datalayer.vo.FeatureValueList(pojo2ValueObject(kb, values));
+    if (ranges != null) {
+      for (final FeatureValueRange pfvr : ranges) {
+        final org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange<? extends org.psikeds.resolutionengine.datalayer.vo.FeatureValue> vofvr = pojo2ValueObject(kb, pfvr);
+        if (vofvr != null) {
+          lst.addAll(vofvr);
+        }
+      }
+    }
+    return lst;
+  }
+
   // ----------------------------------------------------------------
 
   public static boolean addAllDistinct(
@@ -236,11 +268,17 @@ public abstract class FeatureValueHelper {
 
   public static boolean addAllDistinct(final FeatureValues targetList, final Collection<? extends FeatureValue> additionalElements) {
     boolean changed = false;
-    if ((targetList != null) && (additionalElements != null)) {
+    if ((targetList != null) && (additionalElements != null) && !additionalElements.isEmpty()) {
+      // index by ID, so that we do not have to scan the whole List for every Element
+      final Map<String, FeatureValue> index = new HashMap<String, FeatureValue>(Math.max(16, (targetList.size() + additionalElements.size()) * 2));
+      for (final FeatureValue fv : targetList) {
+        index(index, fv);
+      }
       for (final FeatureValue elem : additionalElements) {
-        if (!targetList.contains(elem)) {
+        if (!isContained(targetList, index, elem)) {
           changed = true;
           targetList.add(elem);
+          index(index, elem);
           LOGGER.trace("Added additional Element: {}", elem);
         }
       }
@@ -248,6 +286,28 @@ public abstract class FeatureValueHelper {
     return changed;
   }
 
+  // same result as lst.contains(fv), but usually without a linear scan
+  private static boolean isContained(final FeatureValues lst, final Map<String, FeatureValue> index, final FeatureValue fv) {
+    final String fvid = (fv == null ? null : fv.getFeatureValueID());
+    if (StringUtils.isEmpty(fvid)) {
+      // values without ID are never equal to anything
+      return ((fv == null) && lst.contains(null));
+    }
+    final FeatureValue found = index.get(fvid);
+    if (found == null) {
+      return false;
+    }
+    // same ID but different Class is possible, but very unlikely
+    return (found.equals(fv) || lst.contains(fv));
+  }
+
+  private static void index(final Map<String, FeatureValue> index, final FeatureValue fv) {
+    final String fvid = (fv == null ? null : fv.getFeatureValueID());
+    if (!StringUtils.isEmpty(fvid) && !index.containsKey(fvid)) {
+      index.put(fvid, fv);
+    }
+  }
+
   public static FeatureValues combineValues(final Collection<? extends FeatureValue> list1, final Collection<? extends FeatureValue> list2) {
     return combineValues(new FeatureValues(), list1, list2);
   }
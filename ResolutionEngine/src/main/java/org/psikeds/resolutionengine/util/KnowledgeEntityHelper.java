@@ -22,6 +22,7 @@ import org.apache.commons.lang.StringUtils;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
 import org.psikeds.resolutionengine.interfaces.pojos.ConceptChoices;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureChoices;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureValueRanges;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureValues;
 import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntities;
 import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntity;
@@ -65,7 +66,7 @@ public abstract class KnowledgeEntityHelper {
         throw new ResolutionException("Cannot create new Knowledge-Entity. Unknown Purpose-ID: " + purposeId);
       }
       final org.psikeds.resolutionengine.datalayer.vo.Variant variant = kb.getVariant(variantId);
-      final Variant v = (variant == null ? null : trans.valueObject2Pojo(variant, kb.getFeatures(variantId), kb.getAttachedConcepts(variantId)));
+      final Variant v = (variant == null ? null : trans.valueObject2Pojo(variant, kb.getFeaturesView(variantId), kb.getAttachedConcepts(variantId)));
       if (v == null) {
         throw new ResolutionException("Cannot create new Knowledge-Entity. Unknown Variant-ID: " + variantId);
       }
@@ -127,13 +128,21 @@ public abstract class KnowledgeEntityHelper {
     return cleanupKnowledgeEntity(ke, featureId, vals, true);
   }
 
+  public static KnowledgeEntity cleanupKnowledgeEntity(final KnowledgeEntity ke, final String featureId, final FeatureValues vals, final FeatureValueRanges ranges) {
+    return cleanupKnowledgeEntity(ke, featureId, vals, ranges, true);
+  }
+
   public static KnowledgeEntity cleanupKnowledgeEntity(final KnowledgeEntity ke, final String featureId, final FeatureValues vals, final boolean keep) {
-    final int num = (vals == null ? 0 : vals.size());
+    return cleanupKnowledgeEntity(ke, featureId, vals, null, keep);
+  }
+
+  public static KnowledgeEntity cleanupKnowledgeEntity(final KnowledgeEntity ke, final String featureId, final FeatureValues vals, final FeatureValueRanges ranges, final boolean keep) {
+    final int num = (vals == null ? 0 : vals.size()) + ChoicesHelper.getNumberOfValues(ranges);
     try {
       LOGGER.trace("--> cleanupKnowledgeEntity(); keep = {}; #Values = {}; Feature = {}; KE = {}", keep, num, featureId, shortDisplayKE(ke));
       if (ke != null) {
         LOGGER.debug("Cleaning Concept- and Feature-Choices regarding Feature {} of KnowledgeEntity: {}", featureId, shortDisplayKE(ke));
-        ChoicesHelper.cleanupFeatureChoices(ke, featureId, vals, keep);
+        ChoicesHelper.cleanupFeatureChoices(ke, featureId, vals, ranges, keep);
         ChoicesHelper.cleanupConceptChoices(ke, featureId, vals, keep);
       }
       return ke;
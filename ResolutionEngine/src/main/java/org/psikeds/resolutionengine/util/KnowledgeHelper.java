@@ -72,25 +72,12 @@ public abstract class KnowledgeHelper {
   // ----------------------------------------------------------------
 
   private static KnowledgeEntities findRoot(final String rootVariantId, final Knowledge knowledge) {
-    final KnowledgeEntities result = new KnowledgeEntities();
-    final KnowledgeEntities entities = (knowledge == null ? null : knowledge.getEntities());
-    findRoot(result, rootVariantId, entities);
+    // lookup in index instead of walking the whole tree of entities
+    final KnowledgeEntities result = (knowledge == null ? new KnowledgeEntities() : knowledge.getIndex().getEntities(rootVariantId));
     LOGGER.trace("findRoot( V = {} ) --> {}", rootVariantId, shortDisplayKE(result));
     return result;
   }
 
-  private static KnowledgeEntities findRoot(final KnowledgeEntities result, final String rootVariantId, final KnowledgeEntities entities) {
-    if ((entities != null) && !entities.isEmpty()) {
-      for (final KnowledgeEntity ke : entities) {
-        if (rootVariantId.equals(ke.getVariant().getVariantID())) {
-          result.add(ke);
-        }
-        findRoot(result, rootVariantId, ke.getChildren());
-      }
-    }
-    return result;
-  }
-
   // ----------------------------------------------------------------
 
   public static String shortDisplayKE(final KnowledgeEntity ke) {
@@ -14,13 +14,19 @@
  *******************************************************************************/
 package org.psikeds.resolutionengine.util;
 
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueDomain;
 import org.psikeds.resolutionengine.datalayer.vo.Relation;
 import org.psikeds.resolutionengine.datalayer.vo.RelationOperator;
 import org.psikeds.resolutionengine.datalayer.vo.RelationParameter;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureValue;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureValueRange;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureValueRanges;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureValues;
 import org.psikeds.resolutionengine.interfaces.pojos.Knowledge;
 import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntities;
@@ -96,4 +102,108 @@ public abstract class RelationHelper {
     return trans.valueObject2Pojo(org.psikeds.resolutionengine.datalayer.knowledgebase.util.RelationHelper.fulfillsOperation(FeatureValueHelper.pojo2ValueObject(kb, left), op,
         FeatureValueHelper.pojo2ValueObject(kb, ref)));
   }
+
+  // ----------------------------------------------------------------
+
+  /**
+   * Narrow possible Values to those fulfilling [ Value op Reference ] by
+   * means of a BitSet-Mask over the Domain of the Feature. Values that are
+   * not Part of the Domain (i.e. Values of Ranges) are checked one by one.
+   * 
+   * @return the unchanged List if all Values are matching, otherwise a new
+   *         List of the matching Values in their original Order
+   */
+  public static FeatureValues fulfillsOperation(final KnowledgeBase kb, final FeatureValueDomain domain,
+      final FeatureValues left, final RelationOperator op, final org.psikeds.resolutionengine.datalayer.vo.FeatureValue ref) {
+    return narrow(kb, domain, left, op, Collections.singletonList(ref), domain.mask(op, ref));
+  }
+
+  public static FeatureValues fulfillsOperation(final KnowledgeBase kb, final FeatureValueDomain domain, final FeatureValues left, final RelationOperator op, final FeatureValues ref) {
+    return fulfillsOperation(kb, domain, left, op, FeatureValueHelper.pojo2ValueObject(kb, ref));
+  }
+
+  public static FeatureValues fulfillsOperation(final KnowledgeBase kb, final FeatureValueDomain domain, final FeatureValues left, final RelationOperator op,
+      final Collection<? extends org.psikeds.resolutionengine.datalayer.vo.FeatureValue> ref) {
+    return narrow(kb, domain, left, op, ref, domain.mask(op, ref));
+  }
+
+  /**
+   * Narrow possible Ranges to those Sub-Ranges fulfilling [ Value op
+   * Reference ]. Ranges are never materialized, i.e. Minimum, Maximum and
+   * Increment of the Sub-Ranges are found by a binary Search.
+   * 
+   * @return the unchanged List if all Values are matching, otherwise a new
+   *         List of the matching Sub-Ranges in their original Order
+   */
+  public static FeatureValueRanges fulfillsOperation(final KnowledgeBase kb,
+      final FeatureValueRanges left, final RelationOperator op, final org.psikeds.resolutionengine.datalayer.vo.FeatureValue ref) {
+    return narrow(kb, left, op, Collections.singletonList(ref));
+  }
+
+  public static FeatureValueRanges fulfillsOperation(final KnowledgeBase kb,
+      final FeatureValueRanges left, final RelationOperator op, final Collection<? extends org.psikeds.resolutionengine.datalayer.vo.FeatureValue> ref) {
+    return narrow(kb, left, op, ref);
+  }
+
+  // ----------------------------------------------------------------
+
+  private static FeatureValues narrow(final KnowledgeBase kb, final FeatureValueDomain domain, final FeatureValues left, final RelationOperator op,
+      final Collection<? extends org.psikeds.resolutionengine.datalayer.vo.FeatureValue> ref, final BitSet mask) {
+    if ((left == null) || left.isEmpty()) {
+      return left;
+    }
+    final BitSet matching = new BitSet(left.size());
+    for (int i = 0; i < left.size(); i++) {
+      if (isSet(kb, domain, op, ref, mask, left.get(i))) {
+        matching.set(i);
+      }
+    }
+    final int num = matching.cardinality();
+    if (num == left.size()) {
+      // nothing to remove
+      return left;
+    }
+    final FeatureValues result = new FeatureValues(num);
+    for (int i = matching.nextSetBit(0); i >= 0; i = matching.nextSetBit(i + 1)) {
+      result.add(left.get(i));
+    }
+    return result;
+  }
+
+  private static boolean isSet(final KnowledgeBase kb, final FeatureValueDomain domain, final RelationOperator op,
+      final Collection<? extends org.psikeds.resolutionengine.datalayer.vo.FeatureValue> ref, final BitSet mask, final FeatureValue fv) {
+    final int ord = (fv == null ? -1 : domain.ordinal(fv.getFeatureValueID()));
+    if (ord >= 0) {
+      return mask.get(ord);
+    }
+    // values unknown to the kb are never matching, values of ranges are checked within a single-valued domain
+    final org.psikeds.resolutionengine.datalayer.vo.FeatureValue vo = FeatureValueHelper.pojo2ValueObject(kb, fv);
+    return ((vo != null) && new FeatureValueDomain(vo.getFeatureID(), Collections.singletonList(vo)).mask(op, ref).get(0));
+  }
+
+  private static FeatureValueRanges narrow(final KnowledgeBase kb, final FeatureValueRanges left, final RelationOperator op,
+      final Collection<? extends org.psikeds.resolutionengine.datalayer.vo.FeatureValue> ref) {
+    if ((left == null) || left.isEmpty()) {
+      return left;
+    }
+    boolean changed = false;
+    final FeatureValueRanges result = new FeatureValueRanges();
+    for (final FeatureValueRange range : left) {
+      final org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange<? extends org.psikeds.resolutionengine.datalayer.vo.FeatureValue> vo = FeatureValueHelper.pojo2ValueObject(kb, range);
+      if (vo == null) {
+        // ranges unknown to the kb are never matching
+        changed = true;
+        continue;
+      }
+      final List<? extends org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange<? extends org.psikeds.resolutionengine.datalayer.vo.FeatureValue>> selected = vo.select(op, ref);
+      if ((selected.size() != 1) || (selected.get(0).size() != range.getSize())) {
+        changed = true;
+      }
+      for (final org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange<? extends org.psikeds.resolutionengine.datalayer.vo.FeatureValue> sub : selected) {
+        final int from = sub.getOffset() - range.getOffset();
+        result.add(range.subRange(from, from + sub.size()));
+      }
+    }
+    return (changed ? result : left);
+  }
 }
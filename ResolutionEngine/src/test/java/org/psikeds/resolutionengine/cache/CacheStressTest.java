@@ -17,10 +17,20 @@ package org.psikeds.resolutionengine.cache;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.Serializable;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
@@ -36,7 +46,7 @@ import org.psikeds.common.idgen.IdGenerator;
 import org.psikeds.common.idgen.impl.SessionIdGenerator;
 
 /**
- * Testcase checking Caching and LRU-Expiry of Sessions and Objects.
+ * Testcase checking Caching, LRU-, Weight- and Time-based Expiry of Sessions and Objects.
  * (@link org.psikeds.resolutionengine.cache.ResolutionCache)
  * 
  * Note: Any Test called *Test.java is a Unit-Test executed offline by Surefire.
@@ -50,6 +60,10 @@ public class CacheStressTest {
   private static final String LOG4J = System.getProperty("org.psikeds.test.log4j.xml", "./src/main/resources/log4j.xml");
   private static final Logger LOGGER = LoggerFactory.getLogger(CacheStressTest.class);
 
+  private static final int NUM_THREADS = 8;
+  private static final int OPERATIONS_PER_THREAD = 50000;
+  private static final String OBJECT_KEY = "Object";
+
   private IdGenerator sidgen;
   private ResolutionCache cache;
 
@@ -78,6 +92,8 @@ public class CacheStressTest {
     long duration = 0;
 
     LOGGER.info("Starting test of ResolutionCache ...");
+    // LRU-Order is only strict within a Segment, so use a single one
+    this.cache = new ResolutionCache(ResolutionCache.DEFAULT_MAX_SESSIONS_PER_SERVER, ResolutionCache.DEFAULT_MAX_OBJECTS_PER_SESSION, 1);
     try {
       final int numSessions = this.cache.getMaxSessionsPerServer();
       LOGGER.info("... max. Sessions per Server = " + numSessions + " ...");
@@ -156,4 +172,275 @@ public class CacheStressTest {
       LOGGER.info(" ... test of ResolutionCache finished after " + duration + " milliseconds " + (ok ? "without problems." : "with Errors!"));
     }
   }
+
+  /**
+   * Multi-threaded Throughput-Benchmark: Several Threads are concurrently
+   * reading, writing and removing Objects of more Sessions than the Cache
+   * can hold, so that LRU-Expiry is also happening all the Time.
+   */
+  @Test
+  public void testConcurrentThroughput() {
+    boolean ok = true;
+    final long start = System.currentTimeMillis();
+    long end = start;
+    long duration = 0;
+
+    LOGGER.info("Starting concurrent test of ResolutionCache ...");
+    ExecutorService pool = null;
+    try {
+      final int maxSessions = this.cache.getMaxSessionsPerServer();
+      final String[] sessionIDs = new String[maxSessions * 2];
+      for (int i = 0; i < sessionIDs.length; i++) {
+        sessionIDs[i] = this.sidgen.getNextId();
+      }
+      LOGGER.info("... " + NUM_THREADS + " Threads, " + OPERATIONS_PER_THREAD + " Operations per Thread, " + sessionIDs.length + " Sessions ...");
+
+      final CountDownLatch startSignal = new CountDownLatch(1);
+      final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+      pool = Executors.newFixedThreadPool(NUM_THREADS);
+      for (int t = 0; t < NUM_THREADS; t++) {
+        final long seed = start + t;
+        results.add(pool.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() throws Exception {
+            final Random rnd = new Random(seed);
+            int errors = 0;
+            startSignal.await();
+            for (int op = 0; op < OPERATIONS_PER_THREAD; op++) {
+              final String sid = sessionIDs[rnd.nextInt(sessionIDs.length)];
+              final int action = rnd.nextInt(10);
+              if (action < 3) {
+                CacheStressTest.this.cache.saveObject(sid, OBJECT_KEY, sid);
+              }
+              else if (action < 9) {
+                final Serializable loaded = CacheStressTest.this.cache.getObject(sid, OBJECT_KEY);
+                if ((loaded != null) && !sid.equals(loaded)) {
+                  errors++;
+                }
+              }
+              else {
+                CacheStressTest.this.cache.removeSession(sid);
+              }
+            }
+            return errors;
+          }
+        }));
+      }
+
+      final long begin = System.nanoTime();
+      startSignal.countDown();
+      int errors = 0;
+      for (final Future<Integer> f : results) {
+        errors += f.get(60, TimeUnit.SECONDS).intValue();
+      }
+      final long nanos = Math.max(1, System.nanoTime() - begin);
+      final long totalOps = (long) NUM_THREADS * OPERATIONS_PER_THREAD;
+      LOGGER.info("... " + totalOps + " Operations in " + (nanos / 1000000) + " milliseconds, i.e. " + ((totalOps * 1000000000L) / nanos) + " Operations per Second ...");
+      LOGGER.info("... " + this.cache.getEvictionCount() + " Sessions expired ...");
+
+      assertEquals("Objects loaded from Cache do not belong to their Session.", 0, errors);
+      final int cachesize = this.cache.size();
+      LOGGER.trace("Cache size is: " + cachesize);
+      assertTrue("Cache size is " + cachesize + ", exceeding maximum of " + maxSessions, cachesize <= maxSessions);
+
+      ok = true;
+    }
+    catch (final Throwable t) {
+      ok = false;
+      final String message = "Cache Error: " + t.getMessage();
+      LOGGER.error(message, t);
+      if (t instanceof AssertionError) {
+        throw (AssertionError) t;
+      }
+      else {
+        fail(message);
+      }
+    }
+    finally {
+      if (pool != null) {
+        pool.shutdownNow();
+      }
+      end = System.currentTimeMillis();
+      duration = end - start;
+      LOGGER.info(" ... concurrent test of ResolutionCache finished after " + duration + " milliseconds " + (ok ? "without problems." : "with Errors!"));
+    }
+  }
+
+  /**
+   * Check Expiry of idle Sessions and of Sessions exceeding their Lifetime.
+   */
+  @Test
+  public void testIdleAndLifetimeExpiry() throws InterruptedException {
+    final long timeout = 200;
+    LOGGER.info("Starting test of Idle-Timeout and Lifetime of ResolutionCache ...");
+
+    final ResolutionCache idleCache = new ResolutionCache(ResolutionCache.DEFAULT_MAX_SESSIONS_PER_SERVER, ResolutionCache.DEFAULT_MAX_OBJECTS_PER_SESSION,
+        ResolutionCache.DEFAULT_CONCURRENCY_LEVEL, timeout, 0, 0);
+    final String activeId = this.sidgen.getNextId();
+    final String idleId = this.sidgen.getNextId();
+    idleCache.saveObject(activeId, activeId, activeId);
+    idleCache.saveObject(idleId, idleId, idleId);
+    for (int i = 0; i < 6; i++) {
+      Thread.sleep(timeout / 4);
+      assertNotNull("Active Session expired although it was used.", idleCache.getObject(activeId, activeId));
+    }
+    assertEquals("Sweeper did not remove idle Session.", 1, idleCache.sweep());
+    assertNull("Idle Session did not expire.", idleCache.getSession(idleId, false));
+    assertNotNull("Active Session was swept.", idleCache.getSession(activeId, false));
+    assertEquals("Wrong number of idle Evictions.", 1, idleCache.getEvictionCount(EvictionCause.IDLE));
+    assertEquals("Wrong number of LRU Evictions.", 0, idleCache.getEvictionCount(EvictionCause.SIZE));
+    assertEquals("Cache size is not 1.", 1, idleCache.size());
+
+    final ResolutionCache lifetimeCache = new ResolutionCache(ResolutionCache.DEFAULT_MAX_SESSIONS_PER_SERVER, ResolutionCache.DEFAULT_MAX_OBJECTS_PER_SESSION,
+        ResolutionCache.DEFAULT_CONCURRENCY_LEVEL, 0, timeout, 0);
+    lifetimeCache.saveObject(activeId, activeId, activeId);
+    for (int i = 0; i < 2; i++) {
+      Thread.sleep(timeout / 4);
+      assertNotNull("Session expired before end of its Lifetime.", lifetimeCache.getObject(activeId, activeId));
+    }
+    Thread.sleep(timeout);
+    assertNull("Session did not expire after its Lifetime although it was used.", lifetimeCache.getObject(activeId, activeId));
+    assertEquals("Wrong number of Lifetime Evictions.", 1, lifetimeCache.getEvictionCount(EvictionCause.LIFETIME));
+    assertEquals("Cache is not empty.", 0, lifetimeCache.size());
+
+    LOGGER.info(" ... test of Idle-Timeout and Lifetime of ResolutionCache finished.");
+  }
+
+  /**
+   * Check that the total Weight of all Sessions is limited.
+   */
+  @Test
+  public void testWeightBasedEviction() {
+    LOGGER.info("Starting test of Weight-based Eviction of ResolutionCache ...");
+    final Weigher weigher = new SessionWeigher();
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      sb.append('x');
+    }
+    final String data = sb.toString();
+    final long objWeight = weigher.weigh(data);
+    final int maxSessions = 10;
+
+    // LRU-Order and Weight-Budget are per Segment, so use a single one
+    final ResolutionCache weightedCache = new ResolutionCache(0, ResolutionCache.DEFAULT_MAX_OBJECTS_PER_SESSION, 1,
+        0, 0, 0, maxSessions * objWeight, weigher);
+    String firstId = null;
+    String lastId = null;
+    for (int i = 0; i < (2 * maxSessions); i++) {
+      lastId = this.sidgen.getNextId();
+      if (firstId == null) {
+        firstId = lastId;
+      }
+      weightedCache.saveObject(lastId, OBJECT_KEY, data);
+      assertTrue("Weight " + weightedCache.getWeight() + " exceeds Maximum " + weightedCache.getMaxWeight(), weightedCache.getWeight() <= weightedCache.getMaxWeight());
+    }
+    assertEquals("Wrong number of Sessions.", maxSessions, weightedCache.size());
+    assertEquals("Wrong Weight of Sessions.", maxSessions * objWeight, weightedCache.getWeight());
+    // peak includes the last session saved before eviction of the eldest one
+    assertEquals("Wrong Peak-Weight of Sessions.", (maxSessions + 1) * objWeight, weightedCache.getPeakWeight());
+    assertEquals("Wrong number of Evictions.", maxSessions, weightedCache.getEvictionCount(EvictionCause.WEIGHT));
+    assertEquals("Weight-based Evictions counted as LRU Evictions.", 0, weightedCache.getEvictionCount(EvictionCause.SIZE));
+    assertNull("First Session did not expire.", weightedCache.getSession(firstId, false));
+    assertNotNull("Last Session expired.", weightedCache.getSession(lastId, false));
+
+    weightedCache.removeSession(lastId);
+    assertEquals("Weight not reduced after removing a Session.", (maxSessions - 1) * objWeight, weightedCache.getWeight());
+    weightedCache.clear();
+    assertEquals("Weight of empty Cache is not 0.", 0, weightedCache.getWeight());
+    LOGGER.info(" ... test of Weight-based Eviction of ResolutionCache finished.");
+  }
+
+  /**
+   * Check that idle Sessions are spilled off-heap and rehydrated transparently.
+   */
+  @Test
+  public void testOffHeapSpilling() throws InterruptedException {
+    final long spillAfter = 100;
+    final int numSessions = 5;
+    LOGGER.info("Starting test of off-heap Spilling of ResolutionCache ...");
+
+    final ResolutionCache spillingCache = new ResolutionCache();
+    spillingCache.setOffHeapStore(new OffHeapSessionStore(1024 * 1024));
+    spillingCache.setSpillAfter(spillAfter);
+    final List<String> ids = new ArrayList<String>();
+    for (int i = 0; i < numSessions; i++) {
+      final String sid = this.sidgen.getNextId();
+      spillingCache.saveObject(sid, OBJECT_KEY, sid);
+      ids.add(sid);
+    }
+    final long weight = spillingCache.getWeight();
+    assertTrue("Sessions have no Weight.", weight > 0);
+    assertEquals("Sessions were spilled too early.", 0, spillingCache.sweep());
+    assertEquals("Sessions were spilled too early.", 0, spillingCache.getOffHeapStore().getSpillCount());
+
+    Thread.sleep(2 * spillAfter);
+    assertEquals("Spilled Sessions must not be removed.", 0, spillingCache.sweep());
+    final OffHeapSessionStore store = spillingCache.getOffHeapStore();
+    assertEquals("Wrong number of spilled Sessions.", numSessions, store.getSpillCount());
+    assertTrue("Off-heap Tier is empty.", store.getSize() > 0);
+    assertEquals("Spilled Sessions still have Weight on Heap.", 0, spillingCache.getWeight());
+    assertEquals("Cache size changed by Spilling.", numSessions, spillingCache.size());
+
+    for (final String sid : ids) {
+      assertEquals("Spilled Session was not rehydrated correctly.", sid, spillingCache.getObject(sid, OBJECT_KEY));
+    }
+    assertEquals("Wrong number of rehydrated Sessions.", numSessions, store.getRehydrationCount());
+    assertEquals("Off-heap Tier not released.", 0, store.getSize());
+    assertEquals("Wrong Weight of rehydrated Sessions.", weight, spillingCache.getWeight());
+
+    Thread.sleep(2 * spillAfter);
+    spillingCache.sweep();
+    spillingCache.clear();
+    assertEquals("Off-heap Tier not released after clearing Cache.", 0, store.getSize());
+    LOGGER.info(" ... test of off-heap Spilling of ResolutionCache finished.");
+  }
+
+  /**
+   * Check that checked out Sessions are never spilled and that a Session
+   * that cannot be serialized does not stop the Sweeper.
+   */
+  @Test
+  public void testSpillingSkipsBusySessions() throws InterruptedException {
+    final long spillAfter = 100;
+    LOGGER.info("Starting test of off-heap Spilling of busy Sessions ...");
+
+    final ResolutionCache spillingCache = new ResolutionCache();
+    spillingCache.setOffHeapStore(new OffHeapSessionStore(1024 * 1024));
+    spillingCache.setSpillAfter(spillAfter);
+    final String busy = this.sidgen.getNextId();
+    final String broken = this.sidgen.getNextId();
+    final String idle = this.sidgen.getNextId();
+    spillingCache.saveObject(busy, OBJECT_KEY, busy);
+    spillingCache.saveObject(broken, OBJECT_KEY, new Unserializable());
+    spillingCache.saveObject(idle, OBJECT_KEY, idle);
+    spillingCache.checkout(busy);
+    assertTrue("Session is not checked out.", spillingCache.isCheckedOut(busy));
+
+    Thread.sleep(2 * spillAfter);
+    spillingCache.sweep();
+    final OffHeapSessionStore store = spillingCache.getOffHeapStore();
+    assertEquals("Only the idle Session must be spilled.", 1, store.getSpillCount());
+    assertEquals("Cache size changed by Spilling.", 3, spillingCache.size());
+
+    spillingCache.checkin(busy);
+    assertTrue("Session is still checked out.", !spillingCache.isCheckedOut(busy));
+    spillingCache.sweep();
+    assertEquals("Session was not spilled after Checkin.", 2, store.getSpillCount());
+    assertEquals("Spilled Session was not rehydrated correctly.", busy, spillingCache.getObject(busy, OBJECT_KEY));
+    assertNotNull("Session that cannot be serialized was lost.", spillingCache.getObject(broken, OBJECT_KEY));
+    spillingCache.clear();
+    LOGGER.info(" ... test of off-heap Spilling of busy Sessions finished.");
+  }
+
+  /**
+   * Object failing like a Session modified while it is serialized.
+   */
+  private static final class Unserializable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private void writeObject(final java.io.ObjectOutputStream out) {
+      throw new IllegalStateException("Concurrent Modification");
+    }
+  }
 }
@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.xml.DOMConfigurator;
+
+import org.psikeds.common.idgen.impl.SessionIdGenerator;
+import org.psikeds.common.util.JSONHelper;
+import org.psikeds.common.util.StringPool;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.vo.Event;
+import org.psikeds.resolutionengine.datalayer.vo.Relation;
+import org.psikeds.resolutionengine.datalayer.vo.Rule;
+import org.psikeds.resolutionengine.interfaces.pojos.Knowledge;
+import org.psikeds.resolutionengine.interfaces.pojos.ResolutionRequest;
+import org.psikeds.resolutionengine.interfaces.pojos.ResolutionResponse;
+import org.psikeds.resolutionengine.interfaces.pojos.Variant;
+import org.psikeds.resolutionengine.interfaces.pojos.VariantChoice;
+import org.psikeds.resolutionengine.interfaces.pojos.VariantDecission;
+import org.psikeds.resolutionengine.resolver.Resolver;
+import org.psikeds.resolutionengine.resolver.impl.AutoCompletion;
+import org.psikeds.resolutionengine.resolver.impl.VariantDecissionEvaluator;
+import org.psikeds.resolutionengine.rules.RulesAndEventsHandler;
+import org.psikeds.resolutionengine.services.KnowledgeBaseMock;
+import org.psikeds.resolutionengine.services.ResolutionBusinessService;
+import org.psikeds.resolutionengine.transformer.impl.Vo2PojoTransformer;
+
+/**
+ * Testcase checking binary Encoding of Sessions.
+ * (@link org.psikeds.resolutionengine.cache.SessionCodec)
+ * 
+ * Note: Any Test called *Test.java is a Unit-Test executed offline by Surefire.
+ * Everything called *IT.java is an Integration-Test executed online by Failsafe.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class SessionCodecTest {
+
+  private static final String LOG4J = System.getProperty("org.psikeds.test.log4j.xml", "./src/main/resources/log4j.xml");
+  private static final Logger LOGGER = LoggerFactory.getLogger(SessionCodecTest.class);
+
+  private static final int NUM_COPIES = 1000;
+
+  private KnowledgeBase kb;
+  private SessionCodec codec;
+
+  @BeforeClass
+  public static void setUpBeforeClass() {
+    BasicConfigurator.configure();
+    DOMConfigurator.configure(LOG4J);
+  }
+
+  @Before
+  public void setUp() {
+    this.kb = new KnowledgeBaseMock();
+    this.codec = new SessionCodec(this.kb);
+  }
+
+  /**
+   * Check that Knowledge survives Encoding and Decoding unchanged.
+   */
+  @Test
+  public void testKnowledgeRoundTrip() throws Exception {
+    LOGGER.info("Starting test of binary Encoding of Knowledge ...");
+    final Knowledge knowledge = createKnowledge();
+    assertFalse("No Entities in Knowledge! Check Testdata!", knowledge.getEntities().isEmpty());
+
+    final byte[] data = this.codec.encode(knowledge);
+    final Knowledge copy = this.codec.decodeKnowledge(data);
+    assertNotNull("Decoded Knowledge is null.", copy);
+    assertNotSame("Copy is not a new Object.", knowledge, copy);
+    assertNotSame("Copy shares Entities with Original.", knowledge.getEntities().get(0), copy.getEntities().get(0));
+    assertEquals("Stable-Flag differs.", knowledge.isStable(), copy.isStable());
+    assertEquals("Number of Entities differs.", knowledge.getEntities().size(), copy.getEntities().size());
+    assertEquals("Number of Choices differs.", knowledge.getChoices().size(), copy.getChoices().size());
+    assertArrayEquals("Knowledge changed by Encoding.", data, this.codec.encode(copy));
+
+    final String json = JSONHelper.dump(knowledge);
+    LOGGER.info("Size of Knowledge: {} Bytes as JSON, {} Bytes encoded.", json.length(), data.length);
+    final Knowledge viaJson = JSONHelper.copy(knowledge, Knowledge.class);
+    assertArrayEquals("Copy via Codec differs from Copy via JSON.", this.codec.encode(viaJson), this.codec.encode(this.codec.copy(knowledge)));
+    LOGGER.info(" ... test of binary Encoding of Knowledge finished.");
+  }
+
+  /**
+   * Check that RAEH and whole Sessions survive Encoding and Decoding.
+   */
+  @Test
+  public void testSessionRoundTrip() throws Exception {
+    LOGGER.info("Starting test of binary Encoding of Sessions ...");
+    // mock has no events, rules or relations but creates them on demand
+    final List<Event> events = new ArrayList<Event>();
+    events.add(this.kb.getEvent("E1"));
+    events.add(this.kb.getEvent("E2"));
+    final List<Rule> rules = new ArrayList<Rule>();
+    rules.add(this.kb.getRule("R1"));
+    final List<Relation> relations = new ArrayList<Relation>();
+    relations.add(this.kb.getRelation("REL1"));
+    final RulesAndEventsHandler raeh = RulesAndEventsHandler.init(events, rules, relations);
+    raeh.setTriggered(events.get(0));
+    raeh.setObsolete(rules.get(0));
+    final RulesAndEventsHandler raehCopy = this.codec.decodeRulesAndEventsHandler(this.codec.encode(raeh));
+    assertArrayEquals("RAEH changed by Encoding.", raeh.getAllObjectIDs(), raehCopy.getAllObjectIDs());
+    assertTrue("Triggered Event lost.", raehCopy.isTriggered("E1"));
+    assertTrue("Relevant Event lost.", raehCopy.isRelevant("E2"));
+    assertTrue("Active Relation lost.", raehCopy.isActive("REL1"));
+
+    final CacheEntry entry = new CacheEntry();
+    entry.saveObject("Knowledge", createKnowledge());
+    entry.saveObject("RulesAndEvents", raeh);
+    entry.saveObject("Other", new ArrayList<String>());
+    final CacheEntry entryCopy = this.codec.decodeCacheEntry(this.codec.encode(entry));
+    assertEquals("Wrong number of Objects in Session.", entry.size(), entryCopy.size());
+    assertEquals("Wrong maximum number of Objects in Session.", entry.getMaxObjectsPerSession(), entryCopy.getMaxObjectsPerSession());
+    assertTrue("Knowledge not decoded.", entryCopy.getObject("Knowledge") instanceof Knowledge);
+    assertTrue("RAEH not decoded.", entryCopy.getObject("RulesAndEvents") instanceof RulesAndEventsHandler);
+    assertEquals("Serializable not decoded.", entry.getObject("Other"), entryCopy.getObject("Other"));
+    LOGGER.info(" ... test of binary Encoding of Sessions finished.");
+  }
+
+  /**
+   * Check that decoded Sessions are sharing the pooled Strings of the
+   * Knowledge-Base and that no Strings of a Session are added to the Pool.
+   */
+  @Test
+  public void testStringPool() throws Exception {
+    LOGGER.info("Starting test of pooled Strings ...");
+    final Knowledge knowledge = createKnowledge();
+    final Variant variant = knowledge.getEntities().get(0).getVariant();
+    final StringPool pool = new StringPool();
+    final String vid = pool.intern(new String(variant.getVariantID()));
+    final String label = pool.intern(new String(variant.getLabel()));
+    final int poolSize = pool.size();
+    this.codec.setStringPool(pool);
+
+    final byte[] data = this.codec.encode(knowledge);
+    final List<Knowledge> copies = new ArrayList<Knowledge>();
+    for (int i = 0; i < NUM_COPIES; i++) {
+      copies.add(this.codec.decodeKnowledge(data));
+    }
+    assertEquals("Strings of Sessions were added to the Pool.", poolSize, pool.size());
+    final Set<String> identities = Collections.newSetFromMap(new IdentityHashMap<String, Boolean>());
+    for (final Knowledge copy : copies) {
+      final Variant v = copy.getEntities().get(0).getVariant();
+      assertSame("Variant-ID is not pooled.", vid, v.getVariantID());
+      assertSame("Label is not pooled.", label, v.getLabel());
+      identities.add(v.getVariantID());
+      identities.add(v.getLabel());
+      identities.add(v.getDescription());
+    }
+    assertArrayEquals("Knowledge changed by Pooling.", data, this.codec.encode(copies.get(0)));
+    LOGGER.info("{} decoded Copies are holding {} distinct Instances of Variant-ID, Label and Description.", NUM_COPIES, identities.size());
+    LOGGER.info(" ... test of pooled Strings finished.");
+  }
+
+  // ----------------------------------------------------------------
+
+  private Knowledge createKnowledge() throws Exception {
+    final List<Resolver> resolvers = new ArrayList<Resolver>();
+    final Vo2PojoTransformer trans = new Vo2PojoTransformer();
+    resolvers.add(new VariantDecissionEvaluator());
+    resolvers.add(new AutoCompletion(this.kb, trans));
+    final ResolutionBusinessService srvc = new ResolutionBusinessService(this.kb, resolvers, new ResolutionCache(), trans, new SessionIdGenerator("MOCK"));
+    final ResolutionResponse ires = srvc.init();
+    final VariantChoice vc = (VariantChoice) ires.getChoices().get(0);
+    final ResolutionRequest req = new ResolutionRequest(ires.getSessionID(), new VariantDecission(vc.getPurpose(), vc.getVariants().get(0)));
+    return srvc.select(req).getKnowledge();
+  }
+}
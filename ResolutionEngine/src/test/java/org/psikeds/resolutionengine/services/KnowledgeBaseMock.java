@@ -21,6 +21,7 @@ import java.net.InetAddress;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -35,6 +36,7 @@ import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.xml.DOMConfigurator;
 
 import org.psikeds.common.util.JSONHelper;
+import org.psikeds.common.util.StringPool;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.util.FeatureValueHelper;
 import org.psikeds.resolutionengine.datalayer.vo.Alternatives;
@@ -47,6 +49,8 @@ import org.psikeds.resolutionengine.datalayer.vo.Event;
 import org.psikeds.resolutionengine.datalayer.vo.Events;
 import org.psikeds.resolutionengine.datalayer.vo.Feature;
 import org.psikeds.resolutionengine.datalayer.vo.FeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueList;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueRange;
 import org.psikeds.resolutionengine.datalayer.vo.FeatureValues;
 import org.psikeds.resolutionengine.datalayer.vo.Features;
 import org.psikeds.resolutionengine.datalayer.vo.FloatFeatureValue;
@@ -654,11 +658,16 @@ public class KnowledgeBaseMock implements KnowledgeBase {
     final FeatureValues values = new FeatureValues();
     final Variant v = (StringUtils.isEmpty(variantId) ? null : getVariant(variantId));
     if (v != null) {
-      for (final FeatureValue fv : v.getFeatureValues()) {
+      for (final FeatureValue fv : FeatureValueList.getDiscreteValues(v.getFeatureValues())) {
         if ((fv != null) && fv.getFeatureID().equals(featureId)) {
           values.addValue(fv);
         }
       }
+      for (final FeatureValueRange<? extends FeatureValue> range : FeatureValueList.getRanges(v.getFeatureValues())) {
+        if (range.getFeatureID().equals(featureId)) {
+          values.addValue(range);
+        }
+      }
     }
     return values;
   }
@@ -745,6 +754,60 @@ public class KnowledgeBaseMock implements KnowledgeBase {
     return false;
   }
 
+  // ----------------------------------------------------------------
+
+  /**
+   * @param variantId
+   * @return unmodifiable List of all features of this variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeaturesView(java.lang.String)
+   */
+  @Override
+  public List<Feature> getFeaturesView(final String variantId) {
+    return Collections.unmodifiableList(getFeatures(variantId).getFeature());
+  }
+
+  /**
+   * @param conceptID
+   * @return unmodifiable List of all values bundled in this concept
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValuesOfConceptView(java.lang.String)
+   */
+  @Override
+  public List<FeatureValue> getFeatureValuesOfConceptView(final String conceptID) {
+    return Collections.unmodifiableList(getFeatureValuesOfConcept(conceptID).getValue());
+  }
+
+  /**
+   * @param variantId
+   * @param featureId
+   * @return unmodifiable List of all values for this feature on this variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFeatureValuesView(java.lang.String,
+   *      java.lang.String)
+   */
+  @Override
+  public List<FeatureValue> getFeatureValuesView(final String variantId, final String featureId) {
+    return FeatureValueList.unmodifiableCopy(getFeatureValues(variantId, featureId).getValue());
+  }
+
+  /**
+   * @param purposeId
+   * @return unmodifiable List of all variants fulfilling this purpose
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getFulfillingVariantsView(java.lang.String)
+   */
+  @Override
+  public List<Variant> getFulfillingVariantsView(final String purposeId) {
+    return Collections.unmodifiableList(getFulfillingVariants(purposeId).getVariant());
+  }
+
+  /**
+   * @param variantId
+   * @return unmodifiable List of all purposes that constitute this variant
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getConstitutingPurposesView(java.lang.String)
+   */
+  @Override
+  public List<Purpose> getConstitutingPurposesView(final String variantId) {
+    return Collections.unmodifiableList(getConstitutingPurposes(variantId).getPurpose());
+  }
+
   /**
    * @return boolean
    * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#isValid()
@@ -754,6 +817,15 @@ public class KnowledgeBaseMock implements KnowledgeBase {
     return (getKnowledgeData() != null) && (getMetaData() != null);
   }
 
+  /**
+   * @return null, Strings of the Mock are not pooled
+   * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getStringPool()
+   */
+  @Override
+  public StringPool getStringPool() {
+    return null;
+  }
+
   /**
    * @return MetaData
    * @see org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase#getMetaData()
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.xml.DOMConfigurator;
+
+import org.psikeds.common.idgen.impl.SessionIdGenerator;
+import org.psikeds.resolutionengine.cache.CacheEntry;
+import org.psikeds.resolutionengine.cache.ResolutionCache;
+import org.psikeds.resolutionengine.cache.SessionCodec;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBaseFactory;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.impl.VersionedKnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.validator.ValidationException;
+import org.psikeds.resolutionengine.datalayer.vo.Event;
+import org.psikeds.resolutionengine.interfaces.pojos.ResolutionResponse;
+import org.psikeds.resolutionengine.resolver.Resolver;
+import org.psikeds.resolutionengine.resolver.impl.AutoCompletion;
+import org.psikeds.resolutionengine.rules.RulesAndEventsHandler;
+import org.psikeds.resolutionengine.transformer.Transformer;
+import org.psikeds.resolutionengine.transformer.impl.Vo2PojoTransformer;
+
+/**
+ * Unit-Tests for {@link VersionedKnowledgeBase} and the pinning of Sessions
+ * within {@link ResolutionBusinessService}.
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class KnowledgeBaseReloadTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(KnowledgeBaseReloadTest.class);
+  private static String LOG4J;
+
+  private MockFactory factory;
+  private VersionedKnowledgeBase kb;
+  private ResolutionCache cache;
+  private ResolutionBusinessService srvc;
+
+  @BeforeClass
+  public static void setUpBeforeClass() {
+    BasicConfigurator.configure();
+    LOG4J = System.getProperty("org.psikeds.test.log4j.xml", "./src/main/resources/log4j.xml");
+    DOMConfigurator.configure(LOG4J);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    this.factory = new MockFactory();
+    this.kb = new VersionedKnowledgeBase(this.factory, 2, VersionedKnowledgeBase.DEFAULT_RELOAD_INTERVAL, null);
+    this.kb.afterPropertiesSet();
+    final Transformer trans = new Vo2PojoTransformer();
+    final List<Resolver> resolvers = new ArrayList<Resolver>();
+    resolvers.add(new AutoCompletion(this.kb, trans));
+    this.cache = new ResolutionCache();
+    this.cache.setKnowledgeBase(this.kb);
+    this.srvc = new ResolutionBusinessService(this.kb, resolvers, this.cache, trans, new SessionIdGenerator("MOCK"));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    this.cache.clear();
+    this.kb.destroy();
+  }
+
+  /**
+   * Test method for {@link VersionedKnowledgeBase#pin(int)}.
+   * 
+   * Pinned Threads must keep their Version until it is released. Released
+   * Versions must not be replaced by another one.
+   */
+  @Test
+  public void testPinning() throws Exception {
+    LOGGER.info("Testing Pinning of Knowledge-Base-Versions ...");
+    assertEquals(1, this.kb.getVersion());
+    assertEquals(1, this.kb.pin());
+    final KnowledgeBase first = this.factory.last;
+    assertEquals(2, this.kb.reloadNow());
+    assertEquals("Pinned Version changed by Reload!", 1, this.kb.getPinnedVersion());
+    assertEquals(2, this.kb.getVersion());
+    assertEquals("Pinned Thread does not see its own Version!", first.getMetaData(), this.kb.getMetaData());
+    this.kb.unpin();
+    assertEquals(2, this.kb.getPinnedVersion());
+    assertEquals(3, this.kb.reloadNow());
+    try {
+      this.kb.pin(1);
+      fail("Released Version was replaced by another one!");
+    }
+    catch (final IllegalStateException isex) {
+      assertEquals(3, this.kb.getPinnedVersion());
+    }
+    assertEquals(2, this.kb.pin(2));
+    this.kb.unpin();
+    LOGGER.info("... Pinning OK.");
+  }
+
+  /**
+   * Test method for {@link VersionedKnowledgeBase#reloadNow()}.
+   * 
+   * An invalid new Knowledge-Base must not replace the current one.
+   */
+  @Test
+  public void testFailingReload() throws Exception {
+    LOGGER.info("Testing failing Reload of Knowledge-Base ...");
+    this.factory.failing = true;
+    try {
+      this.kb.reloadNow();
+      fail("Invalid Knowledge-Base was installed!");
+    }
+    catch (final ValidationException vex) {
+      assertEquals("Current Version was replaced!", 1, this.kb.getVersion());
+    }
+    LOGGER.info("... failing Reload OK.");
+  }
+
+  /**
+   * Test method for {@link ResolutionBusinessService}.
+   * 
+   * Sessions started before a Reload must stay on their Version,
+   * new Sessions must use the new one.
+   */
+  @Test
+  public void testSessionsSurviveReload() throws Exception {
+    LOGGER.info("Testing Sessions during Reload of Knowledge-Base ...");
+    final ResolutionResponse res1 = this.srvc.init();
+    assertFalse("Init-Response contains Error-Messages!", res1.hasErrors());
+    assertEquals(Integer.valueOf(1), getSessionVersion(res1));
+    this.kb.reloadNow();
+    final ResolutionResponse res2 = this.srvc.init();
+    assertFalse("Init-Response contains Error-Messages!", res2.hasErrors());
+    assertEquals(Integer.valueOf(2), getSessionVersion(res2));
+    final ResolutionResponse res3 = this.srvc.current(res1.getSessionID());
+    assertFalse("Current-Response contains Error-Messages!", res3.hasErrors());
+    assertEquals("Old Session moved to new Version!", Integer.valueOf(1), getSessionVersion(res3));
+    LOGGER.info("... Sessions OK.");
+  }
+
+  /**
+   * Test method for {@link VersionedKnowledgeBase#acquire(int)}.
+   * 
+   * Versions referenced by live Sessions must be retained beyond the
+   * Maximum and released with the last Session. Sessions of a Version that
+   * is not available anymore must be invalidated with an Error.
+   */
+  @Test
+  public void testVersionsReferencedBySessions() throws Exception {
+    LOGGER.info("Testing Versions referenced by Sessions ...");
+    final ResolutionResponse res1 = this.srvc.init();
+    assertFalse("Init-Response contains Error-Messages!", res1.hasErrors());
+    assertEquals(1, this.kb.getReferences(1));
+    this.kb.reloadNow();
+    this.kb.reloadNow();
+    assertTrue("Referenced Version was released!", this.kb.isAvailable(1));
+    final ResolutionResponse res2 = this.srvc.current(res1.getSessionID());
+    assertFalse("Current-Response contains Error-Messages!", res2.hasErrors());
+    assertEquals("Old Session moved to new Version!", Integer.valueOf(1), getSessionVersion(res2));
+    this.cache.removeSession(res1.getSessionID());
+    assertFalse("Unreferenced old Version was retained!", this.kb.isAvailable(1));
+    assertTrue("Newest Versions were released!", this.kb.isAvailable(2) && this.kb.isAvailable(3));
+
+    final ResolutionResponse res3 = this.srvc.init();
+    this.cache.saveObject(res3.getSessionID(), CacheEntry.KEY_KNOWLEDGE_BASE_VERSION, Integer.valueOf(1));
+    final ResolutionResponse res4 = this.srvc.current(res3.getSessionID());
+    assertTrue("Session of released Version was not rejected!", res4.hasErrors());
+    assertNull("Session of released Version was not invalidated!", this.cache.getSession(res3.getSessionID(), false));
+    LOGGER.info("... Versions referenced by Sessions OK.");
+  }
+
+  /**
+   * Test method for {@link SessionCodec#decodeCacheEntry(byte[])}.
+   * 
+   * Encoded Sessions must be decoded against the Version of the
+   * Knowledge-Base they were started with, not against the newest one.
+   */
+  @Test
+  public void testEncodedSessionsKeepVersion() throws Exception {
+    LOGGER.info("Testing encoded Sessions during Reload of Knowledge-Base ...");
+    final KnowledgeBase first = this.factory.last;
+    final ResolutionResponse res = this.srvc.init();
+    assertFalse("Init-Response contains Error-Messages!", res.hasErrors());
+    final String[][] ids = new String[RulesAndEventsHandler.NUMBER_OF_STACKS][0];
+    ids[0] = new String[] { MockFactory.MARKER_EVENT };
+    this.cache.saveObject(res.getSessionID(), "RulesAndEvents", RulesAndEventsHandler.init(this.kb, ids));
+    this.kb.reloadNow();
+    final SessionCodec codec = new SessionCodec(this.kb);
+    final CacheEntry decoded = codec.decodeCacheEntry(codec.encode(this.cache.getSession(res.getSessionID(), false)));
+    assertEquals(1, decoded.getKnowledgeBaseVersion());
+    final RulesAndEventsHandler raeh = (RulesAndEventsHandler) decoded.getObject("RulesAndEvents");
+    assertNotNull("RAEH was not decoded!", raeh);
+    assertEquals(1, raeh.getRelevantEvents().size());
+    assertSame("Event decoded against wrong Version!", first.getEvent(MockFactory.MARKER_EVENT), raeh.getRelevantEvents().get(0));
+    LOGGER.info("... encoded Sessions OK.");
+  }
+
+  private Integer getSessionVersion(final ResolutionResponse res) {
+    assertNotNull("No Response!", res);
+    return (Integer) this.cache.getObject(res.getSessionID(), CacheEntry.KEY_KNOWLEDGE_BASE_VERSION);
+  }
+
+  // ----------------------------------------------------------------
+
+  private static class MockFactory implements KnowledgeBaseFactory {
+
+    private static final String MARKER_EVENT = "MarkerEvent";
+
+    private KnowledgeBase last;
+    private boolean failing;
+
+    @Override
+    public KnowledgeBase create() throws ValidationException {
+      if (this.failing) {
+        throw new ValidationException("Mock-Factory is failing.");
+      }
+      // every Version has its own Instance of the Marker-Event
+      this.last = new KnowledgeBaseMock() {
+        private final Event marker = new Event(MARKER_EVENT, null);
+
+        @Override
+        public Event getEvent(final String eventId) {
+          return (MARKER_EVENT.equals(eventId) ? this.marker : super.getEvent(eventId));
+        }
+      };
+      return this.last;
+    }
+  }
+}
@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * psiKeds :- ps induced knowledge entity delivery system
+ *
+ * Copyright (c) 2013, 2014 Karsten Reincke, Marco Juliano, Deutsche Telekom AG
+ *
+ * This file is free software: you can redistribute
+ * it and/or modify it under the terms of the
+ * [x] GNU Affero General Public License
+ * [ ] GNU General Public License
+ * [ ] GNU Lesser General Public License
+ * [ ] Creatice Commons ShareAlike License
+ *
+ * For details see file LICENSING in the top project directory
+ *******************************************************************************/
+package org.psikeds.resolutionengine.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.xml.DOMConfigurator;
+
+import org.psikeds.resolutionengine.datalayer.knowledgebase.impl.IndexedKnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.knowledgebase.impl.KnowledgeBaseSnapshot;
+import org.psikeds.resolutionengine.datalayer.vo.Concept;
+import org.psikeds.resolutionengine.datalayer.vo.Concepts;
+import org.psikeds.resolutionengine.datalayer.vo.Feature;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.Purpose;
+import org.psikeds.resolutionengine.datalayer.vo.Variant;
+import org.psikeds.resolutionengine.datalayer.vo.Variants;
+
+/**
+ * Testcase checking binary Snapshots of a Knowledge-Base.
+ * (@link org.psikeds.resolutionengine.datalayer.knowledgebase.impl.KnowledgeBaseSnapshot)
+ * 
+ * @author marco@juliano.de
+ * 
+ */
+public class KnowledgeBaseSnapshotTest {
+
+  private static final String LOG4J = System.getProperty("org.psikeds.test.log4j.xml", "./src/main/resources/log4j.xml");
+  private static final Logger LOGGER = LoggerFactory.getLogger(KnowledgeBaseSnapshotTest.class);
+
+  private static final long CHECKSUM = 4711L;
+
+  private IndexedKnowledgeBase kb;
+  private File snapshot;
+
+  @BeforeClass
+  public static void setUpBeforeClass() {
+    BasicConfigurator.configure();
+    DOMConfigurator.configure(LOG4J);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    this.kb = new IndexedKnowledgeBase(new KnowledgeBaseMock());
+    this.snapshot = File.createTempFile("psikeds", ".snapshot");
+    KnowledgeBaseSnapshot.write(this.kb, CHECKSUM, this.snapshot);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    this.snapshot.delete();
+  }
+
+  /**
+   * Test method for {@link KnowledgeBaseSnapshot#read(File, long)}.
+   * 
+   * Snapshot must deliver exactly the same Knowledge-Base.
+   */
+  @Test
+  public void testRoundTrip() throws Exception {
+    LOGGER.info("Testing Snapshot of Knowledge-Base ...");
+    final IndexedKnowledgeBase copy = KnowledgeBaseSnapshot.read(this.snapshot, CHECKSUM);
+    assertNotNull("Snapshot not readable!", copy);
+    assertEquals(this.kb.isValid(), copy.isValid());
+    assertEquals(this.kb.getMetaData().getName(), copy.getMetaData().getName());
+    assertEquals(this.kb.getMetaData().getLastmodified(), copy.getMetaData().getLastmodified());
+    assertEquals(this.kb.getPurposes().getPurpose(), copy.getPurposes().getPurpose());
+    assertEquals(this.kb.getVariants().getVariant(), copy.getVariants().getVariant());
+    assertEquals(this.kb.getRootPurposes().getPurpose(), copy.getRootPurposes().getPurpose());
+    assertNotNull("Pool of Strings not restored!", copy.getStringPool());
+    assertTrue("Pool of Strings is empty!", copy.getStringPool().size() > 0);
+    assertEquals(this.kb.getStringPool().size(), copy.getStringPool().size());
+    for (final Purpose p : this.kb.getPurposes().getPurpose()) {
+      final String pid = p.getPurposeID();
+      assertEquals(this.kb.getFulfillingVariantsView(pid), copy.getFulfillingVariantsView(pid));
+      for (final Variant v : this.kb.getVariants().getVariant()) {
+        final String vid = v.getVariantID();
+        assertEquals(this.kb.isFulfilledBy(pid, vid), copy.isFulfilledBy(pid, vid));
+        assertEquals(this.kb.isConstitutedBy(vid, pid), copy.isConstitutedBy(vid, pid));
+      }
+    }
+    for (final Variant v : this.kb.getVariants().getVariant()) {
+      final String vid = v.getVariantID();
+      assertEquals(this.kb.getFeaturesView(vid), copy.getFeaturesView(vid));
+      assertEquals(v.getLabel(), copy.getVariant(vid).getLabel());
+      assertEquals(this.kb.getAttachedEvents(vid).getEvent(), copy.getAttachedEvents(vid).getEvent());
+      assertEquals(this.kb.getAttachedRules(vid).getRule(), copy.getAttachedRules(vid).getRule());
+      assertEquals(this.kb.getAttachedRelations(vid).getRelation(), copy.getAttachedRelations(vid).getRelation());
+    }
+    LOGGER.info("... Snapshot OK.");
+  }
+
+  /**
+   * Test method for {@link IndexedKnowledgeBase#isFulfilledBy(String, String)},
+   * {@link IndexedKnowledgeBase#hasFeature(String, String)} and the other
+   * Predicates answered by BitSets.
+   * 
+   * Predicates must give the same Answers as scanning the Lists of the
+   * underlying Knowledge-Base.
+   */
+  @Test
+  public void testMembershipPredicates() throws Exception {
+    LOGGER.info("Testing Membership-Predicates of Knowledge-Base ...");
+    final KnowledgeBaseMock lists = new KnowledgeBaseMock();
+    int checked = 0;
+    for (final Variant v : lists.getVariants().getVariant()) {
+      final String vid = v.getVariantID();
+      for (final Purpose p : lists.getPurposes().getPurpose()) {
+        final String pid = p.getPurposeID();
+        assertEquals(pid + " / " + vid, lists.isFulfilledBy(pid, vid), this.kb.isFulfilledBy(pid, vid));
+        assertEquals(vid + " / " + pid, lists.isConstitutedBy(vid, pid), this.kb.isConstitutedBy(vid, pid));
+        checked += 2;
+      }
+      for (final Feature f : lists.getFeatures().getFeature()) {
+        final String fid = f.getFeatureID();
+        assertEquals(vid + " / " + fid, lists.hasFeature(vid, fid), this.kb.hasFeature(vid, fid));
+        checked++;
+      }
+      for (final Concept c : lists.getConcepts().getConcept()) {
+        final String cid = c.getConceptID();
+        assertEquals(vid + " / " + cid, lists.hasConcept(vid, cid), this.kb.hasConcept(vid, cid));
+        checked++;
+      }
+    }
+    for (final Concept c : lists.getConcepts().getConcept()) {
+      final String cid = c.getConceptID();
+      for (final FeatureValue fv : lists.getFeatureValues().getValue()) {
+        final String fvid = fv.getFeatureValueID();
+        assertEquals(fvid + " / " + cid, lists.isIncludedIn(fvid, cid), this.kb.isIncludedIn(fvid, cid));
+        checked++;
+      }
+    }
+    assertTrue("No Predicates checked! Check Testdata!", checked > 0);
+    assertFalse("Unknown Variant fulfills a Purpose.", this.kb.isFulfilledBy("UNKNOWN", "UNKNOWN"));
+    LOGGER.info("... {} Membership-Predicates OK.", checked);
+  }
+
+  /**
+   * Test method for {@link IndexedKnowledgeBase#getFeaturesView(String)} and
+   * the other read-only Views.
+   * 
+   * Views must contain the same Objects as the Lists of the underlying
+   * Knowledge-Base, must be cached instead of created again with every Call
+   * and must not allow modifying the Knowledge-Base.
+   */
+  @Test
+  public void testReadOnlyViews() throws Exception {
+    LOGGER.info("Testing read-only Views of Knowledge-Base ...");
+    final KnowledgeBaseMock lists = new KnowledgeBaseMock();
+    for (final Purpose p : lists.getPurposes().getPurpose()) {
+      final String pid = p.getPurposeID();
+      assertEquals(lists.getFulfillingVariants(pid).getVariant(), this.kb.getFulfillingVariantsView(pid));
+      assertSame(this.kb.getFulfillingVariantsView(pid), this.kb.getFulfillingVariantsView(pid));
+    }
+    for (final Variant v : lists.getVariants().getVariant()) {
+      final String vid = v.getVariantID();
+      assertEquals(lists.getConstitutingPurposes(vid).getPurpose(), this.kb.getConstitutingPurposesView(vid));
+      assertSame(this.kb.getConstitutingPurposesView(vid), this.kb.getConstitutingPurposesView(vid));
+      final List<Feature> features = this.kb.getFeaturesView(vid);
+      assertEquals(lists.getFeatures(vid).getFeature(), features);
+      assertSame(features, this.kb.getFeaturesView(vid));
+      for (final Feature f : features) {
+        final String fid = f.getFeatureID();
+        assertEquals(lists.getFeatureValues(vid, fid).getValue(), this.kb.getFeatureValuesView(vid, fid));
+        assertSame(this.kb.getFeatureValuesView(vid, fid), this.kb.getFeatureValuesView(vid, fid));
+      }
+      if (!features.isEmpty()) {
+        try {
+          features.clear();
+          fail("View of Features is modifiable!");
+        }
+        catch (final UnsupportedOperationException uoex) {
+          // expected
+        }
+      }
+    }
+    for (final Concept c : lists.getConcepts().getConcept()) {
+      final String cid = c.getConceptID();
+      assertEquals(lists.getFeatureValuesOfConcept(cid).getValue(), this.kb.getFeatureValuesOfConceptView(cid));
+      assertSame(this.kb.getFeatureValuesOfConceptView(cid), this.kb.getFeatureValuesOfConceptView(cid));
+    }
+    LOGGER.info("... read-only Views OK.");
+  }
+
+  /**
+   * Test method for {@link IndexedKnowledgeBase#getVariants()},
+   * {@link IndexedKnowledgeBase#getAttachedConcepts(String)} and
+   * {@link IndexedKnowledgeBase#hasConcept(String, String)}.
+   * 
+   * Containers handed out are modifiable Copies, so modifying them must not
+   * change the Knowledge-Base. Concepts attached to a Variant are found even
+   * if they are not listed in all Concepts.
+   */
+  @Test
+  public void testCopiedContainers() throws Exception {
+    LOGGER.info("Testing copied Containers of Knowledge-Base ...");
+    final Variant first = this.kb.getVariants().getVariant().get(0);
+    final String vid = first.getVariantID();
+    final int numVariants = this.kb.getVariants().getVariant().size();
+    final String pid = this.kb.getPurposes().getPurpose().get(0).getPurposeID();
+    final List<String> fulfilling = new ArrayList<String>(this.kb.getFulfills(pid).getVariantID());
+    final Variants copy = this.kb.getVariants();
+    assertTrue(copy.addVariant(first));
+    assertEquals(numVariants + 1, copy.getVariant().size());
+    this.kb.getFulfills(pid).getVariantID().clear();
+    this.kb.getVariants().setVariant(null);
+    this.kb.getAttachedConcepts(vid).setConcept(null);
+    assertEquals(numVariants, this.kb.getVariants().getVariant().size());
+    assertNotNull(this.kb.getAttachedConcepts(vid).getConcept());
+    assertEquals(fulfilling, this.kb.getFulfills(pid).getVariantID());
+
+    final IndexedKnowledgeBase ikb = new IndexedKnowledgeBase(new KnowledgeBaseMock() {
+      @Override
+      public Concepts getAttachedConcepts(final String variantId) {
+        final Concepts cons = new Concepts(new ArrayList<Concept>(super.getAttachedConcepts(variantId).getConcept()));
+        if (vid.equals(variantId)) {
+          cons.addConcept(new Concept("UnlistedConcept"));
+        }
+        return cons;
+      }
+    });
+    assertTrue(ikb.hasConcept(vid, "UnlistedConcept"));
+    for (final Variant v : ikb.getVariants().getVariant()) {
+      if (!vid.equals(v.getVariantID())) {
+        assertFalse(ikb.hasConcept(v.getVariantID(), "UnlistedConcept"));
+      }
+    }
+    LOGGER.info("... copied Containers OK.");
+  }
+
+  /**
+   * Test method for {@link KnowledgeBaseSnapshot#read(File, long)}.
+   * 
+   * Stale or corrupt Snapshots must not be used.
+   */
+  @Test
+  public void testStaleAndCorruptSnapshots() throws Exception {
+    LOGGER.info("Testing stale and corrupt Snapshots ...");
+    assertNull("Stale Snapshot was used!", KnowledgeBaseSnapshot.read(this.snapshot, CHECKSUM + 1));
+    final RandomAccessFile raf = new RandomAccessFile(this.snapshot, "rw");
+    try {
+      raf.seek(raf.length() - 1);
+      final int last = raf.read();
+      raf.seek(raf.length() - 1);
+      raf.write(last ^ 0xFF);
+    }
+    finally {
+      raf.close();
+    }
+    assertNull("Corrupt Snapshot was used!", KnowledgeBaseSnapshot.read(this.snapshot, CHECKSUM));
+    assertNull("Missing Snapshot was used!", KnowledgeBaseSnapshot.read(new File(this.snapshot.getPath() + ".missing"), CHECKSUM));
+    LOGGER.info("... stale and corrupt Snapshots OK.");
+  }
+}
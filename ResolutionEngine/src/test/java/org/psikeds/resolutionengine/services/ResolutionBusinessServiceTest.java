@@ -14,13 +14,17 @@
  *******************************************************************************/
 package org.psikeds.resolutionengine.services;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.After;
@@ -36,7 +40,21 @@ import org.apache.log4j.xml.DOMConfigurator;
 
 import org.psikeds.common.idgen.impl.SessionIdGenerator;
 import org.psikeds.resolutionengine.cache.ResolutionCache;
+import org.psikeds.resolutionengine.cache.SessionCodec;
 import org.psikeds.resolutionengine.datalayer.knowledgebase.KnowledgeBase;
+import org.psikeds.resolutionengine.datalayer.vo.KnowledgeData;
+import org.psikeds.resolutionengine.datalayer.vo.Event;
+import org.psikeds.resolutionengine.datalayer.vo.Events;
+import org.psikeds.resolutionengine.datalayer.vo.Feature;
+import org.psikeds.resolutionengine.datalayer.vo.Features;
+import org.psikeds.resolutionengine.datalayer.vo.FeatureValueList;
+import org.psikeds.resolutionengine.datalayer.vo.IntegerFeatureValue;
+import org.psikeds.resolutionengine.datalayer.vo.IntegerFeatureValueRange;
+import org.psikeds.resolutionengine.datalayer.vo.Relation;
+import org.psikeds.resolutionengine.datalayer.vo.RelationOperator;
+import org.psikeds.resolutionengine.datalayer.vo.RelationParameter;
+import org.psikeds.resolutionengine.datalayer.vo.Rule;
+import org.psikeds.resolutionengine.datalayer.vo.Rules;
 import org.psikeds.resolutionengine.interfaces.pojos.Choice;
 import org.psikeds.resolutionengine.interfaces.pojos.Choices;
 import org.psikeds.resolutionengine.interfaces.pojos.Concept;
@@ -45,10 +63,14 @@ import org.psikeds.resolutionengine.interfaces.pojos.ConceptDecission;
 import org.psikeds.resolutionengine.interfaces.pojos.Concepts;
 import org.psikeds.resolutionengine.interfaces.pojos.Decission;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureChoice;
+import org.psikeds.resolutionengine.interfaces.pojos.FeatureChoices;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureDecission;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureValue;
 import org.psikeds.resolutionengine.interfaces.pojos.FeatureValues;
 import org.psikeds.resolutionengine.interfaces.pojos.Knowledge;
+import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntities;
+import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeEntity;
+import org.psikeds.resolutionengine.interfaces.pojos.KnowledgeIndex;
 import org.psikeds.resolutionengine.interfaces.pojos.Purpose;
 import org.psikeds.resolutionengine.interfaces.pojos.ResolutionRequest;
 import org.psikeds.resolutionengine.interfaces.pojos.ResolutionResponse;
@@ -57,7 +79,10 @@ import org.psikeds.resolutionengine.interfaces.pojos.VariantChoice;
 import org.psikeds.resolutionengine.interfaces.pojos.VariantDecission;
 import org.psikeds.resolutionengine.interfaces.pojos.Variants;
 import org.psikeds.resolutionengine.interfaces.services.ResolutionService;
+import org.psikeds.resolutionengine.resolver.ChangeTracker;
+import org.psikeds.resolutionengine.resolver.ContextTrie;
 import org.psikeds.resolutionengine.resolver.Resolver;
+import org.psikeds.resolutionengine.resolver.SessionState;
 import org.psikeds.resolutionengine.resolver.impl.AutoCompletion;
 import org.psikeds.resolutionengine.resolver.impl.ConceptDecissionEvaluator;
 import org.psikeds.resolutionengine.resolver.impl.EventEvaluator;
@@ -66,8 +91,11 @@ import org.psikeds.resolutionengine.resolver.impl.ObsoleteEntitiesRemover;
 import org.psikeds.resolutionengine.resolver.impl.RelationEvaluator;
 import org.psikeds.resolutionengine.resolver.impl.RulesEvaluator;
 import org.psikeds.resolutionengine.resolver.impl.VariantDecissionEvaluator;
+import org.psikeds.resolutionengine.rules.RuleNetwork;
+import org.psikeds.resolutionengine.rules.RulesAndEventsHandler;
 import org.psikeds.resolutionengine.transformer.Transformer;
 import org.psikeds.resolutionengine.transformer.impl.Vo2PojoTransformer;
+import org.psikeds.resolutionengine.util.KnowledgeHelper;
 
 /**
  * Unit-Tests for {@link org.psikeds.resolutionengine.services.ResolutionBusinessService} and
@@ -181,10 +209,8 @@ public class ResolutionBusinessServiceTest {
           assertFalse("No Feature in Choice!", StringUtils.isEmpty(fid));
           final String vid = fc.getParentVariantID();
           assertFalse("No Parent-Variant in Choice!", StringUtils.isEmpty(vid));
-          final FeatureValues fvs = fc.getPossibleValues();
-          assertNotNull("No possible Values in Choice!", fvs);
-          assertFalse("No possible Values in Choice!", fvs.isEmpty());
-          final FeatureValue val = fvs.get(0);
+          assertTrue("No possible Values in Choice!", fc.getNumberOfPossibleValues() > 0);
+          final FeatureValue val = fc.getPossibleValue(0);
           assertNotNull("First Value of Choice is null!", val);
           final String fvid = val.getFeatureValueID();
           assertFalse("ID of first Feature-Value in Choice is empty!", StringUtils.isEmpty(fvid));
@@ -253,6 +279,30 @@ public class ResolutionBusinessServiceTest {
       final Knowledge k3 = cres.getKnowledge();
       assertNotNull("No Knowledge in Current-Response!", k3);
 
+      LOGGER.info("Predicting Resolution for existing SessionID ...");
+      final SessionCodec codec = new SessionCodec(this.kb);
+      final byte[] before = codec.encode(k3);
+      Decission prediction = null;
+      for (final Choice c : cres.getChoices()) {
+        if (c instanceof VariantChoice) {
+          final VariantChoice vc = (VariantChoice) c;
+          prediction = new VariantDecission(vc.getPurpose(), vc.getVariants().get(0));
+        }
+        else if (c instanceof FeatureChoice) {
+          final FeatureChoice fc = (FeatureChoice) c;
+          prediction = new FeatureDecission(fc.getParentVariantID(), fc.getFeatureID(), fc.getPossibleValue(0).getFeatureValueID());
+        }
+      }
+      assertNotNull("No Prediction possible!", prediction);
+      for (int i = 0; i < 2; i++) {
+        final ResolutionResponse pres = this.srvc.predict(new ResolutionRequest(sessionID1, prediction));
+        assertNotNull("No Predict-Response!", pres);
+        assertFalse("Prediction failed! Predict-Response contains Error-Messages!", pres.hasErrors());
+        assertFalse("Prediction did not use a separate Session!", sessionID1.equals(pres.getSessionID()));
+      }
+      final ResolutionResponse cres2 = this.srvc.current(sessionID1);
+      assertArrayEquals("Prediction modified Knowledge of existing Session!", before, codec.encode(cres2.getKnowledge()));
+
       // QQQ additional tests
 
       LOGGER.info("... done. Resolution-Business-Service worked as expected.");
@@ -262,4 +312,341 @@ public class ResolutionBusinessServiceTest {
       throw ex;
     }
   }
+
+  /**
+   * Test method for {@link org.psikeds.resolutionengine.resolver.ChangeTracker}.
+   * 
+   * The Index of Nexus-Entities must be the same as walking the Knowledge and the
+   * Digest of Entities must only change if their Content changes.
+   * 
+   */
+  @Test
+  public void testChangeTracker() throws Exception {
+    LOGGER.info("Testing Change-Tracking of Knowledge ...");
+    final ResolutionResponse ires = this.srvc.init();
+    final VariantChoice vc = (VariantChoice) ires.getChoices().get(0);
+    final ResolutionResponse sres = this.srvc.select(new ResolutionRequest(ires.getSessionID(), new VariantDecission(vc.getPurpose(), vc.getVariants().get(0))));
+    assertFalse("Resolution failed! Select-Response contains Error-Messages!", sres.hasErrors());
+    final Knowledge knowledge = sres.getKnowledge();
+    final KnowledgeEntity ke = knowledge.getEntities().get(0);
+    final Rule rule = new Rule();
+    rule.setVariantID(ke.getVariant().getVariantID());
+
+    final ChangeTracker tracker = new ChangeTracker();
+    final KnowledgeEntities nexus = KnowledgeHelper.findRoot(rule, knowledge);
+    final long digest = tracker.digest(nexus);
+    final Knowledge copy = new SessionCodec(this.kb).copy(knowledge);
+    final KnowledgeEntities copied = KnowledgeHelper.findRoot(rule, copy);
+    assertEquals("Digest of unchanged Copy differs.", digest, tracker.digest(copied));
+    assertFalse("Unknown Evaluation is unchanged.", tracker.isUnchanged(ChangeTracker.SCOPE_RULES, "R1", nexus));
+    tracker.remember(ChangeTracker.SCOPE_RULES, "R1", nexus);
+    assertTrue("Remembered Evaluation is not unchanged.", tracker.isUnchanged(ChangeTracker.SCOPE_RULES, "R1", nexus));
+    assertFalse("Scopes are not separated.", tracker.isUnchanged(ChangeTracker.SCOPE_EVENTS, "R1", nexus));
+    assertFalse("Evaluation of other Entities with equal Digest is unchanged.", tracker.isUnchanged(ChangeTracker.SCOPE_RULES, "R1", copied));
+
+    tracker.remember(ChangeTracker.SCOPE_RULES, "R1", copied);
+    copy.getEntities().get(0).setQuantity(ke.getQuantity() + 1);
+    tracker.invalidate();
+    final long changed = tracker.digest(copied);
+    assertFalse("Digest of modified Copy is unchanged.", digest == changed);
+    assertFalse("Evaluation of modified Nexus is unchanged.", tracker.isUnchanged(ChangeTracker.SCOPE_RULES, "R1", copied));
+    LOGGER.info("... done. Change-Tracking of Knowledge worked as expected.");
+  }
+
+  /**
+   * Test method for {@link org.psikeds.resolutionengine.interfaces.pojos.KnowledgeIndex}.
+   * 
+   * The Index must find the same Entities in the same Order as walking the Tree, also
+   * after new Entities were added. Removing Entities must invalidate the Index.
+   * 
+   */
+  @Test
+  public void testKnowledgeIndex() throws Exception {
+    LOGGER.info("Testing Index of Knowledge ...");
+    final ResolutionResponse ires = this.srvc.init();
+    final VariantChoice vc = (VariantChoice) ires.getChoices().get(0);
+    final ResolutionResponse sres = this.srvc.select(new ResolutionRequest(ires.getSessionID(), new VariantDecission(vc.getPurpose(), vc.getVariants().get(0))));
+    assertFalse("Resolution failed! Select-Response contains Error-Messages!", sres.hasErrors());
+    final Knowledge knowledge = sres.getKnowledge();
+    final KnowledgeEntity ke = knowledge.getEntities().get(0);
+    final KnowledgeIndex index = knowledge.getIndex();
+    checkIndex(knowledge, ke.getVariant().getVariantID());
+    assertTrue("Unknown Variant is indexed.", index.getEntities("UNKNOWN").isEmpty());
+
+    // add a nested Entity with the same Variant and a Sibling after it
+    final KnowledgeEntity child = new KnowledgeEntity(ke.getPurpose(), ke.getVariant());
+    final KnowledgeEntity grandchild = new KnowledgeEntity(ke.getPurpose(), ke.getVariant());
+    child.addChild(grandchild);
+    ke.addChild(child);
+    knowledge.addKnowledgeEntity(new KnowledgeEntity(ke.getPurpose(), ke.getVariant()));
+    assertSame("Index was rebuilt instead of updated.", index, knowledge.getIndex());
+    assertSame("Wrong Parent of new Entity.", ke, index.getParent(child));
+    assertSame("Wrong Parent of nested Entity.", child, index.getParent(grandchild));
+    checkIndex(knowledge, ke.getVariant().getVariantID());
+
+    ke.getChildren().remove(child);
+    assertFalse("Index still valid after Removal.", index.isValid());
+    assertFalse("Removed Entity still indexed.", knowledge.getIndex().contains(child));
+    checkIndex(knowledge, ke.getVariant().getVariantID());
+    LOGGER.info("... done. Index of Knowledge worked as expected.");
+  }
+
+  /**
+   * Test method for {@link org.psikeds.resolutionengine.resolver.ContextTrie}.
+   * 
+   * Events with the same Nexus and Context must share one Node of the Trie.
+   * 
+   */
+  @Test
+  public void testContextTrie() throws Exception {
+    LOGGER.info("Testing Trie of Event-Contexts ...");
+    final Events events = new Events();
+    events.addEvent(new Event("E1", "E1", "E1", "V1", Arrays.asList("V1", "P1", "V2"), "F1", Event.TRIGGER_TYPE_FEATURE_VALUE));
+    events.addEvent(new Event("E2", "E2", "E2", "V1", Arrays.asList("V1", "P1", "V2"), "C1", Event.TRIGGER_TYPE_CONCEPT));
+    events.addEvent(new Event("E3", "E3", "E3", "V1", Arrays.asList("V1", "P1", "V3"), "F2", Event.TRIGGER_TYPE_FEATURE_VALUE));
+    events.addEvent(new Event("E4", "E4", "E4", "V2", Arrays.asList("V2"), "F3", Event.TRIGGER_TYPE_FEATURE_VALUE));
+    final ContextTrie trie = new ContextTrie(events);
+    assertEquals("Wrong Number of distinct Contexts.", 3, trie.getContextCount());
+    assertEquals("Prefixes are not shared.", 7, trie.getNodeCount());
+
+    final ContextTrie.Node n1 = trie.getNode(events.getEvent().get(0));
+    final ContextTrie.Node n3 = trie.getNode(events.getEvent().get(2));
+    assertSame("Equal Context is not sharing Node.", n1, trie.getNode(events.getEvent().get(1)));
+    assertSame("Common Prefix is not sharing Node.", n1.getParent(), n3.getParent());
+    assertEquals("Wrong Nexus of Node.", "V1", n1.getNexus());
+    assertEquals("Wrong Depth of Node.", 3, n1.getDepth());
+    assertArrayEquals("Wrong Context of Node.", new String[] { "V1", "P1", "V2" }, n1.getPath());
+    assertFalse("Prefix is a Context.", n1.getParent().isContext());
+
+    final ContextTrie.Node added = trie.getNode("V1", Arrays.asList("V1", "P1", "V2", "P2"));
+    assertSame("Wrong Parent of new Node.", n1, added.getParent());
+    assertEquals("New Context not counted.", 4, trie.getContextCount());
+    LOGGER.info("... done. Trie of Event-Contexts worked as expected.");
+  }
+
+  /**
+   * Test method for {@link org.psikeds.resolutionengine.rules.RuleNetwork}.
+   * 
+   * Changes of Events must be journaled and propagated to all dependent Rules.
+   * 
+   */
+  @Test
+  public void testRuleNetwork() throws Exception {
+    LOGGER.info("Testing Network of Rules ...");
+    final List<Event> events = new ArrayList<Event>();
+    for (final String eid : new String[] { "E1", "E2", "E3" }) {
+      events.add(new Event(eid, eid, eid, "V1", Arrays.asList("V1"), "F1", Event.TRIGGER_TYPE_FEATURE_VALUE));
+    }
+    final Rules rules = new Rules();
+    final Rule r1 = new Rule("R1", "R1", "R1", "V1", Arrays.asList("E1", "E2"), "E3");
+    final Rule r2 = new Rule("R2", "R2", "R2", "V1", "E3", "E1");
+    rules.addRule(r1);
+    rules.addRule(r2);
+    final RuleNetwork network = new RuleNetwork(rules);
+    assertEquals("Wrong Number of Rules.", 2, network.size());
+    assertTrue("Network not compiled from Rules.", network.isCompiledFrom(rules));
+    assertTrue("Network not compiled from wrapped Rules.", network.isCompiledFrom(new Rules(rules.getRule())));
+    assertFalse("Network compiled from other Rules.", network.isCompiledFrom(new Rules(new ArrayList<Rule>(rules.getRule()))));
+    assertTrue("Rule not contained in Network.", network.contains(r1));
+    assertFalse("Foreign Rule contained in Network.", network.contains(new Rule("R1", "V1")));
+    assertEquals("Wrong Rules by Premise.", Arrays.asList(r1), network.getRulesByPremise("E2"));
+    assertEquals("Wrong Rules by Conclusion.", Arrays.asList(r2), network.getRulesByConclusion("E1"));
+    assertTrue("Unknown Event has Rules.", network.getRulesByPremise("E4").isEmpty());
+
+    final RulesAndEventsHandler raeh = RulesAndEventsHandler.init(events, rules.getRule(), new ArrayList<Relation>());
+    assertTrue("Journal not empty.", raeh.drainChangedEvents().isEmpty());
+    raeh.setTriggered(events.get(0));
+    raeh.setObsolete(events.get(0)); // not relevant any more
+    raeh.setObsolete(events.get(2));
+    assertEquals("Wrong Journal of changed Events.", Arrays.asList("E1", "E3"), raeh.drainChangedEvents());
+    assertTrue("Journal not cleared.", raeh.drainChangedEvents().isEmpty());
+    assertTrue("Journal shared with Copy.", raeh.copy().drainChangedEvents().isEmpty());
+
+    final ChangeTracker tracker = new ChangeTracker();
+    assertFalse("Unknown Rule is remembered.", tracker.isRemembered(ChangeTracker.SCOPE_RULES, "R1"));
+    tracker.remember(ChangeTracker.SCOPE_RULES, "R1");
+    assertTrue("Kept Rule is not remembered.", tracker.isRemembered(ChangeTracker.SCOPE_RULES, "R1"));
+    tracker.forget(ChangeTracker.SCOPE_RULES, "R1");
+    assertFalse("Woken Rule is still remembered.", tracker.isRemembered(ChangeTracker.SCOPE_RULES, "R1"));
+    LOGGER.info("... done. Network of Rules worked as expected.");
+  }
+
+  /**
+   * Test method for {@link org.psikeds.resolutionengine.resolver.impl.RelationEvaluator}.
+   * 
+   * A Chain of dependent Relations must settle within one single Pass, also
+   * if the dependent Relations are skipped as unchanged by the ChangeTracker.
+   * Another Pass is only required if an Event depends on the narrowed Values.
+   * 
+   */
+  @Test
+  public void testRelationChain() throws Exception {
+    LOGGER.info("Testing Propagation of Relations ...");
+    final Features features = new Features();
+    final org.psikeds.resolutionengine.datalayer.vo.FeatureValues values = new org.psikeds.resolutionengine.datalayer.vo.FeatureValues();
+    final FeatureChoices choices = new FeatureChoices();
+    for (final String fid : new String[] { "F1", "F2", "F3" }) {
+      final Feature f = new Feature(fid, fid, fid, Feature.VALUE_TYPE_INTEGER, null, null);
+      final FeatureValues possible = new FeatureValues();
+      for (int i = 1; i <= 5; i++) {
+        final String fvid = fid + "-" + i;
+        final IntegerFeatureValue fv = new IntegerFeatureValue(fid, fvid, i);
+        f.addValue(fv);
+        values.addValue(fv);
+        possible.add(new FeatureValue(fid, fvid, String.valueOf(i)));
+      }
+      features.addFeature(f);
+      choices.add(new FeatureChoice("V1", fid, possible));
+    }
+    final KnowledgeData data = new KnowledgeData();
+    data.setFeatures(features);
+    data.setFeatureValues(values);
+    final KnowledgeBase relkb = new KnowledgeBaseMock(data);
+
+    // F3 <= F2 <= F1 < 4, enqueued in the wrong Order and F1 < 4 only after Event E1
+    final List<String> ctx = Arrays.asList("V1");
+    final Relation l3 = new Relation("L3", "L3", "L3", "V1", new RelationParameter("F3", "F3", "P3", "V1", ctx, "F3"), new RelationParameter("F2", "F2", "P2", "V1", ctx, "F2"),
+        RelationOperator.LESS_OR_EQUAL);
+    final Relation l2 = new Relation("L2", "L2", "L2", "V1", new RelationParameter("F2", "F2", "P2", "V1", ctx, "F2"), new RelationParameter("F1", "F1", "P1", "V1", ctx, "F1"),
+        RelationOperator.LESS_OR_EQUAL);
+    final Relation l1 = new Relation("L1", "L1", "L1", "V1", new RelationParameter("F1", "F1", "P1", "V1", ctx, "F1"), new RelationParameter("V1", "F1-4"),
+        RelationOperator.LESS_THAN, "E1");
+    final Event e1 = new Event("E1", "E1", "E1", "V1", ctx, "F1", Event.TRIGGER_TYPE_FEATURE_VALUE);
+    final RulesAndEventsHandler raeh = RulesAndEventsHandler.init(Arrays.asList(e1), new ArrayList<Rule>(), Arrays.asList(l3, l2, l1));
+    final KnowledgeEntity ke = new KnowledgeEntity(1, new Purpose("P"), new Variant("V1"), null, choices, null);
+    final KnowledgeEntities entities = new KnowledgeEntities();
+    entities.add(ke);
+    final SessionState state = new SessionState("S1", null, new Knowledge(entities, null), raeh);
+    final RelationEvaluator evaluator = new RelationEvaluator(relkb, this.trans);
+
+    // first Pass: nothing to narrow, L3 and L2 are remembered as unchanged
+    state.getChangeTracker().nextPass();
+    assertTrue("Knowledge not stable.", evaluator.resolve(state, null).isStable());
+    for (final FeatureChoice fc : ke.getPossibleFeatures()) {
+      assertEquals("Values of " + fc.getFeatureID() + " narrowed.", 5, fc.getNumberOfPossibleValues());
+    }
+
+    // second Pass: L1 narrows F1 and must wake L2 and L3 within this Pass,
+    // but no relevant Event depends on F1, F2 or F3
+    raeh.setTriggered(e1);
+    state.getChangeTracker().nextPass();
+    final int skipped = state.getChangeTracker().getSkipped();
+    assertTrue("Knowledge not stable although nothing depends on the narrowed Values.", evaluator.resolve(state, null).isStable());
+    assertTrue("Unchanged Relations not skipped.", state.getChangeTracker().getSkipped() > skipped);
+    for (final FeatureChoice fc : ke.getPossibleFeatures()) {
+      assertEquals("Values of " + fc.getFeatureID() + " not narrowed within one Pass.", 3, fc.getNumberOfPossibleValues());
+    }
+
+    // third Pass: L4 narrows F3 > 1, which Event E2 depends on
+    final Event e2 = new Event("E2", "E2", "E2", "V1", ctx, "F3-1", Event.TRIGGER_TYPE_FEATURE_VALUE);
+    final Relation l4 = new Relation("L4", "L4", "L4", "V1", new RelationParameter("F3", "F3", "P3", "V1", ctx, "F3"), new RelationParameter("V1", "F3-1"),
+        RelationOperator.GREATER_THAN);
+    raeh.addRelevantEvents(Arrays.asList(e2));
+    raeh.addActiveRelations(Arrays.asList(l4));
+    state.getChangeTracker().nextPass();
+    assertFalse("Knowledge is stable although Event E2 depends on the narrowed Values.", evaluator.resolve(state, null).isStable());
+    for (final FeatureChoice fc : ke.getPossibleFeatures()) {
+      assertEquals("Values of " + fc.getFeatureID() + " not narrowed within one Pass.", 2, fc.getNumberOfPossibleValues());
+    }
+    LOGGER.info("... done. Chain of Relations settled within one Pass.");
+  }
+
+  /**
+   * Test method for {@link org.psikeds.resolutionengine.interfaces.pojos.Knowledge#copy()}.
+   * 
+   * Copying must not modify the Original and Modifications of either of
+   * them must not be visible in the other one.
+   * 
+   */
+  @Test
+  public void testKnowledgeCopy() throws Exception {
+    LOGGER.info("Testing Copy of Knowledge ...");
+    final Purpose p = new Purpose("P1", true);
+    final Variant v = new Variant("V1");
+    final KnowledgeEntity root = new KnowledgeEntity(p, v);
+    final KnowledgeEntity child = new KnowledgeEntity(new Purpose("P2"), new Variant("V2"));
+    final FeatureValues values = new FeatureValues();
+    values.add(new FeatureValue("F1", "F1-1", "1"));
+    values.add(new FeatureValue("F1", "F1-2", "2"));
+    child.addPossibleFeature(new FeatureChoice("V2", "F1", values));
+    root.addChild(child);
+    final Knowledge original = new Knowledge();
+    original.addKnowledgeEntity(root);
+    original.addChoice(new VariantChoice(p));
+    final SessionCodec codec = new SessionCodec();
+    final byte[] before = codec.encode(original);
+
+    final KnowledgeEntities roots = original.getEntities();
+    final Knowledge copy = original.copy();
+    assertSame("Copying changed Entities of Original.", roots, original.getEntities());
+    assertSame("Copying changed Root of Original.", root, original.getEntities().get(0));
+    final KnowledgeEntity copiedChild = copy.getEntities().get(0).getChildren().get(0);
+    assertNotSame("Child of Copy is shared with Original.", child, copiedChild);
+    assertArrayEquals("Copy differs from Original.", before, codec.encode(copy));
+    copiedChild.getPossibleFeatures().get(0).setValue(values.get(0));
+    copiedChild.addChild(new KnowledgeEntity(new Purpose("P3"), new Variant("V3")));
+    copy.getChoices().get(0).setVariant(v);
+    assertArrayEquals("Modifying Copy changed Original.", before, codec.encode(original));
+
+    final byte[] modified = codec.encode(copy);
+    original.getEntities().get(0).getChildren().get(0).clearPossibleFeatures();
+    original.getEntities().get(0).setQuantity(3);
+    assertArrayEquals("Modifying Original changed Copy.", modified, codec.encode(copy));
+    assertEquals("Values of Original changed.", 2, values.size());
+    LOGGER.info("... done. Copy of Knowledge worked as expected.");
+  }
+
+  /**
+   * Test method for {@link Vo2PojoTransformer#setSymbolicRanges(boolean)}.
+   * 
+   * By default Ranges must be expanded into possible Values, i.e. the
+   * Wire-Format stays the same for Clients unaware of Ranges.
+   * 
+   */
+  @Test
+  public void testRangeWireFormat() throws Exception {
+    LOGGER.info("Testing Wire-Format of Ranges ...");
+    final FeatureValueList values = new FeatureValueList();
+    values.add(new IntegerFeatureValue("F1", "F1-0", 0));
+    values.addAll(new IntegerFeatureValueRange("F1", "R1", 1, 1, 10));
+
+    final Vo2PojoTransformer vo2pojo = new Vo2PojoTransformer(this.kb);
+    final FeatureChoice expanded = vo2pojo.valueObject2Pojo("V1", values);
+    assertEquals("Range not expanded.", 11, expanded.getPossibleValues().size());
+    assertTrue("Expanded Range still written.", expanded.getPossibleRanges().isEmpty());
+    assertEquals("Wrong expanded Value.", "10", expanded.getPossibleValue(10).getValue());
+
+    vo2pojo.setMaxExpandedRangeSize(5);
+    assertEquals("Expanded Range not limited.", 6, vo2pojo.valueObject2Pojo("V1", values).getPossibleValues().size());
+
+    vo2pojo.setSymbolicRanges(true);
+    final FeatureChoice symbolic = vo2pojo.valueObject2Pojo("V1", values);
+    assertEquals("Range not symbolic.", 1, symbolic.getPossibleValues().size());
+    assertEquals("Range not symbolic.", 1, symbolic.getPossibleRanges().size());
+    assertEquals("Values of Range lost.", 11, symbolic.getNumberOfPossibleValues());
+    for (int i = 0; i < 11; i++) {
+      assertEquals("Expanded and symbolic Value differ.", expanded.getPossibleValue(i).getFeatureValueID(), symbolic.getPossibleValue(i).getFeatureValueID());
+      assertEquals("Expanded and symbolic Value differ.", expanded.getPossibleValue(i).getValue(), symbolic.getPossibleValue(i).getValue());
+    }
+    LOGGER.info("... done. Wire-Format of Ranges as expected.");
+  }
+
+  private static void checkIndex(final Knowledge knowledge, final String variantId) {
+    final KnowledgeEntities expected = new KnowledgeEntities();
+    walk(expected, variantId, knowledge.getEntities());
+    final KnowledgeEntities indexed = knowledge.getIndex().getEntities(variantId);
+    assertEquals("Wrong Number of indexed Entities.", expected.size(), indexed.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertSame("Wrong Order of indexed Entities.", expected.get(i), indexed.get(i));
+    }
+  }
+
+  private static void walk(final KnowledgeEntities result, final String variantId, final KnowledgeEntities entities) {
+    for (final KnowledgeEntity ke : entities) {
+      if (variantId.equals(ke.getVariant().getVariantID())) {
+        result.add(ke);
+      }
+      walk(result, variantId, ke.getChildren());
+    }
+  }
 }